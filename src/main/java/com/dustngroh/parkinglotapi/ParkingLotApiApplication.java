@@ -2,8 +2,12 @@ package com.dustngroh.parkinglotapi;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
+@PropertySource("classpath:parking-lot-defaults.properties")
 public class ParkingLotApiApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,65 @@
+package com.dustngroh.parkinglotapi.config;
+
+import com.dustngroh.parkinglotapi.filter.AuthenticatedUser;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * Keeps a user's reads on the primary for a short window after that user committed a write, so a reservation
+ * the user just made (or cancelled) shows up in their next requests even while the replicas lag behind.
+ * Users are told apart by the {@link AuthenticatedUser} of the current request; work without one is never pinned.
+ */
+public class ReadYourWritesWindow {
+
+    private static final int MAX_PINNED_USERS = 100_000;
+
+    private final Cache<String, Boolean> pinnedUsers;
+
+    public ReadYourWritesWindow(Duration window) {
+        this(window, Ticker.systemTicker());
+    }
+
+    ReadYourWritesWindow(Duration window, Ticker ticker) {
+        this.pinnedUsers = Caffeine.newBuilder()
+                .maximumSize(MAX_PINNED_USERS)
+                .expireAfterWrite(window)
+                .ticker(ticker)
+                .build();
+    }
+
+    // Starts (or restarts) the window for the calling user once the current transaction commits
+    public void pinCurrentUserAfterCommit() {
+        String username = currentUsername();
+        if (username == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            pinnedUsers.put(username, Boolean.TRUE);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                pinnedUsers.put(username, Boolean.TRUE);
+            }
+        });
+    }
+
+    public boolean isCurrentUserPinned() {
+        String username = currentUsername();
+        return username != null && pinnedUsers.getIfPresent(username) != null;
+    }
+
+    private static String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user
+                ? user.username() : null;
+    }
+}
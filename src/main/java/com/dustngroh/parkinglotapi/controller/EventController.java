@@ -0,0 +1,64 @@
+package com.dustngroh.parkinglotapi.controller;
+
+import com.dustngroh.parkinglotapi.dto.ReservationFeedEvent;
+import com.dustngroh.parkinglotapi.service.ReservationEventService;
+import com.dustngroh.parkinglotapi.util.PageCursor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("/api/events")
+public class EventController {
+
+    // Below the usual 30-second proxy and servlet async timeouts
+    private static final long MAX_WAIT_SECONDS = 25;
+
+    private final ReservationEventService reservationEventService;
+
+    public EventController(ReservationEventService reservationEventService) {
+        this.reservationEventService = reservationEventService;
+    }
+
+    /**
+     * Reservation change feed (Admin Use): events after position 'after', oldest first. Pass the returned
+     * 'next' as 'after' to continue. With 'waitSeconds', a caught-up reader is answered as soon as new
+     * events are relayed, or with an empty page when the wait runs out.
+     */
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public CompletableFuture<ResponseEntity<?>> getEvents(
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "0") long waitSeconds
+    ) {
+        if (after < 0) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(Map.of("message", "after must not be negative.")));
+        }
+        // Positions only come from the feed, so one past its end would wait for events that already exist
+        long lastPosition = reservationEventService.getLastPosition();
+        if (after > lastPosition) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(Map.of("message", "after must not be past the last event position (" + lastPosition + ").")));
+        }
+        if (!reservationEventService.isRetained(after)) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.GONE)
+                    .body(Map.of("message", "Events after " + after + " are no longer kept. Start again from 0.")));
+        }
+
+        long waitMillis = Math.max(0, Math.min(waitSeconds, MAX_WAIT_SECONDS)) * 1000;
+        return reservationEventService.poll(after, PageCursor.limit(limit), waitMillis)
+                .<ResponseEntity<?>>thenApply(events -> ResponseEntity.ok(page(events, after)));
+    }
+
+    private static Map<String, Object> page(List<ReservationFeedEvent> events, long after) {
+        long next = events.isEmpty() ? after : events.getLast().position();
+        return Map.of("events", events, "next", next);
+    }
+}
@@ -1,32 +1,147 @@
 package com.dustngroh.parkinglotapi.controller;
 
+import com.dustngroh.parkinglotapi.dto.NearbyParkingLot;
 import com.dustngroh.parkinglotapi.dto.ParkingLotDTO;
+import com.dustngroh.parkinglotapi.dto.ParkingLotImportResult;
+import com.dustngroh.parkinglotapi.dto.ParkingLotMatch;
+import com.dustngroh.parkinglotapi.dto.UtilizationBucket;
 import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import com.dustngroh.parkinglotapi.service.AvailabilityStreamService;
+import com.dustngroh.parkinglotapi.service.NearbyLotIndex;
+import com.dustngroh.parkinglotapi.service.OccupancyTimeSeries;
+import com.dustngroh.parkinglotapi.service.ParkingLotImportService;
+import com.dustngroh.parkinglotapi.service.ParkingLotSearchIndex;
 import com.dustngroh.parkinglotapi.service.ParkingLotService;
+import com.dustngroh.parkinglotapi.service.ParkingLotSnapshot;
+import com.dustngroh.parkinglotapi.service.ParkingLotSnapshotService;
+import com.dustngroh.parkinglotapi.util.PageCursor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DurationFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/parkinglots")
 public class ParkingLotController {
 
+    private static final String TEXT_CSV_VALUE = "text/csv";
+
     private final ParkingLotService parkingLotService;
+    private final ParkingLotSnapshotService parkingLotSnapshotService;
+    private final AvailabilityStreamService availabilityStreamService;
+    private final ParkingLotImportService parkingLotImportService;
+    private final NearbyLotIndex nearbyLotIndex;
+    private final ParkingLotSearchIndex parkingLotSearchIndex;
+    private final OccupancyTimeSeries occupancyTimeSeries;
 
-    public ParkingLotController(ParkingLotService parkingLotService) {
+    public ParkingLotController(ParkingLotService parkingLotService,
+                                ParkingLotSnapshotService parkingLotSnapshotService,
+                                AvailabilityStreamService availabilityStreamService,
+                                ParkingLotImportService parkingLotImportService,
+                                NearbyLotIndex nearbyLotIndex,
+                                ParkingLotSearchIndex parkingLotSearchIndex,
+                                OccupancyTimeSeries occupancyTimeSeries) {
         this.parkingLotService = parkingLotService;
+        this.parkingLotSnapshotService = parkingLotSnapshotService;
+        this.availabilityStreamService = availabilityStreamService;
+        this.parkingLotImportService = parkingLotImportService;
+        this.nearbyLotIndex = nearbyLotIndex;
+        this.parkingLotSearchIndex = parkingLotSearchIndex;
+        this.occupancyTimeSeries = occupancyTimeSeries;
     }
 
+    // Served from the in-memory snapshot; Spring answers a matching If-None-Match with 304 and no body
     @GetMapping
-    public ResponseEntity<List<ParkingLotDTO>> getAllParkingLots() {
-        List<ParkingLotDTO> lots = parkingLotService.getAllParkingLots()
-                .stream()
-                .map(ParkingLotDTO::new)
-                .toList();
-        return ResponseEntity.ok(lots);
+    public ResponseEntity<byte[]> getAllParkingLots(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit
+    ) {
+        long afterId = PageCursor.decode(cursor);
+        ParkingLotSnapshot snapshot = parkingLotSnapshotService.getSnapshot();
+        ParkingLotSnapshot.Page page = snapshot.page(afterId, PageCursor.limit(limit));
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(snapshot.getETag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON);
+        if (page.nextCursor() != null) {
+            response.header(PageCursor.NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.body());
+    }
+
+    // Server-Sent Events with reserved-space changes, optionally limited to ?ids=1,2,3
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamAvailability(@RequestParam(required = false) Set<Long> ids) {
+        return availabilityStreamService.subscribe(ids == null ? Set.of() : ids)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+    }
+
+    // Nearest lots with at least minAvailable free spaces within radius meters, served from memory
+    @GetMapping("/nearby")
+    public ResponseEntity<?> findNearbyParkingLots(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam(defaultValue = "5000") double radius,
+            @RequestParam(defaultValue = "1") int minAvailable,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        try {
+            List<NearbyParkingLot> lots = nearbyLotIndex.findNearby(lat, lon, radius, minAvailable, limit);
+            return ResponseEntity.ok(lots);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    // Type-ahead search over names and addresses, served from memory
+    @GetMapping("/search")
+    public ResponseEntity<?> searchParkingLots(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        try {
+            List<ParkingLotMatch> matches = parkingLotSearchIndex.search(q, limit);
+            return ResponseEntity.ok(matches);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    /**
+     * Reserved count over time, e.g. ?from=2025-01-06T00:00&to=2025-01-07T00:00&step=1h, served from memory.
+     * The step takes 30s, 5m, 1h or ISO-8601 (PT15M) durations.
+     */
+    @GetMapping("/{id}/utilization")
+    public ResponseEntity<?> getUtilization(
+            @PathVariable Long id,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "1h") @DurationFormat(style = DurationFormat.Style.COMPOSITE) Duration step
+    ) {
+        try {
+            Optional<List<UtilizationBucket>> buckets = occupancyTimeSeries.getUtilization(id, from, to, step);
+            return buckets.<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "Parking lot not found")));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
     }
 
     @GetMapping("/{id}")
@@ -43,6 +158,24 @@ public class ParkingLotController {
         return ResponseEntity.ok(createdParkingLot);
     }
 
+    /**
+     * Import parking lots (Admin Use) from a CSV (text/csv, with a header row) or NDJSON (application/x-ndjson)
+     * body. The body is read as it arrives; invalid rows are skipped and listed in the response.
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping(path = "/import", consumes = {TEXT_CSV_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<?> importParkingLots(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                               InputStream body) {
+        try {
+            ParkingLotImportResult result = MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)
+                    ? parkingLotImportService.importNdjson(body)
+                    : parkingLotImportService.importCsv(body);
+            return ResponseEntity.ok(result);
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Could not read the upload: " + e.getMessage()));
+        }
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteParkingLot(@PathVariable Long id) {
@@ -1,15 +1,24 @@
 package com.dustngroh.parkinglotapi.controller;
 
+import com.dustngroh.parkinglotapi.dto.ReservationDTO;
+import com.dustngroh.parkinglotapi.entity.ParkingLot;
 import com.dustngroh.parkinglotapi.entity.Reservation;
 import com.dustngroh.parkinglotapi.entity.User;
+import com.dustngroh.parkinglotapi.exception.BulkReservationException;
+import com.dustngroh.parkinglotapi.exception.IdempotencyKeyReusedException;
+import com.dustngroh.parkinglotapi.filter.AuthenticatedUser;
+import com.dustngroh.parkinglotapi.service.IdempotencyService;
 import com.dustngroh.parkinglotapi.service.ReservationService;
 import com.dustngroh.parkinglotapi.service.UserService;
-import com.dustngroh.parkinglotapi.util.JwtUtil;
-import jakarta.servlet.http.HttpServletRequest;
+import com.dustngroh.parkinglotapi.util.PageCursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -18,22 +27,33 @@ import java.util.Optional;
 @RequestMapping("/api/reservations")
 public class ReservationController {
 
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
     private final ReservationService reservationService;
     private final UserService userService;
-    private final JwtUtil jwtUtil;
+    private final IdempotencyService idempotencyService;
+    private final int bulkMaxSize;
 
-    public ReservationController(ReservationService reservationService, UserService userService, JwtUtil jwtUtil) {
+    public ReservationController(ReservationService reservationService, UserService userService,
+                                 IdempotencyService idempotencyService,
+                                 @Value("${parkinglot.reservation.bulk.max-size:10000}") int bulkMaxSize) {
         this.reservationService = reservationService;
         this.userService = userService;
-        this.jwtUtil = jwtUtil;
+        this.idempotencyService = idempotencyService;
+        this.bulkMaxSize = bulkMaxSize;
     }
 
     /**
-     * Get all reservations (Admin Use)
+     * Get all reservations (Admin Use), one keyset page at a time
      */
     @GetMapping
-    public ResponseEntity<List<Reservation>> getAllReservations() {
-        return ResponseEntity.ok(reservationService.getAllReservations());
+    public ResponseEntity<List<ReservationDTO>> getAllReservations(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit
+    ) {
+        int pageSize = PageCursor.limit(limit);
+        List<ReservationDTO> reservations = reservationService.getReservations(PageCursor.decode(cursor), pageSize + 1);
+        return PageCursor.toResponse(reservations, pageSize, ReservationDTO::getId);
     }
 
     /**
@@ -41,43 +61,43 @@ public class ReservationController {
      */
     @GetMapping("/user")
     public ResponseEntity<?> getReservationsByUser(
-            @CookieValue(name = "jwtToken", required = false) String token
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser user,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit
     ) {
-        if (token == null) {
+        if (user == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "Unauthorized"));
         }
 
+        long afterId = PageCursor.decode(cursor);
+        int pageSize = PageCursor.limit(limit);
         try {
-            String username = jwtUtil.getUsernameFromToken(token);
-            if (username == null) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "Unauthorized"));
-            }
-
-            List<Reservation> reservations = reservationService.getReservationsByUser(username);
-            return ResponseEntity.ok(reservations);
+            List<ReservationDTO> reservations = reservationService.getReservationsByUser(user.username(), afterId, pageSize + 1);
+            return PageCursor.toResponse(reservations, pageSize, ReservationDTO::getId);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("message", e.getMessage()));
         }
     }
 
     @GetMapping("/parkinglot/{parkingLotId}")
-    public ResponseEntity<List<Reservation>> getReservationsByParkingLot(
+    public ResponseEntity<List<ReservationDTO>> getReservationsByParkingLot(
             @PathVariable Long parkingLotId,
-            @CookieValue(name = "jwtToken", required = false) String token
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser user,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit
     ) {
-        if (token == null) {
+        if (user == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(null);
         }
 
-        String username = jwtUtil.getUsernameFromToken(token);
-        Optional<User> userOpt = userService.getUserByUsername(username);
-
-        if (userOpt.isEmpty() || !userOpt.get().getRole().equals("ADMIN")) {
+        if (!user.isAdmin()) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
         }
 
-        List<Reservation> reservations = reservationService.getReservationsByParkingLotId(parkingLotId);
-        return ResponseEntity.ok(reservations);
+        int pageSize = PageCursor.limit(limit);
+        List<ReservationDTO> reservations =
+                reservationService.getReservationsByParkingLotId(parkingLotId, PageCursor.decode(cursor), pageSize + 1);
+        return PageCursor.toResponse(reservations, pageSize, ReservationDTO::getId);
     }
 
     /**
@@ -86,19 +106,14 @@ public class ReservationController {
     @GetMapping("/exists")
     public ResponseEntity<Map<String, Boolean>> hasReservation(
             @RequestParam Long parkingLotId,
-            @CookieValue(name = "jwtToken", required = false) String token
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser user
     ) {
-        if (token == null) {
+        if (user == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("hasReservation", false));
         }
 
         try {
-            String username = jwtUtil.getUsernameFromToken(token);
-            if (username == null) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("hasReservation", false));
-            }
-
-            boolean exists = reservationService.hasReservation(username, parkingLotId);
+            boolean exists = reservationService.hasReservation(user.username(), parkingLotId);
             return ResponseEntity.ok(Map.of("hasReservation", exists));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("hasReservation", false));
@@ -106,54 +121,158 @@ public class ReservationController {
     }
 
     /**
-     * Create a new reservation
+     * Create a new reservation. With an Idempotency-Key header, a retry of the same request gets the
+     * first response back instead of creating (or failing to create) the reservation again.
      */
     @PostMapping
     public ResponseEntity<?> createReservation(
             @RequestParam Long parkingLotId,
-            @CookieValue(name = "jwtToken", required = false) String token
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser user
     ) {
-        if (token == null) {
+        if (user == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "Unauthorized"));
         }
+        if (idempotencyKey == null) {
+            return reserve(parkingLotId, user);
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body(Map.of("message",
+                    "Idempotency-Key must be 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters."));
+        }
 
         try {
-            String username = jwtUtil.getUsernameFromToken(token);
-            if (username == null) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "Unauthorized"));
+            return idempotencyService.execute(idempotencyScope(user, idempotencyKey), "parkingLotId=" + parkingLotId, () -> reserve(parkingLotId, user));
+        } catch (IdempotencyKeyReusedException e) {
+            return ResponseEntity.unprocessableEntity().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    private ResponseEntity<?> reserve(Long parkingLotId, AuthenticatedUser user) {
+        try {
+            Optional<Long> userIdOpt = userIdOf(user);
+            if (userIdOpt.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "User not found"));
             }
+            Long userId = userIdOpt.get();
 
-            Optional<User> userOpt = userService.getUserByUsername(username);
-            if (userOpt.isEmpty()) {
+            Reservation newReservation = reservationService.createReservation(userId, parkingLotId);
+            ParkingLot parkingLot = newReservation.getParkingLot();
+            ReservationDTO body = new ReservationDTO(newReservation.getId(), userId, user.username(),
+                    parkingLot.getId(), parkingLot.getName());
+            body.setHoldUntil(newReservation.getHoldUntil());
+            return ResponseEntity.status(HttpStatus.CREATED).body(body);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    /**
+     * Reserve a space for a time window only, e.g. ?startTime=2025-01-06T08:00&endTime=2025-01-06T17:00
+     */
+    @PostMapping("/slot")
+    public ResponseEntity<?> createSlotReservation(
+            @RequestParam Long parkingLotId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser user
+    ) {
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "Unauthorized"));
+        }
+
+        try {
+            Optional<Long> userIdOpt = userIdOf(user);
+            if (userIdOpt.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "User not found"));
             }
+            Long userId = userIdOpt.get();
+
+            Reservation newReservation = reservationService.createSlotReservation(userId, parkingLotId, startTime, endTime);
+            ParkingLot parkingLot = newReservation.getParkingLot();
+            ReservationDTO body = new ReservationDTO(newReservation.getId(), userId, user.username(),
+                    parkingLot.getId(), parkingLot.getName());
+            body.setStartTime(newReservation.getStartTime());
+            body.setEndTime(newReservation.getEndTime());
+            return ResponseEntity.status(HttpStatus.CREATED).body(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("message", e.getMessage()));
+        }
+    }
 
-            Reservation newReservation = reservationService.createReservation(userOpt.get(), parkingLotId);
-            return ResponseEntity.status(HttpStatus.CREATED).body(newReservation);
+    /**
+     * Spaces free in a parking lot for the whole of a time window
+     */
+    @GetMapping("/availability")
+    public ResponseEntity<Map<String, Object>> getAvailableSpaces(
+            @RequestParam Long parkingLotId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime
+    ) {
+        try {
+            int available = reservationService.getAvailableSpaces(parkingLotId, startTime, endTime);
+            return ResponseEntity.ok(Map.of("parkingLotId", parkingLotId, "availableSpaces", available));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("message", e.getMessage()));
         }
     }
 
+    /**
+     * Create many reservations at once (Admin Use): a JSON array of {"userId", "parkingLotId"}.
+     * All rows are created or none; a rejected batch lists what to fix.
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/bulk")
+    public ResponseEntity<Map<String, Object>> createReservations(@RequestBody List<ReservationDTO> requests) {
+        if (requests.size() > bulkMaxSize) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("message", "At most " + bulkMaxSize + " reservations per request."));
+        }
+        try {
+            int created = reservationService.createReservations(requests);
+            return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("created", created));
+        } catch (BulkReservationException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("message", e.getMessage(), "errors", e.getErrors()));
+        }
+    }
+
+    /**
+     * Cancel many reservations at once (Admin Use); pairs without a reservation are skipped
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/bulk-cancel")
+    public ResponseEntity<Map<String, Object>> cancelReservations(@RequestBody List<ReservationDTO> requests) {
+        if (requests.size() > bulkMaxSize) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("message", "At most " + bulkMaxSize + " reservations per request."));
+        }
+        try {
+            int cancelled = reservationService.cancelReservations(requests);
+            return ResponseEntity.ok(Map.of("cancelled", cancelled));
+        } catch (BulkReservationException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage(), "errors", e.getErrors()));
+        }
+    }
+
     /**
      * Cancel a reservation
      */
     @DeleteMapping("/cancel")
     public ResponseEntity<Map<String, String>> cancelReservation(
             @RequestParam Long parkingLotId,
-            @CookieValue(name = "jwtToken", required = false) String token
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser user
     ) {
-        if (token == null) {
+        if (user == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "Unauthorized"));
         }
 
         try {
-            String username = jwtUtil.getUsernameFromToken(token);
-            if (username == null) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "Unauthorized"));
-            }
-
-            boolean canceled = reservationService.cancelReservation(username, parkingLotId);
+            boolean canceled = reservationService.cancelReservation(user.username(), parkingLotId);
             if (!canceled) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("message", "No reservation found to cancel."));
             }
@@ -187,4 +306,18 @@ public class ReservationController {
         reservationService.deleteReservation(id);
         return ResponseEntity.ok(Map.of("message", "Reservation deleted successfully."));
     }
+
+    // Keys are scoped to the caller, so clients only need them unique among their own requests. Usernames may
+    // contain ':', so the username is length-prefixed: "bob" with key "x:k" and "bob:x" with key "k" stay apart.
+    static String idempotencyScope(AuthenticatedUser user, String idempotencyKey) {
+        return "user:" + user.username().length() + ":" + user.username() + ":" + idempotencyKey;
+    }
+
+    private Optional<Long> userIdOf(AuthenticatedUser user) {
+        if (user.id() != null) {
+            return Optional.of(user.id());
+        }
+        // Token issued before the user id was part of the claims
+        return userService.getUserByUsername(user.username()).map(User::getId);
+    }
 }
@@ -5,6 +5,7 @@ import com.dustngroh.parkinglotapi.dto.LoginRequestDTO;
 import com.dustngroh.parkinglotapi.dto.UserMapper;
 import com.dustngroh.parkinglotapi.dto.UserRegistrationDTO;
 import com.dustngroh.parkinglotapi.entity.User;
+import com.dustngroh.parkinglotapi.exception.PasswordHashingOverloadedException;
 import com.dustngroh.parkinglotapi.exception.UserAlreadyExistsException;
 import com.dustngroh.parkinglotapi.exception.UserNotFoundException;
 import com.dustngroh.parkinglotapi.service.UserService;
@@ -12,6 +13,7 @@ import com.dustngroh.parkinglotapi.util.JwtUtil;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -41,6 +43,8 @@ public class UserController {
             return ResponseEntity.status(HttpStatus.CREATED).body("User created successfully.");
         } catch (UserAlreadyExistsException e) {
             return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (PasswordHashingOverloadedException e) {
+            return overloaded(e.getMessage());
         }
     }
 
@@ -70,6 +74,8 @@ public class UserController {
 
         } catch (UserNotFoundException e) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Collections.singletonMap("error", e.getMessage()));
+        } catch (PasswordHashingOverloadedException e) {
+            return overloaded(Collections.singletonMap("error", e.getMessage()));
         }
     }
 
@@ -103,6 +109,8 @@ public class UserController {
             return ResponseEntity.ok("Password updated successfully.");
         } catch (UserNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (PasswordHashingOverloadedException e) {
+            return overloaded(e.getMessage());
         }
     }
 
@@ -134,4 +142,8 @@ public class UserController {
         }
     }
 
+    // Password hashing is saturated; shed the request quickly rather than let it queue
+    private static <T> ResponseEntity<T> overloaded(T body) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(body);
+    }
 }
@@ -0,0 +1,5 @@
+package com.dustngroh.parkinglotapi.dto;
+
+// A response stored for an Idempotency-Key: status, JSON body, and the fingerprint of the request that produced it
+public record IdempotentResponse(int status, String body, String fingerprint) {
+}
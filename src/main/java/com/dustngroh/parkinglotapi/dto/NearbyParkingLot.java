@@ -0,0 +1,6 @@
+package com.dustngroh.parkinglotapi.dto;
+
+// One result of the nearby search, with the great-circle distance from the requested point
+public record NearbyParkingLot(Long id, String name, String address, double latitude, double longitude,
+                               int totalSpaces, int availableSpaces, double distanceMeters) {
+}
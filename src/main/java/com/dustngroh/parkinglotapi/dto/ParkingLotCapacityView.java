@@ -0,0 +1,11 @@
+package com.dustngroh.parkinglotapi.dto;
+
+// Read-only view of the columns needed for a version-checked update of reserved spaces
+public interface ParkingLotCapacityView {
+
+    int getReservedSpaces();
+
+    int getTotalSpaces();
+
+    long getVersion();
+}
@@ -1,5 +1,7 @@
 package com.dustngroh.parkinglotapi.dto;
 
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -22,6 +24,14 @@ public class ParkingLotDTO {
     @Min(value = 0, message = "Reserved spaces cannot be negative.")
     private Integer reservedSpaces;
 
+    @DecimalMin(value = "-90", message = "Latitude must be between -90 and 90.")
+    @DecimalMax(value = "90", message = "Latitude must be between -90 and 90.")
+    private Double latitude;
+
+    @DecimalMin(value = "-180", message = "Longitude must be between -180 and 180.")
+    @DecimalMax(value = "180", message = "Longitude must be between -180 and 180.")
+    private Double longitude;
+
     // Default Constructor (Needed for deserialization)
     public ParkingLotDTO() {}
 
@@ -34,6 +44,14 @@ public class ParkingLotDTO {
         this.reservedSpaces = reservedSpaces;
     }
 
+    // Constructor for queries that also select the position
+    public ParkingLotDTO(Long id, String name, String address, Integer totalSpaces, Integer reservedSpaces,
+                         Double latitude, Double longitude) {
+        this(id, name, address, totalSpaces, reservedSpaces);
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
     // Constructor to Convert Entity to DTO
     public ParkingLotDTO(com.dustngroh.parkinglotapi.entity.ParkingLot parkingLot) {
         this.id = parkingLot.getId();
@@ -41,6 +59,8 @@ public class ParkingLotDTO {
         this.address = parkingLot.getAddress();
         this.totalSpaces = parkingLot.getTotalSpaces();
         this.reservedSpaces = parkingLot.getReservedSpaces();
+        this.latitude = parkingLot.getLatitude();
+        this.longitude = parkingLot.getLongitude();
     }
 
     // Getters and Setters
@@ -84,4 +104,20 @@ public class ParkingLotDTO {
     public void setReservedSpaces(Integer reservedSpaces) {
         this.reservedSpaces = reservedSpaces;
     }
+
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(Double latitude) {
+        this.latitude = latitude;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(Double longitude) {
+        this.longitude = longitude;
+    }
 }
@@ -0,0 +1,31 @@
+package com.dustngroh.parkinglotapi.dto;
+
+import java.util.List;
+
+// Outcome of a parking lot import; 'errors' holds the first problems found, one per rejected row
+public class ParkingLotImportResult {
+
+    private final long imported;
+    private final long failed;
+    private final List<String> errors;
+
+    public ParkingLotImportResult(long imported, long failed, List<String> errors) {
+        this.imported = imported;
+        this.failed = failed;
+        this.errors = List.copyOf(errors);
+    }
+
+    // Getters
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
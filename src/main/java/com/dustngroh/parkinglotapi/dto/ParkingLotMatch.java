@@ -0,0 +1,5 @@
+package com.dustngroh.parkinglotapi.dto;
+
+// One result of the type-ahead search; better matches have a higher score
+public record ParkingLotMatch(Long id, String name, String address, double score) {
+}
@@ -0,0 +1,121 @@
+package com.dustngroh.parkinglotapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDateTime;
+
+// Flat read model of a reservation; listings select it directly in one query (see ReservationRepository)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ReservationDTO {
+
+    private Long id;
+    private Long userId;
+    private String username;
+    private String plateNumber;
+    private Long parkingLotId;
+    private String parkingLotName;
+    private LocalDateTime holdUntil;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+
+    // Default Constructor (Needed for deserialization)
+    public ReservationDTO() {}
+
+    public ReservationDTO(Long id, Long userId, String username, Long parkingLotId, String parkingLotName) {
+        this(id, userId, username, null, parkingLotId, parkingLotName);
+    }
+
+    public ReservationDTO(Long id, Long userId, String username, String plateNumber, Long parkingLotId,
+                          String parkingLotName) {
+        this(id, userId, username, plateNumber, parkingLotId, parkingLotName, null, null, null);
+    }
+
+    // Constructor used by the JPQL projections
+    public ReservationDTO(Long id, Long userId, String username, String plateNumber, Long parkingLotId,
+                          String parkingLotName, LocalDateTime holdUntil, LocalDateTime startTime,
+                          LocalDateTime endTime) {
+        this.id = id;
+        this.userId = userId;
+        this.username = username;
+        this.plateNumber = plateNumber;
+        this.parkingLotId = parkingLotId;
+        this.parkingLotName = parkingLotName;
+        this.holdUntil = holdUntil;
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    // Getters and Setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getPlateNumber() {
+        return plateNumber;
+    }
+
+    public void setPlateNumber(String plateNumber) {
+        this.plateNumber = plateNumber;
+    }
+
+    public Long getParkingLotId() {
+        return parkingLotId;
+    }
+
+    public void setParkingLotId(Long parkingLotId) {
+        this.parkingLotId = parkingLotId;
+    }
+
+    public String getParkingLotName() {
+        return parkingLotName;
+    }
+
+    public void setParkingLotName(String parkingLotName) {
+        this.parkingLotName = parkingLotName;
+    }
+
+    public LocalDateTime getHoldUntil() {
+        return holdUntil;
+    }
+
+    public void setHoldUntil(LocalDateTime holdUntil) {
+        this.holdUntil = holdUntil;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(LocalDateTime startTime) {
+        this.startTime = startTime;
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(LocalDateTime endTime) {
+        this.endTime = endTime;
+    }
+}
@@ -0,0 +1,8 @@
+package com.dustngroh.parkinglotapi.dto;
+
+import java.time.LocalDateTime;
+
+// One entry of the reservation change feed, in feed order
+public record ReservationFeedEvent(Long position, String type, Long reservationId, Long userId, Long parkingLotId,
+                                   LocalDateTime occurredAt) {
+}
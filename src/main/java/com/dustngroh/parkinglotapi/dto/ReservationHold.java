@@ -0,0 +1,7 @@
+package com.dustngroh.parkinglotapi.dto;
+
+import java.time.LocalDateTime;
+
+// A pending hold as read back at startup to refill the expiry wheel
+public record ReservationHold(Long id, Long parkingLotId, LocalDateTime holdUntil) {
+}
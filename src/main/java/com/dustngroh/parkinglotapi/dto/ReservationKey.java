@@ -0,0 +1,5 @@
+package com.dustngroh.parkinglotapi.dto;
+
+// Just the identifying columns of a reservation, for set-based checks that should not load entities
+public record ReservationKey(Long id, Long userId, Long parkingLotId) {
+}
@@ -0,0 +1,7 @@
+package com.dustngroh.parkinglotapi.dto;
+
+import java.time.LocalDateTime;
+
+// The time window of a time-slot reservation, as loaded into the lot's occupancy index
+public record ReservationSlot(Long id, Long parkingLotId, LocalDateTime startTime, LocalDateTime endTime) {
+}
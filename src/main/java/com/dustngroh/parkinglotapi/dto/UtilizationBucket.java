@@ -0,0 +1,8 @@
+package com.dustngroh.parkinglotapi.dto;
+
+import java.time.LocalDateTime;
+
+// A lot's reserved count over [start, start + step); all but start are null when nothing was recorded for it
+public record UtilizationBucket(LocalDateTime start, Integer minReserved, Integer maxReserved, Double meanReserved,
+                                Double utilization) {
+}
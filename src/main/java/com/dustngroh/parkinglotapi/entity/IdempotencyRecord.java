@@ -0,0 +1,69 @@
+package com.dustngroh.parkinglotapi.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// A stored response for an Idempotency-Key, kept when the database tier of the idempotency store is enabled
+@Entity
+public class IdempotencyRecord {
+
+    // "<scope>:<client key>", where the scope names the user unambiguously (see ReservationController)
+    @Id
+    @Column(length = 320)
+    private String idempotencyKey;
+
+    // What the request asked for; a key reused for a different request is refused
+    @Column(nullable = false)
+    private String fingerprint;
+
+    @Column(nullable = false)
+    private int status;
+
+    @Column(length = 4000)
+    private String body;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    // Getters and Setters
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,46 @@
+package com.dustngroh.parkinglotapi.entity;
+
+import jakarta.persistence.*;
+
+// The single row an application instance holds while it runs against the database (see SingleInstanceGuard)
+@Entity
+public class InstanceLease {
+
+    public static final long ID = 1L;
+
+    @Id
+    private Long id;
+
+    // A random id per running instance, empty before the first instance takes the lease
+    @Column(nullable = false, length = 36)
+    private String owner;
+
+    // By the holder's clock; once passed, another instance may take the lease
+    private long expiresAtMillis;
+
+    // Getters and Setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    public void setExpiresAtMillis(long expiresAtMillis) {
+        this.expiresAtMillis = expiresAtMillis;
+    }
+}
@@ -0,0 +1,94 @@
+package com.dustngroh.parkinglotapi.entity;
+
+import jakarta.persistence.*;
+
+// One hour of a lot's reserved-space history: the hour's summary, plus its 60 one-minute buckets packed in a column
+@Entity
+@Table(indexes = @Index(name = "idx_occupancy_rollup_lot_hour", columnList = "parking_lot_id, epoch_hour",
+        unique = true))
+public class OccupancyRollup {
+
+    // 60 buckets of [covered ms, min, max][time integral of the count]
+    public static final int MINUTE_BYTES = 3 * Integer.BYTES + Double.BYTES;
+    public static final int MINUTES_BYTES = 60 * MINUTE_BYTES;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "occupancy_rollup_seq")
+    @SequenceGenerator(name = "occupancy_rollup_seq", sequenceName = "occupancy_rollup_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "parking_lot_id", nullable = false)
+    private Long parkingLotId;
+
+    // Hours since the epoch (UTC), so the key is the same in every time zone and across clock changes
+    @Column(name = "epoch_hour", nullable = false)
+    private long epochHour;
+
+    // The hour's summary, kept in columns for ad-hoc queries
+    private int minReserved;
+
+    private int maxReserved;
+
+    private double meanReserved;
+
+    @Column(nullable = false, length = MINUTES_BYTES)
+    private byte[] minutes;
+
+    // Getters and Setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getParkingLotId() {
+        return parkingLotId;
+    }
+
+    public void setParkingLotId(Long parkingLotId) {
+        this.parkingLotId = parkingLotId;
+    }
+
+    public long getEpochHour() {
+        return epochHour;
+    }
+
+    public void setEpochHour(long epochHour) {
+        this.epochHour = epochHour;
+    }
+
+    public int getMinReserved() {
+        return minReserved;
+    }
+
+    public void setMinReserved(int minReserved) {
+        this.minReserved = minReserved;
+    }
+
+    public int getMaxReserved() {
+        return maxReserved;
+    }
+
+    public void setMaxReserved(int maxReserved) {
+        this.maxReserved = maxReserved;
+    }
+
+    public double getMeanReserved() {
+        return meanReserved;
+    }
+
+    public void setMeanReserved(double meanReserved) {
+        this.meanReserved = meanReserved;
+    }
+
+    public byte[] getMinutes() {
+        return minutes;
+    }
+
+    public void setMinutes(byte[] minutes) {
+        this.minutes = minutes;
+    }
+}
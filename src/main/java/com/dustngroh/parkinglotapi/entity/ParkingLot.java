@@ -9,8 +9,10 @@ import java.util.Set;
 @Entity
 public class ParkingLot {
 
+    // Sequence ids let Hibernate batch the inserts of a bulk import
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "parking_lot_seq")
+    @SequenceGenerator(name = "parking_lot_seq", sequenceName = "parking_lot_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true)
@@ -25,6 +27,17 @@ public class ParkingLot {
     @Column(nullable = false)
     private int reservedSpaces;
 
+    // Optional WGS84 position in degrees; lots without one are left out of the nearby search
+    private Double latitude;
+
+    private Double longitude;
+
+    // Bumped on every change to the row; used by the optimistic reservation strategy
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    @JsonIgnore
+    private long version;
+
     @OneToMany(mappedBy = "parkingLot", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonIgnore
     private List<Reservation> reservations;
@@ -80,6 +93,30 @@ public class ParkingLot {
         this.reservedSpaces = reservedSpaces;
     }
 
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(Double latitude) {
+        this.latitude = latitude;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(Double longitude) {
+        this.longitude = longitude;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public List<Reservation> getReservations() {
         return reservations;
     }
@@ -6,10 +6,14 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = @Index(name = "idx_reservation_lot_end_time", columnList = "parking_lot_id, end_time"))
 public class Reservation {
 
+    // Ids come from a pooled sequence (50 per round trip) so bulk inserts can be batched;
+    // IDENTITY would force one INSERT per row to read the generated key
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reservation_seq")
+    @SequenceGenerator(name = "reservation_seq", sequenceName = "reservation_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -22,6 +26,14 @@ public class Reservation {
     @JsonIgnoreProperties("reservations")
     private ParkingLot parkingLot;
 
+    // When an unconfirmed reservation expires and its space is released; null holds indefinitely
+    private LocalDateTime holdUntil;
+
+    // Time-slot reservations cover [startTime, endTime); both are null for a reservation without an end
+    private LocalDateTime startTime;
+
+    private LocalDateTime endTime;
+
     // Getters and Setters
 
     public Long getId() {
@@ -48,4 +60,28 @@ public class Reservation {
         this.parkingLot = parkingLot;
     }
 
+    public LocalDateTime getHoldUntil() {
+        return holdUntil;
+    }
+
+    public void setHoldUntil(LocalDateTime holdUntil) {
+        this.holdUntil = holdUntil;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(LocalDateTime startTime) {
+        this.startTime = startTime;
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(LocalDateTime endTime) {
+        this.endTime = endTime;
+    }
+
 }
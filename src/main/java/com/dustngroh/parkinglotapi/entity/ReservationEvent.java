@@ -0,0 +1,108 @@
+package com.dustngroh.parkinglotapi.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// An outbox row: a reservation change written in the same transaction as the change itself
+@Entity
+@Table(indexes = @Index(name = "idx_reservation_event_feed_position", columnList = "feed_position", unique = true))
+public class ReservationEvent {
+
+    public static final String CREATED = "CREATED";
+    public static final String CANCELLED = "CANCELLED";
+    public static final String CONFIRMED = "CONFIRMED";
+    public static final String DELETED = "DELETED";
+    public static final String EXPIRED = "EXPIRED";
+
+    // Pooled like reservation ids, so an event costs no extra round trip for its key
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reservation_event_seq")
+    @SequenceGenerator(name = "reservation_event_seq", sequenceName = "reservation_event_seq", allocationSize = 50)
+    private Long id;
+
+    // Place in the change feed, set by the relay; null until then. Ids can commit out of order, positions cannot
+    @Column(name = "feed_position")
+    private Long feedPosition;
+
+    @Column(nullable = false, length = 16)
+    private String type;
+
+    @Column(nullable = false)
+    private Long reservationId;
+
+    private Long userId;
+
+    private Long parkingLotId;
+
+    @Column(nullable = false)
+    private LocalDateTime occurredAt;
+
+    public ReservationEvent() {
+    }
+
+    public ReservationEvent(String type, Long reservationId, Long userId, Long parkingLotId) {
+        this.type = type;
+        this.reservationId = reservationId;
+        this.userId = userId;
+        this.parkingLotId = parkingLotId;
+        this.occurredAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getFeedPosition() {
+        return feedPosition;
+    }
+
+    public void setFeedPosition(Long feedPosition) {
+        this.feedPosition = feedPosition;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Long getReservationId() {
+        return reservationId;
+    }
+
+    public void setReservationId(Long reservationId) {
+        this.reservationId = reservationId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getParkingLotId() {
+        return parkingLotId;
+    }
+
+    public void setParkingLotId(Long parkingLotId) {
+        this.parkingLotId = parkingLotId;
+    }
+
+    public LocalDateTime getOccurredAt() {
+        return occurredAt;
+    }
+
+    public void setOccurredAt(LocalDateTime occurredAt) {
+        this.occurredAt = occurredAt;
+    }
+}
@@ -0,0 +1,21 @@
+package com.dustngroh.parkinglotapi.event;
+
+/**
+ * Published whenever a parking lot or its reserved-space count changes.
+ * {@code reservedSpaces} carries the new count for reservation changes and is null when the lot
+ * itself was created, edited or deleted (listeners reload the lot in that case).
+ */
+public record ParkingLotChangedEvent(Long parkingLotId, Integer reservedSpaces) {
+
+    public static ParkingLotChangedEvent reservedSpacesChanged(Long parkingLotId, int reservedSpaces) {
+        return new ParkingLotChangedEvent(parkingLotId, reservedSpaces);
+    }
+
+    public static ParkingLotChangedEvent lotChanged(Long parkingLotId) {
+        return new ParkingLotChangedEvent(parkingLotId, null);
+    }
+
+    public boolean isReservedSpacesChange() {
+        return reservedSpaces != null;
+    }
+}
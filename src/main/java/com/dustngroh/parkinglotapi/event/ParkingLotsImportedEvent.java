@@ -0,0 +1,12 @@
+package com.dustngroh.parkinglotapi.event;
+
+import com.dustngroh.parkinglotapi.dto.ParkingLotDTO;
+
+import java.util.List;
+
+/**
+ * Published once per bulk-import batch instead of a {@link ParkingLotChangedEvent} per lot.
+ * {@code lots} carries the created lots as stored, so listeners index them without reading them back.
+ */
+public record ParkingLotsImportedEvent(List<ParkingLotDTO> lots) {
+}
@@ -0,0 +1,18 @@
+package com.dustngroh.parkinglotapi.exception;
+
+import java.util.List;
+
+// A bulk request was rejected as a whole; 'errors' describes what to fix, row by row
+public class BulkReservationException extends RuntimeException {
+
+    private final List<String> errors;
+
+    public BulkReservationException(String message, List<String> errors) {
+        super(message);
+        this.errors = List.copyOf(errors);
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,8 @@
+package com.dustngroh.parkinglotapi.exception;
+
+public class DuplicateReservationException extends IllegalStateException {
+
+    public DuplicateReservationException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.dustngroh.parkinglotapi.exception;
+
+public class IdempotencyKeyReusedException extends IllegalArgumentException {
+
+    public IdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
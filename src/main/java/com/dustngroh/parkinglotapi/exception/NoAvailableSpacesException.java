@@ -0,0 +1,8 @@
+package com.dustngroh.parkinglotapi.exception;
+
+public class NoAvailableSpacesException extends IllegalStateException {
+
+    public NoAvailableSpacesException(String message) {
+        super(message);
+    }
+}
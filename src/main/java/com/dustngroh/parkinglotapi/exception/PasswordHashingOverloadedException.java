@@ -0,0 +1,9 @@
+package com.dustngroh.parkinglotapi.exception;
+
+// The password-hashing queue is full; the caller should answer 503 and let the client retry
+public class PasswordHashingOverloadedException extends RuntimeException {
+
+    public PasswordHashingOverloadedException(String message) {
+        super(message);
+    }
+}
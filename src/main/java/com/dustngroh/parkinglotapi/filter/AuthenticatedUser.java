@@ -0,0 +1,22 @@
+package com.dustngroh.parkinglotapi.filter;
+
+import java.security.Principal;
+
+/**
+ * The caller resolved from the JWT by {@link JwtAuthenticationFilter}. Controllers receive it with
+ * {@code @RequestAttribute(AuthenticatedUser.REQUEST_ATTRIBUTE)} instead of parsing the token again.
+ * {@code id} is null for tokens issued before the user id was added to the claims.
+ */
+public record AuthenticatedUser(Long id, String username, String role) implements Principal {
+
+    public static final String REQUEST_ATTRIBUTE = "authenticatedUser";
+
+    @Override
+    public String getName() {
+        return username;
+    }
+
+    public boolean isAdmin() {
+        return "ADMIN".equals(role);
+    }
+}
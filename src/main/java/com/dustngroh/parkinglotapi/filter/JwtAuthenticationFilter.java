@@ -7,6 +7,7 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -21,6 +22,8 @@ import java.util.List;
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    private static final String BEARER_PREFIX = "Bearer ";
+
     private final JwtUtil jwtUtil;
 
     public JwtAuthenticationFilter(JwtUtil jwtUtil) {
@@ -41,6 +44,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 }
             }
         }
+        // Clients without cookies, such as a Prometheus scrape, send it as a bearer token instead
+        if (token == null) {
+            String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+            if (authorization != null && authorization.startsWith(BEARER_PREFIX)) {
+                token = authorization.substring(BEARER_PREFIX.length()).trim();
+            }
+        }
 
         // If the token is not found, continue the filter chain
         if (token == null) {
@@ -51,21 +61,25 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             // Validate the token and extract claims
             Claims claims = jwtUtil.validateToken(token);
-            String username = claims.getSubject();
-            String role = claims.get("role", String.class);
+            AuthenticatedUser user = jwtUtil.getAuthenticatedUser(claims);
+            String username = user.username();
+            String role = user.role();
 
             // Set authentication in SecurityContextHolder
             if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
                 List<GrantedAuthority> authorities = List.of(new SimpleGrantedAuthority("ROLE_" + role));
                 UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
-                        username, null, authorities);
+                        user, null, authorities);
                 authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authenticationToken);
             }
 
-            // Optionally, add user information to the request for convenience
+            // Add user information to the request so controllers don't have to parse the token again
             request.setAttribute("username", username);
             request.setAttribute("role", role);
+            if (username != null) {
+                request.setAttribute(AuthenticatedUser.REQUEST_ATTRIBUTE, user);
+            }
         } catch (Exception e) {
             // If token validation fails, set unauthorized response and stop the chain
             response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
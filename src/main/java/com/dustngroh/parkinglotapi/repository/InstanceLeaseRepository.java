@@ -0,0 +1,26 @@
+package com.dustngroh.parkinglotapi.repository;
+
+import com.dustngroh.parkinglotapi.entity.InstanceLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface InstanceLeaseRepository extends JpaRepository<InstanceLease, Long> {
+
+    // Takes or renews the lease; 0 while another owner holds it
+    @Transactional
+    @Modifying
+    @Query("UPDATE InstanceLease l SET l.owner = :owner, l.expiresAtMillis = :expiresAtMillis " +
+            "WHERE l.id = :id AND (l.owner = :owner OR l.expiresAtMillis < :nowMillis)")
+    int claim(@Param("id") Long id, @Param("owner") String owner,
+              @Param("expiresAtMillis") long expiresAtMillis, @Param("nowMillis") long nowMillis);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE InstanceLease l SET l.expiresAtMillis = 0 WHERE l.id = :id AND l.owner = :owner")
+    int release(@Param("id") Long id, @Param("owner") String owner);
+}
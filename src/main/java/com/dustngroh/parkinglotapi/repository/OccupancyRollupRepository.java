@@ -0,0 +1,37 @@
+package com.dustngroh.parkinglotapi.repository;
+
+import com.dustngroh.parkinglotapi.entity.OccupancyRollup;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OccupancyRollupRepository extends JpaRepository<OccupancyRollup, Long> {
+
+    // Keyset pages of the hours from 'epochHour' on, ordered by id
+    @Query("SELECT r FROM OccupancyRollup r WHERE r.epochHour >= :epochHour AND r.id > :afterId ORDER BY r.id")
+    List<OccupancyRollup> findHoursFromAfter(@Param("epochHour") long epochHour, @Param("afterId") Long afterId,
+                                             Limit limit);
+
+    @Modifying
+    @Query("DELETE FROM OccupancyRollup r WHERE r.parkingLotId IN :parkingLotIds " +
+            "AND r.epochHour BETWEEN :fromHour AND :toHour")
+    int deleteLotHoursBetween(@Param("parkingLotIds") Collection<Long> parkingLotIds,
+                              @Param("fromHour") long fromHour, @Param("toHour") long toHour);
+
+    @Modifying
+    @Query("DELETE FROM OccupancyRollup r WHERE r.epochHour < :beforeHour")
+    int deleteHoursBefore(@Param("beforeHour") long beforeHour);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM OccupancyRollup r WHERE r.parkingLotId = :parkingLotId")
+    int deleteByParkingLotId(@Param("parkingLotId") Long parkingLotId);
+}
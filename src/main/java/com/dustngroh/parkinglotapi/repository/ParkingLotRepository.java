@@ -1,12 +1,73 @@
 package com.dustngroh.parkinglotapi.repository;
 
+import com.dustngroh.parkinglotapi.dto.ParkingLotCapacityView;
+import com.dustngroh.parkinglotapi.dto.ParkingLotDTO;
 import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ParkingLotRepository extends JpaRepository<ParkingLot, Long> {
     Optional<ParkingLot> findByName(String name);
-}
\ No newline at end of file
+
+    // Every lot as a DTO, ordered by id (source of the list snapshot)
+    @Query("SELECT new com.dustngroh.parkinglotapi.dto.ParkingLotDTO(p.id, p.name, p.address, p.totalSpaces, " +
+            "p.reservedSpaces, p.latitude, p.longitude) FROM ParkingLot p ORDER BY p.id")
+    List<ParkingLotDTO> findAllViews();
+
+    Optional<ParkingLotCapacityView> findCapacityById(Long id);
+
+    @Query("SELECT p.name FROM ParkingLot p WHERE p.name IN :names")
+    List<String> findExistingNames(@Param("names") Collection<String> names);
+
+    @Query("SELECT p.id FROM ParkingLot p WHERE p.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    // Holds the lot row's write lock until the transaction ends, like the database-backed strategies' writes
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM ParkingLot p WHERE p.id = :id")
+    Optional<ParkingLot> findByIdForUpdate(@Param("id") Long id);
+
+    @Query("SELECT p.reservedSpaces FROM ParkingLot p WHERE p.id = :id")
+    Optional<Integer> findReservedSpacesById(@Param("id") Long id);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE ParkingLot p SET p.reservedSpaces = :reservedSpaces, p.version = p.version + 1 WHERE p.id = :id")
+    int updateReservedSpaces(@Param("id") Long id, @Param("reservedSpaces") int reservedSpaces);
+
+    // Everything an admin edits, leaving the reserved count to the allocator that owns it
+    @Transactional
+    @Modifying
+    @Query("UPDATE ParkingLot p SET p.name = :name, p.address = :address, p.totalSpaces = :totalSpaces, " +
+            "p.latitude = :latitude, p.longitude = :longitude, p.version = p.version + 1 WHERE p.id = :id")
+    int updateDetails(@Param("id") Long id, @Param("name") String name, @Param("address") String address,
+                      @Param("totalSpaces") int totalSpaces, @Param("latitude") Double latitude,
+                      @Param("longitude") Double longitude);
+
+    @Modifying
+    @Query("UPDATE ParkingLot p SET p.reservedSpaces = :reservedSpaces, p.version = p.version + 1 " +
+            "WHERE p.id = :id AND p.version = :version")
+    int updateReservedSpacesIfVersion(@Param("id") Long id, @Param("reservedSpaces") int reservedSpaces,
+                                      @Param("version") long version);
+
+    @Modifying
+    @Query("UPDATE ParkingLot p SET p.reservedSpaces = p.reservedSpaces + :spaces, p.version = p.version + 1 " +
+            "WHERE p.id = :id AND p.reservedSpaces + :spaces <= p.totalSpaces")
+    int incrementReservedSpacesIfAvailable(@Param("id") Long id, @Param("spaces") int spaces);
+
+    @Modifying
+    @Query("UPDATE ParkingLot p SET p.reservedSpaces = p.reservedSpaces - :spaces, p.version = p.version + 1 " +
+            "WHERE p.id = :id AND p.reservedSpaces >= :spaces")
+    int decrementReservedSpacesIfReserved(@Param("id") Long id, @Param("spaces") int spaces);
+}
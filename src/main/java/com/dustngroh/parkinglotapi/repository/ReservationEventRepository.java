@@ -0,0 +1,41 @@
+package com.dustngroh.parkinglotapi.repository;
+
+import com.dustngroh.parkinglotapi.dto.ReservationFeedEvent;
+import com.dustngroh.parkinglotapi.entity.ReservationEvent;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ReservationEventRepository extends JpaRepository<ReservationEvent, Long> {
+
+    // The oldest outbox rows not yet relayed to the feed
+    @Query("SELECT e FROM ReservationEvent e WHERE e.feedPosition IS NULL ORDER BY e.id")
+    List<ReservationEvent> findUnrelayed(Limit limit);
+
+    @Query("SELECT MAX(e.feedPosition) FROM ReservationEvent e")
+    Long findMaxFeedPosition();
+
+    @Query("SELECT MIN(e.feedPosition) FROM ReservationEvent e")
+    Long findMinFeedPosition();
+
+    // Keyset pages of the feed
+    @Query("SELECT new com.dustngroh.parkinglotapi.dto.ReservationFeedEvent(" +
+            "e.feedPosition, e.type, e.reservationId, e.userId, e.parkingLotId, e.occurredAt) " +
+            "FROM ReservationEvent e WHERE e.feedPosition > :after ORDER BY e.feedPosition")
+    List<ReservationFeedEvent> findFeedAfter(@Param("after") Long after, Limit limit);
+
+    // Keeps the newest relayed event whatever its age, so a restart resumes numbering after it
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ReservationEvent e WHERE e.feedPosition IS NOT NULL AND e.occurredAt < :before " +
+            "AND e.feedPosition < (SELECT MAX(f.feedPosition) FROM ReservationEvent f)")
+    int deleteRelayedBefore(@Param("before") LocalDateTime before);
+}
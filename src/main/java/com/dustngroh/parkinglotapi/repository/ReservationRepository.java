@@ -1,18 +1,77 @@
 package com.dustngroh.parkinglotapi.repository;
 
+import com.dustngroh.parkinglotapi.dto.ReservationDTO;
+import com.dustngroh.parkinglotapi.dto.ReservationHold;
+import com.dustngroh.parkinglotapi.dto.ReservationKey;
+import com.dustngroh.parkinglotapi.dto.ReservationSlot;
 import com.dustngroh.parkinglotapi.entity.Reservation;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ReservationRepository extends JpaRepository<Reservation, Long> {
+
+    // Listings select the flat view with explicit joins: one statement per page, no per-row lookups
+    String RESERVATION_VIEW = "SELECT new com.dustngroh.parkinglotapi.dto.ReservationDTO(" +
+            "r.id, u.id, u.username, u.plateNumber, p.id, p.name, r.holdUntil, r.startTime, r.endTime) " +
+            "FROM Reservation r JOIN r.user u JOIN r.parkingLot p ";
+
     List<Reservation> findByUser_Username(String username);
     List<Reservation> findByParkingLot_Name(String parkingLotName);
     List<Reservation> findByParkingLot_Id(Long parkingLotId);
     Optional<Reservation> findByUser_UsernameAndParkingLot_Name(String username, String parkingLotName);
     Optional<Reservation> findByUser_UsernameAndParkingLot_Id(String username, Long parkingLotId);
-}
\ No newline at end of file
+    boolean existsByUser_IdAndParkingLot_Id(Long userId, Long parkingLotId);
+    boolean existsByUser_UsernameAndParkingLot_Id(String username, Long parkingLotId);
+
+    // Keyset pages of the view, ordered by id
+    @Query(RESERVATION_VIEW + "WHERE r.id > :afterId ORDER BY r.id")
+    List<ReservationDTO> findViewsAfter(@Param("afterId") Long afterId, Limit limit);
+
+    @Query(RESERVATION_VIEW + "WHERE u.username = :username AND r.id > :afterId ORDER BY r.id")
+    List<ReservationDTO> findViewsByUsernameAfter(@Param("username") String username, @Param("afterId") Long afterId,
+                                                  Limit limit);
+
+    @Query(RESERVATION_VIEW + "WHERE p.id = :parkingLotId AND r.id > :afterId ORDER BY r.id")
+    List<ReservationDTO> findViewsByParkingLotIdAfter(@Param("parkingLotId") Long parkingLotId,
+                                                      @Param("afterId") Long afterId, Limit limit);
+
+    // Existing reservations among the given users and lots (a superset of the exact pairs), for bulk operations
+    @Query("SELECT new com.dustngroh.parkinglotapi.dto.ReservationKey(r.id, r.user.id, r.parkingLot.id) " +
+            "FROM Reservation r WHERE r.user.id IN :userIds AND r.parkingLot.id IN :parkingLotIds")
+    List<ReservationKey> findKeysByUserIdsAndParkingLotIds(@Param("userIds") Collection<Long> userIds,
+                                                           @Param("parkingLotIds") Collection<Long> parkingLotIds);
+
+    // Keyset pages of the pending holds, read once at startup to refill the expiry wheel
+    @Query("SELECT new com.dustngroh.parkinglotapi.dto.ReservationHold(r.id, r.parkingLot.id, r.holdUntil) " +
+            "FROM Reservation r WHERE r.holdUntil IS NOT NULL AND r.id > :afterId ORDER BY r.id")
+    List<ReservationHold> findHoldsAfter(@Param("afterId") Long afterId, Limit limit);
+
+    // Locks those of the given reservations on one lot whose hold has run out, so exactly these can be deleted
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT new com.dustngroh.parkinglotapi.dto.ReservationKey(r.id, r.user.id, r.parkingLot.id) " +
+            "FROM Reservation r WHERE r.id IN :ids AND r.parkingLot.id = :parkingLotId AND r.holdUntil <= :now")
+    List<ReservationKey> lockExpiredHolds(@Param("ids") Collection<Long> ids, @Param("parkingLotId") Long parkingLotId,
+                                          @Param("now") LocalDateTime now);
+
+    // Time-slot reservations of a lot that have not ended, to load its occupancy index
+    @Query("SELECT new com.dustngroh.parkinglotapi.dto.ReservationSlot(r.id, r.parkingLot.id, r.startTime, r.endTime) " +
+            "FROM Reservation r WHERE r.parkingLot.id = :parkingLotId AND r.endTime > :after")
+    List<ReservationSlot> findSlotsByParkingLotIdEndingAfter(@Param("parkingLotId") Long parkingLotId,
+                                                             @Param("after") LocalDateTime after);
+
+    // The time-slot reservations among the given ids
+    @Query("SELECT new com.dustngroh.parkinglotapi.dto.ReservationSlot(r.id, r.parkingLot.id, r.startTime, r.endTime) " +
+            "FROM Reservation r WHERE r.id IN :ids AND r.startTime IS NOT NULL")
+    List<ReservationSlot> findSlotsByIdIn(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,287 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory reserved-space counters, one per parking lot (the "in-memory" reservation strategy).
+ * <p>
+ * Admit/reject decisions are made here with a lock-free compare-and-set on the lot's counter, so
+ * concurrent requests for the same lot can never overbook it. Counters are seeded from the
+ * {@code reservedSpaces} column the first time a lot is touched and written back to it in the
+ * background by {@link #flush()}. {@link #evict} retires a counter so no change can land on it after its
+ * final write; callers that meet a retired counter wait for the eviction and start over on a fresh one.
+ */
+@Component
+public class AvailabilityEngine implements SpaceAllocationStrategy {
+
+    private static final int RETIRED = -2;
+
+    private final ParkingLotRepository parkingLotRepository;
+    private final Map<Long, LotCounter> counters = new ConcurrentHashMap<>();
+    private final Set<Long> dirtyLots = ConcurrentHashMap.newKeySet();
+    // First loads in flight, so each lot is read once while loads of other lots go ahead
+    private final Map<Long, CompletableFuture<LotCounter>> loads = new ConcurrentHashMap<>();
+
+    public AvailabilityEngine(ParkingLotRepository parkingLotRepository) {
+        this.parkingLotRepository = parkingLotRepository;
+    }
+
+    @Override
+    public String getName() {
+        return "in-memory";
+    }
+
+    @Override
+    public boolean keepsCountsInMemory() {
+        return true;
+    }
+
+    @Override
+    public OptionalInt tryReserve(Long parkingLotId, int spaces) {
+        while (true) {
+            LotCounter counter = counterFor(parkingLotId);
+            int reservedSpaces = counter.tryIncrement(spaces);
+            if (reservedSpaces != RETIRED) {
+                return apply(parkingLotId, reservedSpaces, -spaces);
+            }
+            counter.awaitEviction();
+        }
+    }
+
+    @Override
+    public OptionalInt release(Long parkingLotId, int spaces) {
+        while (true) {
+            LotCounter counter = counterFor(parkingLotId);
+            int reservedSpaces = counter.tryDecrement(spaces);
+            if (reservedSpaces != RETIRED) {
+                return apply(parkingLotId, reservedSpaces, spaces);
+            }
+            counter.awaitEviction();
+        }
+    }
+
+    public int getReservedSpaces(Long parkingLotId) {
+        while (true) {
+            LotCounter counter = counterFor(parkingLotId);
+            int reservedSpaces = counter.reservedSpaces.get();
+            if (reservedSpaces != LotCounter.RETIRED_COUNT) {
+                return reservedSpaces;
+            }
+            counter.awaitEviction();
+        }
+    }
+
+    @Override
+    public OptionalInt peekReservedSpaces(Long parkingLotId) {
+        LotCounter counter = counters.get(parkingLotId);
+        int reservedSpaces = counter == null ? LotCounter.RETIRED_COUNT : counter.reservedSpaces.get();
+        return reservedSpaces == LotCounter.RETIRED_COUNT ? OptionalInt.empty() : OptionalInt.of(reservedSpaces);
+    }
+
+    // Drops the cached counter (e.g. after the lot was deleted or its capacity changed), writing its final count
+    @Override
+    public void evict(Long parkingLotId) {
+        LotCounter counter = counters.get(parkingLotId);
+        if (counter == null) {
+            return;
+        }
+        counter.writeLock.lock();
+        try {
+            int reservedSpaces = counter.reservedSpaces.getAndSet(LotCounter.RETIRED_COUNT);
+            if (reservedSpaces == LotCounter.RETIRED_COUNT) {
+                return;
+            }
+            if (dirtyLots.remove(parkingLotId)) {
+                parkingLotRepository.updateReservedSpaces(parkingLotId, reservedSpaces);
+            }
+            counters.remove(parkingLotId, counter);
+        } finally {
+            counter.writeLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${parkinglot.availability.flush-interval-ms:500}")
+    public void flush() {
+        for (Long parkingLotId : dirtyLots) {
+            flush(parkingLotId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void flush(Long parkingLotId) {
+        LotCounter counter = counters.get(parkingLotId);
+        if (counter == null) {
+            // Evicted after the change; keep the flag if a fresh counter has been loaded meanwhile
+            dirtyLots.remove(parkingLotId);
+            if (counters.containsKey(parkingLotId)) {
+                dirtyLots.add(parkingLotId);
+            }
+            return;
+        }
+        // Under the counter's write lock, so an eviction's final count is never overwritten by an older one
+        counter.writeLock.lock();
+        try {
+            // Clear the flag before reading so a concurrent change marks the lot dirty again
+            if (!dirtyLots.remove(parkingLotId)) {
+                return;
+            }
+            int reservedSpaces = counter.reservedSpaces.get();
+            if (reservedSpaces != LotCounter.RETIRED_COUNT) {
+                parkingLotRepository.updateReservedSpaces(parkingLotId, reservedSpaces);
+            }
+        } finally {
+            counter.writeLock.unlock();
+        }
+    }
+
+    // Marks the lot for the next flush and undoes the change if the surrounding transaction rolls back
+    private OptionalInt apply(Long parkingLotId, int reservedSpaces, int undoDelta) {
+        if (reservedSpaces < 0) {
+            return OptionalInt.empty();
+        }
+        dirtyLots.add(parkingLotId);
+        RollbackCompensation.register(() -> undo(parkingLotId, undoDelta));
+        return OptionalInt.of(reservedSpaces);
+    }
+
+    // After an eviction the row holds the change, so the undo goes to a counter freshly loaded from it
+    private void undo(Long parkingLotId, int delta) {
+        while (true) {
+            LotCounter counter = counters.get(parkingLotId);
+            if (counter == null) {
+                // Nothing to undo for a deleted lot
+                if (!parkingLotRepository.existsById(parkingLotId)) {
+                    return;
+                }
+                counter = counterFor(parkingLotId);
+            }
+            if (counter.tryAdd(delta)) {
+                dirtyLots.add(parkingLotId);
+                return;
+            }
+            counter.awaitEviction();
+        }
+    }
+
+    // The map's monitor is only held to install the future; the query runs outside it, so a virtual thread
+    // waiting on another's load parks rather than pinning its carrier
+    private LotCounter counterFor(Long parkingLotId) {
+        LotCounter counter = counters.get(parkingLotId);
+        if (counter != null) {
+            return counter;
+        }
+        CompletableFuture<LotCounter> created = new CompletableFuture<>();
+        CompletableFuture<LotCounter> load = loads.computeIfAbsent(parkingLotId, id -> created);
+        if (load != created) {
+            return join(load);
+        }
+        try {
+            counter = counters.get(parkingLotId);
+            if (counter == null) {
+                ParkingLot parkingLot = parkingLotRepository.findById(parkingLotId)
+                        .orElseThrow(() -> new RuntimeException("Parking lot not found"));
+                counter = new LotCounter(parkingLot.getTotalSpaces(), parkingLot.getReservedSpaces());
+                counters.put(parkingLotId, counter);
+            }
+            created.complete(counter);
+            return counter;
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(parkingLotId, created);
+        }
+    }
+
+    // Rethrows another thread's load failure as it was thrown there
+    private static LotCounter join(CompletableFuture<LotCounter> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private static final class LotCounter {
+        // The count of an evicted counter
+        private static final int RETIRED_COUNT = Integer.MIN_VALUE;
+
+        private final int totalSpaces;
+        private final AtomicInteger reservedSpaces;
+        // Held by flushes and the eviction, never by reservations
+        private final ReentrantLock writeLock = new ReentrantLock();
+
+        private LotCounter(int totalSpaces, int reservedSpaces) {
+            this.totalSpaces = totalSpaces;
+            this.reservedSpaces = new AtomicInteger(reservedSpaces);
+        }
+
+        // Returns the new count, -1 if the spaces do not fit, or RETIRED
+        int tryIncrement(int spaces) {
+            while (true) {
+                int current = reservedSpaces.get();
+                if (current == RETIRED_COUNT) {
+                    return RETIRED;
+                }
+                if (current + spaces > totalSpaces) {
+                    return -1;
+                }
+                if (reservedSpaces.compareAndSet(current, current + spaces)) {
+                    return current + spaces;
+                }
+            }
+        }
+
+        // Returns the new count, -1 if fewer than 'spaces' are reserved, or RETIRED
+        int tryDecrement(int spaces) {
+            while (true) {
+                int current = reservedSpaces.get();
+                if (current == RETIRED_COUNT) {
+                    return RETIRED;
+                }
+                if (current < spaces) {
+                    return -1;
+                }
+                if (reservedSpaces.compareAndSet(current, current - spaces)) {
+                    return current - spaces;
+                }
+            }
+        }
+
+        // Adds 'delta' unchecked, e.g. to undo a change; false if the counter is retired
+        boolean tryAdd(int delta) {
+            while (true) {
+                int current = reservedSpaces.get();
+                if (current == RETIRED_COUNT) {
+                    return false;
+                }
+                if (reservedSpaces.compareAndSet(current, current + delta)) {
+                    return true;
+                }
+            }
+        }
+
+        // The eviction holds the write lock from retiring the counter until it has left the map
+        void awaitEviction() {
+            writeLock.lock();
+            writeLock.unlock();
+        }
+    }
+}
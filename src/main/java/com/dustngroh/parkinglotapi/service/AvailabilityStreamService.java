@@ -0,0 +1,292 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.dto.ParkingLotDTO;
+import com.dustngroh.parkinglotapi.event.ParkingLotChangedEvent;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes reserved-space changes to clients over Server-Sent Events.
+ * <p>
+ * Committed changes are collected per lot and sent once per coalescing window, so a burst of
+ * reservations on one lot becomes a single update carrying the latest count. Each subscriber gets at
+ * most one write per window, holding every changed lot it is interested in. Emitters are async
+ * servlet responses: an idle subscriber costs a map entry and an open socket, not a thread.
+ * <p>
+ * Writes block until the client takes the data, so they run on virtual threads, never on the scheduler
+ * thread the windows fire on. A subscriber has at most one write in flight; changes arriving meanwhile are
+ * merged per lot and sent when it returns, so a slow client only ever falls behind by one update.
+ */
+@Service
+public class AvailabilityStreamService {
+
+    public static final String EVENT_NAME = "availability";
+
+    private final SpaceAllocator spaceAllocator;
+    private final ParkingLotSnapshotService snapshotService;
+    private final long timeoutMs;
+    private final int maxSubscribers;
+
+    // Subscribers to every lot, and subscribers indexed by the lots they asked for
+    private final Set<Subscriber> allLotsSubscribers = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Set<Subscriber>> subscribersByLot = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    // Latest committed count per lot since the last window
+    private final Map<Long, Integer> pendingChanges = new ConcurrentHashMap<>();
+    private final ExecutorService sendExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public AvailabilityStreamService(SpaceAllocator spaceAllocator, ParkingLotSnapshotService snapshotService,
+                                     @Value("${parkinglot.stream.timeout-ms:1800000}") long timeoutMs,
+                                     @Value("${parkinglot.stream.max-subscribers:50000}") int maxSubscribers) {
+        this.spaceAllocator = spaceAllocator;
+        this.snapshotService = snapshotService;
+        this.timeoutMs = timeoutMs;
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    // Empty 'parkingLotIds' means every lot; empty result means the server is at capacity
+    public Optional<SseEmitter> subscribe(Set<Long> parkingLotIds) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            return Optional.empty();
+        }
+        SseEmitter emitter = createEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, Set.copyOf(parkingLotIds));
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> emitter.complete());
+
+        if (subscriber.parkingLotIds().isEmpty()) {
+            allLotsSubscribers.add(subscriber);
+        } else {
+            for (Long parkingLotId : subscriber.parkingLotIds()) {
+                subscribersByLot.computeIfAbsent(parkingLotId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+            }
+        }
+
+        // Start the client off with the current counts so it never has to poll
+        List<LotAvailability> current = new ArrayList<>();
+        for (ParkingLotDTO lot : snapshotService.getSnapshot().getLots()) {
+            if (subscriber.wants(lot.getId())) {
+                current.add(new LotAvailability(lot.getId(), lot.getReservedSpaces(), lot.getTotalSpaces()));
+            }
+        }
+        // Subscribers start with a write in flight, so no update can overtake these counts
+        try {
+            send(subscriber, current);
+        } finally {
+            subscriber.sending().set(false);
+            scheduleSend(subscriber);
+        }
+        return Optional.of(emitter);
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onParkingLotChanged(ParkingLotChangedEvent event) {
+        if (event.isReservedSpacesChange()) {
+            pendingChanges.put(event.parkingLotId(), event.reservedSpaces());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${parkinglot.stream.coalesce-window-ms:250}")
+    public void publishPendingChanges() {
+        if (pendingChanges.isEmpty()) {
+            return;
+        }
+        Map<Long, LotAvailability> changes = new LinkedHashMap<>();
+        for (Long parkingLotId : pendingChanges.keySet()) {
+            Integer committed = pendingChanges.remove(parkingLotId);
+            if (committed != null) {
+                // Commits can land out of order; the allocator's live count is the newest when it has one
+                int reservedSpaces = spaceAllocator.peekReservedSpaces(parkingLotId).orElse(committed);
+                changes.put(parkingLotId, new LotAvailability(parkingLotId, reservedSpaces, null));
+            }
+        }
+
+        // Group the changes by subscriber so each one gets a single write
+        Map<Subscriber, List<LotAvailability>> updates = new HashMap<>();
+        for (Subscriber subscriber : allLotsSubscribers) {
+            updates.put(subscriber, new ArrayList<>(changes.values()));
+        }
+        for (LotAvailability change : changes.values()) {
+            for (Subscriber subscriber : subscribersByLot.getOrDefault(change.parkingLotId(), Set.of())) {
+                updates.computeIfAbsent(subscriber, s -> new ArrayList<>()).add(change);
+            }
+        }
+        updates.forEach(this::enqueue);
+    }
+
+    // Comment lines keep idle connections open through proxies and reveal clients that went away
+    @Scheduled(fixedDelayString = "${parkinglot.stream.heartbeat-ms:30000}")
+    public void sendHeartbeat() {
+        Set<Subscriber> subscribers = new HashSet<>(allLotsSubscribers);
+        subscribersByLot.values().forEach(subscribers::addAll);
+        for (Subscriber subscriber : subscribers) {
+            // A write already in flight shows the connection is in use
+            if (subscriber.sending().compareAndSet(false, true)) {
+                execute(() -> {
+                    try {
+                        heartbeat(subscriber);
+                    } finally {
+                        subscriber.sending().set(false);
+                        scheduleSend(subscriber);
+                    }
+                });
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sendExecutor.shutdownNow();
+    }
+
+    // Overridden in tests to capture what would be written
+    SseEmitter createEmitter(long timeoutMs) {
+        return new SseEmitter(timeoutMs);
+    }
+
+    // Overridden in tests to write on the calling thread
+    void execute(Runnable write) {
+        sendExecutor.execute(write);
+    }
+
+    // Later changes to a lot replace earlier ones that are still waiting
+    private void enqueue(Subscriber subscriber, List<LotAvailability> lots) {
+        for (LotAvailability lot : lots) {
+            subscriber.pending().put(lot.parkingLotId(), lot);
+        }
+        scheduleSend(subscriber);
+    }
+
+    private void scheduleSend(Subscriber subscriber) {
+        if (!subscriber.pending().isEmpty() && subscriber.sending().compareAndSet(false, true)) {
+            execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            List<LotAvailability> lots = new ArrayList<>();
+            for (Long parkingLotId : subscriber.pending().keySet()) {
+                LotAvailability lot = subscriber.pending().remove(parkingLotId);
+                if (lot != null) {
+                    lots.add(lot);
+                }
+            }
+            if (!lots.isEmpty()) {
+                send(subscriber, lots);
+            }
+        } finally {
+            subscriber.sending().set(false);
+            scheduleSend(subscriber);
+        }
+    }
+
+    private void send(Subscriber subscriber, List<LotAvailability> lots) {
+        try {
+            subscriber.emitter().send(SseEmitter.event().name(EVENT_NAME).data(lots, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            // The client is gone or the emitter already completed
+            subscriber.emitter().complete();
+            unsubscribe(subscriber);
+        }
+    }
+
+    private void heartbeat(Subscriber subscriber) {
+        try {
+            subscriber.emitter().send(SseEmitter.event().comment("heartbeat"));
+        } catch (IOException | IllegalStateException e) {
+            subscriber.emitter().complete();
+            unsubscribe(subscriber);
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        boolean removed;
+        if (subscriber.parkingLotIds().isEmpty()) {
+            removed = allLotsSubscribers.remove(subscriber);
+        } else {
+            removed = false;
+            for (Long parkingLotId : subscriber.parkingLotIds()) {
+                Set<Subscriber> subscribers = subscribersByLot.get(parkingLotId);
+                if (subscribers != null && subscribers.remove(subscriber)) {
+                    removed = true;
+                    if (subscribers.isEmpty()) {
+                        subscribersByLot.remove(parkingLotId, subscribers);
+                    }
+                }
+            }
+        }
+        // Completion, timeout and a failed send can all land here for the same subscriber
+        if (removed) {
+            subscriberCount.decrementAndGet();
+        }
+    }
+
+    // Identity equality: two clients with the same filter are still two subscribers
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final Set<Long> parkingLotIds;
+        private final Map<Long, LotAvailability> pending = new ConcurrentHashMap<>();
+        private final AtomicBoolean sending = new AtomicBoolean(true);
+
+        private Subscriber(SseEmitter emitter, Set<Long> parkingLotIds) {
+            this.emitter = emitter;
+            this.parkingLotIds = parkingLotIds;
+        }
+
+        SseEmitter emitter() {
+            return emitter;
+        }
+
+        Set<Long> parkingLotIds() {
+            return parkingLotIds;
+        }
+
+        // Updates waiting for the write in flight
+        Map<Long, LotAvailability> pending() {
+            return pending;
+        }
+
+        AtomicBoolean sending() {
+            return sending;
+        }
+
+        boolean wants(Long parkingLotId) {
+            return parkingLotIds.isEmpty() || parkingLotIds.contains(parkingLotId);
+        }
+    }
+
+    // Compact update; totalSpaces is only sent in the initial event, since changes never alter it
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record LotAvailability(Long parkingLotId, int reservedSpaces, Integer totalSpaces) {
+    }
+}
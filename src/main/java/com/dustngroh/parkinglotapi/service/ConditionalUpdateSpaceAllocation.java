@@ -0,0 +1,46 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.OptionalInt;
+
+/**
+ * Claims a space with a single guarded UPDATE, letting the database row lock serialize writers.
+ */
+@Component
+public class ConditionalUpdateSpaceAllocation implements SpaceAllocationStrategy {
+
+    private final ParkingLotRepository parkingLotRepository;
+
+    public ConditionalUpdateSpaceAllocation(ParkingLotRepository parkingLotRepository) {
+        this.parkingLotRepository = parkingLotRepository;
+    }
+
+    @Override
+    public String getName() {
+        return "conditional-update";
+    }
+
+    @Override
+    @Transactional
+    public OptionalInt tryReserve(Long parkingLotId, int spaces) {
+        int updated = parkingLotRepository.incrementReservedSpacesIfAvailable(parkingLotId, spaces);
+        return currentCount(parkingLotId, updated);
+    }
+
+    @Override
+    @Transactional
+    public OptionalInt release(Long parkingLotId, int spaces) {
+        int updated = parkingLotRepository.decrementReservedSpacesIfReserved(parkingLotId, spaces);
+        return currentCount(parkingLotId, updated);
+    }
+
+    private OptionalInt currentCount(Long parkingLotId, int updated) {
+        // Also tells "lot is full" apart from "lot does not exist" when nothing was updated
+        int reservedSpaces = parkingLotRepository.findReservedSpacesById(parkingLotId)
+                .orElseThrow(() -> new RuntimeException("Parking lot not found"));
+        return updated == 1 ? OptionalInt.of(reservedSpaces) : OptionalInt.empty();
+    }
+}
@@ -0,0 +1,168 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.dto.ReservationHold;
+import com.dustngroh.parkinglotapi.dto.ReservationKey;
+import com.dustngroh.parkinglotapi.entity.Reservation;
+import com.dustngroh.parkinglotapi.entity.ReservationEvent;
+import com.dustngroh.parkinglotapi.repository.ReservationRepository;
+import com.dustngroh.parkinglotapi.util.TimingWheel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Releases reservations whose hold ran out before they were confirmed or cancelled.
+ * <p>
+ * Every pending hold sits in an in-memory {@link TimingWheel}: scheduling is O(1) and a tick only touches
+ * the holds that are due, so the table is never polled. Due holds are deleted in batches, one locking select,
+ * one delete and one reserved-space release per lot. The select re-checks {@code holdUntil} in the database, so a
+ * hold that was cancelled, confirmed or deleted in the meantime is simply skipped and nothing has to be unscheduled.
+ * The wheel is refilled from the table once at startup.
+ */
+@Service
+public class HoldExpiryService {
+
+    private static final int WHEEL_BITS_PER_LEVEL = 9;
+    private static final int REBUILD_PAGE_SIZE = 10_000;
+    private static final int EXPIRY_BATCH_SIZE = 1000;
+
+    private final ReservationRepository reservationRepository;
+    private final SpaceAllocator spaceAllocator;
+    private final ReservationJournal reservationJournal;
+    private final ReservationEventService reservationEventService;
+    private final TransactionTemplate transactionTemplate;
+    private final long holdMinutes;
+    private final TimingWheel<Hold> wheel;
+    // Holds that were already past due when scheduled (e.g. while the application was down)
+    private final List<Hold> overdue = new ArrayList<>();
+    private final ReentrantLock wheelLock = new ReentrantLock();
+
+    public HoldExpiryService(ReservationRepository reservationRepository, SpaceAllocator spaceAllocator,
+                             ReservationJournal reservationJournal, ReservationEventService reservationEventService,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${parkinglot.reservation.hold-minutes:30}") long holdMinutes,
+                             @Value("${parkinglot.reservation.hold-tick-ms:1000}") long tickMillis) {
+        this.reservationRepository = reservationRepository;
+        this.spaceAllocator = spaceAllocator;
+        this.reservationJournal = reservationJournal;
+        this.reservationEventService = reservationEventService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.holdMinutes = holdMinutes;
+        this.wheel = new TimingWheel<>(tickMillis, WHEEL_BITS_PER_LEVEL, System.currentTimeMillis());
+    }
+
+    // Hold deadline for a reservation made now, or null when holds are disabled (hold-minutes=0)
+    public LocalDateTime holdUntil() {
+        return holdMinutes > 0 ? LocalDateTime.now().plusMinutes(holdMinutes) : null;
+    }
+
+    public void schedule(Reservation reservation) {
+        if (reservation.getHoldUntil() != null) {
+            schedule(new Hold(reservation.getId(), reservation.getParkingLot().getId()), reservation.getHoldUntil());
+        }
+    }
+
+    public int getPendingHolds() {
+        wheelLock.lock();
+        try {
+            return wheel.size() + overdue.size();
+        } finally {
+            wheelLock.unlock();
+        }
+    }
+
+    // Refills the wheel with a single keyset pass over the holds still in the table
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long afterId = 0L;
+        List<ReservationHold> page;
+        do {
+            page = reservationRepository.findHoldsAfter(afterId, Limit.of(REBUILD_PAGE_SIZE));
+            for (ReservationHold hold : page) {
+                schedule(new Hold(hold.id(), hold.parkingLotId()), hold.holdUntil());
+                afterId = hold.id();
+            }
+        } while (page.size() == REBUILD_PAGE_SIZE);
+        expireDue();
+    }
+
+    @Scheduled(fixedDelayString = "${parkinglot.reservation.hold-tick-ms:1000}")
+    public void expireDue() {
+        expireDue(System.currentTimeMillis());
+    }
+
+    // Returns the number of reservations released
+    int expireDue(long nowMillis) {
+        List<Hold> due;
+        wheelLock.lock();
+        try {
+            due = new ArrayList<>(overdue);
+            overdue.clear();
+            wheel.advance(nowMillis, due::add);
+        } finally {
+            wheelLock.unlock();
+        }
+
+        LocalDateTime now = toLocalDateTime(nowMillis);
+        int released = 0;
+        for (int from = 0; from < due.size(); from += EXPIRY_BATCH_SIZE) {
+            List<Hold> batch = due.subList(from, Math.min(from + EXPIRY_BATCH_SIZE, due.size()));
+            Integer count = transactionTemplate.execute(status -> expire(batch, now));
+            released += count == null ? 0 : count;
+        }
+        return released;
+    }
+
+    private int expire(List<Hold> batch, LocalDateTime now) {
+        Map<Long, List<Long>> idsPerLot = new TreeMap<>();
+        batch.forEach(hold -> idsPerLot.computeIfAbsent(hold.parkingLotId(), lot -> new ArrayList<>()).add(hold.id()));
+
+        int released = 0;
+        for (Map.Entry<Long, List<Long>> lot : idsPerLot.entrySet()) {
+            List<ReservationKey> expired = reservationRepository.lockExpiredHolds(lot.getValue(), lot.getKey(), now);
+            if (expired.isEmpty()) {
+                continue;
+            }
+            reservationRepository.deleteAllByIdInBatch(expired.stream().map(ReservationKey::id).toList());
+            spaceAllocator.release(lot.getKey(), expired.size());
+            expired.forEach(key -> reservationJournal.expired(key.id()));
+            reservationEventService.recordAll(ReservationEvent.EXPIRED, expired);
+            released += expired.size();
+        }
+        return released;
+    }
+
+    private void schedule(Hold hold, LocalDateTime holdUntil) {
+        long deadlineMillis = holdUntil.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        wheelLock.lock();
+        try {
+            if (!wheel.schedule(hold, deadlineMillis)) {
+                overdue.add(hold);
+            }
+        } finally {
+            wheelLock.unlock();
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    // Kept small: the wheel may hold millions of these
+    private record Hold(Long id, Long parkingLotId) {
+    }
+}
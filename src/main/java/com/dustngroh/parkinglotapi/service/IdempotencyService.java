@@ -0,0 +1,160 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.dto.IdempotentResponse;
+import com.dustngroh.parkinglotapi.entity.IdempotencyRecord;
+import com.dustngroh.parkinglotapi.exception.IdempotencyKeyReusedException;
+import com.dustngroh.parkinglotapi.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs a request at most once per {@code Idempotency-Key} and replays its stored response to retries.
+ * <p>
+ * Responses live in a bounded in-memory cache that evicts them after {@code parkinglot.idempotency.ttl-minutes},
+ * and, with {@code parkinglot.idempotency.db-tier=true}, also in the {@code idempotency_record} table so retries
+ * survive a restart. A retry that arrives while the first request is still running waits for it instead of running
+ * alongside it. Server errors (5xx) are not stored, so the client can retry them for real.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_STORED_BODY_LENGTH = 4000;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final boolean dbTier;
+    private final Cache<String, IdempotentResponse> responses;
+    private final Map<String, CompletableFuture<Optional<IdempotentResponse>>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository, ObjectMapper objectMapper,
+                              @Value("${parkinglot.idempotency.max-size:100000}") long maxSize,
+                              @Value("${parkinglot.idempotency.ttl-minutes:1440}") long ttlMinutes,
+                              @Value("${parkinglot.idempotency.db-tier:false}") boolean dbTier) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.objectMapper = objectMapper;
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.dbTier = dbTier;
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Returns the stored response for 'key' if there is one, otherwise runs 'action' and stores its response.
+     * Throws {@link IdempotencyKeyReusedException} if the key was used for a request with another fingerprint.
+     */
+    public ResponseEntity<?> execute(String key, String fingerprint, Supplier<ResponseEntity<?>> action) {
+        while (true) {
+            Optional<IdempotentResponse> stored = find(key);
+            if (stored.isPresent()) {
+                return replay(stored.get(), fingerprint);
+            }
+
+            CompletableFuture<Optional<IdempotentResponse>> mine = new CompletableFuture<>();
+            CompletableFuture<Optional<IdempotentResponse>> first = inFlight.putIfAbsent(key, mine);
+            if (first != null) {
+                // Same key in flight: wait for it, then replay its response, or run again if it stored none
+                Optional<IdempotentResponse> response = first.join();
+                if (response.isPresent()) {
+                    return replay(response.get(), fingerprint);
+                }
+                continue;
+            }
+
+            Optional<IdempotentResponse> response = Optional.empty();
+            try {
+                // The first request may have finished between the lookup and claiming the key
+                stored = find(key);
+                if (stored.isPresent()) {
+                    response = stored;
+                    return replay(stored.get(), fingerprint);
+                }
+                ResponseEntity<?> result = action.get();
+                response = store(key, fingerprint, result);
+                return result;
+            } finally {
+                inFlight.remove(key, mine);
+                mine.complete(response);
+            }
+        }
+    }
+
+    // Drops database records older than the TTL; the in-memory tier evicts on its own
+    @Scheduled(fixedDelayString = "${parkinglot.idempotency.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        if (dbTier) {
+            idempotencyRecordRepository.deleteCreatedBefore(LocalDateTime.now().minus(ttl));
+        }
+    }
+
+    private Optional<IdempotentResponse> find(String key) {
+        IdempotentResponse cached = responses.getIfPresent(key);
+        if (cached != null || !dbTier) {
+            return Optional.ofNullable(cached);
+        }
+        Optional<IdempotentResponse> stored = idempotencyRecordRepository.findById(key)
+                .filter(record -> record.getCreatedAt().isAfter(LocalDateTime.now().minus(ttl)))
+                .map(record -> new IdempotentResponse(record.getStatus(), record.getBody(), record.getFingerprint()));
+        stored.ifPresent(response -> responses.put(key, response));
+        return stored;
+    }
+
+    private Optional<IdempotentResponse> store(String key, String fingerprint, ResponseEntity<?> result) {
+        if (result.getStatusCode().is5xxServerError()) {
+            return Optional.empty();
+        }
+        String body;
+        try {
+            body = result.getBody() == null ? null : objectMapper.writeValueAsString(result.getBody());
+        } catch (JsonProcessingException e) {
+            return Optional.empty();
+        }
+        IdempotentResponse response = new IdempotentResponse(result.getStatusCode().value(), body, fingerprint);
+        responses.put(key, response);
+
+        if (dbTier && (body == null || body.length() <= MAX_STORED_BODY_LENGTH)) {
+            IdempotencyRecord record = new IdempotencyRecord();
+            record.setIdempotencyKey(key);
+            record.setFingerprint(fingerprint);
+            record.setStatus(response.status());
+            record.setBody(body);
+            record.setCreatedAt(LocalDateTime.now());
+            try {
+                idempotencyRecordRepository.save(record);
+            } catch (DataAccessException e) {
+                // The response was already sent; it stays replayable from memory
+            }
+        }
+        return Optional.of(response);
+    }
+
+    private static ResponseEntity<?> replay(IdempotentResponse response, String fingerprint) {
+        if (!response.fingerprint().equals(fingerprint)) {
+            throw new IdempotencyKeyReusedException("Idempotency-Key was already used for a different request.");
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(response.status()).header(REPLAYED_HEADER, "true");
+        if (response.body() == null) {
+            return builder.build();
+        }
+        return builder.contentType(MediaType.APPLICATION_JSON).body(response.body());
+    }
+}
@@ -0,0 +1,348 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Routes every change to a lot's reserved spaces through that lot's own command queue (the "lot-queue"
+ * reservation strategy).
+ * <p>
+ * Each lot has a single writer: one task at a time drains its queue and applies the commands, in arrival
+ * order, to a plain in-memory count. No locks are taken and no two requests for a lot ever contend on its
+ * row. Different lots drain in parallel on virtual threads. The queues never touch the database themselves:
+ * a lot's count is seeded by the first caller that finds it unloaded, and changed counts are written in the
+ * background by {@link #flush()}, all dirty lots in one transaction. Flushing and evicting a lot hold the
+ * lot's write lock from reading its count until the write is done, so neither writes over a newer count.
+ * A queue is created only for a lot that exists. {@link #evict} retires it, so no change can land after its
+ * final write; callers that meet a retired queue wait for the eviction and start over on a fresh one.
+ */
+@Component
+public class LotQueueSpaceAllocation implements SpaceAllocationStrategy {
+
+    // Result of a change that reached a queue whose lot is not loaded yet
+    private static final int NOT_LOADED = -2;
+    // Result of a command that reached an evicted queue
+    private static final int RETIRED = -3;
+    // Result of a change to a lot that does not exist
+    private static final int NOT_FOUND = -4;
+
+    private final ParkingLotRepository parkingLotRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxBatchSize;
+    private final Map<Long, LotQueue> queues = new ConcurrentHashMap<>();
+    private final Set<Long> dirtyLots = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public LotQueueSpaceAllocation(ParkingLotRepository parkingLotRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${parkinglot.lot-queue.max-batch-size:256}") int maxBatchSize) {
+        this.parkingLotRepository = parkingLotRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public String getName() {
+        return "lot-queue";
+    }
+
+    @Override
+    public boolean keepsCountsInMemory() {
+        return true;
+    }
+
+    @Override
+    public OptionalInt tryReserve(Long parkingLotId, int spaces) {
+        return change(parkingLotId, spaces);
+    }
+
+    @Override
+    public OptionalInt release(Long parkingLotId, int spaces) {
+        return change(parkingLotId, -spaces);
+    }
+
+    @Override
+    public OptionalInt peekReservedSpaces(Long parkingLotId) {
+        LotQueue queue = queues.get(parkingLotId);
+        int reservedSpaces = queue == null ? -1 : queue.publishedReservedSpaces;
+        return reservedSpaces < 0 ? OptionalInt.empty() : OptionalInt.of(reservedSpaces);
+    }
+
+    // Queued behind the lot's pending changes, which are written before the queue is dropped. If the write
+    // fails the queue is reinstated with its count, so nothing is lost
+    @Override
+    public void evict(Long parkingLotId) {
+        LotQueue queue = queues.get(parkingLotId);
+        if (queue == null) {
+            return;
+        }
+        queue.writeLock.lock();
+        try {
+            boolean dirty = dirtyLots.remove(parkingLotId);
+            int reservedSpaces = await(queue.submit(Command.of(Kind.EVICT)));
+            if (reservedSpaces >= 0) {
+                try {
+                    parkingLotRepository.updateReservedSpaces(parkingLotId, reservedSpaces);
+                } catch (RuntimeException e) {
+                    await(queue.submit(Command.of(Kind.REINSTATE)));
+                    if (dirty) {
+                        dirtyLots.add(parkingLotId);
+                    }
+                    throw e;
+                }
+            }
+            queues.remove(parkingLotId, queue);
+        } finally {
+            queue.writeLock.unlock();
+        }
+    }
+
+    // Lots with a queue, loaded or not
+    int queueCount() {
+        return queues.size();
+    }
+
+    // Writes the latest count of every changed lot in one transaction
+    @Scheduled(fixedDelayString = "${parkinglot.lot-queue.flush-interval-ms:100}")
+    public void flush() {
+        if (dirtyLots.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> counts = new HashMap<>();
+        List<LotQueue> locked = new ArrayList<>();
+        try {
+            // In id order, so two flushes (the scheduled one and the one at shutdown) cannot deadlock
+            for (Long parkingLotId : new TreeSet<>(dirtyLots)) {
+                LotQueue queue = queues.get(parkingLotId);
+                queue.writeLock.lock();
+                locked.add(queue);
+                // Clear the flag before reading so a concurrent change marks the lot dirty again
+                dirtyLots.remove(parkingLotId);
+                OptionalInt reservedSpaces = peekReservedSpaces(parkingLotId);
+                reservedSpaces.ifPresent(count -> counts.put(parkingLotId, count));
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        counts.forEach(parkingLotRepository::updateReservedSpaces));
+            } catch (RuntimeException e) {
+                // Retried on the next flush
+                dirtyLots.addAll(counts.keySet());
+                throw e;
+            }
+        } finally {
+            locked.forEach(queue -> queue.writeLock.unlock());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.close();
+        flush();
+    }
+
+    private OptionalInt change(Long parkingLotId, int delta) {
+        int reservedSpaces = submit(parkingLotId, delta);
+        if (reservedSpaces == NOT_FOUND) {
+            throw new RuntimeException("Parking lot not found");
+        }
+        if (reservedSpaces < 0) {
+            return OptionalInt.empty();
+        }
+        RollbackCompensation.register(() -> undo(parkingLotId, -delta));
+        return OptionalInt.of(reservedSpaces);
+    }
+
+    // After an eviction the row holds the change, so the undo goes to a queue freshly loaded from it.
+    // Nothing is undone for a deleted lot
+    private void undo(Long parkingLotId, int delta) {
+        submit(parkingLotId, delta);
+    }
+
+    // Applies a change on the lot's live queue, loading its count first if needed. Returns the new count, -1 if
+    // the change does not fit, or NOT_FOUND
+    private int submit(Long parkingLotId, int delta) {
+        while (true) {
+            LotQueue queue = queueFor(parkingLotId);
+            if (queue == null) {
+                return NOT_FOUND;
+            }
+            int reservedSpaces = await(queue.submit(Command.change(delta, null)));
+            if (reservedSpaces == NOT_LOADED) {
+                // Read the row on this thread, inside the caller's transaction, and hand it to the queue
+                Optional<ParkingLot> parkingLot = parkingLotRepository.findById(parkingLotId);
+                if (parkingLot.isEmpty()) {
+                    // Deleted since the queue was created
+                    queues.remove(parkingLotId, queue);
+                    return NOT_FOUND;
+                }
+                reservedSpaces = await(queue.submit(Command.change(delta, parkingLot.get())));
+            }
+            if (reservedSpaces != RETIRED) {
+                return reservedSpaces;
+            }
+            // The row has the evicted count once the eviction lets go of the lock
+            queue.awaitEviction();
+        }
+    }
+
+    // Ids that are not lots never get a queue, so requests for them cannot grow the map
+    private LotQueue queueFor(Long parkingLotId) {
+        LotQueue queue = queues.get(parkingLotId);
+        if (queue != null) {
+            return queue;
+        }
+        if (!parkingLotRepository.existsById(parkingLotId)) {
+            return null;
+        }
+        return queues.computeIfAbsent(parkingLotId, LotQueue::new);
+    }
+
+    private static int await(CompletableFuture<Integer> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private final class LotQueue {
+        private final Long parkingLotId;
+        private final Queue<Command> commands = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        // Held from reading the count to writing it to the database, by flush, evict and rollbacks after evict
+        private final ReentrantLock writeLock = new ReentrantLock();
+
+        // Touched only by the draining task; the AtomicBoolean hand-off orders consecutive drains
+        private boolean loaded;
+        private boolean retired;
+        private int totalSpaces;
+        private int reservedSpaces;
+
+        // Latest count for readers outside the queue, -1 while not loaded
+        private volatile int publishedReservedSpaces = -1;
+
+        private LotQueue(Long parkingLotId) {
+            this.parkingLotId = parkingLotId;
+        }
+
+        CompletableFuture<Integer> submit(Command command) {
+            commands.add(command);
+            scheduleDrain();
+            return command.result();
+        }
+
+        void awaitEviction() {
+            writeLock.lock();
+            writeLock.unlock();
+        }
+
+        private void scheduleDrain() {
+            if (!commands.isEmpty() && draining.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                List<Command> batch = new ArrayList<>();
+                Command command;
+                while (batch.size() < maxBatchSize && (command = commands.poll()) != null) {
+                    batch.add(command);
+                }
+                boolean changed = false;
+                int[] results = new int[batch.size()];
+                for (int i = 0; i < batch.size(); i++) {
+                    results[i] = apply(batch.get(i));
+                    changed |= results[i] >= 0 && batch.get(i).kind() == Kind.CHANGE;
+                }
+                // Publish before answering, so a caller never reads back a count older than its own change
+                publishedReservedSpaces = loaded && !retired ? reservedSpaces : -1;
+                if (changed && loaded) {
+                    dirtyLots.add(parkingLotId);
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).result().complete(results[i]);
+                }
+            } finally {
+                draining.set(false);
+                scheduleDrain();
+            }
+        }
+
+        private int apply(Command command) {
+            switch (command.kind()) {
+                case EVICT -> {
+                    int last = loaded ? reservedSpaces : -1;
+                    retired = true;
+                    return last;
+                }
+                case REINSTATE -> {
+                    retired = false;
+                    return loaded ? reservedSpaces : -1;
+                }
+                default -> {
+                }
+            }
+            if (retired) {
+                return RETIRED;
+            }
+            if (!loaded) {
+                if (command.seed() == null) {
+                    return NOT_LOADED;
+                }
+                totalSpaces = command.seed().getTotalSpaces();
+                reservedSpaces = command.seed().getReservedSpaces();
+                loaded = true;
+            }
+            int next = reservedSpaces + command.delta();
+            if (next < 0 || next > totalSpaces) {
+                return -1;
+            }
+            reservedSpaces = next;
+            return next;
+        }
+    }
+
+    // EVICT retires the queue and answers with its last count; REINSTATE undoes that after a failed write
+    private enum Kind { CHANGE, EVICT, REINSTATE }
+
+    // A change of 'delta' reserved spaces (with the lot as read from the database, if the caller has it),
+    // or one of the eviction commands
+    private record Command(Kind kind, int delta, ParkingLot seed, CompletableFuture<Integer> result) {
+
+        static Command change(int delta, ParkingLot seed) {
+            return new Command(Kind.CHANGE, delta, seed, new CompletableFuture<>());
+        }
+
+        static Command of(Kind kind) {
+            return new Command(kind, 0, null, new CompletableFuture<>());
+        }
+    }
+}
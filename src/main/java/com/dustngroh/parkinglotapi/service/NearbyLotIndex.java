@@ -0,0 +1,312 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.dto.NearbyParkingLot;
+import com.dustngroh.parkinglotapi.dto.ParkingLotDTO;
+import com.dustngroh.parkinglotapi.event.ParkingLotChangedEvent;
+import com.dustngroh.parkinglotapi.event.ParkingLotsImportedEvent;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory spatial index answering "the nearest lots with free spaces" without touching the database.
+ * <p>
+ * Lots with a position are bucketed into a grid of {@code parkinglot.nearby.cell-degrees} cells. A search
+ * visits the cells in rings around the requested point, keeps the best {@code limit} lots in a bounded heap
+ * and stops at the first ring that cannot hold anything closer than the radius or the current worst result,
+ * so only the cells near the point are read however many lots there are. Reserved counts are updated from
+ * every {@link ParkingLotChangedEvent}, preferring the count held in memory by the allocator. The index is
+ * filled once at startup.
+ */
+@Service
+public class NearbyLotIndex {
+
+    public static final int MAX_LIMIT = 100;
+
+    // Mean earth radius (IUGG)
+    static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+    private static final Comparator<Candidate> NEAREST_FIRST = Comparator.comparingDouble(Candidate::distanceMeters)
+            .thenComparing(candidate -> candidate.point().id);
+
+    private final ParkingLotRepository parkingLotRepository;
+    private final SpaceAllocator spaceAllocator;
+    private final double maxRadiusMeters;
+    private final double cellDegrees;
+    private final int latitudeCells;
+    private final int longitudeCells;
+
+    private final ConcurrentHashMap<Long, LotPoint> lots = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Set<LotPoint>> cells = new ConcurrentHashMap<>();
+    // Serializes moving a lot between cells; count updates and searches never take it
+    private final ReentrantLock placementLock = new ReentrantLock();
+
+    public NearbyLotIndex(ParkingLotRepository parkingLotRepository, SpaceAllocator spaceAllocator,
+                          @Value("${parkinglot.nearby.cell-degrees:0.05}") double cellDegrees,
+                          @Value("${parkinglot.nearby.max-radius-m:50000}") double maxRadiusMeters) {
+        if (!(cellDegrees > 0 && cellDegrees <= 90)) {
+            throw new IllegalArgumentException("parkinglot.nearby.cell-degrees must be in (0, 90]");
+        }
+        this.parkingLotRepository = parkingLotRepository;
+        this.spaceAllocator = spaceAllocator;
+        this.maxRadiusMeters = maxRadiusMeters;
+        // Rounded so whole cells wrap around the antimeridian
+        this.longitudeCells = (int) Math.ceil(360 / cellDegrees);
+        this.cellDegrees = 360.0 / longitudeCells;
+        this.latitudeCells = (int) Math.ceil(180 / this.cellDegrees);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        for (ParkingLotDTO lot : parkingLotRepository.findAllViews()) {
+            put(lot);
+        }
+    }
+
+    public int size() {
+        return lots.size();
+    }
+
+    public double getMaxRadiusMeters() {
+        return maxRadiusMeters;
+    }
+
+    /**
+     * Up to {@code limit} lots within {@code radiusMeters} of the point that have at least
+     * {@code minAvailable} free spaces, nearest first.
+     */
+    public List<NearbyParkingLot> findNearby(double latitude, double longitude, double radiusMeters,
+                                             int minAvailable, int limit) {
+        if (!(latitude >= -90 && latitude <= 90) || !(longitude >= -180 && longitude <= 180)) {
+            throw new IllegalArgumentException("Latitude must be between -90 and 90 and longitude between -180 and 180.");
+        }
+        if (!(radiusMeters > 0 && radiusMeters <= maxRadiusMeters)) {
+            throw new IllegalArgumentException("Radius must be greater than 0 and at most " + (long) maxRadiusMeters
+                    + " meters.");
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT + ".");
+        }
+        if (minAvailable < 0) {
+            throw new IllegalArgumentException("Minimum available spaces cannot be negative.");
+        }
+
+        double angularRadius = radiusMeters / EARTH_RADIUS_METERS;
+        double radiusDegrees = Math.toDegrees(angularRadius);
+        // Meridians converge, so a longitude gap is shortest at the highest latitude the radius reaches
+        double cosMaxLatitude = Math.cos(Math.toRadians(Math.min(90, Math.abs(latitude) + radiusDegrees)));
+        double sinHalfLongitude = Math.sin(angularRadius / 2) / cosMaxLatitude;
+        int latitudeSpan = (int) (radiusDegrees / cellDegrees) + 1;
+        int longitudeSpan = sinHalfLongitude >= 1
+                ? longitudeCells / 2
+                : Math.min(longitudeCells / 2,
+                (int) (Math.toDegrees(2 * Math.asin(sinHalfLongitude)) / cellDegrees) + 1);
+        // With an even cell count the farthest column is reached from both sides; visit it once
+        boolean wrapsFully = 2 * longitudeSpan == longitudeCells;
+
+        int centerLatitude = latitudeIndex(latitude);
+        int centerLongitude = longitudeIndex(longitude);
+        PriorityQueue<Candidate> best = new PriorityQueue<>(limit + 1, NEAREST_FIRST.reversed());
+
+        for (int ring = 0; ring <= Math.max(latitudeSpan, longitudeSpan); ring++) {
+            if (ring >= 2) {
+                // A lot 'ring' cells away is more than ring - 1 whole cells away along one axis
+                double gap = Math.toRadians((ring - 1) * cellDegrees);
+                double lowerBound = EARTH_RADIUS_METERS * Math.min(gap,
+                        2 * Math.asin(Math.min(1, cosMaxLatitude * Math.sin(gap / 2))));
+                if (lowerBound > radiusMeters || (best.size() == limit && lowerBound > best.peek().distanceMeters())) {
+                    break;
+                }
+            }
+            for (int dLat = -Math.min(ring, latitudeSpan); dLat <= Math.min(ring, latitudeSpan); dLat++) {
+                int latitudeIndex = centerLatitude + dLat;
+                if (latitudeIndex < 0 || latitudeIndex >= latitudeCells) {
+                    continue;
+                }
+                if (Math.abs(dLat) == ring) {
+                    int span = Math.min(ring, longitudeSpan);
+                    for (int dLon = wrapsFully && span == longitudeSpan ? -span + 1 : -span; dLon <= span; dLon++) {
+                        scan(latitudeIndex, centerLongitude + dLon, latitude, longitude, radiusMeters,
+                                minAvailable, limit, best);
+                    }
+                } else if (ring <= longitudeSpan) {
+                    if (!(wrapsFully && ring == longitudeSpan)) {
+                        scan(latitudeIndex, centerLongitude - ring, latitude, longitude, radiusMeters,
+                                minAvailable, limit, best);
+                    }
+                    scan(latitudeIndex, centerLongitude + ring, latitude, longitude, radiusMeters,
+                            minAvailable, limit, best);
+                }
+            }
+        }
+
+        List<Candidate> nearest = new ArrayList<>(best);
+        nearest.sort(NEAREST_FIRST);
+        List<NearbyParkingLot> results = new ArrayList<>(nearest.size());
+        for (Candidate candidate : nearest) {
+            LotPoint point = candidate.point();
+            results.add(new NearbyParkingLot(point.id, point.name, point.address, point.latitude, point.longitude,
+                    point.totalSpaces, candidate.availableSpaces(), candidate.distanceMeters()));
+        }
+        return results;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onParkingLotChanged(ParkingLotChangedEvent event) {
+        Long parkingLotId = event.parkingLotId();
+        if (!event.isReservedSpacesChange()) {
+            parkingLotRepository.findById(parkingLotId)
+                    .ifPresentOrElse(lot -> put(new ParkingLotDTO(lot)), () -> remove(parkingLotId));
+            return;
+        }
+        LotPoint point = lots.get(parkingLotId);
+        if (point != null) {
+            // The allocator's count is newer than the event's when other changes committed first
+            point.reservedSpaces = spaceAllocator.peekReservedSpaces(parkingLotId).orElse(event.reservedSpaces());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onParkingLotsImported(ParkingLotsImportedEvent event) {
+        event.lots().forEach(this::put);
+    }
+
+    // The allocator has undone the change; re-read the count, since other changes may have committed meanwhile
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+    public void onParkingLotChangeRolledBack(ParkingLotChangedEvent event) {
+        LotPoint point = lots.get(event.parkingLotId());
+        if (point == null || !event.isReservedSpacesChange()) {
+            return;
+        }
+        OptionalInt reserved = spaceAllocator.peekReservedSpaces(event.parkingLotId());
+        if (reserved.isPresent()) {
+            point.reservedSpaces = reserved.getAsInt();
+        } else {
+            parkingLotRepository.findReservedSpacesById(event.parkingLotId())
+                    .ifPresent(stored -> point.reservedSpaces = stored);
+        }
+    }
+
+    // Adds or moves a lot; a lot without a position is dropped from the index
+    void put(ParkingLotDTO lot) {
+        if (lot.getLatitude() == null || lot.getLongitude() == null) {
+            remove(lot.getId());
+            return;
+        }
+        int reserved = spaceAllocator.peekReservedSpaces(lot.getId()).orElse(lot.getReservedSpaces());
+        long cell = cellKey(latitudeIndex(lot.getLatitude()), longitudeIndex(lot.getLongitude()));
+        LotPoint point = new LotPoint(lot.getId(), lot.getName(), lot.getAddress(), lot.getLatitude(),
+                lot.getLongitude(), lot.getTotalSpaces(), cell, reserved);
+
+        placementLock.lock();
+        try {
+            // Into the new cell first so a concurrent search never misses the lot
+            cells.computeIfAbsent(point.cell, key -> ConcurrentHashMap.newKeySet()).add(point);
+            unplace(lots.put(point.id, point));
+        } finally {
+            placementLock.unlock();
+        }
+    }
+
+    void remove(Long parkingLotId) {
+        placementLock.lock();
+        try {
+            unplace(lots.remove(parkingLotId));
+        } finally {
+            placementLock.unlock();
+        }
+    }
+
+    private void unplace(LotPoint point) {
+        if (point != null) {
+            cells.computeIfPresent(point.cell, (key, members) -> members.remove(point) && members.isEmpty()
+                    ? null : members);
+        }
+    }
+
+    private void scan(int latitudeIndex, int longitudeIndex, double latitude, double longitude, double radiusMeters,
+                      int minAvailable, int limit, PriorityQueue<Candidate> best) {
+        Set<LotPoint> members = cells.get(cellKey(latitudeIndex, Math.floorMod(longitudeIndex, longitudeCells)));
+        if (members == null) {
+            return;
+        }
+        for (LotPoint point : members) {
+            int available = point.totalSpaces - point.reservedSpaces;
+            if (available < minAvailable) {
+                continue;
+            }
+            double distance = distanceMeters(latitude, longitude, point.latitude, point.longitude);
+            if (distance > radiusMeters) {
+                continue;
+            }
+            Candidate candidate = new Candidate(point, available, distance);
+            if (best.size() < limit) {
+                best.add(candidate);
+            } else if (NEAREST_FIRST.compare(candidate, best.peek()) < 0) {
+                best.poll();
+                best.add(candidate);
+            }
+        }
+    }
+
+    private int latitudeIndex(double latitude) {
+        return Math.min(latitudeCells - 1, (int) Math.floor((latitude + 90) / cellDegrees));
+    }
+
+    private int longitudeIndex(double longitude) {
+        return Math.floorMod((int) Math.floor((longitude + 180) / cellDegrees), longitudeCells);
+    }
+
+    private long cellKey(int latitudeIndex, int longitudeIndex) {
+        return (long) latitudeIndex * longitudeCells + longitudeIndex;
+    }
+
+    // Haversine great-circle distance
+    static double distanceMeters(double fromLatitude, double fromLongitude, double toLatitude, double toLongitude) {
+        double sinHalfLatitude = Math.sin(Math.toRadians(toLatitude - fromLatitude) / 2);
+        double sinHalfLongitude = Math.sin(Math.toRadians(toLongitude - fromLongitude) / 2);
+        double h = sinHalfLatitude * sinHalfLatitude + Math.cos(Math.toRadians(fromLatitude))
+                * Math.cos(Math.toRadians(toLatitude)) * sinHalfLongitude * sinHalfLongitude;
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(h)));
+    }
+
+    private static final class LotPoint {
+
+        private final Long id;
+        private final String name;
+        private final String address;
+        private final double latitude;
+        private final double longitude;
+        private final int totalSpaces;
+        private final long cell;
+        private volatile int reservedSpaces;
+
+        private LotPoint(Long id, String name, String address, double latitude, double longitude, int totalSpaces,
+                         long cell, int reservedSpaces) {
+            this.id = id;
+            this.name = name;
+            this.address = address;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.totalSpaces = totalSpaces;
+            this.cell = cell;
+            this.reservedSpaces = reservedSpaces;
+        }
+    }
+
+    private record Candidate(LotPoint point, int availableSpaces, double distanceMeters) {
+    }
+}
@@ -0,0 +1,485 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.dto.ParkingLotDTO;
+import com.dustngroh.parkinglotapi.dto.UtilizationBucket;
+import com.dustngroh.parkinglotapi.entity.OccupancyRollup;
+import com.dustngroh.parkinglotapi.event.ParkingLotChangedEvent;
+import com.dustngroh.parkinglotapi.event.ParkingLotsImportedEvent;
+import com.dustngroh.parkinglotapi.repository.OccupancyRollupRepository;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import com.dustngroh.parkinglotapi.util.RollupRing;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * History of every lot's reserved count, for utilization over time.
+ * <p>
+ * Each committed count change is recorded into three in-memory {@link RollupRing}s per lot: one-second buckets
+ * for the last 10 minutes, one-minute buckets for the last day and one-hour buckets for the last 30 days (sizes
+ * set by {@code parkinglot.occupancy.*-buckets}). A bucket holds the minimum, maximum and time-weighted mean of
+ * the count, so a request reads each stored bucket of its range at most once, however often the count changed:
+ * its cost is bounded by the buckets returned plus the size of one ring. A lot's rings are only allocated once
+ * its count first changes or it has stored hours; until then its history is its current count since startup.
+ * <p>
+ * Every minute the lots with rings are written to the database, one row per lot and hour with the hour's 60
+ * minute buckets packed into a column, in batches of {@value #FLUSH_BATCH_SIZE} rows: each finished hour once,
+ * and the current hour only for lots that changed since the last flush. At startup those rows, read in pages,
+ * refill the minute and hour buckets, so a restart loses the one-second buckets and at most the last minute;
+ * a lot whose count never changed has no rows, and its history starts over.
+ */
+@Service
+public class OccupancyTimeSeries {
+
+    public static final int MAX_BUCKETS = 10_000;
+
+    private static final int LOAD_PAGE_SIZE = 1000;
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    private static final long SECOND_MILLIS = 1000;
+    private static final long MINUTE_MILLIS = 60 * SECOND_MILLIS;
+    private static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+
+    private final ParkingLotRepository parkingLotRepository;
+    private final OccupancyRollupRepository occupancyRollupRepository;
+    private final SpaceAllocator spaceAllocator;
+    private final TransactionTemplate transactionTemplate;
+    private final int secondBuckets;
+    private final int minuteBuckets;
+    private final int hourBuckets;
+
+    private final ConcurrentHashMap<Long, LotSeries> lots = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // Hours before this one are in the database; -1 until the series are loaded
+    private long flushedHour = -1;
+
+    public OccupancyTimeSeries(ParkingLotRepository parkingLotRepository,
+                               OccupancyRollupRepository occupancyRollupRepository,
+                               SpaceAllocator spaceAllocator,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${parkinglot.occupancy.second-buckets:600}") int secondBuckets,
+                               @Value("${parkinglot.occupancy.minute-buckets:1440}") int minuteBuckets,
+                               @Value("${parkinglot.occupancy.hour-buckets:720}") int hourBuckets) {
+        // A flush reads a whole hour of minute buckets
+        if (minuteBuckets < 60 || secondBuckets <= 0 || hourBuckets <= 0) {
+            throw new IllegalArgumentException(
+                    "parkinglot.occupancy bucket counts must be positive, with at least 60 minute buckets");
+        }
+        this.parkingLotRepository = parkingLotRepository;
+        this.occupancyRollupRepository = occupancyRollupRepository;
+        this.spaceAllocator = spaceAllocator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.secondBuckets = secondBuckets;
+        this.minuteBuckets = minuteBuckets;
+        this.hourBuckets = hourBuckets;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        load(System.currentTimeMillis());
+    }
+
+    // Refills the rollups from the stored hours, then starts every lot at its current count
+    void load(long nowMillis) {
+        long nowHour = nowMillis / HOUR_MILLIS;
+        List<ParkingLotDTO> views = parkingLotRepository.findAllViews();
+        for (ParkingLotDTO lot : views) {
+            series(lot.getId()).totalSpaces = lot.getTotalSpaces();
+        }
+        long afterId = 0L;
+        List<OccupancyRollup> page;
+        do {
+            page = occupancyRollupRepository.findHoursFromAfter(nowHour - hourBuckets + 1, afterId,
+                    Limit.of(LOAD_PAGE_SIZE));
+            for (OccupancyRollup row : page) {
+                LotSeries series = lots.get(row.getParkingLotId());
+                if (series != null) {
+                    series.restore(row);
+                }
+                afterId = row.getId();
+            }
+        } while (page.size() == LOAD_PAGE_SIZE);
+        for (ParkingLotDTO lot : views) {
+            series(lot.getId()).set(reservedSpaces(lot.getId(), lot.getReservedSpaces()), nowMillis);
+        }
+
+        flushLock.lock();
+        try {
+            flushedHour = nowHour;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * The lot's reserved count over [from, to) in buckets of 'step', or empty for an unknown lot. The step must
+     * be a whole number of seconds, and is served from the coarsest rollup that divides it; 'from' must lie
+     * within the time that rollup keeps. Buckets from before the lot was known, or still to come, have null
+     * values.
+     */
+    public Optional<List<UtilizationBucket>> getUtilization(Long parkingLotId, LocalDateTime from, LocalDateTime to,
+                                                            Duration step) {
+        return getUtilization(parkingLotId, toEpochMillis(from), toEpochMillis(to), step.toMillis(),
+                System.currentTimeMillis());
+    }
+
+    Optional<List<UtilizationBucket>> getUtilization(Long parkingLotId, long fromMillis, long toMillis,
+                                                     long stepMillis, long nowMillis) {
+        if (stepMillis < SECOND_MILLIS || stepMillis % SECOND_MILLIS != 0) {
+            throw new IllegalArgumentException("step must be a whole number of seconds.");
+        }
+        if (fromMillis >= toMillis) {
+            throw new IllegalArgumentException("from must be before to.");
+        }
+        long buckets = Math.ceilDiv(toMillis - fromMillis, stepMillis);
+        if (buckets > MAX_BUCKETS) {
+            throw new IllegalArgumentException("At most " + MAX_BUCKETS + " buckets per request; use a larger step.");
+        }
+        LotSeries series = lots.get(parkingLotId);
+        if (series == null) {
+            return Optional.empty();
+        }
+        return Optional.of(series.buckets(fromMillis, (int) buckets, stepMillis, nowMillis));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onParkingLotChanged(ParkingLotChangedEvent event) {
+        onParkingLotChanged(event, System.currentTimeMillis());
+    }
+
+    void onParkingLotChanged(ParkingLotChangedEvent event, long nowMillis) {
+        Long parkingLotId = event.parkingLotId();
+        if (!event.isReservedSpacesChange()) {
+            parkingLotRepository.findById(parkingLotId).ifPresentOrElse(lot -> {
+                LotSeries series = series(parkingLotId);
+                series.totalSpaces = lot.getTotalSpaces();
+                series.set(reservedSpaces(parkingLotId, lot.getReservedSpaces()), nowMillis);
+            }, () -> {
+                if (lots.remove(parkingLotId) != null) {
+                    occupancyRollupRepository.deleteByParkingLotId(parkingLotId);
+                }
+            });
+            return;
+        }
+        LotSeries series = lots.get(parkingLotId);
+        if (series != null) {
+            series.set(reservedSpaces(parkingLotId, event.reservedSpaces()), nowMillis);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onParkingLotsImported(ParkingLotsImportedEvent event) {
+        onParkingLotsImported(event, System.currentTimeMillis());
+    }
+
+    void onParkingLotsImported(ParkingLotsImportedEvent event, long nowMillis) {
+        for (ParkingLotDTO lot : event.lots()) {
+            LotSeries series = series(lot.getId());
+            series.totalSpaces = lot.getTotalSpaces();
+            series.set(reservedSpaces(lot.getId(), lot.getReservedSpaces()), nowMillis);
+        }
+    }
+
+    // The allocator has undone the change; re-read the count, since other changes may have committed meanwhile
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+    public void onParkingLotChangeRolledBack(ParkingLotChangedEvent event) {
+        LotSeries series = lots.get(event.parkingLotId());
+        if (series == null || !event.isReservedSpacesChange()) {
+            return;
+        }
+        long nowMillis = System.currentTimeMillis();
+        OptionalInt reserved = spaceAllocator.peekReservedSpaces(event.parkingLotId());
+        if (reserved.isPresent()) {
+            series.set(reserved.getAsInt(), nowMillis);
+        } else {
+            parkingLotRepository.findReservedSpacesById(event.parkingLotId())
+                    .ifPresent(stored -> series.set(stored, nowMillis));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${parkinglot.occupancy.flush-interval-ms:60000}")
+    public void flush() {
+        flush(System.currentTimeMillis());
+    }
+
+    @PreDestroy
+    public void close() {
+        flush();
+    }
+
+    // Writes the hours since the last flush that are out of date in the database, a batch of lots per
+    // transaction; returns the rows written
+    int flush(long nowMillis) {
+        flushLock.lock();
+        try {
+            if (flushedHour < 0) {
+                return 0;
+            }
+            long nowHour = nowMillis / HOUR_MILLIS;
+            long fromHour = Math.max(flushedHour, nowHour - minuteBuckets / 60 + 1);
+            int written = 0;
+            List<Long> parkingLotIds = new ArrayList<>();
+            List<OccupancyRollup> rows = new ArrayList<>();
+            for (Map.Entry<Long, LotSeries> entry : lots.entrySet()) {
+                if (!entry.getValue().rows(entry.getKey(), fromHour, nowHour, nowMillis, rows)) {
+                    continue;
+                }
+                parkingLotIds.add(entry.getKey());
+                if (rows.size() >= FLUSH_BATCH_SIZE) {
+                    written += write(parkingLotIds, rows, fromHour, nowHour);
+                    parkingLotIds.clear();
+                    rows.clear();
+                }
+            }
+            written += write(parkingLotIds, rows, fromHour, nowHour);
+            transactionTemplate.executeWithoutResult(
+                    status -> occupancyRollupRepository.deleteHoursBefore(nowHour - hourBuckets + 1));
+            flushedHour = nowHour;
+            return written;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Replaces the lots' rows for [fromHour, toHour]; called with the flush lock held
+    private int write(List<Long> parkingLotIds, List<OccupancyRollup> rows, long fromHour, long toHour) {
+        if (parkingLotIds.isEmpty()) {
+            return 0;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                occupancyRollupRepository.deleteLotHoursBetween(parkingLotIds, fromHour, toHour);
+                occupancyRollupRepository.saveAll(rows);
+            });
+        } catch (RuntimeException e) {
+            // The finished hours are retried anyway, since flushedHour stays put; the current one needs the flag
+            for (Long parkingLotId : parkingLotIds) {
+                LotSeries series = lots.get(parkingLotId);
+                if (series != null) {
+                    series.markDirty();
+                }
+            }
+            throw e;
+        }
+        return rows.size();
+    }
+
+    private LotSeries series(Long parkingLotId) {
+        return lots.computeIfAbsent(parkingLotId, id -> new LotSeries());
+    }
+
+    // The allocator's count is newer than the event's when other changes committed first
+    private int reservedSpaces(Long parkingLotId, int fallback) {
+        return spaceAllocator.peekReservedSpaces(parkingLotId).orElse(fallback);
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    // One lot's rollups, finest first; the count is accounted for up to 'since' and holds at 'level' from then on.
+    // Without rings, which are allocated on the first change or stored hour, it has held at 'level' since 'since'
+    private final class LotSeries {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private RollupRing seconds;
+        private RollupRing minutes;
+        private RollupRing hours;
+        private volatile int totalSpaces;
+        private int level;
+        private long since = -1;
+        // Changed since the last flush, so the current hour's row is out of date
+        private boolean dirty;
+
+        void set(int reservedSpaces, long nowMillis) {
+            lock.lock();
+            try {
+                if (since >= 0 && minutes == null) {
+                    if (reservedSpaces == level) {
+                        return;
+                    }
+                    allocate();
+                }
+                advance(nowMillis);
+                level = reservedSpaces;
+                since = Math.max(since, nowMillis);
+                dirty = minutes != null;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void markDirty() {
+            lock.lock();
+            try {
+                dirty = true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        List<UtilizationBucket> buckets(long fromMillis, int count, long stepMillis, long nowMillis) {
+            long resolution = stepMillis % HOUR_MILLIS == 0 ? HOUR_MILLIS
+                    : stepMillis % MINUTE_MILLIS == 0 ? MINUTE_MILLIS : SECOND_MILLIS;
+            int capacity = resolution == HOUR_MILLIS ? hourBuckets
+                    : resolution == MINUTE_MILLIS ? minuteBuckets : secondBuckets;
+            // The ring holds buckets [oldest, newest]; the returned buckets are disjoint, so together they read
+            // each of those at most once
+            long newest = nowMillis / resolution;
+            long oldest = newest - capacity + 1;
+            long first = Math.floorDiv(fromMillis, resolution);
+            if (first < oldest) {
+                throw new IllegalArgumentException("A step of " + Duration.ofMillis(stepMillis)
+                        + " can only be served from " + toLocalDateTime(oldest * resolution) + " on.");
+            }
+            long perBucket = stepMillis / resolution;
+            int total = totalSpaces;
+
+            List<UtilizationBucket> buckets = new ArrayList<>(count);
+            lock.lock();
+            try {
+                advance(nowMillis);
+                RollupRing ring = resolution == HOUR_MILLIS ? hours : resolution == MINUTE_MILLIS ? minutes : seconds;
+                for (int i = 0; i < count; i++) {
+                    long bucketFirst = first + i * perBucket;
+                    long bucketEnd = Math.min(bucketFirst + perBucket, newest + 1);
+                    RollupRing.Rollup merged = null;
+                    if (ring == null) {
+                        long covered = Math.min(bucketEnd * resolution, nowMillis)
+                                - Math.max(bucketFirst * resolution, since);
+                        if (since >= 0 && covered > 0) {
+                            merged = new RollupRing.Rollup(level, level, (double) level * covered, covered);
+                        }
+                    }
+                    for (long number = bucketFirst; ring != null && number < bucketEnd; number++) {
+                        RollupRing.Rollup rollup = ring.get(number);
+                        merged = merged == null ? rollup : merged.merge(rollup);
+                    }
+                    buckets.add(toBucket(bucketFirst * resolution, merged, total));
+                }
+            } finally {
+                lock.unlock();
+            }
+            return buckets;
+        }
+
+        // Adds this lot's rows for the finished hours from 'fromHour' on, and for 'nowHour' if the lot changed
+        // since the last flush, skipping hours with nothing recorded; false if there are no such hours
+        boolean rows(Long parkingLotId, long fromHour, long nowHour, long nowMillis, List<OccupancyRollup> rows) {
+            lock.lock();
+            try {
+                long toHour = dirty ? nowHour : nowHour - 1;
+                if (minutes == null || toHour < fromHour) {
+                    return false;
+                }
+                advance(nowMillis);
+                dirty = false;
+                for (long hour = fromHour; hour <= toHour; hour++) {
+                    ByteBuffer packed = ByteBuffer.allocate(OccupancyRollup.MINUTES_BYTES);
+                    RollupRing.Rollup summary = null;
+                    for (int minute = 0; minute < 60; minute++) {
+                        RollupRing.Rollup rollup = minutes.get(hour * 60 + minute);
+                        if (rollup == null) {
+                            packed.position(packed.position() + OccupancyRollup.MINUTE_BYTES);
+                            continue;
+                        }
+                        packed.putInt((int) rollup.coveredMillis()).putInt(rollup.min()).putInt(rollup.max())
+                                .putDouble(rollup.area());
+                        summary = summary == null ? rollup : summary.merge(rollup);
+                    }
+                    if (summary == null) {
+                        continue;
+                    }
+                    OccupancyRollup row = new OccupancyRollup();
+                    row.setParkingLotId(parkingLotId);
+                    row.setEpochHour(hour);
+                    row.setMinReserved(summary.min());
+                    row.setMaxReserved(summary.max());
+                    row.setMeanReserved(summary.mean());
+                    row.setMinutes(packed.array());
+                    rows.add(row);
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void restore(OccupancyRollup row) {
+            ByteBuffer packed = ByteBuffer.wrap(row.getMinutes());
+            lock.lock();
+            try {
+                if (minutes == null) {
+                    allocate();
+                }
+                RollupRing.Rollup summary = null;
+                for (int minute = 0; minute < 60; minute++) {
+                    int covered = packed.getInt();
+                    RollupRing.Rollup rollup = new RollupRing.Rollup(packed.getInt(), packed.getInt(),
+                            packed.getDouble(), covered);
+                    if (covered > 0) {
+                        minutes.merge(row.getEpochHour() * 60 + minute, rollup);
+                        summary = summary == null ? rollup : summary.merge(rollup);
+                    }
+                }
+                if (summary != null) {
+                    hours.merge(row.getEpochHour(), summary);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Called with the lock held
+        private void allocate() {
+            seconds = new RollupRing(SECOND_MILLIS, secondBuckets);
+            minutes = new RollupRing(MINUTE_MILLIS, minuteBuckets);
+            hours = new RollupRing(HOUR_MILLIS, hourBuckets);
+        }
+
+        // Accounts for the current level up to now; called with the lock held
+        private void advance(long nowMillis) {
+            if (minutes == null || since < 0 || nowMillis <= since) {
+                return;
+            }
+            seconds.add(level, since, nowMillis);
+            minutes.add(level, since, nowMillis);
+            hours.add(level, since, nowMillis);
+            since = nowMillis;
+        }
+    }
+
+    private static UtilizationBucket toBucket(long startMillis, RollupRing.Rollup rollup, int totalSpaces) {
+        if (rollup == null) {
+            return new UtilizationBucket(toLocalDateTime(startMillis), null, null, null, null);
+        }
+        double mean = rollup.mean();
+        return new UtilizationBucket(toLocalDateTime(startMillis), rollup.min(), rollup.max(), mean,
+                totalSpaces > 0 ? mean / totalSpaces : null);
+    }
+}
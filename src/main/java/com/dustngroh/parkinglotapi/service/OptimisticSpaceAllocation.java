@@ -0,0 +1,61 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.dto.ParkingLotCapacityView;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.OptionalInt;
+
+/**
+ * Reads the lot's count and version, then writes the new count only if the version is unchanged.
+ * A lost race re-reads and tries again, up to {@code parkinglot.reservation.optimistic.max-attempts} times.
+ */
+@Component
+public class OptimisticSpaceAllocation implements SpaceAllocationStrategy {
+
+    private final ParkingLotRepository parkingLotRepository;
+    private final int maxAttempts;
+
+    public OptimisticSpaceAllocation(ParkingLotRepository parkingLotRepository,
+                                     @Value("${parkinglot.reservation.optimistic.max-attempts:10}") int maxAttempts) {
+        this.parkingLotRepository = parkingLotRepository;
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    public String getName() {
+        return "optimistic";
+    }
+
+    @Override
+    @Transactional
+    public OptionalInt tryReserve(Long parkingLotId, int spaces) {
+        return apply(parkingLotId, spaces);
+    }
+
+    @Override
+    @Transactional
+    public OptionalInt release(Long parkingLotId, int spaces) {
+        return apply(parkingLotId, -spaces);
+    }
+
+    private OptionalInt apply(Long parkingLotId, int delta) {
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            ParkingLotCapacityView lot = parkingLotRepository.findCapacityById(parkingLotId)
+                    .orElseThrow(() -> new RuntimeException("Parking lot not found"));
+
+            int reservedSpaces = lot.getReservedSpaces() + delta;
+            if (reservedSpaces < 0 || reservedSpaces > lot.getTotalSpaces()) {
+                return OptionalInt.empty();
+            }
+            if (parkingLotRepository.updateReservedSpacesIfVersion(parkingLotId, reservedSpaces, lot.getVersion()) == 1) {
+                return OptionalInt.of(reservedSpaces);
+            }
+        }
+        throw new OptimisticLockingFailureException(
+                "Parking lot " + parkingLotId + " is busy, gave up after " + maxAttempts + " attempts.");
+    }
+}
@@ -0,0 +1,171 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.dto.ParkingLotDTO;
+import com.dustngroh.parkinglotapi.dto.ParkingLotImportResult;
+import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import com.dustngroh.parkinglotapi.event.ParkingLotsImportedEvent;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Imports parking lots from a CSV or NDJSON upload while it is still arriving.
+ * <p>
+ * Rows are checked with the same rules as {@link ParkingLotService#createParkingLot} and written in
+ * batches of {@code parkinglot.import.batch-size}, one transaction per batch, flushing and clearing the
+ * persistence context every JDBC batch so memory stays flat however large the upload is. Duplicate names
+ * are caught within a batch and against the stored lots, which include earlier batches, with the name's
+ * unique constraint as the backstop. A bad row is reported and skipped; it never rolls back the rows around it.
+ */
+@Service
+public class ParkingLotImportService {
+
+    private final ParkingLotRepository parkingLotRepository;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int flushInterval;
+    private final int maxReportedErrors;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public ParkingLotImportService(ParkingLotRepository parkingLotRepository, Validator validator,
+                                   ObjectMapper objectMapper, ApplicationEventPublisher eventPublisher,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${parkinglot.import.batch-size:500}") int batchSize,
+                                   @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int flushInterval,
+                                   @Value("${parkinglot.import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.parkingLotRepository = parkingLotRepository;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public ParkingLotImportResult importCsv(InputStream body) throws IOException {
+        return importRows(ParkingLotRowReader.csv(body));
+    }
+
+    public ParkingLotImportResult importNdjson(InputStream body) throws IOException {
+        return importRows(ParkingLotRowReader.ndjson(body, objectMapper));
+    }
+
+    private ParkingLotImportResult importRows(ParkingLotRowReader reader) throws IOException {
+        Progress progress = new Progress();
+        // Names of the current batch only; a name from an earlier batch is already stored, and caught as taken
+        Set<String> batchNames = new HashSet<>();
+        List<ParkingLotRowReader.Row> batch = new ArrayList<>(batchSize);
+
+        for (ParkingLotRowReader.Row row = reader.next(); row != null; row = reader.next()) {
+            String error = row.error() != null ? row.error() : validate(row.lot());
+            if (error == null && !batchNames.add(row.lot().getName())) {
+                error = "Duplicate name '" + row.lot().getName() + "' earlier in the upload.";
+            }
+            if (error != null) {
+                progress.reject(row.line(), error);
+                continue;
+            }
+            batch.add(row);
+            if (batch.size() == batchSize) {
+                write(batch, progress);
+                batch.clear();
+                batchNames.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch, progress);
+        }
+        return progress.result();
+    }
+
+    private String validate(ParkingLotDTO lot) {
+        Set<ConstraintViolation<ParkingLotDTO>> violations = validator.validate(lot);
+        if (!violations.isEmpty()) {
+            return violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining(" "));
+        }
+        try {
+            ParkingLotService.newParkingLot(lot);
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    private void write(List<ParkingLotRowReader.Row> batch, Progress progress) {
+        List<ParkingLotRowReader.Row> taken = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                taken.clear();
+                List<ParkingLotDTO> imported = new ArrayList<>(batch.size());
+                Set<String> existing = new HashSet<>(parkingLotRepository.findExistingNames(
+                        batch.stream().map(row -> row.lot().getName()).toList()));
+                int pending = 0;
+                for (ParkingLotRowReader.Row row : batch) {
+                    if (existing.contains(row.lot().getName())) {
+                        taken.add(row);
+                        continue;
+                    }
+                    ParkingLot parkingLot = ParkingLotService.newParkingLot(row.lot());
+                    entityManager.persist(parkingLot);
+                    imported.add(new ParkingLotDTO(parkingLot));
+                    if (++pending % flushInterval == 0) {
+                        entityManager.flush();
+                        entityManager.clear();
+                    }
+                }
+                // One event for the batch, carrying the lots, so listeners need no query per row
+                if (!imported.isEmpty()) {
+                    eventPublisher.publishEvent(new ParkingLotsImportedEvent(imported));
+                }
+            });
+        } catch (DataAccessException e) {
+            // e.g. a lot with the same name created concurrently; the whole batch rolled back
+            String cause = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            batch.forEach(row -> progress.reject(row.line(), "Not imported, its batch failed: " + cause));
+            return;
+        }
+        taken.forEach(row -> progress.reject(row.line(), "A parking lot named '" + row.lot().getName() + "' already exists."));
+        progress.imported += batch.size() - taken.size();
+    }
+
+    private final class Progress {
+        private long imported;
+        private long failed;
+        private final List<String> errors = new ArrayList<>();
+
+        void reject(long line, String error) {
+            failed++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add("Line " + line + ": " + error);
+            }
+        }
+
+        ParkingLotImportResult result() {
+            return new ParkingLotImportResult(imported, failed, errors);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.dto.ParkingLotDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads parking lots one line at a time from an upload, so only the current line is held in memory.
+ * A line that cannot be parsed becomes a row with an error instead of ending the import.
+ */
+abstract class ParkingLotRowReader {
+
+    record Row(long line, ParkingLotDTO lot, String error) {
+    }
+
+    private final BufferedReader reader;
+    private long line;
+
+    private ParkingLotRowReader(InputStream body) {
+        this.reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+    }
+
+    // CSV with a header naming the columns: name, address, totalSpaces, reservedSpaces (any order),
+    // plus optional latitude and longitude columns
+    static ParkingLotRowReader csv(InputStream body) {
+        return new Csv(body);
+    }
+
+    // One ParkingLotDTO JSON object per line
+    static ParkingLotRowReader ndjson(InputStream body, ObjectMapper objectMapper) {
+        return new Ndjson(body, objectMapper);
+    }
+
+    // The next row, or null at the end of the upload
+    Row next() throws IOException {
+        String text;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            Row row = text.isBlank() ? null : parse(line, text);
+            if (row != null) {
+                return row;
+            }
+        }
+        return null;
+    }
+
+    // Null when the line holds no lot (e.g. a CSV header)
+    abstract Row parse(long line, String text);
+
+    private static final class Ndjson extends ParkingLotRowReader {
+
+        private final ObjectMapper objectMapper;
+
+        private Ndjson(InputStream body, ObjectMapper objectMapper) {
+            super(body);
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        Row parse(long line, String text) {
+            try {
+                return new Row(line, objectMapper.readValue(text, ParkingLotDTO.class), null);
+            } catch (JsonProcessingException e) {
+                return new Row(line, null, "Invalid JSON: " + e.getOriginalMessage());
+            }
+        }
+    }
+
+    private static final class Csv extends ParkingLotRowReader {
+
+        private static final List<String> COLUMNS = List.of("name", "address", "totalspaces", "reservedspaces");
+
+        private Map<String, Integer> columnIndex;
+
+        private Csv(InputStream body) {
+            super(body);
+        }
+
+        @Override
+        Row parse(long line, String text) {
+            List<String> fields = split(text);
+            if (fields == null) {
+                return new Row(line, null, "Unterminated quoted field.");
+            }
+            if (columnIndex == null) {
+                return readHeader(line, fields);
+            }
+            if (columnIndex.isEmpty()) {
+                return new Row(line, null, "Skipped: the header row is invalid.");
+            }
+
+            ParkingLotDTO lot = new ParkingLotDTO();
+            lot.setName(field(fields, "name"));
+            lot.setAddress(field(fields, "address"));
+            try {
+                lot.setTotalSpaces(number(field(fields, "totalspaces")));
+                lot.setReservedSpaces(number(field(fields, "reservedspaces")));
+            } catch (NumberFormatException e) {
+                return new Row(line, null, "Total and reserved spaces must be whole numbers.");
+            }
+            try {
+                lot.setLatitude(decimal(optionalField(fields, "latitude")));
+                lot.setLongitude(decimal(optionalField(fields, "longitude")));
+            } catch (NumberFormatException e) {
+                return new Row(line, null, "Latitude and longitude must be numbers.");
+            }
+            return new Row(line, lot, null);
+        }
+
+        private Row readHeader(long line, List<String> fields) {
+            columnIndex = new HashMap<>();
+            for (int i = 0; i < fields.size(); i++) {
+                columnIndex.put(fields.get(i).trim().toLowerCase(Locale.ROOT), i);
+            }
+            if (!columnIndex.keySet().containsAll(COLUMNS)) {
+                columnIndex = Map.of();
+                return new Row(line, null, "Header must name the columns " + String.join(", ", COLUMNS) + ".");
+            }
+            return null;
+        }
+
+        private String field(List<String> fields, String column) {
+            int index = columnIndex.get(column);
+            if (index >= fields.size()) {
+                return null;
+            }
+            String value = fields.get(index).trim();
+            return value.isEmpty() ? null : value;
+        }
+
+        private String optionalField(List<String> fields, String column) {
+            return columnIndex.containsKey(column) ? field(fields, column) : null;
+        }
+
+        private static Double decimal(String value) {
+            return value == null ? null : Double.valueOf(value);
+        }
+
+        private static Integer number(String value) {
+            return value == null ? null : Integer.valueOf(value);
+        }
+
+        // Splits one line on commas; double quotes wrap fields containing commas and "" is a literal quote
+        static List<String> split(String text) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            if (quoted) {
+                return null;
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
@@ -0,0 +1,481 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.dto.ParkingLotDTO;
+import com.dustngroh.parkinglotapi.dto.ParkingLotMatch;
+import com.dustngroh.parkinglotapi.event.ParkingLotChangedEvent;
+import com.dustngroh.parkinglotapi.event.ParkingLotsImportedEvent;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory type-ahead search over parking lot names and addresses.
+ * <p>
+ * Names and addresses are split into lowercase, accent-free words, each kept in a sorted word map: every query
+ * word must match the start of a word of the lot, so "ma st" finds "Main Street". A trigram map over the
+ * distinct words adds words one or two typos away. Exact words outrank prefixes, which outrank typos, and name
+ * matches count twice as much as address matches.
+ * <p>
+ * Each word lists its lots in result order (shortest name first), so a search walks the lots of its rarest
+ * query word from the best possible match down and stops as soon as no remaining lot can beat the results
+ * it already holds; a common prefix costs about as much as a rare one. The index is filled once at startup
+ * and follows every lot created, edited or deleted through {@link ParkingLotChangedEvent}.
+ */
+@Service
+public class ParkingLotSearchIndex {
+
+    public static final int MAX_LIMIT = 50;
+    public static final int MAX_QUERY_LENGTH = 100;
+
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{Alnum}]+");
+    // Marks the start of a word, so words sharing only their first letters still share a trigram
+    private static final String WORD_START = "$$";
+
+    // Points per query word; an address match counts half. Whole numbers keep score bounds exact
+    private static final int EXACT = 10;
+    private static final int PREFIX = 8;
+    private static final int TYPO = 4;
+    // For a name starting with the whole query
+    private static final int NAME_START = 5;
+
+    // Order among lots with the same score
+    private static final Comparator<Entry> RANK = Comparator.comparingInt((Entry entry) -> entry.name().length())
+            .thenComparing(Entry::name)
+            .thenComparing(Entry::id);
+    private static final Comparator<Scored> BEST_FIRST = Comparator.comparingInt(Scored::points).reversed()
+            .thenComparing(Scored::entry, RANK);
+
+    private final ParkingLotRepository parkingLotRepository;
+
+    private final ConcurrentHashMap<Long, Entry> lots = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, Posting> nameWords = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, Posting> addressWords = new ConcurrentSkipListMap<>();
+    // Normalized names, to tell whether any name can start with the whole query
+    private final ConcurrentSkipListMap<String, Posting> names = new ConcurrentSkipListMap<>();
+    // Trigram -> words of either field containing it
+    private final ConcurrentHashMap<String, Set<String>> trigrams = new ConcurrentHashMap<>();
+    // Serializes changes to the index; searches never take it
+    private final ReentrantLock updateLock = new ReentrantLock();
+
+    public ParkingLotSearchIndex(ParkingLotRepository parkingLotRepository) {
+        this.parkingLotRepository = parkingLotRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        for (ParkingLotDTO lot : parkingLotRepository.findAllViews()) {
+            put(lot.getId(), lot.getName(), lot.getAddress());
+        }
+    }
+
+    public int size() {
+        return lots.size();
+    }
+
+    // Lots whose name or address matches every word of the query, best first
+    public List<ParkingLotMatch> search(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Query is required.");
+        }
+        if (query.length() > MAX_QUERY_LENGTH) {
+            throw new IllegalArgumentException("Query cannot exceed " + MAX_QUERY_LENGTH + " characters.");
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT + ".");
+        }
+        Set<String> words = tokenize(query);
+        List<QueryWord> queryWords = new ArrayList<>(words.size());
+        for (String word : words) {
+            queryWords.add(new QueryWord(word, typoMatches(word)));
+        }
+
+        // The walk follows the query word matching the fewest lots; the others are checked per lot
+        QueryWord driving = null;
+        long drivingCount = Long.MAX_VALUE;
+        int maxPoints = 0;
+        for (QueryWord word : queryWords) {
+            long count = word.tiers().stream().mapToLong(Tier::size).sum();
+            if (count == 0) {
+                return List.of();
+            }
+            if (count < drivingCount) {
+                driving = word;
+                drivingCount = count;
+            }
+            maxPoints += word.tiers().get(0).points();
+        }
+        if (driving == null) {
+            return List.of();
+        }
+        String normalizedQuery = String.join(" ", words);
+        String firstName = names.ceilingKey(normalizedQuery);
+        if (firstName != null && firstName.startsWith(normalizedQuery)) {
+            maxPoints += NAME_START;
+        }
+        int otherPoints = maxPoints - driving.tiers().get(0).points();
+
+        PriorityQueue<Scored> best = new PriorityQueue<>(limit + 1, BEST_FIRST.reversed());
+        Set<Long> seen = new HashSet<>();
+        for (Tier tier : driving.tiers()) {
+            int bound = tier.points() + otherPoints;
+            if (best.size() == limit && bound < best.peek().points()) {
+                break;
+            }
+            for (Iterator<Entry> entries = tier.entries(); entries.hasNext(); ) {
+                Entry entry = entries.next();
+                if (best.size() == limit && (bound < best.peek().points()
+                        || (bound == best.peek().points() && RANK.compare(entry, best.peek().entry()) > 0))) {
+                    // Every later lot of this tier ranks lower still
+                    break;
+                }
+                if (!seen.add(entry.id()) || lots.get(entry.id()) != entry) {
+                    continue;
+                }
+                int points = score(entry, queryWords, normalizedQuery);
+                if (points == 0) {
+                    continue;
+                }
+                Scored scored = new Scored(entry, points);
+                if (best.size() < limit) {
+                    best.add(scored);
+                } else if (BEST_FIRST.compare(scored, best.peek()) < 0) {
+                    best.poll();
+                    best.add(scored);
+                }
+            }
+        }
+
+        List<Scored> ranked = new ArrayList<>(best);
+        ranked.sort(BEST_FIRST);
+        return ranked.stream()
+                .map(scored -> new ParkingLotMatch(scored.entry().id(), scored.entry().name(),
+                        scored.entry().address(), scored.points() / (double) EXACT))
+                .toList();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onParkingLotChanged(ParkingLotChangedEvent event) {
+        if (event.isReservedSpacesChange()) {
+            return;
+        }
+        parkingLotRepository.findById(event.parkingLotId()).ifPresentOrElse(
+                lot -> put(lot.getId(), lot.getName(), lot.getAddress()),
+                () -> remove(event.parkingLotId()));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onParkingLotsImported(ParkingLotsImportedEvent event) {
+        event.lots().forEach(lot -> put(lot.getId(), lot.getName(), lot.getAddress()));
+    }
+
+    void put(Long id, String name, String address) {
+        Entry entry = new Entry(id, name, address, normalize(name), tokenize(name), tokenize(address));
+        updateLock.lock();
+        try {
+            unindex(lots.put(id, entry));
+            add(names, entry.normalizedName(), entry);
+            for (String word : entry.nameWords()) {
+                add(nameWords, word, entry);
+            }
+            for (String word : entry.addressWords()) {
+                add(addressWords, word, entry);
+            }
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    void remove(Long id) {
+        updateLock.lock();
+        try {
+            unindex(lots.remove(id));
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    private void add(ConcurrentSkipListMap<String, Posting> map, String word, Entry entry) {
+        if (map != names && !nameWords.containsKey(word) && !addressWords.containsKey(word)) {
+            for (String trigram : trigramsOf(word)) {
+                trigrams.computeIfAbsent(trigram, key -> ConcurrentHashMap.newKeySet()).add(word);
+            }
+        }
+        map.computeIfAbsent(word, key -> new Posting()).add(entry);
+    }
+
+    private void unindex(Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        removeFrom(names, entry.normalizedName(), entry);
+        for (String word : entry.nameWords()) {
+            removeFrom(nameWords, word, entry);
+        }
+        for (String word : entry.addressWords()) {
+            removeFrom(addressWords, word, entry);
+        }
+    }
+
+    private void removeFrom(ConcurrentSkipListMap<String, Posting> map, String word, Entry entry) {
+        Posting posting = map.get(word);
+        if (posting == null || !posting.remove(entry) || posting.size > 0) {
+            return;
+        }
+        map.remove(word);
+        if (map != names && !nameWords.containsKey(word) && !addressWords.containsKey(word)) {
+            for (String trigram : trigramsOf(word)) {
+                trigrams.computeIfPresent(trigram, (key, members) -> members.remove(word) && members.isEmpty()
+                        ? null : members);
+            }
+        }
+    }
+
+    private static int score(Entry entry, List<QueryWord> queryWords, String normalizedQuery) {
+        int total = 0;
+        for (QueryWord word : queryWords) {
+            int points = Math.max(match(entry.nameWords(), word), match(entry.addressWords(), word) / 2);
+            if (points == 0) {
+                return 0;
+            }
+            total += points;
+        }
+        return entry.normalizedName().startsWith(normalizedQuery) ? total + NAME_START : total;
+    }
+
+    private static int match(Set<String> lotWords, QueryWord word) {
+        int best = 0;
+        for (String lotWord : lotWords) {
+            if (lotWord.equals(word.text())) {
+                return EXACT;
+            }
+            if (lotWord.startsWith(word.text())) {
+                best = PREFIX;
+            } else if (best < TYPO && word.typos().contains(lotWord)) {
+                best = TYPO;
+            }
+        }
+        return best;
+    }
+
+    // Indexed words whose start is within the allowed typos of 'word' (none below four letters or for numbers)
+    private Set<String> typoMatches(String word) {
+        int maxEdits = word.length() >= 8 ? 2 : word.length() >= 4 ? 1 : 0;
+        if (maxEdits == 0 || word.chars().allMatch(Character::isDigit)) {
+            return Set.of();
+        }
+        Set<String> seen = new HashSet<>();
+        Set<String> matches = new HashSet<>();
+        for (String trigram : trigramsOf(word)) {
+            for (String candidate : trigrams.getOrDefault(trigram, Set.of())) {
+                if (seen.add(candidate) && !candidate.startsWith(word)
+                        && prefixEditDistance(word, candidate, maxEdits) <= maxEdits) {
+                    matches.add(candidate);
+                }
+            }
+        }
+        return matches;
+    }
+
+    // Smallest Levenshtein distance between 'word' and any prefix of 'candidate', or maxEdits + 1 if larger
+    static int prefixEditDistance(String word, String candidate, int maxEdits) {
+        int[] previous = new int[candidate.length() + 1];
+        int[] current = new int[candidate.length() + 1];
+        for (int j = 0; j <= candidate.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= word.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= candidate.length(); j++) {
+                int substitution = previous[j - 1] + (word.charAt(i - 1) == candidate.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxEdits) {
+                return maxEdits + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        int distance = maxEdits + 1;
+        for (int value : previous) {
+            distance = Math.min(distance, value);
+        }
+        return distance;
+    }
+
+    private static Set<String> trigramsOf(String word) {
+        String padded = WORD_START + word;
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            result.add(padded.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        String words = SEPARATORS.matcher(ACCENTS.matcher(decomposed).replaceAll("")).replaceAll(" ");
+        return words.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> tokenize(String text) {
+        String normalized = normalize(text);
+        if (normalized.isEmpty()) {
+            return Set.of();
+        }
+        return new LinkedHashSet<>(List.of(normalized.split(" ")));
+    }
+
+    // The lots using one word (or one normalized name), in RANK order
+    private static final class Posting {
+
+        private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>(RANK);
+        // Written under the update lock; ConcurrentSkipListSet.size() walks the whole set
+        private volatile int size;
+
+        private void add(Entry entry) {
+            if (entries.add(entry)) {
+                size++;
+            }
+        }
+
+        private boolean remove(Entry entry) {
+            if (entries.remove(entry)) {
+                size--;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    // The lots matching a query word one way (e.g. an exact name word), all worth the same points
+    private record Tier(int points, List<Posting> postings) {
+
+        long size() {
+            long size = 0;
+            for (Posting posting : postings) {
+                size += posting.size;
+            }
+            return size;
+        }
+
+        // The lots of every posting merged into one RANK-ordered walk
+        Iterator<Entry> entries() {
+            if (postings.size() == 1) {
+                return postings.get(0).entries.iterator();
+            }
+            PriorityQueue<Head> heads = new PriorityQueue<>(Math.max(1, postings.size()),
+                    Comparator.comparing(Head::entry, RANK));
+            for (Posting posting : postings) {
+                Iterator<Entry> iterator = posting.entries.iterator();
+                if (iterator.hasNext()) {
+                    heads.add(new Head(iterator.next(), iterator));
+                }
+            }
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return !heads.isEmpty();
+                }
+
+                @Override
+                public Entry next() {
+                    Head head = heads.poll();
+                    if (head.rest().hasNext()) {
+                        heads.add(new Head(head.rest().next(), head.rest()));
+                    }
+                    return head.entry();
+                }
+            };
+        }
+    }
+
+    private record Head(Entry entry, Iterator<Entry> rest) {
+    }
+
+    // One word of the query with the lots it matches, best tier first (empty tiers left out)
+    private final class QueryWord {
+
+        private final String text;
+        private final Set<String> typos;
+        private final List<Tier> tiers = new ArrayList<>();
+
+        private QueryWord(String text, Set<String> typos) {
+            this.text = text;
+            this.typos = typos;
+            tiers.add(exact(nameWords, EXACT));
+            tiers.add(prefixed(nameWords, PREFIX));
+            tiers.add(exact(addressWords, EXACT / 2));
+            tiers.add(typos(nameWords, TYPO));
+            tiers.add(prefixed(addressWords, PREFIX / 2));
+            tiers.add(typos(addressWords, TYPO / 2));
+            tiers.removeIf(tier -> tier.size() == 0);
+        }
+
+        String text() {
+            return text;
+        }
+
+        Set<String> typos() {
+            return typos;
+        }
+
+        List<Tier> tiers() {
+            return tiers;
+        }
+
+        private Tier exact(NavigableMap<String, Posting> words, int points) {
+            Posting posting = words.get(text);
+            return new Tier(points, posting == null ? List.of() : List.of(posting));
+        }
+
+        private Tier prefixed(NavigableMap<String, Posting> words, int points) {
+            return new Tier(points, new ArrayList<>(
+                    words.subMap(text, false, text + Character.MAX_VALUE, false).values()));
+        }
+
+        private Tier typos(NavigableMap<String, Posting> words, int points) {
+            List<Posting> postings = new ArrayList<>();
+            for (String typo : typos) {
+                Posting posting = words.get(typo);
+                if (posting != null) {
+                    postings.add(posting);
+                }
+            }
+            return new Tier(points, postings);
+        }
+    }
+
+    private record Entry(Long id, String name, String address, String normalizedName, Set<String> nameWords,
+                         Set<String> addressWords) {
+    }
+
+    private record Scored(Entry entry, int points) {
+    }
+}
@@ -2,8 +2,11 @@ package com.dustngroh.parkinglotapi.service;
 
 import com.dustngroh.parkinglotapi.dto.ParkingLotDTO;
 import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import com.dustngroh.parkinglotapi.event.ParkingLotChangedEvent;
 import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -12,28 +15,67 @@ import java.util.Optional;
 public class ParkingLotService {
 
     private final ParkingLotRepository parkingLotRepository;
-
-    public ParkingLotService(ParkingLotRepository parkingLotRepository) {
+    private final SpaceAllocator spaceAllocator;
+    private final SlotOccupancyIndex slotOccupancyIndex;
+    private final ReservationJournal reservationJournal;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public ParkingLotService(ParkingLotRepository parkingLotRepository, SpaceAllocator spaceAllocator,
+                             SlotOccupancyIndex slotOccupancyIndex, ReservationJournal reservationJournal,
+                             ApplicationEventPublisher eventPublisher) {
         this.parkingLotRepository = parkingLotRepository;
+        this.spaceAllocator = spaceAllocator;
+        this.slotOccupancyIndex = slotOccupancyIndex;
+        this.reservationJournal = reservationJournal;
+        this.eventPublisher = eventPublisher;
     }
 
+    @Transactional(readOnly = true)
     public List<ParkingLot> getAllParkingLots() {
         return parkingLotRepository.findAll();
     }
 
+    @Transactional(readOnly = true)
     public Optional<ParkingLot> getParkingLotByName(String name) {
         return parkingLotRepository.findByName(name);
     }
 
+    // With the allocator's live count, as in the list; the row's may lag by a flush
+    @Transactional(readOnly = true)
     public Optional<ParkingLot> getParkingLotById(Long id) {
-        return parkingLotRepository.findById(id);
+        return parkingLotRepository.findById(id).map(parkingLot -> {
+            spaceAllocator.peekReservedSpaces(id).ifPresent(parkingLot::setReservedSpaces);
+            return parkingLot;
+        });
     }
 
     public ParkingLot saveParkingLot(ParkingLot parkingLot) {
-        return parkingLotRepository.save(parkingLot);
+        if (parkingLot.getId() == null) {
+            ParkingLot savedParkingLot = parkingLotRepository.save(parkingLot);
+            eventPublisher.publishEvent(ParkingLotChangedEvent.lotChanged(savedParkingLot.getId()));
+            return savedParkingLot;
+        }
+        // The allocator owns the count, so only the details are written and a flush meanwhile cannot fail the
+        // save. The counter is dropped once the new capacity is committed, and reloads it on the next change
+        if (parkingLotRepository.updateDetails(parkingLot.getId(), parkingLot.getName(), parkingLot.getAddress(),
+                parkingLot.getTotalSpaces(), parkingLot.getLatitude(), parkingLot.getLongitude()) == 0) {
+            throw new RuntimeException("Parking lot not found");
+        }
+        spaceAllocator.evict(parkingLot.getId());
+        ParkingLot savedParkingLot = parkingLotRepository.findById(parkingLot.getId())
+                .orElseThrow(() -> new RuntimeException("Parking lot not found"));
+        eventPublisher.publishEvent(ParkingLotChangedEvent.lotChanged(savedParkingLot.getId()));
+        return savedParkingLot;
     }
 
     public ParkingLot createParkingLot(ParkingLotDTO parkingLotDTO) {
+        ParkingLot savedParkingLot = parkingLotRepository.save(newParkingLot(parkingLotDTO));
+        eventPublisher.publishEvent(ParkingLotChangedEvent.lotChanged(savedParkingLot.getId()));
+        return savedParkingLot;
+    }
+
+    // Shared with the bulk import so both apply the same rules
+    static ParkingLot newParkingLot(ParkingLotDTO parkingLotDTO) {
         ParkingLot parkingLot = new ParkingLot();
         parkingLot.setName(parkingLotDTO.getName());
         parkingLot.setAddress(parkingLotDTO.getAddress());
@@ -45,12 +87,21 @@ public class ParkingLotService {
         }
         parkingLot.setReservedSpaces(parkingLotDTO.getReservedSpaces());
 
-        return parkingLotRepository.save(parkingLot);
+        // A position needs both coordinates
+        if ((parkingLotDTO.getLatitude() == null) != (parkingLotDTO.getLongitude() == null)) {
+            throw new IllegalArgumentException("Latitude and longitude must be provided together.");
+        }
+        parkingLot.setLatitude(parkingLotDTO.getLatitude());
+        parkingLot.setLongitude(parkingLotDTO.getLongitude());
+        return parkingLot;
     }
 
-
+    // A capacity change leaves the slot index alone: it counts reservations, whatever the lot's size
     public void deleteParkingLot(Long id) {
+        spaceAllocator.evict(id);
         parkingLotRepository.deleteById(id);
+        slotOccupancyIndex.evict(id);
+        eventPublisher.publishEvent(ParkingLotChangedEvent.lotChanged(id));
     }
 
     public int calculateAvailableSpaces(ParkingLot parkingLot) {
@@ -58,26 +109,24 @@ public class ParkingLotService {
     }
 
     public ParkingLot incrementReservedSpaces(Long parkingLotId) {
-        ParkingLot parkingLot = parkingLotRepository.findById(parkingLotId)
-                .orElseThrow(() -> new RuntimeException("Parking lot not found"));
-
-        if (parkingLot.getReservedSpaces() < parkingLot.getTotalSpaces()) {
-            parkingLot.setReservedSpaces(parkingLot.getReservedSpaces() + 1);
-            return parkingLotRepository.save(parkingLot);
-        } else {
-            throw new IllegalStateException("No available spaces to reserve");
-        }
+        int reservedSpaces = spaceAllocator.tryReserve(parkingLotId)
+                .orElseThrow(() -> new IllegalStateException("No available spaces to reserve"));
+        reservationJournal.spacesAdjusted(parkingLotId, 1);
+        return withReservedSpaces(parkingLotId, reservedSpaces);
     }
 
     public ParkingLot decrementReservedSpaces(Long parkingLotId) {
+        int reservedSpaces = spaceAllocator.release(parkingLotId)
+                .orElseThrow(() -> new IllegalStateException("No reserved spaces to release"));
+        reservationJournal.spacesAdjusted(parkingLotId, -1);
+        return withReservedSpaces(parkingLotId, reservedSpaces);
+    }
+
+    // The stored row may lag behind the allocator (e.g. the in-memory strategy flushes in the background)
+    private ParkingLot withReservedSpaces(Long parkingLotId, int reservedSpaces) {
         ParkingLot parkingLot = parkingLotRepository.findById(parkingLotId)
                 .orElseThrow(() -> new RuntimeException("Parking lot not found"));
-
-        if (parkingLot.getReservedSpaces() > 0) {
-            parkingLot.setReservedSpaces(parkingLot.getReservedSpaces() - 1);
-            return parkingLotRepository.save(parkingLot);
-        } else {
-            throw new IllegalStateException("No reserved spaces to release");
-        }
+        parkingLot.setReservedSpaces(reservedSpaces);
+        return parkingLot;
     }
 }
@@ -0,0 +1,75 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.dto.ParkingLotDTO;
+import com.dustngroh.parkinglotapi.util.PageCursor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable, versioned copy of the parking lot list behind {@code GET /api/parkinglots}.
+ * <p>
+ * Each page is serialized the first time it is asked for and the bytes are reused until the next
+ * change replaces the whole snapshot, so repeated polls cost a map lookup. The ETag is derived from
+ * the version alone: two snapshots with the same version always hold the same lots.
+ */
+public final class ParkingLotSnapshot {
+
+    // Guards against unbounded growth from unusual cursor/limit combinations
+    private static final int MAX_CACHED_PAGES = 256;
+
+    private final String eTag;
+    private final List<ParkingLotDTO> lots;
+    private final long[] ids;
+    private final ObjectMapper objectMapper;
+    private final Map<String, Page> pages = new ConcurrentHashMap<>();
+
+    // 'lots' must be sorted by id
+    public ParkingLotSnapshot(String version, List<ParkingLotDTO> lots, ObjectMapper objectMapper) {
+        this.eTag = "\"" + version + "\"";
+        this.lots = List.copyOf(lots);
+        this.ids = lots.stream().mapToLong(ParkingLotDTO::getId).toArray();
+        this.objectMapper = objectMapper;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public List<ParkingLotDTO> getLots() {
+        return lots;
+    }
+
+    // Keyset page: up to 'limit' lots with an id greater than 'afterId', already serialized
+    public Page page(long afterId, int limit) {
+        String key = afterId + ":" + limit;
+        Page page = pages.get(key);
+        if (page == null) {
+            page = render(afterId, limit);
+            if (pages.size() < MAX_CACHED_PAGES) {
+                pages.putIfAbsent(key, page);
+            }
+        }
+        return page;
+    }
+
+    private Page render(long afterId, int limit) {
+        int index = Arrays.binarySearch(ids, afterId);
+        int from = index >= 0 ? index + 1 : -index - 1;
+        int to = Math.min(from + limit, ids.length);
+        String nextCursor = to < ids.length ? PageCursor.encode(ids[to - 1]) : null;
+        try {
+            return new Page(objectMapper.writeValueAsBytes(lots.subList(from, to)), nextCursor);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize parking lots", e);
+        }
+    }
+
+    // nextCursor is null on the last page
+    public record Page(byte[] body, String nextCursor) {
+    }
+}
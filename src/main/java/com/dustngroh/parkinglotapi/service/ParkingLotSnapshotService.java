@@ -0,0 +1,87 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.dto.ParkingLotDTO;
+import com.dustngroh.parkinglotapi.event.ParkingLotChangedEvent;
+import com.dustngroh.parkinglotapi.event.ParkingLotsImportedEvent;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the {@link ParkingLotSnapshot} served to polling clients.
+ * <p>
+ * Every {@link ParkingLotChangedEvent} or {@link ParkingLotsImportedEvent} bumps a change counter; the next
+ * request after a change rebuilds the snapshot with one query, and requests in between never touch the database.
+ * Reserved counts held in memory by the allocator are laid over the stored rows, since those
+ * rows may lag behind.
+ */
+@Service
+public class ParkingLotSnapshotService {
+
+    private final ParkingLotRepository parkingLotRepository;
+    private final SpaceAllocator spaceAllocator;
+    private final ObjectMapper objectMapper;
+
+    // Versions restart with the process, so the epoch keeps an old ETag from matching a new snapshot
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong changeCount = new AtomicLong();
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private volatile Versioned current;
+
+    public ParkingLotSnapshotService(ParkingLotRepository parkingLotRepository, SpaceAllocator spaceAllocator,
+                                     ObjectMapper objectMapper) {
+        this.parkingLotRepository = parkingLotRepository;
+        this.spaceAllocator = spaceAllocator;
+        this.objectMapper = objectMapper;
+    }
+
+    public ParkingLotSnapshot getSnapshot() {
+        Versioned snapshot = current;
+        if (snapshot != null && snapshot.changeCount() == changeCount.get()) {
+            return snapshot.snapshot();
+        }
+        // One rebuild per change, however many clients are waiting for it
+        rebuildLock.lock();
+        try {
+            snapshot = current;
+            // Read the counter before loading so a change during the load triggers another rebuild
+            long changes = changeCount.get();
+            if (snapshot == null || snapshot.changeCount() != changes) {
+                snapshot = new Versioned(changes, build(changes));
+                current = snapshot;
+            }
+            return snapshot.snapshot();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    // Runs after commit and after rollback alike: a rolled-back in-memory reservation is undone
+    // without an event of its own, so a snapshot taken in between must not outlive the transaction
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onParkingLotChanged(ParkingLotChangedEvent event) {
+        changeCount.incrementAndGet();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onParkingLotsImported(ParkingLotsImportedEvent event) {
+        changeCount.incrementAndGet();
+    }
+
+    private ParkingLotSnapshot build(long changes) {
+        List<ParkingLotDTO> lots = parkingLotRepository.findAllViews();
+        for (ParkingLotDTO lot : lots) {
+            spaceAllocator.peekReservedSpaces(lot.getId()).ifPresent(lot::setReservedSpaces);
+        }
+        return new ParkingLotSnapshot(epoch + "-" + changes, lots, objectMapper);
+    }
+
+    private record Versioned(long changeCount, ParkingLotSnapshot snapshot) {
+    }
+}
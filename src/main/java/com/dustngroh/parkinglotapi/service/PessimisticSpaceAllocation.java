@@ -0,0 +1,57 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.OptionalInt;
+
+/**
+ * Locks the lot row with SELECT ... FOR UPDATE and holds it until the surrounding transaction ends.
+ */
+@Component
+public class PessimisticSpaceAllocation implements SpaceAllocationStrategy {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public String getName() {
+        return "pessimistic";
+    }
+
+    @Override
+    @Transactional
+    public OptionalInt tryReserve(Long parkingLotId, int spaces) {
+        ParkingLot parkingLot = lock(parkingLotId);
+        if (parkingLot.getReservedSpaces() + spaces > parkingLot.getTotalSpaces()) {
+            return OptionalInt.empty();
+        }
+        parkingLot.setReservedSpaces(parkingLot.getReservedSpaces() + spaces);
+        return OptionalInt.of(parkingLot.getReservedSpaces());
+    }
+
+    @Override
+    @Transactional
+    public OptionalInt release(Long parkingLotId, int spaces) {
+        ParkingLot parkingLot = lock(parkingLotId);
+        if (parkingLot.getReservedSpaces() < spaces) {
+            return OptionalInt.empty();
+        }
+        parkingLot.setReservedSpaces(parkingLot.getReservedSpaces() - spaces);
+        return OptionalInt.of(parkingLot.getReservedSpaces());
+    }
+
+    // Refresh rather than query, so a lot already loaded in this transaction is re-read under the lock
+    private ParkingLot lock(Long parkingLotId) {
+        ParkingLot parkingLot = entityManager.find(ParkingLot.class, parkingLotId);
+        if (parkingLot == null) {
+            throw new RuntimeException("Parking lot not found");
+        }
+        entityManager.refresh(parkingLot, LockModeType.PESSIMISTIC_WRITE);
+        return parkingLot;
+    }
+}
@@ -0,0 +1,199 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.dto.ReservationFeedEvent;
+import com.dustngroh.parkinglotapi.dto.ReservationKey;
+import com.dustngroh.parkinglotapi.entity.Reservation;
+import com.dustngroh.parkinglotapi.entity.ReservationEvent;
+import com.dustngroh.parkinglotapi.repository.ReservationEventRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Transactional outbox and change feed of reservation events.
+ * <p>
+ * {@link #record} adds an event row in the caller's transaction, so an event exists exactly when its change
+ * committed. A relay then drains the rows in batches of up to 1000 (one select, batched updates, one commit per
+ * batch) and gives each a feed position, counting up without gaps in the order the relay found them. Readers
+ * page through the feed by position; a reader that has caught up can wait for the next batch, which is handed
+ * to it straight from the relay without another query. Positions are assigned in memory from the highest one at
+ * startup.
+ */
+@Service
+public class ReservationEventService {
+
+    private final ReservationEventRepository reservationEventRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long retentionHours;
+    // One relay at a time, so positions are handed out in order
+    private final ReentrantLock relayLock = new ReentrantLock();
+    // Guards lastPosition and waiters
+    private final ReentrantLock feedLock = new ReentrantLock();
+    private final Set<Waiter> waiters = new HashSet<>();
+    private long lastPosition;
+
+    public ReservationEventService(ReservationEventRepository reservationEventRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${parkinglot.outbox.batch-size:1000}") int batchSize,
+                                   @Value("${parkinglot.outbox.retention-hours:168}") long retentionHours) {
+        this.reservationEventRepository = reservationEventRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.retentionHours = retentionHours;
+    }
+
+    @PostConstruct
+    public void loadLastPosition() {
+        Long max = reservationEventRepository.findMaxFeedPosition();
+        feedLock.lock();
+        try {
+            lastPosition = max == null ? 0L : max;
+        } finally {
+            feedLock.unlock();
+        }
+    }
+
+    // Adds a change to the outbox; only valid inside the transaction that makes the change
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(String type, Reservation reservation) {
+        reservationEventRepository.save(new ReservationEvent(type, reservation.getId(),
+                reservation.getUser().getId(), reservation.getParkingLot().getId()));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAll(String type, Collection<ReservationKey> reservations) {
+        List<ReservationEvent> events = new ArrayList<>(reservations.size());
+        reservations.forEach(key -> events.add(new ReservationEvent(type, key.id(), key.userId(), key.parkingLotId())));
+        reservationEventRepository.saveAll(events);
+    }
+
+    public long getLastPosition() {
+        feedLock.lock();
+        try {
+            return lastPosition;
+        } finally {
+            feedLock.unlock();
+        }
+    }
+
+    // False when events after 'after' were already purged, so a reader resuming there would miss some
+    public boolean isRetained(long after) {
+        if (after <= 0) {
+            return true;
+        }
+        Long oldest = reservationEventRepository.findMinFeedPosition();
+        if (oldest == null) {
+            // Every relayed event is gone; only a reader already at the end missed none
+            return after >= getLastPosition();
+        }
+        return after >= oldest - 1;
+    }
+
+    /**
+     * Up to 'limit' feed events after position 'after'. When there are none yet, the future completes with the
+     * next relayed batch, or with an empty list after 'waitMillis'.
+     */
+    public CompletableFuture<List<ReservationFeedEvent>> poll(long after, int limit, long waitMillis) {
+        feedLock.lock();
+        try {
+            // Anything up to lastPosition is committed, so a caught-up reader waits without querying
+            if (waitMillis > 0 && after >= lastPosition) {
+                Waiter waiter = new Waiter(after, limit, new CompletableFuture<>());
+                waiters.add(waiter);
+                waiter.future().completeOnTimeout(List.of(), waitMillis, TimeUnit.MILLISECONDS)
+                        .whenComplete((events, error) -> removeWaiter(waiter));
+                return waiter.future();
+            }
+        } finally {
+            feedLock.unlock();
+        }
+        return CompletableFuture.completedFuture(reservationEventRepository.findFeedAfter(after, Limit.of(limit)));
+    }
+
+    // Drains the outbox, one transaction per batch; returns the number of events relayed
+    @Scheduled(fixedDelayString = "${parkinglot.outbox.relay-interval-ms:200}")
+    public int relay() {
+        relayLock.lock();
+        try {
+            int relayed = 0;
+            List<ReservationFeedEvent> batch;
+            do {
+                batch = transactionTemplate.execute(status -> relayBatch());
+                if (batch == null || batch.isEmpty()) {
+                    break;
+                }
+                publish(batch);
+                relayed += batch.size();
+            } while (batch.size() == batchSize);
+            return relayed;
+        } finally {
+            relayLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${parkinglot.outbox.purge-interval-ms:3600000}")
+    public int purge() {
+        return reservationEventRepository.deleteRelayedBefore(LocalDateTime.now().minusHours(retentionHours));
+    }
+
+    // The positions are written by the commit's flush, as batched updates
+    private List<ReservationFeedEvent> relayBatch() {
+        List<ReservationEvent> events = reservationEventRepository.findUnrelayed(Limit.of(batchSize));
+        long position = getLastPosition();
+        List<ReservationFeedEvent> batch = new ArrayList<>(events.size());
+        for (ReservationEvent event : events) {
+            event.setFeedPosition(++position);
+            batch.add(new ReservationFeedEvent(position, event.getType(), event.getReservationId(),
+                    event.getUserId(), event.getParkingLotId(), event.getOccurredAt()));
+        }
+        return batch;
+    }
+
+    // Moves the feed on to a committed batch and wakes the readers waiting for it
+    private void publish(List<ReservationFeedEvent> batch) {
+        List<Waiter> woken = new ArrayList<>();
+        feedLock.lock();
+        try {
+            lastPosition = batch.getLast().position();
+            waiters.removeIf(waiter -> waiter.after() < lastPosition && woken.add(waiter));
+        } finally {
+            feedLock.unlock();
+        }
+        for (Waiter waiter : woken) {
+            List<ReservationFeedEvent> events = batch.stream()
+                    .filter(event -> event.position() > waiter.after())
+                    .limit(waiter.limit())
+                    .toList();
+            waiter.future().complete(events);
+        }
+    }
+
+    private void removeWaiter(Waiter waiter) {
+        feedLock.lock();
+        try {
+            waiters.remove(waiter);
+        } finally {
+            feedLock.unlock();
+        }
+    }
+
+    private record Waiter(long after, int limit, CompletableFuture<List<ReservationFeedEvent>> future) {
+    }
+}
@@ -0,0 +1,557 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.dto.ParkingLotDTO;
+import com.dustngroh.parkinglotapi.dto.ReservationDTO;
+import com.dustngroh.parkinglotapi.event.ParkingLotChangedEvent;
+import com.dustngroh.parkinglotapi.event.ParkingLotsImportedEvent;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import com.dustngroh.parkinglotapi.repository.ReservationRepository;
+import com.dustngroh.parkinglotapi.util.SegmentedLog;
+import jakarta.annotation.PostConstruct;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Optional append-only journal of reservation state changes, switched on with {@code parkinglot.journal.enabled}.
+ * <p>
+ * Each committed change (a reservation created, cancelled, confirmed, deleted or expired, an admin change to a
+ * lot's reserved count, a lot saved or deleted) is appended to a {@link SegmentedLog} in
+ * {@code parkinglot.journal.dir} once its transaction commits. All records of a transaction go in together and the
+ * committing thread waits for one group fsync. The journal also keeps in memory what the records add up to: each
+ * lot's reserved count and each live reservation. Every {@code parkinglot.journal.snapshot-interval-ms} that state
+ * is written to a snapshot file and the segments it covers are deleted, so a restart loads the latest snapshot and
+ * replays only the records after it. The first start with an empty directory seeds the state from the database.
+ * <p>
+ * The database stays the source of truth; the journal is a durable, ordered history of it. A journal left switched
+ * off while the data changes no longer matches it: delete the directory to seed it again. The same goes for a
+ * journal that failed a write: the change has committed by then, so the failure is logged and counted
+ * ({@code parkinglot.journal.write.failures}) rather than thrown, and the journal stops recording
+ * ({@code parkinglot.journal.degraded}) instead of keeping a history with a gap in it.
+ * <p>
+ * Snapshots run on their own thread, not the shared scheduler. The state is copied into flat arrays under the
+ * journal lock, so writers wait only for the copy, and written to disk outside it.
+ */
+@Service
+public class ReservationJournal implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReservationJournal.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x504C4A31;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final int SEED_PAGE_SIZE = 10_000;
+    private static final int RECORD_BYTES = 29;
+    // Removals of a reservation the journal has not seen yet are remembered this many records, in case its
+    // creation commits first but is journaled second
+    private static final long TOMBSTONE_RECORDS = 100_000;
+
+    private static final byte RESERVED = 1;
+    private static final byte CANCELLED = 2;
+    private static final byte EXPIRED = 3;
+    private static final byte CONFIRMED = 4;
+    private static final byte DELETED = 5;
+    private static final byte SPACES_ADJUSTED = 6;
+    private static final byte LOT_SAVED = 7;
+    private static final byte LOT_DELETED = 8;
+
+    private final ParkingLotRepository parkingLotRepository;
+    private final ReservationRepository reservationRepository;
+    private final SpaceAllocator spaceAllocator;
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentBytes;
+
+    private final ReentrantLock journalLock = new ReentrantLock();
+    private final Map<Long, Integer> reservedSpaces = new ConcurrentHashMap<>();
+    private final Map<Long, Membership> reservations = new ConcurrentHashMap<>();
+    private final Map<Long, Tombstone> tombstones = new HashMap<>();
+    private SegmentedLog log;
+    private long snapshotSequence;
+    private volatile boolean degraded;
+    private final AtomicLong writeFailures = new AtomicLong();
+    private final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor(
+            Thread.ofVirtual().name("journal-snapshot").factory());
+    private final AtomicBoolean snapshotRunning = new AtomicBoolean();
+
+    public ReservationJournal(ParkingLotRepository parkingLotRepository, ReservationRepository reservationRepository,
+                              SpaceAllocator spaceAllocator,
+                              @Value("${parkinglot.journal.enabled:false}") boolean enabled,
+                              @Value("${parkinglot.journal.dir:journal}") String directory,
+                              @Value("${parkinglot.journal.segment-size-kb:65536}") int segmentSizeKb) {
+        this.parkingLotRepository = parkingLotRepository;
+        this.reservationRepository = reservationRepository;
+        this.spaceAllocator = spaceAllocator;
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.segmentBytes = segmentSizeKb << 10;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("parkinglot.journal.write.failures", writeFailures, AtomicLong::get)
+                .description("Journal writes that failed after their transaction committed")
+                .register(registry);
+        Gauge.builder("parkinglot.journal.degraded", this, journal -> journal.degraded ? 1 : 0)
+                .description("1 once a failed write has stopped the journal")
+                .register(registry);
+    }
+
+    // Loads the latest snapshot and replays the records after it, or seeds the journal from the database
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        journalLock.lock();
+        try {
+            log = new SegmentedLog(directory, segmentBytes);
+            Optional<Path> snapshot = latestSnapshot();
+            if (snapshot.isPresent()) {
+                snapshotSequence = readSnapshot(snapshot.get());
+            } else if (log.lastSequence() == 0) {
+                seed();
+                snapshotSequence = 0;
+                writeSnapshot(0, State.copyOf(reservedSpaces, reservations, tombstones));
+            } else {
+                throw new IllegalStateException("Journal in " + directory + " has records but no snapshot");
+            }
+            if (log.firstSequence() > snapshotSequence + 1) {
+                throw new IllegalStateException("Journal in " + directory + " is missing the records after snapshot "
+                        + snapshotSequence);
+            }
+            log.forEach(snapshotSequence + 1, (sequence, payload) -> apply(sequence, decode(payload)));
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        snapshotExecutor.shutdownNow();
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    public void reserved(Long reservationId, Long userId, Long parkingLotId, boolean countsReservedSpace) {
+        record(RESERVED, reservationId, userId, parkingLotId, countsReservedSpace ? 1 : 0);
+    }
+
+    public void cancelled(Long reservationId) {
+        record(CANCELLED, reservationId, null, null, 0);
+    }
+
+    public void expired(Long reservationId) {
+        record(EXPIRED, reservationId, null, null, 0);
+    }
+
+    public void confirmed(Long reservationId) {
+        record(CONFIRMED, reservationId, null, null, 0);
+    }
+
+    public void deleted(Long reservationId) {
+        record(DELETED, reservationId, null, null, 0);
+    }
+
+    // An admin change to a lot's reserved count that no reservation accounts for
+    public void spacesAdjusted(Long parkingLotId, int delta) {
+        record(SPACES_ADJUSTED, null, null, parkingLotId, delta);
+    }
+
+    // The lot's row is read after the commit, so a created or edited lot is journaled with its stored count
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onParkingLotChanged(ParkingLotChangedEvent event) {
+        if (!enabled || event.isReservedSpacesChange()) {
+            return;
+        }
+        // Too late to join the committed transaction's records, so this is written on its own
+        write(List.of(parkingLotRepository.findById(event.parkingLotId())
+                .map(parkingLot -> new Entry(LOT_SAVED, 0, 0, parkingLot.getId(), parkingLot.getReservedSpaces()))
+                .orElseGet(() -> new Entry(LOT_DELETED, 0, 0, event.parkingLotId(), 0))));
+    }
+
+    // The batch's lots are journaled in one write, with the counts they were stored with
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onParkingLotsImported(ParkingLotsImportedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        write(event.lots().stream()
+                .map(lot -> new Entry(LOT_SAVED, 0, 0, lot.getId(), lot.getReservedSpaces()))
+                .toList());
+    }
+
+    // The reserved count the journal has reached for a lot, or empty if it has no record of the lot
+    public OptionalInt getReservedSpaces(Long parkingLotId) {
+        Integer count = reservedSpaces.get(parkingLotId);
+        return count == null ? OptionalInt.empty() : OptionalInt.of(count);
+    }
+
+    public int getReservationCount() {
+        return reservations.size();
+    }
+
+    public long getLastSequence() {
+        return log == null ? 0 : log.lastSequence();
+    }
+
+    // Hands the snapshot to its own thread, so its copy and IO never hold up the other scheduled tasks
+    @Scheduled(fixedDelayString = "${parkinglot.journal.snapshot-interval-ms:60000}")
+    public void scheduleSnapshot() {
+        if (!enabled || !snapshotRunning.compareAndSet(false, true)) {
+            return;
+        }
+        snapshotExecutor.execute(() -> {
+            try {
+                snapshot();
+            } catch (IOException | RuntimeException e) {
+                // The records stay in the segments, so the next snapshot covers them
+                logger.warn("Journal snapshot failed", e);
+            } finally {
+                snapshotRunning.set(false);
+            }
+        });
+    }
+
+    // Writes a snapshot if anything was journaled since the last one, then drops the segments it covers
+    public void snapshot() throws IOException {
+        if (!enabled || degraded) {
+            return;
+        }
+        long sequence;
+        State state;
+        // Copied under the lock so the copy matches the sequence exactly; written to disk outside it
+        journalLock.lock();
+        try {
+            sequence = log.lastSequence();
+            if (sequence == snapshotSequence) {
+                return;
+            }
+            tombstones.values().removeIf(tombstone -> tombstone.sequence() < sequence - TOMBSTONE_RECORDS);
+            state = State.copyOf(reservedSpaces, reservations, tombstones);
+        } finally {
+            journalLock.unlock();
+        }
+        writeSnapshot(sequence, state);
+        log.deleteUpTo(sequence);
+        journalLock.lock();
+        try {
+            snapshotSequence = Math.max(snapshotSequence, sequence);
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    // Records of a transaction are written together after it commits; a rollback drops them
+    private void record(byte type, Long reservationId, Long userId, Long parkingLotId, int value) {
+        if (!enabled) {
+            return;
+        }
+        Entry entry = new Entry(type, orZero(reservationId), orZero(userId), orZero(parkingLotId), value);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            write(List.of(entry));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<Entry> pending = (List<Entry>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<Entry> entries = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, entries);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    write(entries);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ReservationJournal.this);
+                }
+            });
+            pending = entries;
+        }
+        pending.add(entry);
+    }
+
+    // Runs after the commit, so a failure must not reach the caller: the change it records has already happened
+    private void write(List<Entry> entries) {
+        long sequence = 0;
+        journalLock.lock();
+        try {
+            if (degraded) {
+                return;
+            }
+            for (Entry entry : entries) {
+                sequence = log.append(encode(entry));
+                apply(sequence, entry);
+            }
+        } catch (IOException | RuntimeException e) {
+            degrade(e);
+            return;
+        } finally {
+            journalLock.unlock();
+        }
+        try {
+            log.sync(sequence);
+        } catch (RuntimeException e) {
+            degrade(e);
+        }
+    }
+
+    private void degrade(Exception e) {
+        writeFailures.incrementAndGet();
+        if (!degraded) {
+            degraded = true;
+            logger.error("Journal write failed; the journal stops recording until its directory is deleted and "
+                    + "the application restarted", e);
+        }
+    }
+
+    private void apply(long sequence, Entry entry) {
+        switch (entry.type()) {
+            case RESERVED -> {
+                Tombstone tombstone = tombstones.remove(entry.reservationId());
+                boolean counted = entry.value() == 1;
+                if (tombstone == null) {
+                    reservations.put(entry.reservationId(),
+                            new Membership(entry.userId(), entry.parkingLotId(), counted));
+                    adjust(entry.parkingLotId(), counted ? 1 : 0);
+                } else if (!tombstone.releasesSpace()) {
+                    // Confirmed or deleted before its creation was journaled: the space stays taken
+                    adjust(entry.parkingLotId(), counted ? 1 : 0);
+                }
+            }
+            case CANCELLED, EXPIRED, CONFIRMED, DELETED -> {
+                boolean releasesSpace = entry.type() == CANCELLED || entry.type() == EXPIRED;
+                Membership membership = reservations.remove(entry.reservationId());
+                if (membership == null) {
+                    tombstones.put(entry.reservationId(), new Tombstone(sequence, releasesSpace));
+                } else if (releasesSpace && membership.countsReservedSpace()) {
+                    adjust(membership.parkingLotId(), -1);
+                }
+            }
+            case SPACES_ADJUSTED -> adjust(entry.parkingLotId(), entry.value());
+            case LOT_SAVED -> reservedSpaces.put(entry.parkingLotId(), entry.value());
+            case LOT_DELETED -> {
+                // The lot's reservations are deleted with it
+                reservedSpaces.remove(entry.parkingLotId());
+                reservations.values().removeIf(membership -> membership.parkingLotId() == entry.parkingLotId());
+            }
+            default -> throw new IllegalStateException("Unknown journal record type " + entry.type());
+        }
+    }
+
+    private void adjust(long parkingLotId, int delta) {
+        if (delta != 0) {
+            reservedSpaces.merge(parkingLotId, delta, Integer::sum);
+        }
+    }
+
+    // The stored counts may lag behind the allocator, as in ParkingLotSnapshotService
+    private void seed() {
+        for (ParkingLotDTO lot : parkingLotRepository.findAllViews()) {
+            reservedSpaces.put(lot.getId(),
+                    spaceAllocator.peekReservedSpaces(lot.getId()).orElse(lot.getReservedSpaces()));
+        }
+        long afterId = 0L;
+        List<ReservationDTO> page;
+        do {
+            page = reservationRepository.findViewsAfter(afterId, Limit.of(SEED_PAGE_SIZE));
+            for (ReservationDTO reservation : page) {
+                reservations.put(reservation.getId(), new Membership(reservation.getUserId(),
+                        reservation.getParkingLotId(), reservation.getStartTime() == null));
+                afterId = reservation.getId();
+            }
+        } while (page.size() == SEED_PAGE_SIZE);
+    }
+
+    private Optional<Path> latestSnapshot() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().matches(SNAPSHOT_PREFIX + "\\d{20}\\" + SNAPSHOT_SUFFIX))
+                    .max(Path::compareTo);
+        }
+    }
+
+    // Written to a temporary file and renamed, so a crash leaves either the old snapshot or the new one
+    private void writeSnapshot(long sequence, State state) throws IOException {
+        String name = SNAPSHOT_PREFIX + String.format("%020d", sequence) + SNAPSHOT_SUFFIX;
+        Path temporary = directory.resolve(name + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(sequence);
+            out.writeInt(state.lotIds().length);
+            for (int i = 0; i < state.lotIds().length; i++) {
+                out.writeLong(state.lotIds()[i]);
+                out.writeInt(state.counts()[i]);
+            }
+            out.writeInt(state.reservationIds().length);
+            for (int i = 0; i < state.reservationIds().length; i++) {
+                Membership member = state.members()[i];
+                out.writeLong(state.reservationIds()[i]);
+                out.writeLong(member.userId());
+                out.writeLong(member.parkingLotId());
+                out.writeBoolean(member.countsReservedSpace());
+            }
+            out.writeInt(state.removalIds().length);
+            for (int i = 0; i < state.removalIds().length; i++) {
+                Tombstone removal = state.removals()[i];
+                out.writeLong(state.removalIds()[i]);
+                out.writeLong(removal.sequence());
+                out.writeBoolean(removal.releasesSpace());
+            }
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            channel.force(true);
+        }
+        Path target = directory.resolve(name);
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(file -> file.getFileName().toString().startsWith(SNAPSHOT_PREFIX)
+                    && file.compareTo(target) < 0).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private long readSnapshot(Path file) throws IOException {
+        try (CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 1 << 16), new CRC32())) {
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IllegalStateException("Not a journal snapshot: " + file);
+            }
+            long sequence = in.readLong();
+            int lots = in.readInt();
+            for (int i = 0; i < lots; i++) {
+                reservedSpaces.put(in.readLong(), in.readInt());
+            }
+            int members = in.readInt();
+            for (int i = 0; i < members; i++) {
+                reservations.put(in.readLong(), new Membership(in.readLong(), in.readLong(), in.readBoolean()));
+            }
+            int removals = in.readInt();
+            for (int i = 0; i < removals; i++) {
+                tombstones.put(in.readLong(), new Tombstone(in.readLong(), in.readBoolean()));
+            }
+            long checksum = checked.getChecksum().getValue();
+            if (in.readLong() != checksum) {
+                throw new IllegalStateException("Journal snapshot " + file + " is corrupt");
+            }
+            return sequence;
+        }
+    }
+
+    private static long orZero(Long id) {
+        return id == null ? 0 : id;
+    }
+
+    private static byte[] encode(Entry entry) {
+        return ByteBuffer.allocate(RECORD_BYTES)
+                .put(entry.type())
+                .putLong(entry.reservationId())
+                .putLong(entry.userId())
+                .putLong(entry.parkingLotId())
+                .putInt(entry.value())
+                .array();
+    }
+
+    private static Entry decode(ByteBuffer payload) {
+        return new Entry(payload.get(), payload.getLong(), payload.getLong(), payload.getLong(), payload.getInt());
+    }
+
+    // One journal record; unused ids are 0
+    private record Entry(byte type, long reservationId, long userId, long parkingLotId, int value) {
+    }
+
+    private record Membership(long userId, long parkingLotId, boolean countsReservedSpace) {
+    }
+
+    private record Tombstone(long sequence, boolean releasesSpace) {
+    }
+
+    // The journal's state as parallel arrays: copying it allocates a few arrays, not an object per entry
+    private record State(long[] lotIds, int[] counts, long[] reservationIds, Membership[] members,
+                         long[] removalIds, Tombstone[] removals) {
+
+        // Called with the journal lock held, so the maps do not change meanwhile
+        static State copyOf(Map<Long, Integer> reservedSpaces, Map<Long, Membership> reservations,
+                            Map<Long, Tombstone> tombstones) {
+            long[] lotIds = new long[reservedSpaces.size()];
+            int[] counts = new int[lotIds.length];
+            int i = 0;
+            for (Map.Entry<Long, Integer> count : reservedSpaces.entrySet()) {
+                lotIds[i] = count.getKey();
+                counts[i++] = count.getValue();
+            }
+            long[] reservationIds = new long[reservations.size()];
+            Membership[] members = new Membership[reservationIds.length];
+            i = 0;
+            for (Map.Entry<Long, Membership> member : reservations.entrySet()) {
+                reservationIds[i] = member.getKey();
+                members[i++] = member.getValue();
+            }
+            long[] removalIds = new long[tombstones.size()];
+            Tombstone[] removals = new Tombstone[removalIds.length];
+            i = 0;
+            for (Map.Entry<Long, Tombstone> removal : tombstones.entrySet()) {
+                removalIds[i] = removal.getKey();
+                removals[i++] = removal.getValue();
+            }
+            return new State(lotIds, counts, reservationIds, members, removalIds, removals);
+        }
+    }
+}
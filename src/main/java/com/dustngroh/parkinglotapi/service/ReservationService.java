@@ -1,75 +1,201 @@
 package com.dustngroh.parkinglotapi.service;
 
+import com.dustngroh.parkinglotapi.dto.ReservationDTO;
+import com.dustngroh.parkinglotapi.dto.ReservationKey;
+import com.dustngroh.parkinglotapi.dto.ReservationSlot;
 import com.dustngroh.parkinglotapi.entity.ParkingLot;
 import com.dustngroh.parkinglotapi.entity.Reservation;
-import com.dustngroh.parkinglotapi.entity.User;
+import com.dustngroh.parkinglotapi.entity.ReservationEvent;
+import com.dustngroh.parkinglotapi.exception.BulkReservationException;
+import com.dustngroh.parkinglotapi.exception.DuplicateReservationException;
+import com.dustngroh.parkinglotapi.exception.NoAvailableSpacesException;
 import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
 import com.dustngroh.parkinglotapi.repository.ReservationRepository;
 import com.dustngroh.parkinglotapi.repository.UserRepository;
+import io.micrometer.core.annotation.Counted;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
 
 @Service
 public class ReservationService {
 
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+    private static final int MAX_REPORTED_ERRORS = 100;
+
     private final ReservationRepository reservationRepository;
     private final ParkingLotRepository parkingLotRepository;
-    //private final UserRepository userRepository;
+    private final UserRepository userRepository;
+    private final SpaceAllocator spaceAllocator;
+    private final HoldExpiryService holdExpiryService;
+    private final SlotOccupancyIndex slotOccupancyIndex;
+    private final ReservationJournal reservationJournal;
+    private final ReservationEventService reservationEventService;
 
-    public ReservationService(ReservationRepository reservationRepository, ParkingLotRepository parkingLotRepository) {
+    public ReservationService(ReservationRepository reservationRepository, ParkingLotRepository parkingLotRepository,
+                              UserRepository userRepository, SpaceAllocator spaceAllocator,
+                              HoldExpiryService holdExpiryService, SlotOccupancyIndex slotOccupancyIndex,
+                              ReservationJournal reservationJournal, ReservationEventService reservationEventService) {
         this.reservationRepository = reservationRepository;
         this.parkingLotRepository = parkingLotRepository;
-        //this.userRepository = userRepository;
+        this.userRepository = userRepository;
+        this.spaceAllocator = spaceAllocator;
+        this.holdExpiryService = holdExpiryService;
+        this.slotOccupancyIndex = slotOccupancyIndex;
+        this.reservationJournal = reservationJournal;
+        this.reservationEventService = reservationEventService;
+    }
+
+    @Transactional(readOnly = true)
+    public List<ReservationDTO> getAllReservations() {
+        return reservationRepository.findViewsAfter(0L, Limit.unlimited());
+    }
+
+    @Transactional(readOnly = true)
+    public List<ReservationDTO> getReservationsByUser(String username) {
+        return reservationRepository.findViewsByUsernameAfter(username, 0L, Limit.unlimited());
     }
 
-    public List<Reservation> getAllReservations() {
-        return reservationRepository.findAll();
+    @Transactional(readOnly = true)
+    public List<ReservationDTO> getReservationsByParkingLotId(Long parkingLotId) {
+        return reservationRepository.findViewsByParkingLotIdAfter(parkingLotId, 0L, Limit.unlimited());
     }
 
-    public List<Reservation> getReservationsByUser(String username) {
-        return reservationRepository.findByUser_Username(username);
+    // Keyset pages: up to 'limit' reservations with an id greater than 'afterId'
+    @Transactional(readOnly = true)
+    public List<ReservationDTO> getReservations(Long afterId, int limit) {
+        return reservationRepository.findViewsAfter(afterId, Limit.of(limit));
     }
 
-    public List<Reservation> getReservationsByParkingLotId(Long parkingLotId) {
-        return reservationRepository.findByParkingLot_Id(parkingLotId);
+    @Transactional(readOnly = true)
+    public List<ReservationDTO> getReservationsByUser(String username, Long afterId, int limit) {
+        return reservationRepository.findViewsByUsernameAfter(username, afterId, Limit.of(limit));
     }
 
+    @Transactional(readOnly = true)
+    public List<ReservationDTO> getReservationsByParkingLotId(Long parkingLotId, Long afterId, int limit) {
+        return reservationRepository.findViewsByParkingLotIdAfter(parkingLotId, afterId, Limit.of(limit));
+    }
+
+    @Transactional(readOnly = true)
     public boolean hasReservation(String username, Long parkingLotId) {
-        return reservationRepository.findByUser_UsernameAndParkingLot_Id(username, parkingLotId).isPresent();
+        return reservationRepository.existsByUser_UsernameAndParkingLot_Id(username, parkingLotId);
     }
 
+    // Takes the user id from the caller's token, so the User row is referenced but never loaded.
+    // Failures are counted per exception type (NoAvailableSpacesException, DuplicateReservationException, ...)
+    @Timed(value = "parkinglot.reservation.create", histogram = true)
+    @Counted(value = "parkinglot.reservation.create.failures", recordFailuresOnly = true)
     @Transactional
-    public Reservation createReservation(User user, Long parkingLotId) {
+    public Reservation createReservation(Long userId, Long parkingLotId) {
+        // Check if the user already has a reservation for this parking lot
+        if (reservationRepository.existsByUser_IdAndParkingLot_Id(userId, parkingLotId)) {
+            throw new DuplicateReservationException("User already has a reservation for this parking lot.");
+        }
+
+        // Claim a space before loading the lot so a locking strategy reads the locked row
+        OptionalInt reservedSpaces = spaceAllocator.tryReserve(parkingLotId);
+        if (reservedSpaces.isEmpty()) {
+            throw new NoAvailableSpacesException("No available spaces in this parking lot.");
+        }
+
         // Fetch the parking lot
         ParkingLot parkingLot = parkingLotRepository.findById(parkingLotId)
                 .orElseThrow(() -> new RuntimeException("Parking lot not found"));
 
-        // Check if the user already has a reservation for this parking lot
-        if (reservationRepository.findByUser_UsernameAndParkingLot_Id(user.getUsername(), parkingLotId).isPresent()) {
-            throw new IllegalStateException("User already has a reservation for this parking lot.");
-        }
-
-        // Check if there are available spaces
-        if (parkingLot.getReservedSpaces() >= parkingLot.getTotalSpaces()) {
-            throw new IllegalStateException("No available spaces in this parking lot.");
+        // A reservation without an end also takes a space in every time slot already booked from now on.
+        // The rollback hands the claimed space back
+        int peakSlots = slotOccupancyIndex.peakFrom(parkingLotId, LocalDateTime.now());
+        if (reservedSpaces.getAsInt() + peakSlots > parkingLot.getTotalSpaces()) {
+            throw new NoAvailableSpacesException("No available spaces in this parking lot.");
         }
 
         // Create a new reservation
         Reservation reservation = new Reservation();
-        reservation.setUser(user);
+        reservation.setUser(userRepository.getReferenceById(userId));
         reservation.setParkingLot(parkingLot);
+        reservation.setHoldUntil(holdExpiryService.holdUntil());
 
-        // Increment reserved spaces
-        parkingLot.setReservedSpaces(parkingLot.getReservedSpaces() + 1);
-        parkingLotRepository.save(parkingLot);
+        // Released automatically if neither confirmed nor cancelled by then
+        Reservation saved = reservationRepository.save(reservation);
+        holdExpiryService.schedule(saved);
+        reservationJournal.reserved(saved.getId(), userId, parkingLotId, true);
+        reservationEventService.record(ReservationEvent.CREATED, saved);
+        return saved;
+    }
 
-        return reservationRepository.save(reservation);
+    /**
+     * Reserves a space in a lot for the window [startTime, endTime) only. Admission checks the busiest moment of
+     * the window in the lot's {@link SlotOccupancyIndex}, together with the reservations that have no end.
+     */
+    @Timed(value = "parkinglot.reservation.create.slot", histogram = true)
+    @Counted(value = "parkinglot.reservation.create.slot.failures", recordFailuresOnly = true)
+    @Transactional
+    public Reservation createSlotReservation(Long userId, Long parkingLotId, LocalDateTime startTime,
+                                             LocalDateTime endTime) {
+        if (startTime == null || endTime == null || !startTime.isBefore(endTime)) {
+            throw new IllegalArgumentException("startTime must be before endTime.");
+        }
+        if (!endTime.isAfter(LocalDateTime.now())) {
+            throw new IllegalArgumentException("The time slot has already ended.");
+        }
+        if (reservationRepository.existsByUser_IdAndParkingLot_Id(userId, parkingLotId)) {
+            throw new DuplicateReservationException("User already has a reservation for this parking lot.");
+        }
+
+        // When the count lives in the lot row, lock the row first: createReservation's claim holds the same lock
+        // until it commits, so the count read below includes every reservation admitted before this one
+        ParkingLot parkingLot = (spaceAllocator.keepsCountsInMemory()
+                ? parkingLotRepository.findById(parkingLotId) : parkingLotRepository.findByIdForUpdate(parkingLotId))
+                .orElseThrow(() -> new RuntimeException("Parking lot not found"));
+
+        // Claim the slots first, then count the reservations without an end; createReservation does the
+        // reverse, so with an in-memory count two racing requests can both be refused but never both admitted
+        // past capacity. The rollback hands the claimed slots back
+        int peakSlots = slotOccupancyIndex.claim(parkingLotId, startTime, endTime);
+        if (peakSlots + reservedSpaces(parkingLot) > parkingLot.getTotalSpaces()) {
+            throw new NoAvailableSpacesException("No available spaces in this parking lot for the requested time.");
+        }
+
+        Reservation reservation = new Reservation();
+        reservation.setUser(userRepository.getReferenceById(userId));
+        reservation.setParkingLot(parkingLot);
+        reservation.setStartTime(startTime);
+        reservation.setEndTime(endTime);
+        Reservation saved = reservationRepository.save(reservation);
+        reservationJournal.reserved(saved.getId(), userId, parkingLotId, false);
+        reservationEventService.record(ReservationEvent.CREATED, saved);
+        return saved;
+    }
+
+    // Spaces free in the lot for the whole window [startTime, endTime)
+    public int getAvailableSpaces(Long parkingLotId, LocalDateTime startTime, LocalDateTime endTime) {
+        if (startTime == null || endTime == null || !startTime.isBefore(endTime)) {
+            throw new IllegalArgumentException("startTime must be before endTime.");
+        }
+        ParkingLot parkingLot = parkingLotRepository.findById(parkingLotId)
+                .orElseThrow(() -> new RuntimeException("Parking lot not found"));
+        int taken = reservedSpaces(parkingLot) + slotOccupancyIndex.peak(parkingLotId, startTime, endTime);
+        return Math.max(0, parkingLot.getTotalSpaces() - taken);
     }
 
     // Deletes the Reservation and decrements reserved spaces of the lot
+    @Timed(value = "parkinglot.reservation.cancel", histogram = true)
     @Transactional
     public boolean cancelReservation(String username, Long parkingLotId) {
         // Find the user's reservation
@@ -82,30 +208,217 @@ public class ReservationService {
         Reservation reservation = reservationOpt.get();
         ParkingLot parkingLot = reservation.getParkingLot();
 
-        // Decrement reserved spaces
-        if (parkingLot.getReservedSpaces() > 0) {
-            parkingLot.setReservedSpaces(parkingLot.getReservedSpaces() - 1);
-            parkingLotRepository.save(parkingLot);
+        // Decrement reserved spaces, or free the time slots it held
+        if (!releaseSlots(reservation)) {
+            spaceAllocator.release(parkingLot.getId());
         }
 
         // Delete the reservation
         reservationRepository.delete(reservation);
+        reservationJournal.cancelled(reservation.getId());
+        reservationEventService.record(ReservationEvent.CANCELLED, reservation);
         return true;
     }
 
-    // Deletes the Reservation without changing reserved spaces of the lot
+    // Deletes the Reservation without changing reserved spaces of the lot. A time-slot reservation has no
+    // reserved space to keep, and its row is gone, so its slots are freed as on every other removal
+    @Timed(value = "parkinglot.reservation.confirm", histogram = true)
+    @Transactional
     public boolean confirmReservation(Long reservationId) {
         Optional<Reservation> reservationOpt = reservationRepository.findById(reservationId);
 
         if (reservationOpt.isPresent()) {
+            releaseSlots(reservationOpt.get());
             reservationRepository.deleteById(reservationId);
+            reservationJournal.confirmed(reservationId);
+            reservationEventService.record(ReservationEvent.CONFIRMED, reservationOpt.get());
             return true;
         }
 
         return false;
     }
 
+    @Transactional
     public void deleteReservation(Long id) {
+        // Loaded first for the event; deleteById then finds it in the persistence context
+        Optional<Reservation> reservation = reservationRepository.findById(id);
+        reservation.ifPresent(this::releaseSlots);
         reservationRepository.deleteById(id);
+        reservationJournal.deleted(id);
+        reservation.ifPresent(deleted -> reservationEventService.record(ReservationEvent.DELETED, deleted));
+    }
+
+    /**
+     * Creates every requested (userId, parkingLotId) reservation in one transaction, or none of them.
+     * Users, lots and existing reservations are checked with set-based queries, capacity is claimed
+     * once per lot for all of its rows, and the rows are written with batched inserts. Every problem
+     * found is reported at once so the caller can fix the whole batch before retrying.
+     */
+    @Timed(value = "parkinglot.reservation.create.bulk", histogram = true)
+    @Transactional
+    public int createReservations(List<ReservationDTO> requests) {
+        List<String> errors = new ArrayList<>();
+        Map<UserLot, Integer> rows = requestedPairs(requests, errors);
+
+        Set<Long> userIds = new HashSet<>();
+        Set<Long> parkingLotIds = new HashSet<>();
+        rows.keySet().forEach(pair -> {
+            userIds.add(pair.userId());
+            parkingLotIds.add(pair.parkingLotId());
+        });
+        Set<Long> existingUsers = new HashSet<>(inChunks(userIds, userRepository::findExistingIds));
+        Set<Long> existingLots = new HashSet<>(inChunks(parkingLotIds, parkingLotRepository::findExistingIds));
+        rows.forEach((pair, row) -> {
+            if (!existingUsers.contains(pair.userId())) {
+                errors.add("Row " + row + ": user " + pair.userId() + " not found.");
+            }
+            if (!existingLots.contains(pair.parkingLotId())) {
+                errors.add("Row " + row + ": parking lot " + pair.parkingLotId() + " not found.");
+            }
+        });
+        for (ReservationKey existing : findExisting(rows.keySet())) {
+            errors.add("Row " + rows.get(new UserLot(existing.userId(), existing.parkingLotId())) + ": user "
+                    + existing.userId() + " already has a reservation for parking lot " + existing.parkingLotId() + ".");
+        }
+        rejectIfAny(errors, requests.size());
+
+        // Claim each lot's spaces in one step, in id order so concurrent bulk requests lock lots consistently.
+        // A lot that is short rolls the whole transaction back, releasing what was already claimed.
+        Map<Long, Integer> spacesPerLot = new TreeMap<>();
+        rows.keySet().forEach(pair -> spacesPerLot.merge(pair.parkingLotId(), 1, Integer::sum));
+        spacesPerLot.forEach((parkingLotId, spaces) -> {
+            if (spaceAllocator.tryReserve(parkingLotId, spaces).isEmpty()) {
+                errors.add("Parking lot " + parkingLotId + " does not have " + spaces + " available spaces.");
+            }
+        });
+        rejectIfAny(errors, requests.size());
+
+        LocalDateTime holdUntil = holdExpiryService.holdUntil();
+        List<Reservation> reservations = new ArrayList<>(rows.size());
+        for (UserLot pair : rows.keySet()) {
+            Reservation reservation = new Reservation();
+            reservation.setUser(userRepository.getReferenceById(pair.userId()));
+            reservation.setParkingLot(parkingLotRepository.getReferenceById(pair.parkingLotId()));
+            reservation.setHoldUntil(holdUntil);
+            reservations.add(reservation);
+        }
+        reservationRepository.saveAll(reservations);
+        Iterator<UserLot> pairs = rows.keySet().iterator();
+        List<ReservationKey> created = new ArrayList<>(reservations.size());
+        for (Reservation reservation : reservations) {
+            UserLot pair = pairs.next();
+            holdExpiryService.schedule(reservation);
+            reservationJournal.reserved(reservation.getId(), pair.userId(), pair.parkingLotId(), true);
+            created.add(new ReservationKey(reservation.getId(), pair.userId(), pair.parkingLotId()));
+        }
+        reservationEventService.recordAll(ReservationEvent.CREATED, created);
+        return reservations.size();
+    }
+
+    /**
+     * Cancels every requested (userId, parkingLotId) reservation that exists and releases the spaces,
+     * one release per lot. Pairs without a reservation are skipped. Returns the number cancelled.
+     */
+    @Timed(value = "parkinglot.reservation.cancel.bulk", histogram = true)
+    @Transactional
+    public int cancelReservations(List<ReservationDTO> requests) {
+        List<String> errors = new ArrayList<>();
+        Map<UserLot, Integer> rows = requestedPairs(requests, errors);
+        rejectIfAny(errors, requests.size());
+
+        List<ReservationKey> existing = findExisting(rows.keySet());
+        List<Long> reservationIds = existing.stream().map(ReservationKey::id).toList();
+        List<ReservationSlot> slots = inChunks(reservationIds, reservationRepository::findSlotsByIdIn);
+        for (int from = 0; from < reservationIds.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            reservationRepository.deleteAllByIdInBatch(
+                    reservationIds.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, reservationIds.size())));
+        }
+
+        // Time-slot reservations free their slots; the rest release reserved spaces, one release per lot
+        Set<Long> slotIds = new HashSet<>();
+        for (ReservationSlot slot : slots) {
+            slotOccupancyIndex.release(slot.parkingLotId(), slot.startTime(), slot.endTime());
+            slotIds.add(slot.id());
+        }
+        Map<Long, Integer> spacesPerLot = new TreeMap<>();
+        existing.stream()
+                .filter(key -> !slotIds.contains(key.id()))
+                .forEach(key -> spacesPerLot.merge(key.parkingLotId(), 1, Integer::sum));
+        spacesPerLot.forEach(spaceAllocator::release);
+        existing.forEach(key -> reservationJournal.cancelled(key.id()));
+        reservationEventService.recordAll(ReservationEvent.CANCELLED, existing);
+        return existing.size();
+    }
+
+    // Requested pairs with the (1-based) row each first appeared in; missing ids and repeats are errors
+    private Map<UserLot, Integer> requestedPairs(List<ReservationDTO> requests, List<String> errors) {
+        Map<UserLot, Integer> rows = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            ReservationDTO request = requests.get(i);
+            int row = i + 1;
+            if (request == null || request.getUserId() == null || request.getParkingLotId() == null) {
+                errors.add("Row " + row + ": userId and parkingLotId are required.");
+                continue;
+            }
+            Integer firstRow = rows.putIfAbsent(new UserLot(request.getUserId(), request.getParkingLotId()), row);
+            if (firstRow != null) {
+                errors.add("Row " + row + ": duplicate of row " + firstRow + ".");
+            }
+        }
+        return rows;
+    }
+
+    // Existing reservations for exactly these pairs
+    private List<ReservationKey> findExisting(Set<UserLot> pairs) {
+        Set<Long> userIds = new HashSet<>();
+        Set<Long> parkingLotIds = new HashSet<>();
+        pairs.forEach(pair -> {
+            userIds.add(pair.userId());
+            parkingLotIds.add(pair.parkingLotId());
+        });
+        if (parkingLotIds.isEmpty()) {
+            return List.of();
+        }
+        return inChunks(userIds, chunk -> reservationRepository.findKeysByUserIdsAndParkingLotIds(chunk, parkingLotIds))
+                .stream()
+                .filter(key -> pairs.contains(new UserLot(key.userId(), key.parkingLotId())))
+                .toList();
+    }
+
+    // Splits large IN lists so no single statement exceeds the database's bind parameter limit
+    private static <T> List<T> inChunks(Collection<Long> ids, Function<List<Long>, List<T>> query) {
+        List<Long> all = new ArrayList<>(ids);
+        List<T> results = new ArrayList<>();
+        for (int from = 0; from < all.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            results.addAll(query.apply(all.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, all.size()))));
+        }
+        return results;
+    }
+
+    // Frees the slots of a time-slot reservation being removed; false for a reservation without an end
+    private boolean releaseSlots(Reservation reservation) {
+        if (reservation.getStartTime() == null) {
+            return false;
+        }
+        slotOccupancyIndex.release(reservation.getParkingLot().getId(), reservation.getStartTime(),
+                reservation.getEndTime());
+        return true;
+    }
+
+    // The lot's count of reservations without an end, from the allocator when it keeps one in memory
+    private int reservedSpaces(ParkingLot parkingLot) {
+        return spaceAllocator.peekReservedSpaces(parkingLot.getId()).orElse(parkingLot.getReservedSpaces());
+    }
+
+    private static void rejectIfAny(List<String> errors, int rows) {
+        if (errors.isEmpty()) {
+            return;
+        }
+        List<String> reported = errors.size() > MAX_REPORTED_ERRORS ? errors.subList(0, MAX_REPORTED_ERRORS) : errors;
+        throw new BulkReservationException("Rejected all " + rows + " rows: " + errors.size() + " problem(s) found.",
+                reported);
+    }
+
+    private record UserLot(Long userId, Long parkingLotId) {
     }
 }
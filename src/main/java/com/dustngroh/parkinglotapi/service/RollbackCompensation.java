@@ -0,0 +1,27 @@
+package com.dustngroh.parkinglotapi.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Undoes changes made outside the current database transaction if that transaction does not commit.
+ */
+final class RollbackCompensation {
+
+    private RollbackCompensation() {
+    }
+
+    static void register(Runnable compensation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    compensation.run();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,92 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.entity.InstanceLease;
+import com.dustngroh.parkinglotapi.repository.InstanceLeaseRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Keeps a second instance from running against the same database. Reserved counts, slot occupancy, holds,
+ * event positions, the lot indexes and utilization history are kept in memory by the instance that owns them,
+ * so a second one would admit reservations the first has already counted.
+ * <p>
+ * At startup the instance takes the lease row in {@link InstanceLease} and renews it every
+ * {@code parkinglot.instance-lease.renew-interval-ms}; it lasts {@code parkinglot.instance-lease.ttl-ms}. A lease
+ * still held fails startup, after waiting once for it to run out, so an instance that crashed without releasing
+ * it is replaced after at most the ttl. The lease is released at shutdown.
+ */
+@Component
+public class SingleInstanceGuard {
+
+    private static final Logger logger = LoggerFactory.getLogger(SingleInstanceGuard.class);
+
+    private final InstanceLeaseRepository instanceLeaseRepository;
+    private final long ttlMillis;
+    private final String owner = UUID.randomUUID().toString();
+
+    public SingleInstanceGuard(InstanceLeaseRepository instanceLeaseRepository,
+                               @Value("${parkinglot.instance-lease.ttl-ms:30000}") long ttlMillis,
+                               @Value("${parkinglot.instance-lease.renew-interval-ms:10000}") long renewIntervalMillis) {
+        if (renewIntervalMillis >= ttlMillis) {
+            throw new IllegalArgumentException("The instance lease must be renewed more often than it expires.");
+        }
+        this.instanceLeaseRepository = instanceLeaseRepository;
+        this.ttlMillis = ttlMillis;
+    }
+
+    @PostConstruct
+    public void acquire() throws InterruptedException {
+        long nowMillis = System.currentTimeMillis();
+        long expiresAtMillis = claim(nowMillis);
+        if (expiresAtMillis > 0) {
+            // A crashed holder's lease runs out by then; a live one has renewed it
+            Thread.sleep(Math.min(ttlMillis, expiresAtMillis - nowMillis) + 1);
+            expiresAtMillis = claim(System.currentTimeMillis());
+        }
+        if (expiresAtMillis > 0) {
+            throw new IllegalStateException("Another instance is running against this database. Reserved counts,"
+                    + " holds and event positions are kept in memory, so only one instance may run at a time.");
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${parkinglot.instance-lease.renew-interval-ms:10000}")
+    public void renew() {
+        if (claim(System.currentTimeMillis()) > 0) {
+            logger.error("The instance lease was taken by another instance; its in-memory counts may be wrong");
+        }
+    }
+
+    @PreDestroy
+    public void release() {
+        instanceLeaseRepository.release(InstanceLease.ID, owner);
+    }
+
+    // Takes or renews the lease: 0 if this instance holds it now, otherwise when the other holder's lease runs out
+    long claim(long nowMillis) {
+        if (!instanceLeaseRepository.existsById(InstanceLease.ID)) {
+            InstanceLease lease = new InstanceLease();
+            lease.setId(InstanceLease.ID);
+            lease.setOwner("");
+            try {
+                instanceLeaseRepository.saveAndFlush(lease);
+            } catch (DataIntegrityViolationException e) {
+                // Another instance created the row first
+            }
+        }
+        if (instanceLeaseRepository.claim(InstanceLease.ID, owner, nowMillis + ttlMillis, nowMillis) == 1) {
+            return 0;
+        }
+        long expiresAtMillis = instanceLeaseRepository.findById(InstanceLease.ID)
+                .map(InstanceLease::getExpiresAtMillis)
+                .orElse(nowMillis);
+        return Math.max(expiresAtMillis, nowMillis + 1);
+    }
+}
@@ -0,0 +1,190 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.dto.ReservationSlot;
+import com.dustngroh.parkinglotapi.repository.ReservationRepository;
+import com.dustngroh.parkinglotapi.util.IntervalMaxTree;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-lot occupancy of time-slot reservations over time, kept in memory so admission and availability
+ * questions ("how many spaces are taken at the busiest moment between T1 and T2?") take O(log n) instead of
+ * a scan of the lot's reservations.
+ * <p>
+ * Time is cut into slots of {@code parkinglot.reservation.slot-minutes}; a window covers every slot it
+ * touches. Each lot's slots live in an {@link IntervalMaxTree}, loaded from the reservations that have not
+ * ended yet the first time the lot is touched. Changes are undone if the surrounding transaction rolls back.
+ * Only the present and future are answered for; slots that have passed are freed every hour.
+ */
+@Component
+public class SlotOccupancyIndex {
+
+    // 2^32 slots: over 8000 years even with one-minute slots
+    private static final int SLOT_BITS = 32;
+
+    private final ReservationRepository reservationRepository;
+    private final long slotMinutes;
+    private final Map<Long, LotSlots> lots = new ConcurrentHashMap<>();
+    // First loads in flight, so each lot is read once while loads of other lots go ahead
+    private final Map<Long, CompletableFuture<LotSlots>> loads = new ConcurrentHashMap<>();
+
+    public SlotOccupancyIndex(ReservationRepository reservationRepository,
+                              @Value("${parkinglot.reservation.slot-minutes:15}") long slotMinutes) {
+        this.reservationRepository = reservationRepository;
+        this.slotMinutes = slotMinutes;
+    }
+
+    // Adds one reservation over [start, end) and returns the peak occupancy from now to the end of that window,
+    // including it
+    public int claim(Long parkingLotId, LocalDateTime start, LocalDateTime end) {
+        LotSlots slots = slotsFor(parkingLotId);
+        long from = firstSlot(start);
+        long to = endSlot(end);
+        int peak = slots.addAndGetPeak(from, to, 1, currentSlot());
+        RollbackCompensation.register(() -> slots.add(from, to, -1));
+        return peak;
+    }
+
+    public void release(Long parkingLotId, LocalDateTime start, LocalDateTime end) {
+        LotSlots slots = slotsFor(parkingLotId);
+        long from = firstSlot(start);
+        long to = endSlot(end);
+        slots.add(from, to, -1);
+        RollbackCompensation.register(() -> slots.add(from, to, 1));
+    }
+
+    // Most spaces taken by time-slot reservations at any moment in [start, end), from now on
+    public int peak(Long parkingLotId, LocalDateTime start, LocalDateTime end) {
+        return slotsFor(parkingLotId).peak(Math.max(firstSlot(start), currentSlot()), endSlot(end));
+    }
+
+    // Most spaces taken by time-slot reservations at any moment from 'start' (or now, if later) on
+    public int peakFrom(Long parkingLotId, LocalDateTime start) {
+        LotSlots slots = slotsFor(parkingLotId);
+        return slots.peak(Math.max(firstSlot(start), currentSlot()), slots.tree.size());
+    }
+
+    // Frees the slots that have passed, so a lot's tree holds only reservations still to come
+    @Scheduled(fixedDelayString = "${parkinglot.reservation.slot-prune-interval-ms:3600000}")
+    public void pruneEndedSlots() {
+        long current = currentSlot();
+        lots.values().forEach(slots -> slots.prune(current));
+    }
+
+    // Drops the lot's slots; they are reloaded from the database on the next touch
+    public void evict(Long parkingLotId) {
+        lots.remove(parkingLotId);
+    }
+
+    private long currentSlot() {
+        return firstSlot(LocalDateTime.now());
+    }
+
+    private long firstSlot(LocalDateTime time) {
+        return Math.floorDiv(epochMinutes(time), slotMinutes);
+    }
+
+    // First slot after the window; a window ending mid-slot still covers that slot
+    private long endSlot(LocalDateTime time) {
+        return Math.floorDiv(epochMinutes(time) + slotMinutes - 1, slotMinutes);
+    }
+
+    private static long epochMinutes(LocalDateTime time) {
+        return Math.floorDiv(time.atZone(ZoneId.systemDefault()).toEpochSecond(), 60);
+    }
+
+    // Same loading pattern as AvailabilityEngine: one future per lot, with the query run outside the map
+    private LotSlots slotsFor(Long parkingLotId) {
+        LotSlots slots = lots.get(parkingLotId);
+        if (slots != null) {
+            return slots;
+        }
+        CompletableFuture<LotSlots> created = new CompletableFuture<>();
+        CompletableFuture<LotSlots> load = loads.computeIfAbsent(parkingLotId, id -> created);
+        if (load != created) {
+            try {
+                return load.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            slots = lots.get(parkingLotId);
+            if (slots == null) {
+                slots = new LotSlots(new IntervalMaxTree(SLOT_BITS));
+                for (ReservationSlot slot : reservationRepository.findSlotsByParkingLotIdEndingAfter(parkingLotId,
+                        LocalDateTime.now())) {
+                    slots.add(firstSlot(slot.startTime()), endSlot(slot.endTime()), 1);
+                }
+                lots.put(parkingLotId, slots);
+            }
+            created.complete(slots);
+            return slots;
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(parkingLotId, created);
+        }
+    }
+
+    private static final class LotSlots {
+        private final IntervalMaxTree tree;
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private LotSlots(IntervalMaxTree tree) {
+            this.tree = tree;
+        }
+
+        void add(long from, long to, int delta) {
+            lock.lock();
+            try {
+                tree.add(from, to, delta);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Adds over [from, to) and returns the maximum over the part of it from 'current' on
+        int addAndGetPeak(long from, long to, int delta, long current) {
+            lock.lock();
+            try {
+                tree.add(from, to, delta);
+                long start = Math.max(from, current);
+                return start < to ? tree.max(start, to) : 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int peak(long from, long to) {
+            if (from >= to) {
+                return 0;
+            }
+            lock.lock();
+            try {
+                return tree.max(from, to);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void prune(long position) {
+            lock.lock();
+            try {
+                tree.prune(position);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
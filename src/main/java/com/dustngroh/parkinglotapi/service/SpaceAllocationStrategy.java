@@ -0,0 +1,36 @@
+package com.dustngroh.parkinglotapi.service;
+
+import java.util.OptionalInt;
+
+/**
+ * A way of claiming and releasing reserved spaces on a parking lot without overbooking it.
+ * Implementations throw a {@link RuntimeException} with "Parking lot not found" for unknown lots.
+ */
+public interface SpaceAllocationStrategy {
+
+    // Name used to select the strategy with the parkinglot.reservation.strategy property
+    String getName();
+
+    // Claims 'spaces' spaces at once, all or nothing. Returns the lot's new reserved count,
+    // or empty when they do not all fit
+    OptionalInt tryReserve(Long parkingLotId, int spaces);
+
+    // Releases 'spaces' spaces at once. Returns the lot's new reserved count,
+    // or empty when fewer than that many are reserved
+    OptionalInt release(Long parkingLotId, int spaces);
+
+    // The lot's current count if the strategy keeps it in memory, without loading it; empty means "read the database"
+    default OptionalInt peekReservedSpaces(Long parkingLotId) {
+        return OptionalInt.empty();
+    }
+
+    // True when the strategy keeps the authoritative count in memory. Otherwise the lot row holds it, and writers
+    // are ordered by that row's lock until their transaction ends
+    default boolean keepsCountsInMemory() {
+        return false;
+    }
+
+    // Forget any cached state for a lot that was changed or deleted outside of this strategy
+    default void evict(Long parkingLotId) {
+    }
+}
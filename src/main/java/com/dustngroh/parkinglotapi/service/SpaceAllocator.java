@@ -0,0 +1,71 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.event.ParkingLotChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.OptionalInt;
+
+/**
+ * Entry point for every change to a lot's reserved spaces. Delegates to the
+ * {@link SpaceAllocationStrategy} selected with {@code parkinglot.reservation.strategy}
+ * (in-memory, conditional-update, optimistic or pessimistic) and publishes a
+ * {@link ParkingLotChangedEvent} for every successful change.
+ */
+@Service
+public class SpaceAllocator {
+
+    private final SpaceAllocationStrategy strategy;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public SpaceAllocator(List<SpaceAllocationStrategy> strategies,
+                          @Value("${parkinglot.reservation.strategy:in-memory}") String strategyName,
+                          ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+        this.strategy = strategies.stream()
+                .filter(candidate -> candidate.getName().equals(strategyName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown reservation strategy: " + strategyName));
+    }
+
+    public String getStrategyName() {
+        return strategy.getName();
+    }
+
+    public boolean keepsCountsInMemory() {
+        return strategy.keepsCountsInMemory();
+    }
+
+    public OptionalInt tryReserve(Long parkingLotId) {
+        return tryReserve(parkingLotId, 1);
+    }
+
+    public OptionalInt release(Long parkingLotId) {
+        return release(parkingLotId, 1);
+    }
+
+    // All or nothing: either every one of 'spaces' is claimed or none is
+    public OptionalInt tryReserve(Long parkingLotId, int spaces) {
+        return published(parkingLotId, strategy.tryReserve(parkingLotId, spaces));
+    }
+
+    public OptionalInt release(Long parkingLotId, int spaces) {
+        return published(parkingLotId, strategy.release(parkingLotId, spaces));
+    }
+
+    public OptionalInt peekReservedSpaces(Long parkingLotId) {
+        return strategy.peekReservedSpaces(parkingLotId);
+    }
+
+    public void evict(Long parkingLotId) {
+        strategy.evict(parkingLotId);
+    }
+
+    private OptionalInt published(Long parkingLotId, OptionalInt reservedSpaces) {
+        reservedSpaces.ifPresent(count ->
+                eventPublisher.publishEvent(ParkingLotChangedEvent.reservedSpacesChanged(parkingLotId, count)));
+        return reservedSpaces;
+    }
+}
@@ -4,25 +4,32 @@ import com.dustngroh.parkinglotapi.entity.User;
 import com.dustngroh.parkinglotapi.exception.UserAlreadyExistsException;
 import com.dustngroh.parkinglotapi.exception.UserNotFoundException;
 import com.dustngroh.parkinglotapi.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
 
 @Service
 public class UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    // Checked against when the username does not exist, so both cases cost one hash
+    private final String unknownUserPasswordHash;
 
     public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.unknownUserPasswordHash = passwordEncoder.encode(UUID.randomUUID().toString());
     }
 
+    @Transactional(readOnly = true)
     public Optional<User> getUserByUsername(String username) {
         return userRepository.findByUsername(username);
     }
@@ -57,10 +64,15 @@ public class UserService {
         return userRepository.save(user);
     }
 
+    @Timed(value = "parkinglot.auth.login", histogram = true)
     public User authenticate(String username, String password) {
-        return userRepository.findByUsername(username)
-                .filter(user -> passwordEncoder.matches(password, user.getPassword()))
-                .orElseThrow(() -> new UserNotFoundException("Invalid username or password"));
+        Optional<User> user = userRepository.findByUsername(username);
+        // Hash even for an unknown username, so response time does not reveal which usernames exist
+        String passwordHash = user.map(User::getPassword).orElse(unknownUserPasswordHash);
+        if (!passwordEncoder.matches(password, passwordHash) || user.isEmpty()) {
+            throw new UserNotFoundException("Invalid username or password");
+        }
+        return user.get();
     }
 
     public User updateUser(Long userId, User updatedUser) {
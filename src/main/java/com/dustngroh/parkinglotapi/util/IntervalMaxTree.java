@@ -0,0 +1,148 @@
+package com.dustngroh.parkinglotapi.util;
+
+/**
+ * A sparse segment tree over the positions {@code [0, 2^bits)}: adds a value to every position of a range and
+ * returns the maximum over a range, both in O(bits) time.
+ * <p>
+ * Nodes are created only along the paths that updates touch, so a tree spanning billions of positions costs
+ * memory in proportion to the number of ranges added, not to its width. Each node keeps the amount added to
+ * its whole range plus the maximum of its children, so nothing is pushed down on updates or queries. Subtrees
+ * that an update brings back to zero are dropped, and {@link #prune(long)} drops the positions a caller no
+ * longer needs, so memory follows the ranges still live. Not thread-safe; callers serialize access.
+ */
+public class IntervalMaxTree {
+
+    private final long size;
+    private final Node root = new Node();
+
+    public IntervalMaxTree(int bits) {
+        this.size = 1L << bits;
+    }
+
+    // Adds 'delta' to every position in [from, to)
+    public void add(long from, long to, int delta) {
+        checkRange(from, to);
+        add(root, 0, size, from, to, delta);
+    }
+
+    // Maximum value over the positions in [from, to)
+    public int max(long from, long to) {
+        checkRange(from, to);
+        return max(root, 0, size, from, to);
+    }
+
+    /**
+     * Frees every node that lies wholly before 'position'. Values before it are meaningless afterwards, and
+     * ranges reaching back past it only count from 'position' on; values from 'position' on are unchanged.
+     */
+    public void prune(long position) {
+        if (position > 0) {
+            prune(root, 0, size, position);
+        }
+    }
+
+    // Number of nodes held, the root included
+    int nodeCount() {
+        return countNodes(root);
+    }
+
+    // Positions run from 0 (inclusive) to this (exclusive)
+    public long size() {
+        return size;
+    }
+
+    private void add(Node node, long low, long high, long from, long to, int delta) {
+        if (from <= low && high <= to) {
+            node.added += delta;
+            node.max += delta;
+            return;
+        }
+        long middle = low + (high - low) / 2;
+        if (from < middle) {
+            if (node.left == null) {
+                node.left = new Node();
+            }
+            add(node.left, low, middle, from, to, delta);
+        }
+        if (to > middle) {
+            if (node.right == null) {
+                node.right = new Node();
+            }
+            add(node.right, middle, high, from, to, delta);
+        }
+        if (isEmpty(node.left)) {
+            node.left = null;
+        }
+        if (isEmpty(node.right)) {
+            node.right = null;
+        }
+        node.max = node.added + Math.max(maxOf(node.left), maxOf(node.right));
+    }
+
+    private void prune(Node node, long low, long high, long position) {
+        long middle = low + (high - low) / 2;
+        if (middle <= position) {
+            node.left = null;
+        } else if (node.left != null) {
+            prune(node.left, low, middle, position);
+        }
+        if (high <= position) {
+            node.right = null;
+        } else if (node.right != null && middle < position) {
+            prune(node.right, middle, high, position);
+        }
+        if (isEmpty(node.left)) {
+            node.left = null;
+        }
+        if (isEmpty(node.right)) {
+            node.right = null;
+        }
+        node.max = node.added + Math.max(maxOf(node.left), maxOf(node.right));
+    }
+
+    private int max(Node node, long low, long high, long from, long to) {
+        if (node == null) {
+            return 0;
+        }
+        if (from <= low && high <= to) {
+            return node.max;
+        }
+        long middle = low + (high - low) / 2;
+        int best = Integer.MIN_VALUE;
+        if (from < middle) {
+            best = max(node.left, low, middle, from, to);
+        }
+        if (to > middle) {
+            best = Math.max(best, max(node.right, middle, high, from, to));
+        }
+        return node.added + best;
+    }
+
+    private void checkRange(long from, long to) {
+        if (from < 0 || to > size || from >= to) {
+            throw new IllegalArgumentException("Invalid range [" + from + ", " + to + ")");
+        }
+    }
+
+    // A leaf adding nothing: every position below it reads as zero without it
+    private static boolean isEmpty(Node node) {
+        return node != null && node.added == 0 && node.left == null && node.right == null;
+    }
+
+    private static int countNodes(Node node) {
+        return node == null ? 0 : 1 + countNodes(node.left) + countNodes(node.right);
+    }
+
+    private static int maxOf(Node node) {
+        return node == null ? 0 : node.max;
+    }
+
+    private static final class Node {
+        // Added to every position of this node's range
+        private int added;
+        // added + the maximum over the children
+        private int max;
+        private Node left;
+        private Node right;
+    }
+}
@@ -0,0 +1,62 @@
+package com.dustngroh.parkinglotapi.util;
+
+import com.dustngroh.parkinglotapi.exception.InvalidCursorException;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Keyset pagination for list endpoints. Rows are returned in ascending id order; the opaque cursor
+ * encodes the last id of a page, and the next page is "id greater than cursor" rather than an offset,
+ * so every page costs the same no matter how deep the client goes.
+ * <p>
+ * The cursor for the next page is sent in the {@value #NEXT_CURSOR_HEADER} header and is absent on the last page.
+ */
+public final class PageCursor {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    private PageCursor() {
+    }
+
+    // Returns the id to continue after; a missing cursor starts at the beginning
+    public static long decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            return Long.parseLong(decoded);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Invalid cursor.");
+        }
+    }
+
+    public static String encode(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Long.toString(lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static int limit(Integer requested) {
+        if (requested == null) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.max(1, Math.min(requested, MAX_LIMIT));
+    }
+
+    // Expects one row more than the limit was fetched; that extra row only signals that another page exists
+    public static <T> ResponseEntity<List<T>> toResponse(List<T> rows, int limit, Function<T, Long> idOf) {
+        if (rows.size() <= limit) {
+            return ResponseEntity.ok(rows);
+        }
+        List<T> page = rows.subList(0, limit);
+        return ResponseEntity.ok()
+                .header(NEXT_CURSOR_HEADER, encode(idOf.apply(page.get(limit - 1))))
+                .body(page);
+    }
+}
@@ -0,0 +1,112 @@
+package com.dustngroh.parkinglotapi.util;
+
+import java.util.Arrays;
+
+/**
+ * A fixed number of consecutive time buckets summarising a level (such as a lot's reserved count) over time.
+ * <p>
+ * Bucket n covers [n * bucketMillis, (n + 1) * bucketMillis) and is kept in slot n % capacity, so only the
+ * latest {@code capacity} buckets are held and recording or reading a bucket costs the same however much history
+ * there is. Each bucket keeps the minimum, the maximum and the time integral of the level over the part of the
+ * bucket where it was known, which gives a time-weighted mean. Not thread-safe.
+ */
+public class RollupRing {
+
+    // Summary of one bucket, or of several merged
+    public record Rollup(int min, int max, double area, long coveredMillis) {
+
+        public double mean() {
+            return area / coveredMillis;
+        }
+
+        public Rollup merge(Rollup other) {
+            if (other == null) {
+                return this;
+            }
+            return new Rollup(Math.min(min, other.min), Math.max(max, other.max), area + other.area,
+                    coveredMillis + other.coveredMillis);
+        }
+    }
+
+    private final long bucketMillis;
+    private final int capacity;
+    private final long[] numbers;
+    private final int[] min;
+    private final int[] max;
+    private final double[] area;
+    private final long[] covered;
+
+    public RollupRing(long bucketMillis, int capacity) {
+        if (bucketMillis <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("bucketMillis and capacity must be positive");
+        }
+        this.bucketMillis = bucketMillis;
+        this.capacity = capacity;
+        this.numbers = new long[capacity];
+        this.min = new int[capacity];
+        this.max = new int[capacity];
+        this.area = new double[capacity];
+        this.covered = new long[capacity];
+        Arrays.fill(numbers, -1L);
+    }
+
+    public long bucketMillis() {
+        return bucketMillis;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    // Records that the level was 'level' over [fromMillis, toMillis); only the part within reach of the ring is kept
+    public void add(int level, long fromMillis, long toMillis) {
+        long from = Math.max(fromMillis, toMillis - capacity * bucketMillis);
+        while (from < toMillis) {
+            long number = from / bucketMillis;
+            long end = Math.min(toMillis, (number + 1) * bucketMillis);
+            int slot = claim(number);
+            min[slot] = covered[slot] == 0 ? level : Math.min(min[slot], level);
+            max[slot] = covered[slot] == 0 ? level : Math.max(max[slot], level);
+            area[slot] += (double) level * (end - from);
+            covered[slot] += end - from;
+            from = end;
+        }
+    }
+
+    // Adds a summary into bucket 'number', e.g. one read back from storage for a time the ring has not seen
+    public void merge(long number, Rollup rollup) {
+        int slot = slot(number);
+        if (numbers[slot] > number) {
+            return;
+        }
+        Rollup merged = rollup.merge(get(number));
+        claim(number);
+        min[slot] = merged.min();
+        max[slot] = merged.max();
+        area[slot] = merged.area();
+        covered[slot] = merged.coveredMillis();
+    }
+
+    // The summary of bucket 'number', or null when the ring holds nothing for it
+    public Rollup get(long number) {
+        int slot = slot(number);
+        if (number < 0 || numbers[slot] != number || covered[slot] == 0) {
+            return null;
+        }
+        return new Rollup(min[slot], max[slot], area[slot], covered[slot]);
+    }
+
+    private int claim(long number) {
+        int slot = slot(number);
+        if (numbers[slot] != number) {
+            numbers[slot] = number;
+            area[slot] = 0;
+            covered[slot] = 0;
+        }
+        return slot;
+    }
+
+    private int slot(long number) {
+        return (int) Math.floorMod(number, (long) capacity);
+    }
+}
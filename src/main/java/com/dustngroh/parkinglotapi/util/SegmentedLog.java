@@ -0,0 +1,287 @@
+package com.dustngroh.parkinglotapi.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of small binary records, written to fixed-size memory-mapped segment files.
+ * <p>
+ * Records get consecutive sequence numbers from 1, and each segment file is named after the first sequence number
+ * it holds. A record is framed as [payload length][CRC32 of sequence and payload][sequence][payload], and the
+ * zeroed rest of a segment marks its end. Appending only copies into the mapping. {@link #sync(long)} forces the
+ * written pages to disk, and callers that sync at the same time share one force (group commit). On open, a record
+ * torn by a crash (bad checksum or sequence) ends the log and is overwritten by the next append.
+ * Appends and syncs are thread-safe; {@link #forEach} is meant for recovery, before anything is appended.
+ */
+public class SegmentedLog implements AutoCloseable {
+
+    private static final String SUFFIX = ".log";
+    private static final int HEADER_BYTES = 16;
+
+    @FunctionalInterface
+    public interface RecordHandler {
+        void accept(long sequence, ByteBuffer payload);
+    }
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final AtomicLong syncedSequence = new AtomicLong();
+    // First sequence number of each segment; the last one is being appended to
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int position;
+    private int syncedPosition;
+    private long lastSequence;
+
+    public SegmentedLog(Path directory, int segmentBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().matches("\\d{20}\\" + SUFFIX))
+                    .forEach(file -> segments.put(firstSequence(file), file));
+        }
+        if (segments.isEmpty()) {
+            openSegment(1);
+        } else {
+            reopenLastSegment();
+        }
+        syncedSequence.set(lastSequence);
+    }
+
+    // The oldest sequence number still on disk (one past lastSequence() when the log is empty)
+    public long firstSequence() {
+        appendLock.lock();
+        try {
+            return segments.firstKey();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public long lastSequence() {
+        appendLock.lock();
+        try {
+            return lastSequence;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Appends a record and returns its sequence number. It is not durable until sync() has covered it
+    public long append(byte[] payload) throws IOException {
+        int frameBytes = HEADER_BYTES + payload.length;
+        if (frameBytes > segmentBytes) {
+            throw new IllegalArgumentException("Record of " + payload.length + " bytes does not fit a segment");
+        }
+        appendLock.lock();
+        try {
+            if (position + frameBytes > segmentBytes) {
+                roll();
+            }
+            long sequence = lastSequence + 1;
+            buffer.putLong(position + 8, sequence);
+            buffer.put(position + HEADER_BYTES, payload);
+            buffer.putInt(position + 4, checksum(buffer, position, payload.length));
+            // The length goes last: a zero length still marks the end of the log
+            buffer.putInt(position, payload.length);
+            position += frameBytes;
+            lastSequence = sequence;
+            return sequence;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Returns once every record up to 'sequence' is on disk, forcing the pages of this and any concurrent caller
+    public void sync(long sequence) {
+        if (syncedSequence.get() >= sequence) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (syncedSequence.get() >= sequence) {
+                return;
+            }
+            MappedByteBuffer target;
+            int from;
+            int to;
+            long upTo;
+            appendLock.lock();
+            try {
+                target = buffer;
+                from = syncedPosition;
+                to = position;
+                upTo = lastSequence;
+                syncedPosition = position;
+            } finally {
+                appendLock.unlock();
+            }
+            // Appends carry on meanwhile: they only write past 'to'
+            target.force(from, to - from);
+            syncedSequence.accumulateAndGet(upTo, Math::max);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    // Hands every record from 'fromSequence' on to 'handler', in order
+    public void forEach(long fromSequence, RecordHandler handler) throws IOException {
+        appendLock.lock();
+        try {
+            List<Map.Entry<Long, Path>> files = new ArrayList<>(segments.entrySet());
+            for (int i = 0; i < files.size(); i++) {
+                Long next = i + 1 < files.size() ? files.get(i + 1).getKey() : null;
+                if (next != null && next <= fromSequence) {
+                    continue;
+                }
+                long first = files.get(i).getKey();
+                ByteBuffer segment = next == null ? buffer : map(files.get(i).getValue(), FileChannel.MapMode.READ_ONLY);
+                long expected = first;
+                int offset = 0;
+                long last = next == null ? lastSequence : next - 1;
+                while (expected <= last) {
+                    int length = readRecord(segment, offset, expected);
+                    if (length < 0) {
+                        throw new IllegalStateException("Journal segment " + files.get(i).getValue()
+                                + " is corrupt at sequence " + expected);
+                    }
+                    if (expected >= fromSequence) {
+                        handler.accept(expected, segment.slice(offset + HEADER_BYTES, length).asReadOnlyBuffer());
+                    }
+                    offset += HEADER_BYTES + length;
+                    expected++;
+                }
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Deletes the segments that hold only records up to 'sequence', e.g. once a snapshot covers them
+    public void deleteUpTo(long sequence) throws IOException {
+        appendLock.lock();
+        try {
+            while (segments.size() > 1) {
+                Map.Entry<Long, Path> oldest = segments.firstEntry();
+                if (segments.higherKey(oldest.getKey()) > sequence + 1) {
+                    break;
+                }
+                Files.deleteIfExists(oldest.getValue());
+                segments.pollFirstEntry();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public int segmentCount() {
+        appendLock.lock();
+        try {
+            return segments.size();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            buffer.force(0, position);
+            channel.close();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Finishes the current segment (fully forced, so no sync has to look back at it) and starts the next
+    private void roll() throws IOException {
+        buffer.force(0, position);
+        syncedSequence.accumulateAndGet(lastSequence, Math::max);
+        channel.close();
+        openSegment(lastSequence + 1);
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        Path file = directory.resolve(String.format("%020d", firstSequence) + SUFFIX);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        // Mapping past the end grows the file; the new bytes read as zeros
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        channel.force(true);
+        segments.put(firstSequence, file);
+        position = 0;
+        syncedPosition = 0;
+    }
+
+    // Finds the end of the last segment; a torn record there is zeroed so it cannot be read as the end's successor
+    private void reopenLastSegment() throws IOException {
+        Map.Entry<Long, Path> last = segments.lastEntry();
+        channel = FileChannel.open(last.getValue(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentBytes, channel.size()));
+        long sequence = last.getKey();
+        int offset = 0;
+        int length;
+        while ((length = readRecord(buffer, offset, sequence)) >= 0) {
+            offset += HEADER_BYTES + length;
+            sequence++;
+        }
+        if (offset + 4 <= buffer.capacity() && buffer.getInt(offset) != 0) {
+            for (int i = offset; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+            buffer.force();
+        }
+        position = offset;
+        syncedPosition = offset;
+        lastSequence = sequence - 1;
+    }
+
+    // Payload length of the record at 'offset', or -1 if there is no valid record with that sequence there
+    private static int readRecord(ByteBuffer segment, int offset, long expectedSequence) {
+        if (offset + HEADER_BYTES > segment.capacity()) {
+            return -1;
+        }
+        int length = segment.getInt(offset);
+        if (length <= 0 || offset + HEADER_BYTES + length > segment.capacity()
+                || segment.getLong(offset + 8) != expectedSequence
+                || segment.getInt(offset + 4) != checksum(segment, offset, length)) {
+            return -1;
+        }
+        return length;
+    }
+
+    private static int checksum(ByteBuffer segment, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(segment.slice(offset + 8, 8 + length));
+        return (int) crc.getValue();
+    }
+
+    private static MappedByteBuffer map(Path file, FileChannel.MapMode mode) throws IOException {
+        try (FileChannel readChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readChannel.map(mode, 0, readChannel.size());
+        }
+    }
+
+    private static long firstSequence(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+}
@@ -0,0 +1,120 @@
+package com.dustngroh.parkinglotapi.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel: schedules items to fire at a deadline in O(1) and fires them by advancing
+ * a clock, touching only the buckets whose time has come.
+ * <p>
+ * Time is counted in ticks of {@code tickMillis}. Level 0 has one bucket per tick; every higher level has
+ * buckets {@code 2^bitsPerLevel} times wider. An item goes to the level of the highest tick bits in which its
+ * deadline differs from the current tick, and moves down a level each time the clock reaches its bucket, so
+ * each item is touched at most once per level. Items fire no earlier than their deadline and at most one
+ * tick late. Not thread-safe; callers serialize access.
+ */
+public class TimingWheel<T> {
+
+    private static final int MAX_BITS = 63;
+
+    private final long tickMillis;
+    private final int bitsPerLevel;
+    private final int mask;
+    private final List<Entry<T>>[][] levels;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int bitsPerLevel, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.bitsPerLevel = bitsPerLevel;
+        this.mask = (1 << bitsPerLevel) - 1;
+        this.levels = new List[(MAX_BITS + bitsPerLevel - 1) / bitsPerLevel][];
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    /**
+     * Schedules an item; returns false without scheduling it if the deadline is not after the current tick
+     * (the caller handles it as already due).
+     */
+    public boolean schedule(T item, long deadlineMillis) {
+        // Round up so an item never fires before its deadline
+        long deadlineTick = (deadlineMillis + tickMillis - 1) / tickMillis;
+        if (deadlineTick <= currentTick) {
+            return false;
+        }
+        place(new Entry<>(item, deadlineTick));
+        size++;
+        return true;
+    }
+
+    // Moves the clock to 'nowMillis' and hands every item due by then to 'expired'
+    public void advance(long nowMillis, Consumer<T> expired) {
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            // Cascade the higher-level buckets whose span starts at this tick, widest first
+            for (int level = levels.length - 1; level > 0; level--) {
+                long lowerBits = currentTick & ((1L << (level * bitsPerLevel)) - 1);
+                if (lowerBits == 0) {
+                    for (Entry<T> entry : take(level, currentTick)) {
+                        if (entry.deadlineTick() <= currentTick) {
+                            fire(entry, expired);
+                        } else {
+                            place(entry);
+                        }
+                    }
+                }
+            }
+            for (Entry<T> entry : take(0, currentTick)) {
+                fire(entry, expired);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void fire(Entry<T> entry, Consumer<T> expired) {
+        size--;
+        expired.accept(entry.item());
+    }
+
+    private void place(Entry<T> entry) {
+        int highestDifferingBit = 63 - Long.numberOfLeadingZeros(entry.deadlineTick() ^ currentTick);
+        int level = highestDifferingBit / bitsPerLevel;
+        int index = (int) (entry.deadlineTick() >>> (level * bitsPerLevel)) & mask;
+        if (levels[level] == null) {
+            levels[level] = newBuckets();
+        }
+        List<Entry<T>> bucket = levels[level][index];
+        if (bucket == null) {
+            bucket = new ArrayList<>();
+            levels[level][index] = bucket;
+        }
+        bucket.add(entry);
+    }
+
+    private List<Entry<T>> take(int level, long tick) {
+        if (levels[level] == null) {
+            return List.of();
+        }
+        int index = (int) (tick >>> (level * bitsPerLevel)) & mask;
+        List<Entry<T>> bucket = levels[level][index];
+        if (bucket == null) {
+            return List.of();
+        }
+        levels[level][index] = null;
+        return bucket;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Entry<T>>[] newBuckets() {
+        return new List[mask + 1];
+    }
+
+    private record Entry<T>(T item, long deadlineTick) {
+    }
+}
@@ -0,0 +1,422 @@
+package com.dustngroh.parkinglotapi.benchmark;
+
+import com.dustngroh.parkinglotapi.ParkingLotApiApplication;
+import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import com.dustngroh.parkinglotapi.entity.User;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import com.dustngroh.parkinglotapi.repository.UserRepository;
+import com.dustngroh.parkinglotapi.service.SpaceAllocator;
+import com.dustngroh.parkinglotapi.util.JwtUtil;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * End-to-end load test: starts the whole application on a random port against H2, seeds lots and users, and
+ * drives request mixes over HTTP at a constant arrival rate.
+ * <p>
+ * The load is an open model: request i is due at start + i / rate, whether or not earlier requests have been
+ * answered, so a slow server faces a growing queue as real traffic would. Latency is measured from the time a
+ * request was due rather than the time it was sent, which corrects for coordinated omission; the send-to-answer
+ * service time is reported beside it. Latencies go into HdrHistograms.
+ * <p>
+ * Scenarios, each run after a warmup at the same rate:
+ * <ul>
+ *     <li>{@code browse}: lot listings and reservation checks</li>
+ *     <li>{@code mixed}: logins, listings, checks, reservations and cancellations</li>
+ *     <li>{@code rush}: reservations and cancellations on a few lots, far more requests than spaces</li>
+ * </ul>
+ * After each scenario every lot is checked for overbooking (more reservations than spaces) and for a reserved
+ * count that differs from its reservations; the run fails on either.
+ * <p>
+ * Run with {@code mvn test -Pbenchmark -Dtest=HttpLoadBenchmark}. System properties:
+ * <ul>
+ *     <li>{@code benchmark.rate}: requests per second (default 200)</li>
+ *     <li>{@code benchmark.duration-seconds}: measured time per scenario (default 20)</li>
+ *     <li>{@code benchmark.warmup-seconds}: unmeasured time before each scenario (default 5)</li>
+ *     <li>{@code benchmark.scenarios}: comma-separated scenarios to run (default browse,mixed,rush)</li>
+ *     <li>{@code benchmark.lots}: lots to seed (default 20), with {@code benchmark.lot-spaces} spaces each
+ *     (default 25); the first {@code benchmark.hot-lots} (default 2) take the rush</li>
+ *     <li>{@code benchmark.users}: users to seed (default 400)</li>
+ *     <li>{@code benchmark.strategy}: {@code parkinglot.reservation.strategy} to test (default in-memory)</li>
+ * </ul>
+ * Results are printed and written to {@code target/benchmarks/http-load.csv}, with the full latency distribution
+ * of each scenario in {@code target/benchmarks/http-load-<scenario>.hgrm}.
+ */
+@Tag("benchmark")
+public class HttpLoadBenchmark {
+
+    private static final String PASSWORD = "benchmark-password";
+    private static final long HIGHEST_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final int rate = Integer.getInteger("benchmark.rate", 200);
+    private final int durationSeconds = Integer.getInteger("benchmark.duration-seconds", 20);
+    private final int warmupSeconds = Integer.getInteger("benchmark.warmup-seconds", 5);
+    private final String scenarios = System.getProperty("benchmark.scenarios", "browse,mixed,rush");
+    private final int lots = Integer.getInteger("benchmark.lots", 20);
+    private final int lotSpaces = Integer.getInteger("benchmark.lot-spaces", 25);
+    private final int hotLots = Integer.getInteger("benchmark.hot-lots", 2);
+    private final int users = Integer.getInteger("benchmark.users", 400);
+    private final String strategy = System.getProperty("benchmark.strategy", "in-memory");
+
+    private enum Operation { LOGIN, LIST, EXISTS, RESERVE, CANCEL }
+
+    private enum Outcome { OK, REJECTED, ERROR }
+
+    @Test
+    public void runScenarios() throws Exception {
+        List<String> rows = new ArrayList<>();
+        rows.add("scenario,operation,requests,ok,rejected,errors,error_rate,throughput_req_per_sec,"
+                + "p50_ms,p90_ms,p99_ms,p999_ms,max_ms,service_p99_ms,overbooked_lots,count_mismatches");
+        Map<String, Integer> violations = new LinkedHashMap<>();
+
+        try (ConfigurableApplicationContext context = start();
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .executor(executor)
+                     .connectTimeout(Duration.ofSeconds(30))
+                     .build()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            Target target = seed(context, "http://localhost:" + port);
+
+            for (String name : scenarios.split(",")) {
+                Scenario scenario = scenario(name.trim());
+                run(scenario, target, client, executor, warmupSeconds);
+                Stats stats = run(scenario, target, client, executor, durationSeconds);
+                // Let asynchronous count writers (e.g. the lot-queue flush) catch up before checking
+                Thread.sleep(500);
+                Check check = check(context);
+                violations.put(scenario.name(), check.overbookedLots() + check.countMismatches());
+
+                stats.rows(scenario.name(), check).forEach(rows::add);
+                writeDistribution(scenario.name(), stats.total.response);
+            }
+        }
+
+        rows.forEach(System.out::println);
+        write(rows);
+        violations.forEach((scenario, count) ->
+                assertEquals(0, count, "lots overbooked or miscounted in scenario " + scenario));
+    }
+
+    private ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(ParkingLotApiApplication.class)
+                .initializers(initialized -> initialized.getBeanFactory()
+                        .registerSingleton("excludeTestClasses", new ExcludeTestClasses()))
+                .properties(
+                        "server.port=0",
+                        "jwt.secret=benchmark-secret-benchmark-secret-benchmark-secret",
+                        "spring.datasource.url=jdbc:h2:mem:http-load-benchmark;LOCK_TIMEOUT=30000",
+                        "spring.datasource.hikari.maximum-pool-size=32",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "parkinglot.reservation.strategy=" + strategy,
+                        "logging.level.root=WARN")
+                .run();
+    }
+
+    // Lots and users go straight to the database; each user gets a token up front so only LOGIN pays for BCrypt
+    private Target seed(ConfigurableApplicationContext context, String baseUrl) {
+        List<ParkingLot> seededLots = new ArrayList<>(lots);
+        for (int i = 0; i < lots; i++) {
+            ParkingLot parkingLot = new ParkingLot();
+            parkingLot.setName("Load Lot " + i);
+            parkingLot.setAddress(i + " Benchmark Street");
+            parkingLot.setTotalSpaces(lotSpaces);
+            seededLots.add(parkingLot);
+        }
+        List<Long> lotIds = context.getBean(ParkingLotRepository.class).saveAll(seededLots).stream()
+                .map(ParkingLot::getId)
+                .toList();
+
+        String password = context.getBean(PasswordEncoder.class).encode(PASSWORD);
+        List<User> seededUsers = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            User user = new User();
+            user.setUsername("load" + i);
+            user.setPassword(password);
+            user.setRole("USER");
+            user.setFirstName("Load");
+            user.setLastName("User " + i);
+            user.setPlateNumber("LOAD" + i);
+            seededUsers.add(user);
+        }
+        JwtUtil jwtUtil = context.getBean(JwtUtil.class);
+        List<VirtualUser> virtualUsers = context.getBean(UserRepository.class).saveAll(seededUsers).stream()
+                .map(user -> new VirtualUser(user.getUsername(), "jwtToken=" + jwtUtil.generateToken(user)))
+                .toList();
+        return new Target(baseUrl, lotIds, virtualUsers);
+    }
+
+    private Scenario scenario(String name) {
+        return switch (name) {
+            case "browse" -> new Scenario(name, weights(Operation.LIST, 70, Operation.EXISTS, 30), false);
+            case "mixed" -> new Scenario(name, weights(Operation.LOGIN, 2, Operation.LIST, 40, Operation.EXISTS, 20,
+                    Operation.RESERVE, 23, Operation.CANCEL, 15), false);
+            case "rush" -> new Scenario(name, weights(Operation.RESERVE, 85, Operation.CANCEL, 15), true);
+            default -> throw new IllegalArgumentException("Unknown scenario: " + name);
+        };
+    }
+
+    // Issues requests at their due times for 'seconds', then waits for every answer
+    private Stats run(Scenario scenario, Target target, HttpClient client, ExecutorService executor, int seconds)
+            throws Exception {
+        Stats stats = new Stats();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long requests = (long) rate * seconds;
+        List<Future<?>> inFlight = new ArrayList<>((int) requests);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        long start = System.nanoTime();
+        for (long i = 0; i < requests; i++) {
+            long due = start + i * intervalNanos;
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = scenario.pick(random);
+            VirtualUser user = target.users().get(random.nextInt(target.users().size()));
+            int lotCount = scenario.hotLotsOnly() ? Math.min(hotLots, target.lotIds().size()) : target.lotIds().size();
+            Long parkingLotId = target.lotIds().get(random.nextInt(lotCount));
+            HttpRequest request = request(target.baseUrl(), operation, user, parkingLotId);
+            inFlight.add(executor.submit(() -> send(client, operation, request, due, stats)));
+        }
+        for (Future<?> future : inFlight) {
+            future.get();
+        }
+        stats.elapsedNanos = System.nanoTime() - start;
+        return stats;
+    }
+
+    private static void send(HttpClient client, Operation operation, HttpRequest request, long due, Stats stats) {
+        long sent = System.nanoTime();
+        Outcome outcome;
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            outcome = classify(operation, response);
+        } catch (IOException e) {
+            outcome = Outcome.ERROR;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            outcome = Outcome.ERROR;
+        }
+        long answered = System.nanoTime();
+        stats.record(operation, outcome, answered - due, answered - sent);
+    }
+
+    private static HttpRequest request(String baseUrl, Operation operation, VirtualUser user, Long parkingLotId) {
+        HttpRequest.Builder builder = switch (operation) {
+            case LOGIN -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/users/login"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "{\"username\":\"" + user.username() + "\",\"password\":\"" + PASSWORD + "\"}"));
+            case LIST -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/parkinglots?limit=100"))
+                    .header("Cookie", user.cookie());
+            case EXISTS -> HttpRequest.newBuilder(
+                            URI.create(baseUrl + "/api/reservations/exists?parkingLotId=" + parkingLotId))
+                    .header("Cookie", user.cookie());
+            case RESERVE -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/reservations?parkingLotId=" + parkingLotId))
+                    .header("Cookie", user.cookie())
+                    .POST(HttpRequest.BodyPublishers.noBody());
+            case CANCEL -> HttpRequest.newBuilder(
+                            URI.create(baseUrl + "/api/reservations/cancel?parkingLotId=" + parkingLotId))
+                    .header("Cookie", user.cookie())
+                    .DELETE();
+        };
+        return builder.timeout(Duration.ofSeconds(30)).build();
+    }
+
+    // A full lot, a second reservation or nothing to cancel is an expected answer, not an error
+    private static Outcome classify(Operation operation, HttpResponse<String> response) {
+        int status = response.statusCode();
+        if (status >= 200 && status < 300) {
+            return Outcome.OK;
+        }
+        String body = response.body();
+        boolean rejected = switch (operation) {
+            case RESERVE -> status == 500 && (body.contains("No available spaces")
+                    || body.contains("already has a reservation"));
+            case CANCEL -> status == 400 && body.contains("No reservation found");
+            default -> false;
+        };
+        return rejected ? Outcome.REJECTED : Outcome.ERROR;
+    }
+
+    // Compares every lot's reservations without an end with its spaces and with the count the API serves
+    private Check check(ConfigurableApplicationContext context) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        SpaceAllocator spaceAllocator = context.getBean(SpaceAllocator.class);
+        Map<Long, Integer> reservations = new HashMap<>();
+        jdbcTemplate.query("SELECT parking_lot_id, COUNT(*) FROM reservation WHERE start_time IS NULL "
+                + "GROUP BY parking_lot_id", row -> {
+            reservations.put(row.getLong(1), row.getInt(2));
+        });
+
+        int[] overbooked = {0};
+        int[] mismatched = {0};
+        jdbcTemplate.query("SELECT id, total_spaces, reserved_spaces FROM parking_lot", row -> {
+            long id = row.getLong(1);
+            int held = reservations.getOrDefault(id, 0);
+            int counted = spaceAllocator.peekReservedSpaces(id).orElse(row.getInt(3));
+            if (held > row.getInt(2)) {
+                overbooked[0]++;
+            }
+            if (held != counted) {
+                mismatched[0]++;
+            }
+        });
+        return new Check(overbooked[0], mismatched[0]);
+    }
+
+    private static void writeDistribution(String scenario, Histogram histogram) throws IOException {
+        Path output = Path.of("target", "benchmarks", "http-load-" + scenario + ".hgrm");
+        Files.createDirectories(output.getParent());
+        try (PrintStream out = new PrintStream(Files.newOutputStream(output))) {
+            histogram.outputPercentileDistribution(out, 1_000_000.0);
+        }
+    }
+
+    private void write(List<String> rows) throws IOException {
+        Path output = Path.of("target", "benchmarks", "http-load.csv");
+        Files.createDirectories(output.getParent());
+        Files.write(output, rows);
+    }
+
+    private static Map<Operation, Integer> weights(Object... operationsAndWeights) {
+        Map<Operation, Integer> weights = new LinkedHashMap<>();
+        for (int i = 0; i < operationsAndWeights.length; i += 2) {
+            weights.put((Operation) operationsAndWeights[i], (Integer) operationsAndWeights[i + 1]);
+        }
+        return weights;
+    }
+
+    // Keeps the test sources' configurations (e.g. config.TestConfig, which mocks services) out of the application
+    private static final class ExcludeTestClasses extends TypeExcludeFilter {
+
+        @Override
+        public boolean match(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory)
+                throws IOException {
+            return metadataReader.getResource().getURL().toString().contains("/test-classes/");
+        }
+    }
+
+    private record Scenario(String name, Map<Operation, Integer> weights, boolean hotLotsOnly) {
+
+        Operation pick(ThreadLocalRandom random) {
+            int total = weights.values().stream().mapToInt(Integer::intValue).sum();
+            int roll = random.nextInt(total);
+            for (Map.Entry<Operation, Integer> weight : weights.entrySet()) {
+                roll -= weight.getValue();
+                if (roll < 0) {
+                    return weight.getKey();
+                }
+            }
+            throw new IllegalStateException();
+        }
+    }
+
+    private record Target(String baseUrl, List<Long> lotIds, List<VirtualUser> users) {
+    }
+
+    private record VirtualUser(String username, String cookie) {
+    }
+
+    private record Check(int overbookedLots, int countMismatches) {
+    }
+
+    private static final class Stats {
+
+        private final OperationStats total = new OperationStats();
+        private final Map<Operation, OperationStats> perOperation = new LinkedHashMap<>();
+        private long elapsedNanos;
+
+        private Stats() {
+            for (Operation operation : Operation.values()) {
+                perOperation.put(operation, new OperationStats());
+            }
+        }
+
+        void record(Operation operation, Outcome outcome, long responseNanos, long serviceNanos) {
+            total.record(outcome, responseNanos, serviceNanos);
+            perOperation.get(operation).record(outcome, responseNanos, serviceNanos);
+        }
+
+        List<String> rows(String scenario, Check check) {
+            List<String> rows = new ArrayList<>();
+            rows.add(total.row(scenario, "all", elapsedNanos) + "," + check.overbookedLots() + ","
+                    + check.countMismatches());
+            perOperation.forEach((operation, stats) -> {
+                if (stats.response.getTotalCount() > 0) {
+                    rows.add(stats.row(scenario, operation.name().toLowerCase(), elapsedNanos) + ",,");
+                }
+            });
+            return rows;
+        }
+    }
+
+    private static final class OperationStats {
+
+        private final Histogram response = new ConcurrentHistogram(HIGHEST_LATENCY_NANOS, 3);
+        private final Histogram service = new ConcurrentHistogram(HIGHEST_LATENCY_NANOS, 3);
+        private final Map<Outcome, LongAdder> outcomes = new LinkedHashMap<>();
+
+        private OperationStats() {
+            for (Outcome outcome : Outcome.values()) {
+                outcomes.put(outcome, new LongAdder());
+            }
+        }
+
+        void record(Outcome outcome, long responseNanos, long serviceNanos) {
+            response.recordValue(Math.min(responseNanos, HIGHEST_LATENCY_NANOS));
+            service.recordValue(Math.min(serviceNanos, HIGHEST_LATENCY_NANOS));
+            outcomes.get(outcome).increment();
+        }
+
+        String row(String scenario, String operation, long elapsedNanos) {
+            long requests = response.getTotalCount();
+            long errors = outcomes.get(Outcome.ERROR).sum();
+            return String.format("%s,%s,%d,%d,%d,%d,%.4f,%.0f,%.2f,%.2f,%.2f,%.2f,%.2f,%.2f", scenario, operation,
+                    requests, outcomes.get(Outcome.OK).sum(), outcomes.get(Outcome.REJECTED).sum(), errors,
+                    (double) errors / requests, requests / (elapsedNanos / 1_000_000_000.0),
+                    millis(response, 50), millis(response, 90), millis(response, 99), millis(response, 99.9),
+                    response.getMaxValue() / 1_000_000.0, millis(service, 99));
+        }
+
+        private static double millis(Histogram histogram, double percentile) {
+            return histogram.getValueAtPercentile(percentile) / 1_000_000.0;
+        }
+    }
+}
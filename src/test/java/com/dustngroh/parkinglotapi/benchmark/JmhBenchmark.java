@@ -0,0 +1,70 @@
+package com.dustngroh.parkinglotapi.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the JMH microbenchmarks in the {@code jmh} package once per thread count.
+ * <p>
+ * Run with {@code mvn test -Pbenchmark -Dtest=JmhBenchmark}. Results for every thread count are
+ * written together to {@code target/benchmarks/jmh-results.json} (JMH's JSON format), which can be
+ * kept per commit and compared. System properties:
+ * <ul>
+ *     <li>{@code jmh.include}: regex of benchmarks to run (default: all)</li>
+ *     <li>{@code jmh.threads}: comma-separated thread counts (default {@code 1,8,32})</li>
+ *     <li>{@code jmh.forks}, {@code jmh.iterations}, {@code jmh.iteration-seconds}: run length</li>
+ * </ul>
+ */
+@Tag("benchmark")
+public class JmhBenchmark {
+
+    @Test
+    public void runJmhBenchmarks() throws Exception {
+        String include = System.getProperty("jmh.include", getClass().getPackageName() + ".jmh.");
+        int forks = Integer.getInteger("jmh.forks", 1);
+        int iterations = Integer.getInteger("jmh.iterations", 3);
+        TimeValue iterationTime = TimeValue.seconds(Integer.getInteger("jmh.iteration-seconds", 1));
+
+        List<RunResult> results = new ArrayList<>();
+        for (int threads : threadCounts()) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .forks(forks)
+                    .warmupIterations(iterations)
+                    .warmupTime(iterationTime)
+                    .measurementIterations(iterations)
+                    .measurementTime(iterationTime)
+                    .shouldFailOnError(true)
+                    .build();
+            results.addAll(new Runner(options).run());
+        }
+
+        Path output = Path.of("target", "benchmarks", "jmh-results.json");
+        Files.createDirectories(output.getParent());
+        try (PrintStream out = new PrintStream(Files.newOutputStream(output))) {
+            ResultFormatFactory.getInstance(ResultFormatType.JSON, out).writeOut(results);
+        }
+    }
+
+    private static int[] threadCounts() {
+        return Arrays.stream(System.getProperty("jmh.threads", "1,8,32").split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray();
+    }
+}
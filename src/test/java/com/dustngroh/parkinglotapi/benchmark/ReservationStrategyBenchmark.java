@@ -0,0 +1,158 @@
+package com.dustngroh.parkinglotapi.benchmark;
+
+import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import com.dustngroh.parkinglotapi.service.AvailabilityEngine;
+import com.dustngroh.parkinglotapi.service.LotQueueSpaceAllocation;
+import com.dustngroh.parkinglotapi.service.SpaceAllocationStrategy;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the reservation strategies against an in-memory H2 database.
+ * Every strategy gets a lot with room for half of the attempts, so both the admit and the reject
+ * paths are measured, and the run fails if any strategy admits more than the lot's capacity.
+ * <p>
+ * Run with {@code mvn test -Pbenchmark}. Results are printed and written to
+ * {@code target/benchmarks/reservation-strategies.csv}.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "jwt.secret=benchmark-secret-benchmark-secret-benchmark-secret",
+        "spring.datasource.url=jdbc:h2:mem:strategy-benchmark;LOCK_TIMEOUT=30000",
+        "spring.datasource.hikari.maximum-pool-size=32",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+public class ReservationStrategyBenchmark {
+
+    private static final int[] THREAD_COUNTS = {1, 8, 32, 64};
+    private static final int ATTEMPTS_PER_THREAD = 200;
+    private static final int WARMUP_ATTEMPTS = 2_000;
+
+    @Autowired
+    private List<SpaceAllocationStrategy> strategies;
+
+    @Autowired
+    private AvailabilityEngine availabilityEngine;
+
+    @Autowired
+    private LotQueueSpaceAllocation lotQueueSpaceAllocation;
+
+    @Autowired
+    private ParkingLotRepository parkingLotRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void compareStrategies() throws Exception {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        List<String> rows = new ArrayList<>();
+        rows.add("strategy,threads,attempts,admitted,throughput_ops_per_sec,p50_us,p99_us");
+
+        for (SpaceAllocationStrategy strategy : strategies) {
+            run(strategy, transactionTemplate, 4, WARMUP_ATTEMPTS / 4);
+            for (int threads : THREAD_COUNTS) {
+                Result result = run(strategy, transactionTemplate, threads, ATTEMPTS_PER_THREAD);
+                rows.add(String.format("%s,%d,%d,%d,%.0f,%d,%d", strategy.getName(), threads, result.attempts,
+                        result.admitted, result.throughput(), result.percentileMicros(50), result.percentileMicros(99)));
+            }
+        }
+
+        rows.forEach(System.out::println);
+        write(rows);
+    }
+
+    private Result run(SpaceAllocationStrategy strategy, TransactionTemplate transactionTemplate,
+                       int threads, int attemptsPerThread) throws Exception {
+        int attempts = threads * attemptsPerThread;
+        int capacity = attempts / 2;
+        Long parkingLotId = createLot(strategy.getName() + "-" + threads + "-" + System.nanoTime(), capacity);
+
+        long[] latencies = new long[attempts];
+        AtomicInteger admitted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            int offset = t * attemptsPerThread;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < attemptsPerThread; i++) {
+                    long began = System.nanoTime();
+                    OptionalInt reserved = transactionTemplate.execute(status -> strategy.tryReserve(parkingLotId, 1));
+                    latencies[offset + i] = System.nanoTime() - began;
+                    if (reserved != null && reserved.isPresent()) {
+                        admitted.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long began = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - began;
+        executor.shutdown();
+
+        availabilityEngine.flush();
+        lotQueueSpaceAllocation.flush();
+        int stored = parkingLotRepository.findReservedSpacesById(parkingLotId).orElseThrow();
+        assertEquals(capacity, admitted.get(), strategy.getName() + " admitted the wrong number of reservations");
+        assertEquals(capacity, stored, strategy.getName() + " stored the wrong reserved count");
+
+        return new Result(attempts, admitted.get(), elapsed, latencies);
+    }
+
+    private Long createLot(String name, int capacity) {
+        ParkingLot parkingLot = new ParkingLot();
+        parkingLot.setName(name);
+        parkingLot.setAddress("Benchmark");
+        parkingLot.setTotalSpaces(capacity);
+        parkingLot.setReservedSpaces(0);
+        return parkingLotRepository.save(parkingLot).getId();
+    }
+
+    private void write(List<String> rows) throws IOException {
+        Path output = Path.of("target", "benchmarks", "reservation-strategies.csv");
+        Files.createDirectories(output.getParent());
+        Files.write(output, rows);
+    }
+
+    private record Result(int attempts, int admitted, long elapsedNanos, long[] latencies) {
+
+        double throughput() {
+            return attempts / (elapsedNanos / 1_000_000_000.0);
+        }
+
+        long percentileMicros(int percentile) {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            int index = Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * percentile / 100.0) - 1);
+            return sorted[Math.max(index, 0)] / 1_000;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.dustngroh.parkinglotapi.benchmark;
+
+import com.dustngroh.parkinglotapi.ParkingLotApiApplication;
+import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import com.dustngroh.parkinglotapi.filter.AuthenticatedUser;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import com.dustngroh.parkinglotapi.util.JwtUtil;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compares request throughput with Tomcat on its default platform-thread pool (200 threads) and on
+ * virtual threads ({@code spring.threads.virtual.enabled=true}) while many keep-alive connections are open.
+ * <p>
+ * Each mode starts the application on a random port against H2 and requests {@code GET /api/parkinglots/{id}}
+ * from one virtual client thread per connection. H2 in memory answers in microseconds, so every JDBC
+ * connection checkout is delayed by {@code benchmark.db-latency-ms} to stand in for a database across the
+ * network, and the pool is sized above Tomcat's thread limit so the modes differ only in threads.
+ * <p>
+ * Run with {@code mvn test -Pbenchmark -Dtest=VirtualThreadBenchmark}. Client and server sockets share this
+ * process, so the open-file limit must exceed twice the connection count. System properties:
+ * <ul>
+ *     <li>{@code benchmark.connections}: concurrent connections (default 10000)</li>
+ *     <li>{@code benchmark.requests-per-connection}: sequential requests on each (default 5)</li>
+ *     <li>{@code benchmark.db-latency-ms}: added to each connection checkout (default 5)</li>
+ *     <li>{@code benchmark.pool-size}: JDBC pool size (default 500)</li>
+ * </ul>
+ * Results are printed and written to {@code target/benchmarks/virtual-threads.csv}.
+ */
+@Tag("benchmark")
+public class VirtualThreadBenchmark {
+
+    private final int connections = Integer.getInteger("benchmark.connections", 10_000);
+    private final int requestsPerConnection = Integer.getInteger("benchmark.requests-per-connection", 5);
+    private final int dbLatencyMillis = Integer.getInteger("benchmark.db-latency-ms", 5);
+    private final int poolSize = Integer.getInteger("benchmark.pool-size", 500);
+
+    @Test
+    public void comparePlatformAndVirtualThreads() throws Exception {
+        List<String> rows = new ArrayList<>();
+        rows.add("mode,connections,requests,errors,throughput_req_per_sec,p50_ms,p99_ms,max_ms");
+
+        for (boolean virtualThreads : new boolean[]{false, true}) {
+            try (ConfigurableApplicationContext context = start(virtualThreads)) {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                Long parkingLotId = createLot(context);
+                URI uri = URI.create("http://localhost:" + port + "/api/parkinglots/" + parkingLotId);
+
+                run(uri, Math.min(connections, 500), 2);
+                Result result = run(uri, connections, requestsPerConnection);
+                rows.add(String.format("%s,%d,%d,%d,%.0f,%d,%d,%d", virtualThreads ? "virtual" : "platform",
+                        connections, result.latencies.length, result.errors, result.throughput(),
+                        result.percentileMillis(50), result.percentileMillis(99), result.percentileMillis(100)));
+                assertEquals(0, result.errors, "requests failed with " + (virtualThreads ? "virtual" : "platform")
+                        + " threads");
+            }
+        }
+
+        rows.forEach(System.out::println);
+        write(rows);
+    }
+
+    private ConfigurableApplicationContext start(boolean virtualThreads) {
+        String mode = virtualThreads ? "virtual" : "platform";
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(ParkingLotApiApplication.class)
+                .initializers(initialized -> initialized.getBeanFactory().addBeanPostProcessor(new SlowConnections()))
+                .properties(
+                        "server.port=0",
+                        "jwt.secret=benchmark-secret-benchmark-secret-benchmark-secret",
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "spring.datasource.url=jdbc:h2:mem:threads-benchmark-" + mode,
+                        "spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                        "spring.datasource.hikari.connection-timeout=120000",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "server.tomcat.max-connections=" + (connections + 1_000),
+                        "server.tomcat.accept-count=" + connections,
+                        "logging.level.root=WARN")
+                .run();
+
+        // TestConfig replaces JwtUtil with a mock; have it accept the benchmark's cookie
+        JwtUtil jwtUtil = context.getBean(JwtUtil.class);
+        when(jwtUtil.getAuthenticatedUser(any())).thenReturn(new AuthenticatedUser(1L, "benchmark", "USER"));
+        return context;
+    }
+
+    private Long createLot(ConfigurableApplicationContext context) {
+        ParkingLot parkingLot = new ParkingLot();
+        parkingLot.setName("Benchmark Lot");
+        parkingLot.setAddress("Benchmark");
+        parkingLot.setTotalSpaces(100);
+        return context.getBean(ParkingLotRepository.class).save(parkingLot).getId();
+    }
+
+    private Result run(URI uri, int clients, int requestsPerClient) throws Exception {
+        long[] latencies = new long[clients * requestsPerClient];
+        AtomicInteger errors = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>(clients);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .executor(executor)
+                     .connectTimeout(Duration.ofMinutes(2))
+                     .build()) {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .header("Cookie", "jwtToken=benchmark")
+                    .timeout(Duration.ofMinutes(2))
+                    .build();
+
+            for (int c = 0; c < clients; c++) {
+                int offset = c * requestsPerClient;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < requestsPerClient; i++) {
+                        long began = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[offset + i] = System.nanoTime() - began;
+                    }
+                    return null;
+                }));
+            }
+
+            long began = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return new Result(errors.get(), System.nanoTime() - began, latencies);
+        }
+    }
+
+    private void write(List<String> rows) throws IOException {
+        Path output = Path.of("target", "benchmarks", "virtual-threads.csv");
+        Files.createDirectories(output.getParent());
+        Files.write(output, rows);
+    }
+
+    // Holds each checked-out connection for the configured latency before handing it over
+    private final class SlowConnections implements BeanPostProcessor {
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource dataSource) || bean instanceof DelegatingDataSource) {
+                return bean;
+            }
+            return new DelegatingDataSource(dataSource) {
+                @Override
+                public Connection getConnection() throws SQLException {
+                    Connection connection = super.getConnection();
+                    try {
+                        Thread.sleep(dbLatencyMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return connection;
+                }
+            };
+        }
+    }
+
+    private record Result(int errors, long elapsedNanos, long[] latencies) {
+
+        double throughput() {
+            return latencies.length / (elapsedNanos / 1_000_000_000.0);
+        }
+
+        long percentileMillis(int percentile) {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            int index = Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * percentile / 100.0) - 1);
+            return sorted[Math.max(index, 0)] / 1_000_000;
+        }
+    }
+}
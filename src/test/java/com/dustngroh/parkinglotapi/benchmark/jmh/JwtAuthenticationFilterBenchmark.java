@@ -0,0 +1,53 @@
+package com.dustngroh.parkinglotapi.benchmark.jmh;
+
+import com.dustngroh.parkinglotapi.filter.JwtAuthenticationFilter;
+import jakarta.servlet.http.Cookie;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One authenticated request through {@link JwtAuthenticationFilter}: cookie lookup, token validation,
+ * security context and request attributes. Building the mock request is part of the measured cost.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class JwtAuthenticationFilterBenchmark {
+
+    @Param({"1", "10000"})
+    int distinctTokens;
+
+    JwtAuthenticationFilter filter;
+    String[] tokens;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup
+    public void setUp() {
+        var jwtUtil = JwtFixtures.jwtUtil(100_000);
+        filter = new JwtAuthenticationFilter(jwtUtil);
+        tokens = JwtFixtures.tokens(jwtUtil, distinctTokens);
+    }
+
+    @Benchmark
+    public Object authenticate(Cursor cursor) throws Exception {
+        cursor.next = cursor.next + 1 == distinctTokens ? 0 : cursor.next + 1;
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/parkinglots");
+        request.setCookies(new Cookie("jwtToken", tokens[cursor.next]));
+        try {
+            filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+            return request.getAttribute("username");
+        } finally {
+            // The context is thread-bound; a leftover authentication would make the filter skip its work
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.dustngroh.parkinglotapi.benchmark.jmh;
+
+import com.dustngroh.parkinglotapi.entity.User;
+import com.dustngroh.parkinglotapi.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issue and validation. {@code distinctTokens} is the number of users whose tokens are in
+ * rotation; {@code cacheMaxSize} 0 disables the verified-claims cache so every call pays for the
+ * signature check.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Issuer {
+        JwtUtil jwtUtil;
+        User user;
+
+        @Setup
+        public void setUp() {
+            jwtUtil = JwtFixtures.jwtUtil(0);
+            user = JwtFixtures.user(1);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Validator {
+        @Param({"1", "10000"})
+        int distinctTokens;
+
+        @Param({"0", "100000"})
+        long cacheMaxSize;
+
+        JwtUtil jwtUtil;
+        String[] tokens;
+
+        @Setup
+        public void setUp() {
+            jwtUtil = JwtFixtures.jwtUtil(cacheMaxSize);
+            tokens = JwtFixtures.tokens(jwtUtil, distinctTokens);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        int next(int bound) {
+            next = next + 1 == bound ? 0 : next + 1;
+            return next;
+        }
+    }
+
+    @Benchmark
+    public String generateToken(Issuer issuer) {
+        return issuer.jwtUtil.generateToken(issuer.user);
+    }
+
+    @Benchmark
+    public Claims validateToken(Validator validator, Cursor cursor) {
+        return validator.jwtUtil.validateToken(validator.tokens[cursor.next(validator.distinctTokens)]);
+    }
+}
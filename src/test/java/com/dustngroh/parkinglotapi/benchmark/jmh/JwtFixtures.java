@@ -0,0 +1,36 @@
+package com.dustngroh.parkinglotapi.benchmark.jmh;
+
+import com.dustngroh.parkinglotapi.entity.User;
+import com.dustngroh.parkinglotapi.util.JwtUtil;
+import org.springframework.test.util.ReflectionTestUtils;
+
+final class JwtFixtures {
+
+    private JwtFixtures() {
+    }
+
+    // A JwtUtil configured the way Spring would, without starting a context
+    static JwtUtil jwtUtil(long cacheMaxSize) {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "SECRET_KEY", "benchmark-secret-benchmark-secret-benchmark-secret");
+        ReflectionTestUtils.setField(jwtUtil, "cacheMaxSize", cacheMaxSize);
+        ReflectionTestUtils.invokeMethod(jwtUtil, "init");
+        return jwtUtil;
+    }
+
+    static User user(long id) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername("user" + id);
+        user.setRole("USER");
+        return user;
+    }
+
+    static String[] tokens(JwtUtil jwtUtil, int count) {
+        String[] tokens = new String[count];
+        for (int i = 0; i < count; i++) {
+            tokens[i] = jwtUtil.generateToken(user(i + 1));
+        }
+        return tokens;
+    }
+}
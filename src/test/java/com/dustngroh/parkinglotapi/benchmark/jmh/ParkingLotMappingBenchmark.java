@@ -0,0 +1,51 @@
+package com.dustngroh.parkinglotapi.benchmark.jmh;
+
+import com.dustngroh.parkinglotapi.dto.ParkingLotDTO;
+import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity-to-{@link ParkingLotDTO} mapping, alone and followed by JSON serialization, for lists of
+ * {@code lots} parking lots.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ParkingLotMappingBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    int lots;
+
+    List<ParkingLot> parkingLots;
+    ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        parkingLots = new ArrayList<>(lots);
+        for (int i = 1; i <= lots; i++) {
+            ParkingLot parkingLot = new ParkingLot();
+            parkingLot.setId((long) i);
+            parkingLot.setName("Lot " + i);
+            parkingLot.setAddress(i + " Main Street");
+            parkingLot.setTotalSpaces(100);
+            parkingLot.setReservedSpaces(i % 100);
+            parkingLots.add(parkingLot);
+        }
+    }
+
+    @Benchmark
+    public List<ParkingLotDTO> toDtos() {
+        return parkingLots.stream().map(ParkingLotDTO::new).toList();
+    }
+
+    @Benchmark
+    public byte[] toJson() throws Exception {
+        return objectMapper.writeValueAsBytes(toDtos());
+    }
+}
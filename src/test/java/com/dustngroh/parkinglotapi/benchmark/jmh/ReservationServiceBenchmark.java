@@ -0,0 +1,130 @@
+package com.dustngroh.parkinglotapi.benchmark.jmh;
+
+import com.dustngroh.parkinglotapi.ParkingLotApiApplication;
+import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import com.dustngroh.parkinglotapi.entity.Reservation;
+import com.dustngroh.parkinglotapi.entity.User;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import com.dustngroh.parkinglotapi.repository.ReservationRepository;
+import com.dustngroh.parkinglotapi.repository.UserRepository;
+import com.dustngroh.parkinglotapi.service.ReservationService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A reservation created and cancelled again through {@link ReservationService}, against an in-memory
+ * H2 database that already holds {@code existingReservations} rows. The round trip keeps the dataset
+ * the same size for the whole run. Each benchmark thread reserves as its own user.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReservationServiceBenchmark {
+
+    private static final int LOTS = 100;
+    private static final int MAX_THREADS = 256;
+
+    @State(Scope.Benchmark)
+    public static class Application {
+        @Param({"0", "10000"})
+        int existingReservations;
+
+        @Param({"in-memory", "conditional-update", "lot-queue"})
+        String strategy;
+
+        ConfigurableApplicationContext context;
+        ReservationService reservationService;
+        Long[] parkingLotIds;
+        List<User> workers;
+        final AtomicInteger nextWorker = new AtomicInteger();
+
+        @Setup
+        public void setUp() {
+            context = new SpringApplicationBuilder(ParkingLotApiApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .logStartupInfo(false)
+                    .properties(
+                            "jwt.secret=benchmark-secret-benchmark-secret-benchmark-secret",
+                            "spring.main.banner-mode=off",
+                            "logging.level.root=WARN",
+                            "spring.datasource.url=jdbc:h2:mem:jmh-reservations;LOCK_TIMEOUT=30000;DB_CLOSE_ON_EXIT=FALSE",
+                            "spring.datasource.hikari.maximum-pool-size=64",
+                            "spring.jpa.hibernate.ddl-auto=create-drop",
+                            "parkinglot.reservation.strategy=" + strategy)
+                    .run();
+            reservationService = context.getBean(ReservationService.class);
+            seed(context.getBean(ParkingLotRepository.class), context.getBean(UserRepository.class),
+                    context.getBean(ReservationRepository.class));
+        }
+
+        @TearDown
+        public void tearDown() {
+            context.close();
+        }
+
+        private void seed(ParkingLotRepository parkingLotRepository, UserRepository userRepository,
+                          ReservationRepository reservationRepository) {
+            List<ParkingLot> lots = new ArrayList<>();
+            for (int i = 0; i < LOTS; i++) {
+                ParkingLot parkingLot = new ParkingLot();
+                parkingLot.setName("Lot " + i);
+                parkingLot.setTotalSpaces(1_000_000);
+                lots.add(parkingLot);
+            }
+            lots = parkingLotRepository.saveAll(lots);
+            parkingLotIds = lots.stream().map(ParkingLot::getId).toArray(Long[]::new);
+
+            workers = userRepository.saveAll(users("worker", MAX_THREADS));
+
+            // Background rows: each filler user holds one reservation in every lot
+            List<User> fillers = userRepository.saveAll(users("filler", (existingReservations + LOTS - 1) / LOTS));
+            List<Reservation> reservations = new ArrayList<>();
+            for (int i = 0; i < existingReservations; i++) {
+                Reservation reservation = new Reservation();
+                reservation.setUser(fillers.get(i / LOTS));
+                reservation.setParkingLot(lots.get(i % LOTS));
+                reservations.add(reservation);
+            }
+            reservationRepository.saveAll(reservations);
+        }
+
+        private static List<User> users(String prefix, int count) {
+            List<User> users = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                User user = new User();
+                user.setUsername(prefix + i);
+                user.setPassword("benchmark");
+                user.setRole("USER");
+                user.setFirstName("Bench");
+                user.setLastName("Mark");
+                user.setPlateNumber(prefix.toUpperCase() + i);
+                users.add(user);
+            }
+            return users;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Worker {
+        User user;
+
+        @Setup
+        public void setUp(Application application) {
+            user = application.workers.get(application.nextWorker.getAndIncrement() % MAX_THREADS);
+        }
+    }
+
+    @Benchmark
+    public boolean reserveAndCancel(Application application, Worker worker) {
+        Long parkingLotId = application.parkingLotIds[ThreadLocalRandom.current().nextInt(LOTS)];
+        application.reservationService.createReservation(worker.user.getId(), parkingLotId);
+        return application.reservationService.cancelReservation(worker.user.getUsername(), parkingLotId);
+    }
+}
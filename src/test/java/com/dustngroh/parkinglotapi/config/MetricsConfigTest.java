@@ -0,0 +1,62 @@
+package com.dustngroh.parkinglotapi.config;
+
+import com.dustngroh.parkinglotapi.filter.AuthenticatedUser;
+import com.dustngroh.parkinglotapi.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.aop.CountedAspect;
+import io.micrometer.core.aop.TimedAspect;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "jwt.secret=metrics-test-secret-metrics-test-secret-1234")
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+public class MetricsConfigTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private TimedAspect timedAspect;
+
+    @Autowired
+    private CountedAspect countedAspect;
+
+    // The @Timed/@Counted behaviour itself is covered in ReservationServiceTest; TestConfig mocks the services here
+    @Test
+    public void testPrometheusEndpointExposesRequestMetrics() throws Exception {
+        assertNotNull(timedAspect);
+        assertNotNull(countedAspect);
+        mockMvc.perform(get("/api/parkinglots"));
+
+        // Only an admin may scrape
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/actuator/prometheus").with(user("user").roles("USER")))
+                .andExpect(status().isForbidden());
+        // As the README's scrape config sends it: an admin's token in the Authorization header
+        Claims claims = mock(Claims.class);
+        when(jwtUtil.validateToken("scrape-token")).thenReturn(claims);
+        when(jwtUtil.getAuthenticatedUser(claims)).thenReturn(new AuthenticatedUser(1L, "prometheus", "ADMIN"));
+        mockMvc.perform(get("/actuator/prometheus").header(HttpHeaders.AUTHORIZATION, "Bearer scrape-token"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("http_server_requests_sql_statements_bucket")));
+    }
+}
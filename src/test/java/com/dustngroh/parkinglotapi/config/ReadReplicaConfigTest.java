@@ -0,0 +1,54 @@
+package com.dustngroh.parkinglotapi.config;
+
+import com.dustngroh.parkinglotapi.dto.ParkingLotDTO;
+import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import com.dustngroh.parkinglotapi.service.ParkingLotService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Two embedded H2 databases standing in for a primary and a replica that never catches up
+@SpringBootTest(properties = {
+        "jwt.secret=replica-test-secret-replica-test-secret-1234",
+        "spring.datasource.url=jdbc:h2:mem:replica-test-primary;DB_CLOSE_DELAY=-1",
+        "parkinglot.datasource.replica-urls=" + ReadReplicaConfigTest.REPLICA_URL
+})
+public class ReadReplicaConfigTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica-test-replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private HikariDataSource primaryDataSource;
+
+    @Autowired
+    private ParkingLotService parkingLotService;
+
+    @Autowired
+    private ParkingLotRepository parkingLotRepository;
+
+    @Test
+    public void testServiceReadsGoToReplicaAndWritesToPrimary() {
+        // Give the replica the schema Hibernate created on the primary, without any rows
+        JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+        for (String statement : new JdbcTemplate(primaryDataSource).queryForList("SCRIPT NODATA", String.class)) {
+            if (!statement.startsWith("CREATE USER")) {
+                replica.execute(statement);
+            }
+        }
+
+        ParkingLot created = parkingLotService.createParkingLot(
+                new ParkingLotDTO(null, "Replica Lot", "1 Main Street", 10, 0));
+
+        // The lot has not reached the replica yet, but repository calls and writes stay on the primary
+        assertTrue(parkingLotService.getParkingLotById(created.getId()).isEmpty());
+        assertTrue(parkingLotRepository.findById(created.getId()).isPresent());
+        assertEquals(1, parkingLotService.incrementReservedSpaces(created.getId()).getReservedSpaces());
+    }
+}
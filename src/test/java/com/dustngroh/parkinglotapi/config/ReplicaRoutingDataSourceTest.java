@@ -0,0 +1,122 @@
+package com.dustngroh.parkinglotapi.config;
+
+import com.dustngroh.parkinglotapi.filter.AuthenticatedUser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ReplicaRoutingDataSourceTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+
+    @BeforeEach
+    public void setUp() {
+        // Three embedded databases, each answering with its own name
+        DataSource primary = database("primary");
+        DataSource replica1 = database("replica1");
+        DataSource replica2 = database("replica2");
+        ReadYourWritesWindow window = new ReadYourWritesWindow(Duration.ofSeconds(5), nanos::get);
+        DataSource dataSource = new LazyConnectionDataSourceProxy(
+                new ReplicaRoutingDataSource(primary, List.of(replica1, replica2), window));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testReadOnlyTransactionsGoToReplicasInTurn() {
+        assertEquals("replica1", read("com.example.LotService.list"));
+        assertEquals("replica2", read("com.example.LotService.list"));
+        assertEquals("replica1", read("com.example.LotService.list"));
+    }
+
+    @Test
+    public void testWritesAndRepositoryDefaultsStayOnPrimary() {
+        assertEquals("primary", write());
+        assertEquals("primary", jdbcTemplate.queryForObject("SELECT name FROM source", String.class));
+        assertEquals("primary",
+                read("org.springframework.data.jpa.repository.support.SimpleJpaRepository.findById"));
+    }
+
+    @Test
+    public void testUserReadsTheirOwnWritesFromPrimary() {
+        authenticate("alice");
+        assertEquals("replica1", read("com.example.ReservationService.list"));
+        write();
+        assertEquals("primary", read("com.example.ReservationService.list"));
+
+        // Other users are not pinned
+        authenticate("bob");
+        assertEquals("replica2", read("com.example.ReservationService.list"));
+
+        // The window closes
+        authenticate("alice");
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        assertEquals("replica1", read("com.example.ReservationService.list"));
+    }
+
+    @Test
+    public void testRolledBackWriteDoesNotPin() {
+        authenticate("alice");
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.queryForObject("SELECT name FROM source", String.class);
+            status.setRollbackOnly();
+        });
+
+        assertEquals("replica1", read("com.example.ReservationService.list"));
+    }
+
+    private String read(String transactionName) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.setName(transactionName);
+        return transactionTemplate.execute(status -> jdbcTemplate.queryForObject("SELECT name FROM source",
+                String.class));
+    }
+
+    private String write() {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            jdbcTemplate.update("UPDATE source SET writes = writes + 1");
+            return jdbcTemplate.queryForObject("SELECT name FROM source", String.class);
+        });
+    }
+
+    private static void authenticate(String username) {
+        AuthenticatedUser user = new AuthenticatedUser(1L, username, "USER");
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, List.of()));
+    }
+
+    private static DataSource database(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS source");
+        jdbcTemplate.execute("CREATE TABLE source (name VARCHAR(20), writes INT)");
+        jdbcTemplate.update("INSERT INTO source VALUES (?, 0)", name);
+        return dataSource;
+    }
+}
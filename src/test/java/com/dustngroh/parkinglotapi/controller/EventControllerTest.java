@@ -0,0 +1,103 @@
+package com.dustngroh.parkinglotapi.controller;
+
+import com.dustngroh.parkinglotapi.dto.ReservationFeedEvent;
+import com.dustngroh.parkinglotapi.entity.ReservationEvent;
+import com.dustngroh.parkinglotapi.service.ReservationEventService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+public class EventControllerTest {
+
+    @Mock
+    private ReservationEventService reservationEventService;
+
+    @InjectMocks
+    private EventController eventController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(eventController).build();
+    }
+
+    @Test
+    public void testReturnsEventsAndTheNextPosition() throws Exception {
+        when(reservationEventService.getLastPosition()).thenReturn(7L);
+        when(reservationEventService.isRetained(5L)).thenReturn(true);
+        when(reservationEventService.poll(5L, 100, 25_000)).thenReturn(CompletableFuture.completedFuture(List.of(
+                new ReservationFeedEvent(6L, ReservationEvent.CREATED, 10L, 7L, 1L, LocalDateTime.now()),
+                new ReservationFeedEvent(7L, ReservationEvent.CANCELLED, 10L, 7L, 1L, LocalDateTime.now()))));
+
+        // The wait is capped at 25 seconds
+        MvcResult result = mockMvc.perform(get("/api/events").param("after", "5").param("waitSeconds", "60"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.events.length()").value(2))
+                .andExpect(jsonPath("$.events[1].type").value("CANCELLED"))
+                .andExpect(jsonPath("$.next").value(7));
+    }
+
+    @Test
+    public void testEmptyPageKeepsThePosition() throws Exception {
+        when(reservationEventService.getLastPosition()).thenReturn(9L);
+        when(reservationEventService.isRetained(9L)).thenReturn(true);
+        when(reservationEventService.poll(9L, 10, 0)).thenReturn(CompletableFuture.completedFuture(List.of()));
+
+        MvcResult result = mockMvc.perform(get("/api/events").param("after", "9").param("limit", "10"))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.events.length()").value(0))
+                .andExpect(jsonPath("$.next").value(9));
+    }
+
+    @Test
+    public void testPurgedPositionIsGone() throws Exception {
+        when(reservationEventService.getLastPosition()).thenReturn(9L);
+        when(reservationEventService.isRetained(1L)).thenReturn(false);
+
+        MvcResult result = mockMvc.perform(get("/api/events").param("after", "1")).andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isGone());
+        verify(reservationEventService, never()).poll(anyLong(), anyInt(), anyLong());
+    }
+
+    @Test
+    public void testPositionPastTheEndIsRejected() throws Exception {
+        when(reservationEventService.getLastPosition()).thenReturn(9L);
+
+        MvcResult result = mockMvc.perform(get("/api/events").param("after", "10").param("waitSeconds", "5"))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest());
+        verify(reservationEventService, never()).poll(anyLong(), anyInt(), anyLong());
+    }
+}
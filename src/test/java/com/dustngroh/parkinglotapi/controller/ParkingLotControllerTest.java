@@ -1,7 +1,21 @@
 package com.dustngroh.parkinglotapi.controller;
 
+import com.dustngroh.parkinglotapi.dto.NearbyParkingLot;
+import com.dustngroh.parkinglotapi.dto.ParkingLotDTO;
+import com.dustngroh.parkinglotapi.dto.ParkingLotImportResult;
+import com.dustngroh.parkinglotapi.dto.ParkingLotMatch;
+import com.dustngroh.parkinglotapi.dto.UtilizationBucket;
 import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import com.dustngroh.parkinglotapi.service.AvailabilityStreamService;
+import com.dustngroh.parkinglotapi.service.NearbyLotIndex;
+import com.dustngroh.parkinglotapi.service.OccupancyTimeSeries;
+import com.dustngroh.parkinglotapi.service.ParkingLotImportService;
+import com.dustngroh.parkinglotapi.service.ParkingLotSearchIndex;
 import com.dustngroh.parkinglotapi.service.ParkingLotService;
+import com.dustngroh.parkinglotapi.service.ParkingLotSnapshot;
+import com.dustngroh.parkinglotapi.service.ParkingLotSnapshotService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.dustngroh.parkinglotapi.util.PageCursor;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,10 +26,17 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -29,6 +50,24 @@ public class ParkingLotControllerTest {
     @Mock
     private ParkingLotService parkingLotService;
 
+    @Mock
+    private ParkingLotSnapshotService parkingLotSnapshotService;
+
+    @Mock
+    private AvailabilityStreamService availabilityStreamService;
+
+    @Mock
+    private ParkingLotImportService parkingLotImportService;
+
+    @Mock
+    private NearbyLotIndex nearbyLotIndex;
+
+    @Mock
+    private ParkingLotSearchIndex parkingLotSearchIndex;
+
+    @Mock
+    private OccupancyTimeSeries occupancyTimeSeries;
+
     @InjectMocks
     private ParkingLotController parkingLotController;
 
@@ -42,18 +81,103 @@ public class ParkingLotControllerTest {
 
     @Test
     public void testGetAllParkingLots() throws Exception {
-        ParkingLot parkingLot = new ParkingLot();
-        parkingLot.setName("Main Lot");
-        parkingLot.setTotalSpaces(100);
-        parkingLot.setReservedSpaces(50);
-
-        when(parkingLotService.getAllParkingLots()).thenReturn(List.of(parkingLot));
+        when(parkingLotSnapshotService.getSnapshot())
+                .thenReturn(snapshot("v1", new ParkingLotDTO(1L, "Main Lot", "Unknown", 100, 50)));
 
         mockMvc.perform(get("/api/parkinglots"))
                 .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v1\""))
                 .andExpect(jsonPath("$[0].name").value("Main Lot"))
                 .andExpect(jsonPath("$[0].totalSpaces").value(100))
-                .andExpect(jsonPath("$[0].reservedSpaces").value(50));
+                .andExpect(jsonPath("$[0].reservedSpaces").value(50))
+                .andExpect(header().doesNotExist(PageCursor.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    public void testGetAllParkingLotsPaged() throws Exception {
+        when(parkingLotSnapshotService.getSnapshot()).thenReturn(snapshot("v1",
+                new ParkingLotDTO(2L, "Lot 2", "Unknown", 10, 0),
+                new ParkingLotDTO(3L, "Lot 3", "Unknown", 10, 0),
+                new ParkingLotDTO(4L, "Lot 4", "Unknown", 10, 0)));
+
+        mockMvc.perform(get("/api/parkinglots")
+                        .param("cursor", PageCursor.encode(2L))
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].name").value("Lot 3"))
+                .andExpect(header().string(PageCursor.NEXT_CURSOR_HEADER, PageCursor.encode(3L)));
+    }
+
+    @Test
+    public void testGetAllParkingLotsNotModified() throws Exception {
+        when(parkingLotSnapshotService.getSnapshot())
+                .thenReturn(snapshot("v1", new ParkingLotDTO(1L, "Main Lot", "Unknown", 100, 50)));
+
+        mockMvc.perform(get("/api/parkinglots").header("If-None-Match", "\"v1\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+
+        mockMvc.perform(get("/api/parkinglots").header("If-None-Match", "\"v0\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Main Lot"));
+    }
+
+    @Test
+    public void testStreamAvailabilityAtCapacity() throws Exception {
+        when(availabilityStreamService.subscribe(Set.of(1L, 2L))).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/parkinglots/stream").param("ids", "1,2"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    public void testFindNearbyParkingLots() throws Exception {
+        when(nearbyLotIndex.findNearby(40.0, -75.0, 5000, 1, 10)).thenReturn(List.of(
+                new NearbyParkingLot(1L, "Main Lot", "Unknown", 40.001, -75.0, 100, 50, 111.2)));
+
+        mockMvc.perform(get("/api/parkinglots/nearby").param("lat", "40").param("lon", "-75"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Main Lot"))
+                .andExpect(jsonPath("$[0].availableSpaces").value(50))
+                .andExpect(jsonPath("$[0].distanceMeters").value(111.2));
+    }
+
+    @Test
+    public void testFindNearbyParkingLotsInvalidRadius() throws Exception {
+        when(nearbyLotIndex.findNearby(40.0, -75.0, 90_000, 1, 10))
+                .thenThrow(new IllegalArgumentException("Radius must be greater than 0 and at most 50000 meters."));
+
+        mockMvc.perform(get("/api/parkinglots/nearby").param("lat", "40").param("lon", "-75")
+                        .param("radius", "90000"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Radius must be greater than 0 and at most 50000 meters."));
+    }
+
+    @Test
+    public void testSearchParkingLots() throws Exception {
+        when(parkingLotSearchIndex.search("main st", 5)).thenReturn(List.of(
+                new ParkingLotMatch(1L, "Main Lot", "1 Main Street", 2.1)));
+
+        mockMvc.perform(get("/api/parkinglots/search").param("q", "main st").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[0].address").value("1 Main Street"));
+    }
+
+    @Test
+    public void testSearchParkingLotsBlankQuery() throws Exception {
+        when(parkingLotSearchIndex.search(" ", 10)).thenThrow(new IllegalArgumentException("Query is required."));
+
+        mockMvc.perform(get("/api/parkinglots/search").param("q", " "))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Query is required."));
+    }
+
+    @Test
+    public void testGetAllParkingLotsInvalidCursor() throws Exception {
+        mockMvc.perform(get("/api/parkinglots").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
     }
 
     @Test
@@ -136,4 +260,70 @@ public class ParkingLotControllerTest {
                 .andExpect(jsonPath("$.reservedSpaces").value(49));
     }
 
+    @Test
+    public void testImportParkingLotsFromNdjson() throws Exception {
+        when(parkingLotImportService.importNdjson(any()))
+                .thenReturn(new ParkingLotImportResult(1, 1, List.of("Line 2: Name is required.")));
+
+        mockMvc.perform(post("/api/parkinglots/import")
+                        .contentType("application/x-ndjson")
+                        .content("{\"name\":\"Main Lot\",\"address\":\"1 Main St\",\"totalSpaces\":10,\"reservedSpaces\":0}\n{}\n")
+                        .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.errors[0]").value("Line 2: Name is required."));
+
+        verify(parkingLotImportService, never()).importCsv(any());
+    }
+
+    @Test
+    public void testImportParkingLotsRejectsOtherContentTypes() throws Exception {
+        mockMvc.perform(post("/api/parkinglots/import")
+                        .contentType("application/json")
+                        .content("[]")
+                        .with(csrf()))
+                .andExpect(status().isUnsupportedMediaType());
+
+        verifyNoInteractions(parkingLotImportService);
+    }
+
+    @Test
+    public void testGetUtilization() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2025, 1, 6, 8, 0);
+        when(occupancyTimeSeries.getUtilization(1L, from, from.plusHours(1), Duration.ofMinutes(30)))
+                .thenReturn(Optional.of(List.of(
+                        new UtilizationBucket(from, 4, 8, 6.0, 0.6),
+                        new UtilizationBucket(from.plusMinutes(30), null, null, null, null))));
+
+        mockMvc.perform(get("/api/parkinglots/1/utilization")
+                        .param("from", "2025-01-06T08:00")
+                        .param("to", "2025-01-06T09:00")
+                        .param("step", "30m"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].maxReserved").value(8))
+                .andExpect(jsonPath("$[0].utilization").value(0.6))
+                .andExpect(jsonPath("$[1].meanReserved").isEmpty());
+    }
+
+    @Test
+    public void testGetUtilizationRejectsBadRangeAndUnknownLot() throws Exception {
+        when(occupancyTimeSeries.getUtilization(eq(1L), any(), any(), eq(Duration.ofHours(1))))
+                .thenThrow(new IllegalArgumentException("from must be before to."));
+        when(occupancyTimeSeries.getUtilization(eq(2L), any(), any(), any())).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/parkinglots/1/utilization")
+                        .param("from", "2025-01-06T09:00")
+                        .param("to", "2025-01-06T08:00"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("from must be before to."));
+        mockMvc.perform(get("/api/parkinglots/2/utilization")
+                        .param("from", "2025-01-06T08:00")
+                        .param("to", "2025-01-06T09:00"))
+                .andExpect(status().isNotFound());
+    }
+
+    private static ParkingLotSnapshot snapshot(String version, ParkingLotDTO... lots) {
+        return new ParkingLotSnapshot(version, List.of(lots), new ObjectMapper());
+    }
 }
@@ -1,10 +1,16 @@
 package com.dustngroh.parkinglotapi.controller;
 
+import com.dustngroh.parkinglotapi.dto.ReservationDTO;
+import com.dustngroh.parkinglotapi.entity.ParkingLot;
 import com.dustngroh.parkinglotapi.entity.Reservation;
-import com.dustngroh.parkinglotapi.entity.User;
+import com.dustngroh.parkinglotapi.exception.BulkReservationException;
+import com.dustngroh.parkinglotapi.filter.AuthenticatedUser;
+import com.dustngroh.parkinglotapi.repository.IdempotencyRecordRepository;
+import com.dustngroh.parkinglotapi.service.IdempotencyService;
 import com.dustngroh.parkinglotapi.service.ReservationService;
 import com.dustngroh.parkinglotapi.service.UserService;
 import com.dustngroh.parkinglotapi.util.JwtUtil;
+import com.dustngroh.parkinglotapi.util.PageCursor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,11 +21,10 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.test.context.ContextConfiguration;
-import org.springframework.mock.web.MockCookie;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Optional;
 
 import static org.mockito.Mockito.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
@@ -46,32 +51,30 @@ public class ReservationControllerTest {
     @Autowired
     private JwtUtil jwtUtil;
 
-    private final String jwtToken = "mockJwtToken";
     private final String username = "john_doe";
+    private final Long userId = 7L;
     private final Long parkingLotId = 1L;
-    private MockCookie jwtCookie;
+    private AuthenticatedUser authenticatedUser;
 
     @BeforeEach
     public void setUp() {
         Mockito.reset(reservationService, userService, jwtUtil);
 
-        jwtCookie = new MockCookie("jwtToken", jwtToken);
-        jwtCookie.setHttpOnly(true); // Simulate HTTP-only cookie
-
-        when(jwtUtil.getUsernameFromToken(jwtToken)).thenReturn(username);
-        when(userService.getUserByUsername(username)).thenReturn(Optional.of(new User()));
+        // Normally resolved from the jwtToken cookie by JwtAuthenticationFilter
+        authenticatedUser = new AuthenticatedUser(userId, username, "USER");
     }
 
     @Test
     public void testGetReservationsByUser() throws Exception {
-        when(reservationService.getReservationsByUser(username)).thenReturn(List.of(new Reservation()));
+        when(reservationService.getReservationsByUser(username, 0L, PageCursor.DEFAULT_LIMIT + 1))
+                .thenReturn(List.of(new ReservationDTO()));
 
         mockMvc.perform(get("/api/reservations/user")
-                        .cookie(jwtCookie))
+                        .requestAttr(AuthenticatedUser.REQUEST_ATTRIBUTE, authenticatedUser))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.length()").value(1));
 
-        verify(reservationService, times(1)).getReservationsByUser(username);
+        verify(reservationService, times(1)).getReservationsByUser(username, 0L, PageCursor.DEFAULT_LIMIT + 1);
     }
 
     @Test
@@ -80,7 +83,7 @@ public class ReservationControllerTest {
 
         mockMvc.perform(get("/api/reservations/exists")
                         .param("parkingLotId", String.valueOf(parkingLotId))
-                        .cookie(jwtCookie))
+                        .requestAttr(AuthenticatedUser.REQUEST_ATTRIBUTE, authenticatedUser))
                 .andExpect(status().isOk())
                 .andExpect(content().string("true"));
 
@@ -89,19 +92,185 @@ public class ReservationControllerTest {
 
     @Test
     public void testCreateReservation() throws Exception {
-        User mockUser = new User();
+        ParkingLot parkingLot = new ParkingLot();
+        parkingLot.setId(parkingLotId);
+        parkingLot.setName("Main Lot");
+        Reservation reservation = new Reservation();
+        reservation.setParkingLot(parkingLot);
+
+        when(reservationService.createReservation(userId, parkingLotId)).thenReturn(reservation);
+
+        mockMvc.perform(post("/api/reservations")
+                        .param("parkingLotId", String.valueOf(parkingLotId))
+                        .requestAttr(AuthenticatedUser.REQUEST_ATTRIBUTE, authenticatedUser)
+                        .with(csrf()))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.username").value(username))
+                .andExpect(jsonPath("$.parkingLotName").value("Main Lot"));
+
+        verify(reservationService, times(1)).createReservation(userId, parkingLotId);
+        verifyNoInteractions(userService, jwtUtil);
+    }
+
+    @Test
+    public void testCreateReservation_RetryWithIdempotencyKeyIsReplayed() throws Exception {
+        ParkingLot parkingLot = new ParkingLot();
+        parkingLot.setId(parkingLotId);
+        parkingLot.setName("Main Lot");
         Reservation reservation = new Reservation();
+        reservation.setId(42L);
+        reservation.setParkingLot(parkingLot);
+
+        when(reservationService.createReservation(userId, parkingLotId)).thenReturn(reservation);
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            mockMvc.perform(post("/api/reservations")
+                            .param("parkingLotId", String.valueOf(parkingLotId))
+                            .header("Idempotency-Key", "retry-test")
+                            .requestAttr(AuthenticatedUser.REQUEST_ATTRIBUTE, authenticatedUser)
+                            .with(csrf()))
+                    .andExpect(status().isCreated())
+                    .andExpect(jsonPath("$.id").value(42))
+                    .andExpect(jsonPath("$.parkingLotName").value("Main Lot"));
+        }
 
-        when(userService.getUserByUsername(username)).thenReturn(Optional.of(mockUser));
-        when(reservationService.createReservation(mockUser, parkingLotId)).thenReturn(reservation);
+        verify(reservationService, times(1)).createReservation(userId, parkingLotId);
+    }
+
+    @Test
+    public void testCreateReservation_IdempotencyKeyReusedForAnotherLot() throws Exception {
+        ParkingLot parkingLot = new ParkingLot();
+        parkingLot.setId(parkingLotId);
+        Reservation reservation = new Reservation();
+        reservation.setParkingLot(parkingLot);
+        when(reservationService.createReservation(userId, parkingLotId)).thenReturn(reservation);
 
         mockMvc.perform(post("/api/reservations")
                         .param("parkingLotId", String.valueOf(parkingLotId))
-                        .cookie(jwtCookie)
+                        .header("Idempotency-Key", "reused-key")
+                        .requestAttr(AuthenticatedUser.REQUEST_ATTRIBUTE, authenticatedUser)
                         .with(csrf()))
                 .andExpect(status().isCreated());
+        mockMvc.perform(post("/api/reservations")
+                        .param("parkingLotId", "2")
+                        .header("Idempotency-Key", "reused-key")
+                        .requestAttr(AuthenticatedUser.REQUEST_ATTRIBUTE, authenticatedUser)
+                        .with(csrf()))
+                .andExpect(status().isUnprocessableEntity());
+
+        verify(reservationService, never()).createReservation(userId, 2L);
+    }
+
+    @Test
+    public void testCreateReservation_IdempotencyKeysOfDifferentUsersNeverCollide() throws Exception {
+        ParkingLot parkingLot = new ParkingLot();
+        parkingLot.setId(parkingLotId);
+        Reservation first = new Reservation();
+        first.setId(1L);
+        first.setParkingLot(parkingLot);
+        Reservation second = new Reservation();
+        second.setId(2L);
+        second.setParkingLot(parkingLot);
+        // Usernames may contain ':'
+        AuthenticatedUser bob = new AuthenticatedUser(8L, "bob", "USER");
+        AuthenticatedUser bobX = new AuthenticatedUser(9L, "bob:x", "USER");
+        when(reservationService.createReservation(8L, parkingLotId)).thenReturn(first);
+        when(reservationService.createReservation(9L, parkingLotId)).thenReturn(second);
+
+        mockMvc.perform(post("/api/reservations")
+                        .param("parkingLotId", String.valueOf(parkingLotId))
+                        .header("Idempotency-Key", "x:k")
+                        .requestAttr(AuthenticatedUser.REQUEST_ATTRIBUTE, bob)
+                        .with(csrf()))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(1));
+        mockMvc.perform(post("/api/reservations")
+                        .param("parkingLotId", String.valueOf(parkingLotId))
+                        .header("Idempotency-Key", "k")
+                        .requestAttr(AuthenticatedUser.REQUEST_ATTRIBUTE, bobX)
+                        .with(csrf()))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"))
+                .andExpect(jsonPath("$.id").value(2));
 
-        verify(reservationService, times(1)).createReservation(mockUser, parkingLotId);
+        verify(reservationService, times(1)).createReservation(9L, parkingLotId);
+    }
+
+    @Test
+    public void testCreateReservation_Unauthorized() throws Exception {
+        mockMvc.perform(post("/api/reservations")
+                        .param("parkingLotId", String.valueOf(parkingLotId))
+                        .with(csrf()))
+                .andExpect(status().isUnauthorized());
+
+        verifyNoInteractions(reservationService);
+    }
+
+    @Test
+    public void testCreateSlotReservation() throws Exception {
+        LocalDateTime startTime = LocalDateTime.of(2030, 1, 7, 8, 0);
+        LocalDateTime endTime = LocalDateTime.of(2030, 1, 7, 17, 0);
+        ParkingLot parkingLot = new ParkingLot();
+        parkingLot.setId(parkingLotId);
+        parkingLot.setName("Main Lot");
+        Reservation reservation = new Reservation();
+        reservation.setParkingLot(parkingLot);
+        reservation.setStartTime(startTime);
+        reservation.setEndTime(endTime);
+
+        when(reservationService.createSlotReservation(userId, parkingLotId, startTime, endTime)).thenReturn(reservation);
+
+        mockMvc.perform(post("/api/reservations/slot")
+                        .param("parkingLotId", String.valueOf(parkingLotId))
+                        .param("startTime", "2030-01-07T08:00:00")
+                        .param("endTime", "2030-01-07T17:00:00")
+                        .requestAttr(AuthenticatedUser.REQUEST_ATTRIBUTE, authenticatedUser)
+                        .with(csrf()))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.startTime").value("2030-01-07T08:00:00"))
+                .andExpect(jsonPath("$.endTime").value("2030-01-07T17:00:00"));
+    }
+
+    @Test
+    public void testGetAvailableSpaces_InvalidWindow() throws Exception {
+        when(reservationService.getAvailableSpaces(eq(parkingLotId), any(), any()))
+                .thenThrow(new IllegalArgumentException("startTime must be before endTime."));
+
+        mockMvc.perform(get("/api/reservations/availability")
+                        .param("parkingLotId", String.valueOf(parkingLotId))
+                        .param("startTime", "2030-01-07T17:00:00")
+                        .param("endTime", "2030-01-07T08:00:00"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("startTime must be before endTime."));
+    }
+
+    @Test
+    public void testCreateReservationsInBulk() throws Exception {
+        when(reservationService.createReservations(anyList())).thenReturn(2);
+
+        mockMvc.perform(post("/api/reservations/bulk")
+                        .contentType("application/json")
+                        .content("[{\"userId\":7,\"parkingLotId\":1},{\"userId\":8,\"parkingLotId\":1}]")
+                        .with(csrf()))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.created").value(2));
+
+        verify(reservationService, times(1)).createReservations(argThat(rows -> rows.size() == 2
+                && rows.get(1).getUserId() == 8L && rows.get(1).getParkingLotId() == 1L));
+    }
+
+    @Test
+    public void testCreateReservationsInBulk_Rejected() throws Exception {
+        when(reservationService.createReservations(anyList()))
+                .thenThrow(new BulkReservationException("Rejected all 1 rows: 1 problem(s) found.",
+                        List.of("Row 1: user 7 not found.")));
+
+        mockMvc.perform(post("/api/reservations/bulk")
+                        .contentType("application/json")
+                        .content("[{\"userId\":7,\"parkingLotId\":1}]")
+                        .with(csrf()))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.errors[0]").value("Row 1: user 7 not found."));
     }
 
     @Test
@@ -110,7 +279,7 @@ public class ReservationControllerTest {
 
         mockMvc.perform(delete("/api/reservations/cancel")
                         .param("parkingLotId", String.valueOf(parkingLotId))
-                        .cookie(jwtCookie)
+                        .requestAttr(AuthenticatedUser.REQUEST_ATTRIBUTE, authenticatedUser)
                         .with(csrf()))
                 .andExpect(status().isOk())
                 .andExpect(content().string("Reservation cancelled successfully."));
@@ -124,7 +293,7 @@ public class ReservationControllerTest {
 
         mockMvc.perform(delete("/api/reservations/cancel")
                         .param("parkingLotId", String.valueOf(parkingLotId))
-                        .cookie(jwtCookie)
+                        .requestAttr(AuthenticatedUser.REQUEST_ATTRIBUTE, authenticatedUser)
                         .with(csrf()))
                 .andExpect(status().isBadRequest())
                 .andExpect(content().string("No reservation found to cancel."));
@@ -148,5 +317,10 @@ public class ReservationControllerTest {
         public JwtUtil jwtUtil() {
             return mock(JwtUtil.class);
         }
+
+        @Bean
+        public IdempotencyService idempotencyService(ObjectMapper objectMapper) {
+            return new IdempotencyService(mock(IdempotencyRecordRepository.class), objectMapper, 1000, 60, false);
+        }
     }
 }
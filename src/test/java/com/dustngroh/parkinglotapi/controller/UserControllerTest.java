@@ -2,6 +2,7 @@ package com.dustngroh.parkinglotapi.controller;
 
 import com.dustngroh.parkinglotapi.dto.UserRegistrationDTO;
 import com.dustngroh.parkinglotapi.entity.User;
+import com.dustngroh.parkinglotapi.exception.PasswordHashingOverloadedException;
 import com.dustngroh.parkinglotapi.exception.UserAlreadyExistsException;
 import com.dustngroh.parkinglotapi.exception.UserNotFoundException;
 import com.dustngroh.parkinglotapi.service.UserService;
@@ -161,6 +162,23 @@ public class UserControllerTest {
         verify(userService, times(1)).authenticate(username, password);
     }
 
+    @Test
+    public void testLogin_Overloaded() throws Exception {
+        when(userService.authenticate("john_doe", "securepassword123"))
+                .thenThrow(new PasswordHashingOverloadedException("Too many sign-in requests. Please try again shortly."));
+
+        mockMvc.perform(post("/api/users/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of(
+                                "username", "john_doe",
+                                "password", "securepassword123"
+                        ))))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+
+        verifyNoInteractions(jwtUtil);
+    }
+
     @Test
     public void testLogin_MissingFields() throws Exception {
         // Missing password field in request
@@ -0,0 +1,38 @@
+package com.dustngroh.parkinglotapi.filter;
+
+import com.dustngroh.parkinglotapi.util.SqlStatementCounter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SqlStatementMetricsFilterTest {
+
+    @Test
+    public void testStatementsAreRecordedPerEndpointPattern() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SqlStatementMetricsFilter filter = new SqlStatementMetricsFilter(meterRegistry);
+        SqlStatementCounter inspector = new SqlStatementCounter();
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/parkinglots/1");
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            inspector.inspect("select 1");
+            inspector.inspect("select 2");
+            req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/parkinglots/{id}");
+        });
+
+        DistributionSummary summary = meterRegistry.get(SqlStatementMetricsFilter.METRIC_NAME)
+                .tag("uri", "/api/parkinglots/{id}")
+                .summary();
+        assertEquals(1, summary.count());
+        assertEquals(2, summary.totalAmount());
+
+        // Statements outside a request are not counted
+        inspector.inspect("select 3");
+        assertEquals(0, SqlStatementCounter.stop());
+    }
+}
@@ -0,0 +1,64 @@
+package com.dustngroh.parkinglotapi.repository;
+
+import com.dustngroh.parkinglotapi.dto.ParkingLotDTO;
+import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+public class ParkingLotRepositoryTest {
+
+    @Autowired
+    private ParkingLotRepository parkingLotRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    public void testFindAllViewsIsOrderedById() {
+        persistLot("North Lot", 20, 5);
+        persistLot("Main Lot", 10, 0);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<ParkingLotDTO> lots = parkingLotRepository.findAllViews();
+
+        assertEquals(2, lots.size());
+        assertTrue(lots.get(0).getId() < lots.get(1).getId());
+        assertEquals("North Lot", lots.get(0).getName());
+        assertEquals(20, lots.get(0).getTotalSpaces());
+        assertEquals(5, lots.get(0).getReservedSpaces());
+    }
+
+    @Test
+    public void testUpdateDetailsLeavesTheReservedCount() {
+        ParkingLot parkingLot = persistLot("Main Lot", 10, 4);
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(1, parkingLotRepository.updateDetails(parkingLot.getId(), "Main Lot", "1 Main Street", 6,
+                51.5, -0.1));
+        entityManager.clear();
+
+        ParkingLot updated = parkingLotRepository.findById(parkingLot.getId()).orElseThrow();
+        assertEquals(6, updated.getTotalSpaces());
+        assertEquals("1 Main Street", updated.getAddress());
+        assertEquals(4, updated.getReservedSpaces());
+        assertEquals(0, parkingLotRepository.updateDetails(-1L, "None", "None", 1, null, null));
+    }
+
+    private ParkingLot persistLot(String name, int totalSpaces, int reservedSpaces) {
+        ParkingLot parkingLot = new ParkingLot();
+        parkingLot.setName(name);
+        parkingLot.setTotalSpaces(totalSpaces);
+        parkingLot.setReservedSpaces(reservedSpaces);
+        entityManager.persist(parkingLot);
+        return parkingLot;
+    }
+}
@@ -0,0 +1,160 @@
+package com.dustngroh.parkinglotapi.repository;
+
+import com.dustngroh.parkinglotapi.dto.ReservationDTO;
+import com.dustngroh.parkinglotapi.dto.ReservationKey;
+import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import com.dustngroh.parkinglotapi.entity.Reservation;
+import com.dustngroh.parkinglotapi.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Listings must cost a fixed number of statements no matter how many reservations a page holds
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class ReservationRepositoryTest {
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private ParkingLot mainLot;
+    private User alice;
+
+    @BeforeEach
+    public void setUp() {
+        mainLot = persistLot("Main Lot");
+        ParkingLot northLot = persistLot("North Lot");
+        alice = persistUser("alice", "ABC123");
+        User bob = persistUser("bob", "XYZ789");
+
+        persistReservation(alice, mainLot);
+        persistReservation(alice, northLot);
+        persistReservation(bob, mainLot);
+        persistReservation(bob, northLot);
+
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    public void testFindViewsAfterUsesOneStatement() {
+        List<ReservationDTO> reservations = reservationRepository.findViewsAfter(0L, Limit.of(10));
+
+        assertEquals(4, reservations.size());
+        assertEquals("alice", reservations.get(0).getUsername());
+        assertEquals("ABC123", reservations.get(0).getPlateNumber());
+        assertEquals("Main Lot", reservations.get(0).getParkingLotName());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testFindViewsAfterRespectsCursorAndLimit() {
+        List<ReservationDTO> firstPage = reservationRepository.findViewsAfter(0L, Limit.of(3));
+        List<ReservationDTO> secondPage = reservationRepository.findViewsAfter(firstPage.get(2).getId(), Limit.of(3));
+
+        assertEquals(3, firstPage.size());
+        assertEquals(1, secondPage.size());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testFindViewsByUsernameUsesOneStatement() {
+        List<ReservationDTO> reservations = reservationRepository.findViewsByUsernameAfter("alice", 0L, Limit.of(10));
+
+        assertEquals(2, reservations.size());
+        assertTrue(reservations.stream().allMatch(r -> alice.getId().equals(r.getUserId())));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testFindViewsByParkingLotIdUsesOneStatement() {
+        List<ReservationDTO> reservations =
+                reservationRepository.findViewsByParkingLotIdAfter(mainLot.getId(), 0L, Limit.of(10));
+
+        assertEquals(2, reservations.size());
+        assertTrue(reservations.stream().allMatch(r -> "Main Lot".equals(r.getParkingLotName())));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testExistsUsesOneStatement() {
+        assertTrue(reservationRepository.existsByUser_UsernameAndParkingLot_Id("alice", mainLot.getId()));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testFindKeysByUserIdsAndParkingLotIdsUsesOneStatement() {
+        List<ReservationKey> keys = reservationRepository.findKeysByUserIdsAndParkingLotIds(
+                List.of(alice.getId()), List.of(mainLot.getId()));
+
+        assertEquals(1, keys.size());
+        assertEquals(alice.getId(), keys.get(0).userId());
+        assertEquals(mainLot.getId(), keys.get(0).parkingLotId());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testSaveAllBatchesInserts() {
+        List<Reservation> reservations = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            Reservation reservation = new Reservation();
+            reservation.setUser(entityManager.getReference(User.class, alice.getId()));
+            reservation.setParkingLot(entityManager.getReference(ParkingLot.class, mainLot.getId()));
+            reservations.add(reservation);
+        }
+
+        reservationRepository.saveAll(reservations);
+        entityManager.flush();
+
+        // 120 rows: three JDBC batches and at most a few sequence calls, not one round trip per row
+        assertEquals(120, statistics.getEntityInsertCount());
+        assertTrue(statistics.getPrepareStatementCount() <= 6, "statements: " + statistics.getPrepareStatementCount());
+    }
+
+    private ParkingLot persistLot(String name) {
+        ParkingLot parkingLot = new ParkingLot();
+        parkingLot.setName(name);
+        parkingLot.setTotalSpaces(10);
+        entityManager.persist(parkingLot);
+        return parkingLot;
+    }
+
+    private User persistUser(String username, String plateNumber) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("password");
+        user.setRole("USER");
+        user.setFirstName("First");
+        user.setLastName("Last");
+        user.setPlateNumber(plateNumber);
+        entityManager.persist(user);
+        return user;
+    }
+
+    private void persistReservation(User user, ParkingLot parkingLot) {
+        Reservation reservation = new Reservation();
+        reservation.setUser(user);
+        reservation.setParkingLot(parkingLot);
+        entityManager.persist(reservation);
+    }
+}
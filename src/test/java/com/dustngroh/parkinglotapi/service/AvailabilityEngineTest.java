@@ -0,0 +1,185 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class AvailabilityEngineTest {
+
+    private final Long parkingLotId = 1L;
+
+    private ParkingLotRepository parkingLotRepository;
+    private AvailabilityEngine availabilityEngine;
+    private ParkingLot parkingLot;
+
+    @BeforeEach
+    public void setUp() {
+        parkingLotRepository = mock(ParkingLotRepository.class);
+        availabilityEngine = new AvailabilityEngine(parkingLotRepository);
+
+        parkingLot = new ParkingLot();
+        parkingLot.setId(parkingLotId);
+        parkingLot.setTotalSpaces(100);
+        parkingLot.setReservedSpaces(0);
+        when(parkingLotRepository.findById(parkingLotId)).thenReturn(Optional.of(parkingLot));
+    }
+
+    @Test
+    public void testConcurrentReservationsNeverOverbook() throws Exception {
+        int threads = 64;
+        int attemptsPerThread = 50;
+        AtomicInteger admitted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        for (int i = 0; i < threads; i++) {
+            executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < attemptsPerThread; j++) {
+                    if (availabilityEngine.tryReserve(parkingLotId, 1).isPresent()) {
+                        admitted.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(100, admitted.get());
+        assertEquals(100, availabilityEngine.getReservedSpaces(parkingLotId));
+        verify(parkingLotRepository, times(1)).findById(parkingLotId);
+    }
+
+    @Test
+    public void testReleaseStopsAtZero() {
+        assertTrue(availabilityEngine.release(parkingLotId, 1).isEmpty());
+        assertEquals(1, availabilityEngine.tryReserve(parkingLotId, 1).getAsInt());
+        assertEquals(0, availabilityEngine.release(parkingLotId, 1).getAsInt());
+        assertEquals(0, availabilityEngine.getReservedSpaces(parkingLotId));
+    }
+
+    @Test
+    public void testMultiSpaceChangesAreAllOrNothing() {
+        assertEquals(99, availabilityEngine.tryReserve(parkingLotId, 99).getAsInt());
+        assertTrue(availabilityEngine.tryReserve(parkingLotId, 2).isEmpty());
+        assertTrue(availabilityEngine.release(parkingLotId, 100).isEmpty());
+        assertEquals(99, availabilityEngine.getReservedSpaces(parkingLotId));
+        assertEquals(0, availabilityEngine.release(parkingLotId, 99).getAsInt());
+    }
+
+    @Test
+    public void testFlushWritesOnlyChangedLots() {
+        availabilityEngine.tryReserve(parkingLotId, 1);
+        availabilityEngine.tryReserve(parkingLotId, 1);
+
+        availabilityEngine.flush();
+        availabilityEngine.flush();
+
+        verify(parkingLotRepository, times(1)).updateReservedSpaces(parkingLotId, 2);
+    }
+
+    @Test
+    public void testChangesDuringAnEvictionWaitForItsFinalWrite() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch written = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            written.await();
+            parkingLot.setReservedSpaces(invocation.getArgument(1));
+            return 1;
+        }).when(parkingLotRepository).updateReservedSpaces(eq(parkingLotId), anyInt());
+        availabilityEngine.tryReserve(parkingLotId, 5);
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        Future<?> eviction = executor.submit(() -> availabilityEngine.evict(parkingLotId));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        Future<OptionalInt> reservation = executor.submit(() -> availabilityEngine.tryReserve(parkingLotId, 1));
+        assertThrows(TimeoutException.class, () -> reservation.get(100, TimeUnit.MILLISECONDS));
+
+        written.countDown();
+        eviction.get(5, TimeUnit.SECONDS);
+        // Counted on a counter loaded from the final write, not lost on the retired one
+        assertEquals(6, reservation.get(5, TimeUnit.SECONDS).getAsInt());
+        verify(parkingLotRepository, times(2)).findById(parkingLotId);
+        executor.shutdown();
+    }
+
+    @Test
+    public void testRollbackAfterEvictIsUndoneOnAFreshCounter() {
+        when(parkingLotRepository.existsById(parkingLotId)).thenReturn(true);
+        doAnswer(invocation -> {
+            parkingLot.setReservedSpaces(invocation.getArgument(1));
+            return 1;
+        }).when(parkingLotRepository).updateReservedSpaces(eq(parkingLotId), anyInt());
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            availabilityEngine.tryReserve(parkingLotId, 5);
+            availabilityEngine.evict(parkingLotId);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(
+                            TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(0, availabilityEngine.peekReservedSpaces(parkingLotId).getAsInt());
+        availabilityEngine.flush();
+        verify(parkingLotRepository).updateReservedSpaces(parkingLotId, 0);
+    }
+
+    @Test
+    public void testSlowFirstLoadHoldsUpOnlyItsOwnLot() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch loaded = new CountDownLatch(1);
+        when(parkingLotRepository.findById(parkingLotId)).thenAnswer(invocation -> {
+            loading.countDown();
+            loaded.await();
+            return Optional.of(parkingLot);
+        });
+        ParkingLot otherLot = new ParkingLot();
+        otherLot.setTotalSpaces(10);
+        when(parkingLotRepository.findById(2L)).thenReturn(Optional.of(otherLot));
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        Future<OptionalInt> first = executor.submit(() -> availabilityEngine.tryReserve(parkingLotId, 1));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        Future<OptionalInt> second = executor.submit(() -> availabilityEngine.tryReserve(parkingLotId, 1));
+        assertEquals(1, executor.submit(() -> availabilityEngine.tryReserve(2L, 1)).get(5, TimeUnit.SECONDS)
+                .getAsInt());
+        assertFalse(first.isDone());
+
+        loaded.countDown();
+        assertEquals(3, first.get(5, TimeUnit.SECONDS).getAsInt() + second.get(5, TimeUnit.SECONDS).getAsInt());
+        verify(parkingLotRepository, times(1)).findById(parkingLotId);
+        executor.shutdown();
+    }
+
+    @Test
+    public void testFailedLoadIsRethrownAndRetried() {
+        RuntimeException e = assertThrows(RuntimeException.class, () -> availabilityEngine.tryReserve(99L, 1));
+        assertEquals("Parking lot not found", e.getMessage());
+        when(parkingLotRepository.findById(99L)).thenReturn(Optional.of(parkingLot));
+        assertEquals(1, availabilityEngine.tryReserve(99L, 1).getAsInt());
+    }
+}
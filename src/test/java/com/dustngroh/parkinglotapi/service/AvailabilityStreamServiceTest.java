@@ -0,0 +1,153 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.dto.ParkingLotDTO;
+import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import com.dustngroh.parkinglotapi.event.ParkingLotChangedEvent;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class AvailabilityStreamServiceTest {
+
+    private SpaceAllocator spaceAllocator;
+    private AvailabilityStreamService streamService;
+    private final List<Runnable> heldWrites = new ArrayList<>();
+    private boolean writesHeld;
+
+    @BeforeEach
+    public void setUp() {
+        ParkingLotRepository parkingLotRepository = mock(ParkingLotRepository.class);
+        for (long id = 1; id <= 2; id++) {
+            ParkingLot parkingLot = new ParkingLot();
+            parkingLot.setId(id);
+            parkingLot.setTotalSpaces(10);
+            when(parkingLotRepository.findById(id)).thenReturn(Optional.of(parkingLot));
+        }
+        // Events are delivered straight to the stream, as they are outside a transaction
+        spaceAllocator = new SpaceAllocator(List.of(new AvailabilityEngine(parkingLotRepository)), "in-memory",
+                event -> streamService.onParkingLotChanged((ParkingLotChangedEvent) event));
+
+        ParkingLotSnapshotService snapshotService = mock(ParkingLotSnapshotService.class);
+        when(snapshotService.getSnapshot()).thenReturn(new ParkingLotSnapshot("v1", List.of(
+                new ParkingLotDTO(1L, "Main Lot", "Unknown", 10, 0),
+                new ParkingLotDTO(2L, "North Lot", "Unknown", 10, 0)), new ObjectMapper()));
+
+        streamService = new AvailabilityStreamService(spaceAllocator, snapshotService, 60_000L, 2) {
+            @Override
+            SseEmitter createEmitter(long timeoutMs) {
+                return new RecordingEmitter();
+            }
+
+            @Override
+            void execute(Runnable write) {
+                if (writesHeld) {
+                    heldWrites.add(write);
+                } else {
+                    write.run();
+                }
+            }
+        };
+    }
+
+    @Test
+    public void testSubscriberStartsWithCurrentCounts() {
+        RecordingEmitter emitter = subscribe(Set.of(2L));
+
+        assertEquals(1, emitter.updates.size());
+        assertEquals(List.of(new AvailabilityStreamService.LotAvailability(2L, 0, 10)), emitter.updates.get(0));
+    }
+
+    @Test
+    public void testBurstIsCoalescedIntoOneUpdatePerSubscriber() {
+        RecordingEmitter mainLotOnly = subscribe(Set.of(1L));
+        RecordingEmitter northLotOnly = subscribe(Set.of(2L));
+
+        spaceAllocator.tryReserve(1L);
+        spaceAllocator.tryReserve(1L);
+        spaceAllocator.tryReserve(1L);
+        streamService.publishPendingChanges();
+
+        assertEquals(2, mainLotOnly.updates.size());
+        assertEquals(List.of(new AvailabilityStreamService.LotAvailability(1L, 3, null)), mainLotOnly.updates.get(1));
+        // Nothing changed on the other lot, so its subscriber only has the initial event
+        assertEquals(1, northLotOnly.updates.size());
+
+        // An empty window sends nothing
+        streamService.publishPendingChanges();
+        assertEquals(2, mainLotOnly.updates.size());
+    }
+
+    @Test
+    public void testSlowSubscriberGetsOnlyTheLatestCounts() {
+        RecordingEmitter emitter = subscribe(Set.of());
+
+        // The first write is still in flight while two more windows pass
+        writesHeld = true;
+        spaceAllocator.tryReserve(1L);
+        streamService.publishPendingChanges();
+        spaceAllocator.tryReserve(1L);
+        spaceAllocator.tryReserve(2L);
+        streamService.publishPendingChanges();
+        streamService.sendHeartbeat();
+        assertEquals(1, heldWrites.size());
+
+        writesHeld = false;
+        heldWrites.remove(0).run();
+
+        assertEquals(2, emitter.updates.size());
+        assertEquals(Set.of(new AvailabilityStreamService.LotAvailability(1L, 2, null),
+                new AvailabilityStreamService.LotAvailability(2L, 1, null)), Set.copyOf(emitter.updates.get(1)));
+    }
+
+    @Test
+    public void testSubscribersAreCappedAndReleasedOnCompletion() {
+        subscribe(Set.of());
+        RecordingEmitter second = subscribe(Set.of(1L, 2L));
+
+        assertTrue(streamService.subscribe(Set.of()).isEmpty());
+        assertEquals(2, streamService.getSubscriberCount());
+
+        second.complete();
+        assertEquals(1, streamService.getSubscriberCount());
+        assertTrue(streamService.subscribe(Set.of()).isPresent());
+    }
+
+    private RecordingEmitter subscribe(Set<Long> parkingLotIds) {
+        return (RecordingEmitter) streamService.subscribe(parkingLotIds).orElseThrow();
+    }
+
+    // Records availability events instead of writing them to a response
+    private static final class RecordingEmitter extends SseEmitter {
+        private final List<List<?>> updates = new ArrayList<>();
+        private final List<Runnable> completionCallbacks = new ArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            for (DataWithMediaType part : builder.build()) {
+                if (part.getData() instanceof List<?> lots) {
+                    updates.add(lots);
+                }
+            }
+        }
+
+        @Override
+        public void onCompletion(Runnable callback) {
+            completionCallbacks.add(callback);
+        }
+
+        @Override
+        public void complete() {
+            completionCallbacks.forEach(Runnable::run);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import com.dustngroh.parkinglotapi.entity.Reservation;
+import com.dustngroh.parkinglotapi.entity.ReservationEvent;
+import com.dustngroh.parkinglotapi.entity.User;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import com.dustngroh.parkinglotapi.repository.ReservationEventRepository;
+import com.dustngroh.parkinglotapi.repository.ReservationRepository;
+import com.dustngroh.parkinglotapi.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Expiry commits in its own transactions, so the test runs outside the usual rolled-back test transaction
+@DataJpaTest
+@Import({HoldExpiryService.class, ReservationJournal.class, ReservationEventService.class,
+        HoldExpiryServiceTest.TestConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class HoldExpiryServiceTest {
+
+    @Autowired
+    private HoldExpiryService holdExpiryService;
+
+    @Autowired
+    private AvailabilityEngine availabilityEngine;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ParkingLotRepository parkingLotRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ReservationEventRepository reservationEventRepository;
+
+    private ParkingLot parkingLot;
+    private User user;
+
+    @BeforeEach
+    public void setUp() {
+        parkingLot = new ParkingLot();
+        parkingLot.setName("Main Lot");
+        parkingLot.setTotalSpaces(10);
+        parkingLot.setReservedSpaces(4);
+        parkingLot = parkingLotRepository.save(parkingLot);
+
+        user = new User();
+        user.setUsername("alice");
+        user.setPassword("password");
+        user.setRole("USER");
+        user.setFirstName("First");
+        user.setLastName("Last");
+        user.setPlateNumber("ABC123");
+        user = userRepository.save(user);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        reservationRepository.deleteAllInBatch();
+        reservationEventRepository.deleteAllInBatch();
+        parkingLotRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+        availabilityEngine.evict(parkingLot.getId());
+    }
+
+    @Test
+    public void testRebuildExpiresOverdueHoldsAndSchedulesTheRest() {
+        LocalDateTime now = LocalDateTime.now();
+        save(now.minusMinutes(5));
+        save(now.minusMinutes(1));
+        Reservation pending = save(now.plusHours(1));
+        save(null);
+
+        holdExpiryService.rebuild();
+
+        assertEquals(2, reservationRepository.count());
+        assertEquals(2, availabilityEngine.getReservedSpaces(parkingLot.getId()));
+        assertEquals(1, holdExpiryService.getPendingHolds());
+
+        int released = holdExpiryService.expireDue(System.currentTimeMillis() + Duration.ofHours(2).toMillis());
+
+        assertEquals(1, released);
+        assertFalse(reservationRepository.existsById(pending.getId()));
+        assertEquals(1, availabilityEngine.getReservedSpaces(parkingLot.getId()));
+        assertEquals(0, holdExpiryService.getPendingHolds());
+        // Each expiry is in the outbox, written with its delete
+        assertEquals(3, reservationEventRepository.count());
+        assertTrue(reservationEventRepository.findAll().stream()
+                .allMatch(event -> ReservationEvent.EXPIRED.equals(event.getType())
+                        && user.getId().equals(event.getUserId())));
+    }
+
+    @Test
+    public void testHoldsEndedByOtherMeansReleaseNothing() {
+        LocalDateTime holdUntil = LocalDateTime.now().plusMinutes(30);
+        Reservation confirmed = save(holdUntil);
+        Reservation extended = save(holdUntil);
+        holdExpiryService.schedule(confirmed);
+        holdExpiryService.schedule(extended);
+
+        reservationRepository.deleteById(confirmed.getId());
+        extended.setHoldUntil(holdUntil.plusHours(1));
+        reservationRepository.save(extended);
+
+        int released = holdExpiryService.expireDue(System.currentTimeMillis() + Duration.ofMinutes(45).toMillis());
+
+        assertEquals(0, released);
+        assertTrue(reservationRepository.existsById(extended.getId()));
+        assertEquals(4, availabilityEngine.getReservedSpaces(parkingLot.getId()));
+        assertEquals(0, reservationEventRepository.count());
+    }
+
+    private Reservation save(LocalDateTime holdUntil) {
+        Reservation reservation = new Reservation();
+        reservation.setUser(user);
+        reservation.setParkingLot(parkingLot);
+        reservation.setHoldUntil(holdUntil);
+        return reservationRepository.save(reservation);
+    }
+
+    @TestConfiguration
+    static class TestConfig {
+        @Bean
+        public AvailabilityEngine availabilityEngine(ParkingLotRepository parkingLotRepository) {
+            return new AvailabilityEngine(parkingLotRepository);
+        }
+
+        @Bean
+        public SpaceAllocator spaceAllocator(AvailabilityEngine availabilityEngine) {
+            return new SpaceAllocator(List.of(availabilityEngine), "in-memory", event -> {});
+        }
+    }
+}
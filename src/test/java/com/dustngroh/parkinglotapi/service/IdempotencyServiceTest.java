@@ -0,0 +1,108 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.entity.IdempotencyRecord;
+import com.dustngroh.parkinglotapi.exception.IdempotencyKeyReusedException;
+import com.dustngroh.parkinglotapi.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class IdempotencyServiceTest {
+
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    public void setUp() {
+        idempotencyRecordRepository = mock(IdempotencyRecordRepository.class);
+        idempotencyService = new IdempotencyService(idempotencyRecordRepository, new ObjectMapper(), 1000, 60, true);
+    }
+
+    @Test
+    public void testConcurrentDuplicatesRunOnce() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        List<Future<ResponseEntity<?>>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> idempotencyService.execute("user:alice:k1", "parkingLotId=1", () -> {
+                runs.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("id", 7));
+            })));
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        release.countDown();
+
+        int replayed = 0;
+        for (Future<ResponseEntity<?>> result : results) {
+            ResponseEntity<?> response = result.get(5, TimeUnit.SECONDS);
+            assertEquals(201, response.getStatusCode().value());
+            if (response.getHeaders().containsKey(IdempotencyService.REPLAYED_HEADER)) {
+                assertEquals("{\"id\":7}", response.getBody());
+                replayed++;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(1, runs.get());
+        assertEquals(7, replayed);
+        verify(idempotencyRecordRepository, times(1)).save(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    public void testServerErrorsAreNotStored() {
+        idempotencyService.execute("user:alice:k2", "parkingLotId=1",
+                () -> ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("message", "down")));
+        ResponseEntity<?> retry = idempotencyService.execute("user:alice:k2", "parkingLotId=1",
+                () -> ResponseEntity.status(HttpStatus.CREATED).body(Map.of("id", 8)));
+
+        assertEquals(201, retry.getStatusCode().value());
+        assertFalse(retry.getHeaders().containsKey(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    public void testDatabaseTierReplaysAfterRestartAndChecksFingerprint() {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setIdempotencyKey("user:alice:k3");
+        record.setFingerprint("parkingLotId=1");
+        record.setStatus(201);
+        record.setBody("{\"id\":9}");
+        record.setCreatedAt(LocalDateTime.now().minusMinutes(5));
+        when(idempotencyRecordRepository.findById("user:alice:k3")).thenReturn(Optional.of(record));
+
+        ResponseEntity<?> replay = idempotencyService.execute("user:alice:k3", "parkingLotId=1",
+                () -> fail("must not run again"));
+
+        assertEquals(201, replay.getStatusCode().value());
+        assertEquals("{\"id\":9}", replay.getBody());
+        assertThrows(IdempotencyKeyReusedException.class, () ->
+                idempotencyService.execute("user:alice:k3", "parkingLotId=2", () -> fail("must not run")));
+    }
+}
@@ -0,0 +1,233 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class LotQueueSpaceAllocationTest {
+
+    private final Long parkingLotId = 1L;
+    private final Long otherLotId = 2L;
+
+    private ParkingLotRepository parkingLotRepository;
+    private PlatformTransactionManager transactionManager;
+    private LotQueueSpaceAllocation allocation;
+    // The reserved count stored in lot 1's row
+    private final AtomicInteger storedReservedSpaces = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() {
+        parkingLotRepository = mock(ParkingLotRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        allocation = new LotQueueSpaceAllocation(parkingLotRepository, transactionManager, 256);
+        when(parkingLotRepository.existsById(parkingLotId)).thenReturn(true);
+        when(parkingLotRepository.existsById(otherLotId)).thenReturn(true);
+        when(parkingLotRepository.findById(parkingLotId)).thenAnswer(invocation -> {
+            ParkingLot parkingLot = lot(parkingLotId, 100);
+            parkingLot.setReservedSpaces(storedReservedSpaces.get());
+            return Optional.of(parkingLot);
+        });
+        when(parkingLotRepository.findById(otherLotId)).thenReturn(Optional.of(lot(otherLotId, 100)));
+        when(parkingLotRepository.updateReservedSpaces(eq(parkingLotId), anyInt())).thenAnswer(invocation -> {
+            storedReservedSpaces.set(invocation.getArgument(1));
+            return 1;
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        allocation.shutdown();
+    }
+
+    @Test
+    public void testConcurrentReservationsNeverOverbook() throws Exception {
+        int threads = 64;
+        int attemptsPerThread = 50;
+        AtomicInteger admitted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        for (int i = 0; i < threads; i++) {
+            executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < attemptsPerThread; j++) {
+                    if (allocation.tryReserve(parkingLotId, 1).isPresent()) {
+                        admitted.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(100, admitted.get());
+        assertEquals(100, allocation.peekReservedSpaces(parkingLotId).getAsInt());
+    }
+
+    @Test
+    public void testCommandsApplyInArrivalOrder() {
+        List<Integer> counts = new ArrayList<>();
+        counts.add(allocation.tryReserve(parkingLotId, 60).getAsInt());
+        assertTrue(allocation.tryReserve(parkingLotId, 41).isEmpty());
+        counts.add(allocation.release(parkingLotId, 10).getAsInt());
+        counts.add(allocation.tryReserve(parkingLotId, 50).getAsInt());
+        assertTrue(allocation.release(parkingLotId, 101).isEmpty());
+
+        assertEquals(List.of(60, 50, 100), counts);
+    }
+
+    @Test
+    public void testFlushWritesChangedLotsTogether() {
+        allocation.tryReserve(parkingLotId, 1);
+        allocation.tryReserve(parkingLotId, 1);
+        allocation.tryReserve(otherLotId, 3);
+
+        allocation.flush();
+        allocation.flush();
+
+        verify(parkingLotRepository, times(1)).updateReservedSpaces(parkingLotId, 2);
+        verify(parkingLotRepository, times(1)).updateReservedSpaces(otherLotId, 3);
+        verify(parkingLotRepository, times(1)).findById(parkingLotId);
+    }
+
+    @Test
+    public void testEvictWritesPendingCountAndReloads() {
+        allocation.tryReserve(parkingLotId, 5);
+
+        allocation.evict(parkingLotId);
+
+        verify(parkingLotRepository, times(1)).updateReservedSpaces(parkingLotId, 5);
+        assertTrue(allocation.peekReservedSpaces(parkingLotId).isEmpty());
+        assertEquals(0, allocation.queueCount());
+        storedReservedSpaces.set(0);
+        when(parkingLotRepository.findById(parkingLotId)).thenReturn(Optional.of(lot(parkingLotId, 10)));
+        assertEquals(1, allocation.tryReserve(parkingLotId, 1).getAsInt());
+    }
+
+    @Test
+    public void testReloadDuringAnEvictionWaitsForItsFinalWrite() throws Exception {
+        allocation.tryReserve(parkingLotId, 5);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        List<Future<Integer>> reservations = new ArrayList<>();
+        // A reservation arrives after the queue has given up its count but before the row has it
+        when(parkingLotRepository.updateReservedSpaces(eq(parkingLotId), anyInt())).thenAnswer(invocation -> {
+            if (reservations.isEmpty()) {
+                reservations.add(executor.submit(() -> allocation.tryReserve(parkingLotId, 1).getAsInt()));
+                Thread.sleep(200);
+                assertFalse(reservations.get(0).isDone());
+            }
+            storedReservedSpaces.set(invocation.getArgument(1));
+            return 1;
+        });
+
+        allocation.evict(parkingLotId);
+        int reservedSpaces = reservations.get(0).get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        // Loaded from the row the eviction wrote, so the 5 are not lost
+        assertEquals(6, reservedSpaces);
+        assertEquals(6, allocation.peekReservedSpaces(parkingLotId).getAsInt());
+    }
+
+    @Test
+    public void testFailedEvictionKeepsTheCount() {
+        allocation.tryReserve(parkingLotId, 5);
+        when(parkingLotRepository.updateReservedSpaces(eq(parkingLotId), anyInt()))
+                .thenThrow(new IllegalStateException("database down"));
+
+        assertThrows(IllegalStateException.class, () -> allocation.evict(parkingLotId));
+        doReturn(1).when(parkingLotRepository).updateReservedSpaces(eq(parkingLotId), anyInt());
+
+        assertEquals(5, allocation.peekReservedSpaces(parkingLotId).getAsInt());
+        assertEquals(6, allocation.tryReserve(parkingLotId, 1).getAsInt());
+    }
+
+    @Test
+    public void testEvictWaitsForAFlushInProgress() throws Exception {
+        allocation.tryReserve(parkingLotId, 5);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        List<Future<?>> evictions = new ArrayList<>();
+        // A change and an eviction land while the flush's transaction is open
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> {
+            evictions.add(executor.submit(() -> {
+                allocation.tryReserve(parkingLotId, 1);
+                allocation.evict(parkingLotId);
+            }));
+            Thread.sleep(200);
+            assertFalse(evictions.get(0).isDone());
+            return null;
+        });
+
+        allocation.flush();
+        evictions.get(0).get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        // The flushed count never overwrites the evicted one
+        InOrder inOrder = inOrder(parkingLotRepository);
+        inOrder.verify(parkingLotRepository).updateReservedSpaces(parkingLotId, 5);
+        inOrder.verify(parkingLotRepository).updateReservedSpaces(parkingLotId, 6);
+    }
+
+    @Test
+    public void testRollbackAfterEvictIsAppliedToTheRow() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            allocation.tryReserve(parkingLotId, 5);
+            allocation.evict(parkingLotId);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(
+                            TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // Undone on a queue loaded from the evicted count, and written back by the next flush
+        verify(parkingLotRepository).updateReservedSpaces(parkingLotId, 5);
+        assertEquals(0, allocation.peekReservedSpaces(parkingLotId).getAsInt());
+        allocation.flush();
+        assertEquals(0, storedReservedSpaces.get());
+    }
+
+    @Test
+    public void testUnknownLotIsRejected() {
+        RuntimeException e = assertThrows(RuntimeException.class, () -> allocation.tryReserve(99L, 1));
+        assertEquals("Parking lot not found", e.getMessage());
+        assertThrows(RuntimeException.class, () -> allocation.release(100L, 1));
+
+        // Neither id got a queue
+        assertEquals(0, allocation.queueCount());
+        verify(parkingLotRepository, never()).findById(99L);
+    }
+
+    private static ParkingLot lot(Long id, int totalSpaces) {
+        ParkingLot parkingLot = new ParkingLot();
+        parkingLot.setId(id);
+        parkingLot.setTotalSpaces(totalSpaces);
+        parkingLot.setReservedSpaces(0);
+        return parkingLot;
+    }
+}
@@ -0,0 +1,143 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.dto.NearbyParkingLot;
+import com.dustngroh.parkinglotapi.dto.ParkingLotDTO;
+import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import com.dustngroh.parkinglotapi.event.ParkingLotChangedEvent;
+import com.dustngroh.parkinglotapi.event.ParkingLotsImportedEvent;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class NearbyLotIndexTest {
+
+    private ParkingLotRepository parkingLotRepository;
+    private SpaceAllocator spaceAllocator;
+    private NearbyLotIndex nearbyLotIndex;
+
+    @BeforeEach
+    public void setUp() {
+        parkingLotRepository = mock(ParkingLotRepository.class);
+        spaceAllocator = mock(SpaceAllocator.class);
+        when(spaceAllocator.peekReservedSpaces(anyLong())).thenReturn(OptionalInt.empty());
+        nearbyLotIndex = new NearbyLotIndex(parkingLotRepository, spaceAllocator, 0.05, 50_000);
+    }
+
+    @Test
+    public void testMatchesBruteForceOverManyLots() {
+        Random random = new Random(42);
+        List<ParkingLotDTO> lots = new ArrayList<>();
+        for (long id = 1; id <= 100_000; id++) {
+            // A 2 x 2 degree region, plus lots on either side of the antimeridian
+            double latitude = id % 10 == 0 ? random.nextDouble() * 2 - 1 : 40 + random.nextDouble() * 2;
+            double longitude = id % 10 == 0 ? 179 + random.nextDouble() * 2 : -75 + random.nextDouble() * 2;
+            lots.add(lot(id, latitude, longitude > 180 ? longitude - 360 : longitude, 10, random.nextInt(11)));
+        }
+        when(parkingLotRepository.findAllViews()).thenReturn(lots);
+        nearbyLotIndex.load();
+        assertEquals(100_000, nearbyLotIndex.size());
+
+        for (int query = 0; query < 200; query++) {
+            boolean antimeridian = query % 4 == 0;
+            double latitude = antimeridian ? random.nextDouble() * 2 - 1 : 39.9 + random.nextDouble() * 2.2;
+            double longitude = antimeridian ? (random.nextBoolean() ? 179.99 : -179.99) : -75.1 + random.nextDouble() * 2.2;
+            double radius = 100 + random.nextDouble() * 49_900;
+            int minAvailable = random.nextInt(4);
+            int limit = 1 + random.nextInt(20);
+
+            List<NearbyParkingLot> expected = lots.stream()
+                    .filter(lot -> lot.getTotalSpaces() - lot.getReservedSpaces() >= minAvailable)
+                    .map(lot -> new NearbyParkingLot(lot.getId(), lot.getName(), lot.getAddress(), lot.getLatitude(),
+                            lot.getLongitude(), lot.getTotalSpaces(), lot.getTotalSpaces() - lot.getReservedSpaces(),
+                            NearbyLotIndex.distanceMeters(latitude, longitude, lot.getLatitude(), lot.getLongitude())))
+                    .filter(lot -> lot.distanceMeters() <= radius)
+                    .sorted(Comparator.comparingDouble(NearbyParkingLot::distanceMeters)
+                            .thenComparing(NearbyParkingLot::id))
+                    .limit(limit)
+                    .toList();
+
+            assertEquals(expected, nearbyLotIndex.findNearby(latitude, longitude, radius, minAvailable, limit),
+                    "query " + query);
+        }
+    }
+
+    @Test
+    public void testFollowsReservedSpaceChanges() {
+        when(parkingLotRepository.findAllViews()).thenReturn(List.of(lot(1L, 40.0, -75.0, 2, 1)));
+        nearbyLotIndex.load();
+
+        nearbyLotIndex.onParkingLotChanged(ParkingLotChangedEvent.reservedSpacesChanged(1L, 2));
+        assertTrue(nearbyLotIndex.findNearby(40.0, -75.0, 1000, 1, 10).isEmpty());
+
+        // The allocator's own count wins over the one carried by the event
+        when(spaceAllocator.peekReservedSpaces(1L)).thenReturn(OptionalInt.of(0));
+        nearbyLotIndex.onParkingLotChanged(ParkingLotChangedEvent.reservedSpacesChanged(1L, 2));
+        assertEquals(2, nearbyLotIndex.findNearby(40.0, -75.0, 1000, 1, 10).get(0).availableSpaces());
+
+        // A rolled-back change re-reads the stored count when the allocator holds none
+        when(spaceAllocator.peekReservedSpaces(1L)).thenReturn(OptionalInt.empty());
+        when(parkingLotRepository.findReservedSpacesById(1L)).thenReturn(Optional.of(1));
+        nearbyLotIndex.onParkingLotChangeRolledBack(ParkingLotChangedEvent.reservedSpacesChanged(1L, 2));
+        assertEquals(1, nearbyLotIndex.findNearby(40.0, -75.0, 1000, 1, 10).get(0).availableSpaces());
+    }
+
+    @Test
+    public void testMovesAndDropsChangedLots() {
+        when(parkingLotRepository.findAllViews()).thenReturn(List.of(lot(1L, 40.0, -75.0, 10, 0)));
+        nearbyLotIndex.load();
+
+        ParkingLot moved = new ParkingLot();
+        moved.setId(1L);
+        moved.setName("Lot 1");
+        moved.setTotalSpaces(10);
+        moved.setLatitude(41.0);
+        moved.setLongitude(-75.0);
+        when(parkingLotRepository.findById(1L)).thenReturn(Optional.of(moved));
+        nearbyLotIndex.onParkingLotChanged(ParkingLotChangedEvent.lotChanged(1L));
+
+        assertTrue(nearbyLotIndex.findNearby(40.0, -75.0, 1000, 1, 10).isEmpty());
+        assertEquals(1L, nearbyLotIndex.findNearby(41.0, -75.0, 1000, 1, 10).get(0).id());
+
+        when(parkingLotRepository.findById(1L)).thenReturn(Optional.empty());
+        nearbyLotIndex.onParkingLotChanged(ParkingLotChangedEvent.lotChanged(1L));
+
+        assertEquals(0, nearbyLotIndex.size());
+        assertTrue(nearbyLotIndex.findNearby(41.0, -75.0, 1000, 1, 10).isEmpty());
+    }
+
+    @Test
+    public void testRejectsInvalidQueries() {
+        assertThrows(IllegalArgumentException.class, () -> nearbyLotIndex.findNearby(91, 0, 1000, 1, 10));
+        assertThrows(IllegalArgumentException.class, () -> nearbyLotIndex.findNearby(0, 0, 60_000, 1, 10));
+        assertThrows(IllegalArgumentException.class, () -> nearbyLotIndex.findNearby(0, 0, 1000, 1, 101));
+        assertThrows(IllegalArgumentException.class, () -> nearbyLotIndex.findNearby(0, 0, 1000, -1, 10));
+    }
+
+    @Test
+    public void testIndexesImportedLotsWithoutReadingThem() {
+        when(parkingLotRepository.findAllViews()).thenReturn(List.of());
+        nearbyLotIndex.load();
+        nearbyLotIndex.onParkingLotsImported(new ParkingLotsImportedEvent(List.of(
+                lot(1L, 40.0, -75.0, 10, 4), lot(2L, 40.001, -75.0, 10, 0))));
+
+        assertEquals(List.of(1L, 2L), nearbyLotIndex.findNearby(40.0, -75.0, 1000, 0, 10).stream()
+                .map(NearbyParkingLot::id).toList());
+        assertEquals(6, nearbyLotIndex.findNearby(40.0, -75.0, 1000, 0, 1).get(0).availableSpaces());
+        verify(parkingLotRepository, never()).findById(anyLong());
+    }
+
+    private static ParkingLotDTO lot(Long id, double latitude, double longitude, int totalSpaces, int reservedSpaces) {
+        return new ParkingLotDTO(id, "Lot " + id, "Street", totalSpaces, reservedSpaces, latitude, longitude);
+    }
+}
@@ -0,0 +1,185 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.dto.ParkingLotDTO;
+import com.dustngroh.parkinglotapi.dto.UtilizationBucket;
+import com.dustngroh.parkinglotapi.entity.OccupancyRollup;
+import com.dustngroh.parkinglotapi.event.ParkingLotChangedEvent;
+import com.dustngroh.parkinglotapi.event.ParkingLotsImportedEvent;
+import com.dustngroh.parkinglotapi.repository.OccupancyRollupRepository;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class OccupancyTimeSeriesTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long HOUR = 60 * MINUTE;
+    // The start of an hour
+    private static final long T0 = 480_000 * HOUR;
+
+    private ParkingLotRepository parkingLotRepository;
+    private OccupancyRollupRepository occupancyRollupRepository;
+    private SpaceAllocator spaceAllocator;
+    private OccupancyTimeSeries timeSeries;
+
+    @BeforeEach
+    public void setUp() {
+        parkingLotRepository = mock(ParkingLotRepository.class);
+        occupancyRollupRepository = mock(OccupancyRollupRepository.class);
+        spaceAllocator = mock(SpaceAllocator.class);
+        when(spaceAllocator.peekReservedSpaces(anyLong())).thenReturn(OptionalInt.empty());
+        when(parkingLotRepository.findAllViews())
+                .thenReturn(List.of(new ParkingLotDTO(1L, "Main Lot", "1 Main Street", 10, 2)));
+
+        timeSeries = create();
+        timeSeries.load(T0);
+        // 2 reserved for the first half hour, 6 for the second
+        timeSeries.onParkingLotChanged(ParkingLotChangedEvent.reservedSpacesChanged(1L, 6), T0 + 30 * MINUTE);
+    }
+
+    @Test
+    public void testBucketsSummariseTheCountAtEachStep() {
+        List<UtilizationBucket> hourly = timeSeries.getUtilization(1L, T0, T0 + HOUR, HOUR, T0 + HOUR).orElseThrow();
+        assertEquals(1, hourly.size());
+        assertEquals(2, hourly.get(0).minReserved());
+        assertEquals(6, hourly.get(0).maxReserved());
+        assertEquals(4.0, hourly.get(0).meanReserved());
+        assertEquals(0.4, hourly.get(0).utilization());
+
+        List<UtilizationBucket> halves =
+                timeSeries.getUtilization(1L, T0, T0 + HOUR, 30 * MINUTE, T0 + HOUR).orElseThrow();
+        assertEquals(2.0, halves.get(0).meanReserved());
+        assertEquals(6.0, halves.get(1).meanReserved());
+
+        // One-second buckets reach back 10 minutes only, and a step they serve is refused further back
+        assertThrows(IllegalArgumentException.class, () -> timeSeries.getUtilization(
+                1L, T0 + 40 * MINUTE, T0 + HOUR, 9 * MINUTE + 1000, T0 + HOUR));
+        List<UtilizationBucket> seconds =
+                timeSeries.getUtilization(1L, T0 + 51 * MINUTE, T0 + 2 * HOUR, 9 * MINUTE + 1000, T0 + HOUR)
+                        .orElseThrow();
+        assertEquals(6.0, seconds.get(0).meanReserved());
+        assertNull(seconds.get(1).meanReserved());
+
+        // Nothing is known about the future yet
+        List<UtilizationBucket> ahead =
+                timeSeries.getUtilization(1L, T0 + HOUR, T0 + 2 * HOUR, HOUR, T0 + HOUR).orElseThrow();
+        assertNull(ahead.get(0).utilization());
+    }
+
+    @Test
+    public void testRejectsBadRequestsAndUnknownLots() {
+        assertThrows(IllegalArgumentException.class,
+                () -> timeSeries.getUtilization(1L, T0, T0 + HOUR, 1500, T0 + HOUR));
+        assertThrows(IllegalArgumentException.class,
+                () -> timeSeries.getUtilization(1L, T0 + HOUR, T0, HOUR, T0 + HOUR));
+        assertThrows(IllegalArgumentException.class,
+                () -> timeSeries.getUtilization(1L, T0, T0 + 30 * 24 * HOUR, MINUTE, T0 + HOUR));
+        assertTrue(timeSeries.getUtilization(2L, T0, T0 + HOUR, HOUR, T0 + HOUR).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new OccupancyTimeSeries(parkingLotRepository,
+                occupancyRollupRepository, spaceAllocator, mock(PlatformTransactionManager.class), 600, 59, 720));
+    }
+
+    @Test
+    public void testFlushedRowsAreRestoredAfterARestart() {
+        assertEquals(2, timeSeries.flush(T0 + HOUR + 10 * MINUTE));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<OccupancyRollup>> saved = ArgumentCaptor.forClass(List.class);
+        verify(occupancyRollupRepository).saveAll(saved.capture());
+        verify(occupancyRollupRepository).deleteLotHoursBetween(List.of(1L), T0 / HOUR, T0 / HOUR + 1);
+        List<OccupancyRollup> rows = saved.getValue();
+        assertEquals(T0 / HOUR, rows.get(0).getEpochHour());
+        assertEquals(4.0, rows.get(0).getMeanReserved());
+        assertEquals(OccupancyRollup.MINUTES_BYTES, rows.get(0).getMinutes().length);
+
+        for (int i = 0; i < rows.size(); i++) {
+            rows.get(i).setId(i + 1L);
+        }
+
+        // Restarted at T0 + 2h, so the last 50 minutes were never recorded
+        when(occupancyRollupRepository.findHoursFromAfter(anyLong(), anyLong(), any())).thenReturn(rows);
+        when(parkingLotRepository.findAllViews())
+                .thenReturn(List.of(new ParkingLotDTO(1L, "Main Lot", "1 Main Street", 10, 6)));
+        OccupancyTimeSeries restarted = create();
+        restarted.load(T0 + 2 * HOUR);
+
+        List<UtilizationBucket> halves =
+                restarted.getUtilization(1L, T0, T0 + HOUR, 30 * MINUTE, T0 + 2 * HOUR).orElseThrow();
+        assertEquals(2.0, halves.get(0).meanReserved());
+        assertEquals(6.0, halves.get(1).meanReserved());
+
+        List<UtilizationBucket> secondHour =
+                restarted.getUtilization(1L, T0 + HOUR, T0 + 2 * HOUR, 10 * MINUTE, T0 + 2 * HOUR).orElseThrow();
+        assertEquals(6.0, secondHour.get(0).meanReserved());
+        assertNull(secondHour.get(1).meanReserved());
+
+        List<UtilizationBucket> hourly =
+                restarted.getUtilization(1L, T0, T0 + 2 * HOUR, HOUR, T0 + 2 * HOUR).orElseThrow();
+        assertEquals(4.0, hourly.get(0).meanReserved());
+        assertEquals(6, hourly.get(1).minReserved());
+    }
+
+    @Test
+    public void testOnlyOutOfDateHoursAreWritten() {
+        when(parkingLotRepository.findAllViews()).thenReturn(List.of(
+                new ParkingLotDTO(1L, "Main Lot", "1 Main Street", 10, 2),
+                new ParkingLotDTO(2L, "Side Lot", "2 Side Street", 4, 3)));
+        OccupancyTimeSeries series = create();
+        series.load(T0);
+        series.onParkingLotChanged(ParkingLotChangedEvent.reservedSpacesChanged(1L, 6), T0 + 30 * MINUTE);
+        series.onParkingLotChanged(ParkingLotChangedEvent.reservedSpacesChanged(2L, 3), T0 + 30 * MINUTE);
+
+        // Lot 2's count never changed, so it has no buckets and no rows, but still has a history
+        List<UtilizationBucket> steady =
+                series.getUtilization(2L, T0, T0 + HOUR, 30 * MINUTE, T0 + HOUR).orElseThrow();
+        assertEquals(3.0, steady.get(0).meanReserved());
+        assertEquals(0.75, steady.get(1).utilization());
+
+        assertEquals(1, series.flush(T0 + 40 * MINUTE));
+        verify(occupancyRollupRepository).deleteLotHoursBetween(List.of(1L), T0 / HOUR, T0 / HOUR);
+        // Nothing changed since
+        assertEquals(0, series.flush(T0 + 50 * MINUTE));
+        // The finished hour is written once more, whole
+        assertEquals(1, series.flush(T0 + HOUR + MINUTE));
+        verify(occupancyRollupRepository, times(2)).saveAll(any());
+    }
+
+    @Test
+    public void testImportedLotsAreTrackedWithoutReadingThem() {
+        timeSeries.onParkingLotsImported(
+                new ParkingLotsImportedEvent(List.of(new ParkingLotDTO(2L, "Side Lot", "2 Side Street", 4, 1))),
+                T0 + 30 * MINUTE);
+
+        List<UtilizationBucket> imported =
+                timeSeries.getUtilization(2L, T0, T0 + HOUR, 30 * MINUTE, T0 + HOUR).orElseThrow();
+        assertNull(imported.get(0).meanReserved());
+        assertEquals(0.25, imported.get(1).utilization());
+        verify(parkingLotRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    public void testDeletedLotIsDropped() {
+        when(parkingLotRepository.findById(1L)).thenReturn(Optional.empty());
+        timeSeries.onParkingLotChanged(ParkingLotChangedEvent.lotChanged(1L), T0 + HOUR);
+
+        assertTrue(timeSeries.getUtilization(1L, T0, T0 + HOUR, HOUR, T0 + HOUR).isEmpty());
+        verify(occupancyRollupRepository).deleteByParkingLotId(1L);
+        assertEquals(0, timeSeries.flush(T0 + HOUR));
+    }
+
+    private OccupancyTimeSeries create() {
+        return new OccupancyTimeSeries(parkingLotRepository, occupancyRollupRepository, spaceAllocator,
+                mock(PlatformTransactionManager.class), 600, 1440, 720);
+    }
+}
@@ -0,0 +1,196 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.dto.ParkingLotImportResult;
+import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import com.dustngroh.parkinglotapi.event.ParkingLotChangedEvent;
+import com.dustngroh.parkinglotapi.event.ParkingLotsImportedEvent;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Batches commit on their own, so the test runs outside the usual rolled-back test transaction
+@DataJpaTest(properties = {
+        "parkinglot.import.batch-size=100",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({ParkingLotImportService.class, ParkingLotImportServiceTest.TestConfig.class})
+@ImportAutoConfiguration(ValidationAutoConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ParkingLotImportServiceTest {
+
+    @Autowired
+    private ParkingLotImportService parkingLotImportService;
+
+    @Autowired
+    private ParkingLotRepository parkingLotRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private RecordedEvents recordedEvents;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        recordedEvents.events.clear();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        parkingLotRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void testImportCsvReportsBadRowsAndKeepsTheRest() throws Exception {
+        ParkingLot existing = new ParkingLot();
+        existing.setName("Existing Lot");
+        existing.setTotalSpaces(5);
+        parkingLotRepository.save(existing);
+
+        ParkingLotImportResult result = parkingLotImportService.importCsv(body("""
+                name,address,totalSpaces,reservedSpaces
+                Main Lot,"1 Main St, Springfield",100,10
+                Full Lot,2 Main St,10,11
+                Main Lot,3 Main St,10,0
+
+                Existing Lot,4 Main St,10,0
+                No Spaces,5 Main St,abc,0
+                ,6 Main St,10,0
+                "North ""Lot\""",7 Main St,20,0
+                """));
+
+        assertEquals(2, result.getImported());
+        assertEquals(5, result.getFailed());
+        assertEquals(List.of(
+                "Line 3: Reserved spaces cannot exceed total spaces.",
+                "Line 4: Duplicate name 'Main Lot' earlier in the upload.",
+                "Line 7: Total and reserved spaces must be whole numbers.",
+                "Line 8: Name is required.",
+                "Line 6: A parking lot named 'Existing Lot' already exists."), result.getErrors());
+        assertEquals("1 Main St, Springfield", parkingLotRepository.findByName("Main Lot").orElseThrow().getAddress());
+        assertTrue(parkingLotRepository.findByName("North \"Lot\"").isPresent());
+    }
+
+    @Test
+    public void testImportCsvRequiresHeader() throws Exception {
+        ParkingLotImportResult result = parkingLotImportService.importCsv(body("""
+                Main Lot,1 Main St,100,10
+                North Lot,2 Main St,100,10
+                """));
+
+        assertEquals(0, result.getImported());
+        assertEquals(2, result.getFailed());
+        assertTrue(result.getErrors().get(0).startsWith("Line 1: Header must name the columns"));
+        assertEquals(0, parkingLotRepository.count());
+    }
+
+    @Test
+    public void testImportCsvReadsOptionalPosition() throws Exception {
+        ParkingLotImportResult result = parkingLotImportService.importCsv(body("""
+                name,address,totalSpaces,reservedSpaces,latitude,longitude
+                Main Lot,1 Main St,100,10,40.7128,-74.006
+                North Lot,2 Main St,100,10,,
+                Half Lot,3 Main St,100,10,40.7,
+                Far Lot,4 Main St,100,10,91,0
+                """));
+
+        assertEquals(2, result.getImported());
+        assertEquals(List.of(
+                "Line 4: Latitude and longitude must be provided together.",
+                "Line 5: Latitude must be between -90 and 90."), result.getErrors());
+        ParkingLot mainLot = parkingLotRepository.findByName("Main Lot").orElseThrow();
+        assertEquals(40.7128, mainLot.getLatitude());
+        assertEquals(-74.006, mainLot.getLongitude());
+        assertNull(parkingLotRepository.findByName("North Lot").orElseThrow().getLatitude());
+    }
+
+    @Test
+    public void testImportNdjsonWritesInBatches() throws Exception {
+        StringBuilder upload = new StringBuilder();
+        for (int i = 1; i <= 250; i++) {
+            upload.append("{\"name\":\"Lot ").append(i)
+                    .append("\",\"address\":\"Street\",\"totalSpaces\":10,\"reservedSpaces\":0}\n");
+        }
+        upload.append("{not json}\n");
+
+        ParkingLotImportResult result = parkingLotImportService.importNdjson(body(upload.toString()));
+
+        assertEquals(250, result.getImported());
+        assertEquals(1, result.getFailed());
+        assertTrue(result.getErrors().get(0).startsWith("Line 251: Invalid JSON"));
+        // Three batches of at most 100 rows, each its own transaction
+        assertEquals(3, statistics.getTransactionCount());
+        assertEquals(250, statistics.getEntityInsertCount());
+        assertEquals(250, parkingLotRepository.count());
+        // One event per batch, carrying its lots
+        assertEquals(List.of(100, 100, 50), recordedEvents.events.stream()
+                .map(event -> ((ParkingLotsImportedEvent) event).lots().size()).toList());
+    }
+
+    @Test
+    public void testDuplicateInALaterBatchIsCaughtAsTaken() throws Exception {
+        StringBuilder upload = new StringBuilder("name,address,totalSpaces,reservedSpaces\n");
+        for (int i = 1; i <= 100; i++) {
+            upload.append("Lot ").append(i).append(",Street,10,0\n");
+        }
+        upload.append("Lot 1,Street,10,0\n");
+
+        ParkingLotImportResult result = parkingLotImportService.importCsv(body(upload.toString()));
+
+        assertEquals(100, result.getImported());
+        assertEquals(List.of("Line 102: A parking lot named 'Lot 1' already exists."), result.getErrors());
+    }
+
+    private static InputStream body(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TestConfiguration
+    static class TestConfig {
+        @Bean
+        public ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+
+        @Bean
+        public RecordedEvents recordedEvents() {
+            return new RecordedEvents();
+        }
+    }
+
+    static class RecordedEvents {
+        private final List<Object> events = new CopyOnWriteArrayList<>();
+
+        @EventListener({ParkingLotChangedEvent.class, ParkingLotsImportedEvent.class})
+        public void record(Object event) {
+            events.add(event);
+        }
+    }
+}
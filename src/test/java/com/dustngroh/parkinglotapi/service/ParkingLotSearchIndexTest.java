@@ -0,0 +1,118 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.dto.ParkingLotDTO;
+import com.dustngroh.parkinglotapi.dto.ParkingLotMatch;
+import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import com.dustngroh.parkinglotapi.event.ParkingLotChangedEvent;
+import com.dustngroh.parkinglotapi.event.ParkingLotsImportedEvent;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ParkingLotSearchIndexTest {
+
+    private ParkingLotRepository parkingLotRepository;
+    private ParkingLotSearchIndex searchIndex;
+
+    @BeforeEach
+    public void setUp() {
+        parkingLotRepository = mock(ParkingLotRepository.class);
+        searchIndex = new ParkingLotSearchIndex(parkingLotRepository);
+        when(parkingLotRepository.findAllViews()).thenReturn(List.of(
+                lot(1L, "Main Lot", "1 Main Street"),
+                lot(2L, "North Garage", "20 Maple Avenue"),
+                lot(3L, "Mainland Deck", "5 Harbor Road"),
+                lot(4L, "Café Central", "9 Rue de la Paix")));
+        searchIndex.load();
+    }
+
+    @Test
+    public void testPrefixesRankNamesAboveAddresses() {
+        assertEquals(List.of(1L, 3L, 2L), ids(searchIndex.search("ma", 10)));
+        // Every word must match; "ma st" is Main Street but not Maple Avenue
+        assertEquals(List.of(1L), ids(searchIndex.search("ma st", 10)));
+        assertEquals(List.of(1L), ids(searchIndex.search("main", 1)));
+    }
+
+    @Test
+    public void testMatchesTyposAndIgnoresAccentsAndCase() {
+        assertEquals(List.of(2L), ids(searchIndex.search("garrage", 10)));
+        assertEquals(List.of(2L), ids(searchIndex.search("nrth", 10)));
+        assertEquals(List.of(4L), ids(searchIndex.search("CAFE cent", 10)));
+        assertTrue(searchIndex.search("xyz", 10).isEmpty());
+    }
+
+    @Test
+    public void testFollowsCreatedAndDeletedLots() {
+        ParkingLot created = new ParkingLot();
+        created.setId(5L);
+        created.setName("Harbor View");
+        created.setAddress("2 Pier Street");
+        when(parkingLotRepository.findById(5L)).thenReturn(Optional.of(created));
+        searchIndex.onParkingLotChanged(ParkingLotChangedEvent.lotChanged(5L));
+
+        assertEquals(List.of(5L, 3L), ids(searchIndex.search("harb", 10)));
+
+        when(parkingLotRepository.findById(3L)).thenReturn(Optional.empty());
+        searchIndex.onParkingLotChanged(ParkingLotChangedEvent.lotChanged(3L));
+
+        assertEquals(List.of(5L), ids(searchIndex.search("harb", 10)));
+        assertEquals(4, searchIndex.size());
+        verify(parkingLotRepository, never()).findById(1L);
+    }
+
+    @Test
+    public void testIndexesImportedLotsWithoutReadingThem() {
+        searchIndex.onParkingLotsImported(new ParkingLotsImportedEvent(List.of(
+                lot(5L, "Harbor View", "2 Pier Street"), lot(6L, "Harbor Point", "4 Pier Street"))));
+
+        assertEquals(List.of(5L, 6L, 3L), ids(searchIndex.search("harb", 10)));
+        verify(parkingLotRepository, never()).findById(any());
+    }
+
+    @Test
+    public void testSearchesManyLots() {
+        List<ParkingLotDTO> lots = new ArrayList<>();
+        for (long id = 1; id <= 100_000; id++) {
+            lots.add(lot(id, "Lot " + id, id + " Main Street"));
+        }
+        when(parkingLotRepository.findAllViews()).thenReturn(lots);
+        searchIndex = new ParkingLotSearchIndex(parkingLotRepository);
+        searchIndex.load();
+
+        List<ParkingLotMatch> matches = searchIndex.search("lot 4242", 3);
+
+        assertEquals(List.of(4242L, 42420L, 42421L), ids(matches));
+        assertTrue(matches.get(0).score() > matches.get(1).score());
+        assertEquals(20, searchIndex.search("main str", 20).size());
+    }
+
+    @Test
+    public void testRejectsInvalidQueries() {
+        assertThrows(IllegalArgumentException.class, () -> searchIndex.search(" ", 10));
+        assertThrows(IllegalArgumentException.class, () -> searchIndex.search("a".repeat(101), 10));
+        assertThrows(IllegalArgumentException.class, () -> searchIndex.search("main", 0));
+    }
+
+    @Test
+    public void testPrefixEditDistance() {
+        assertEquals(0, ParkingLotSearchIndex.prefixEditDistance("gar", "garage", 1));
+        assertEquals(1, ParkingLotSearchIndex.prefixEditDistance("garr", "garage", 1));
+        assertEquals(2, ParkingLotSearchIndex.prefixEditDistance("xyz", "garage", 1));
+    }
+
+    private static List<Long> ids(List<ParkingLotMatch> matches) {
+        return matches.stream().map(ParkingLotMatch::id).toList();
+    }
+
+    private static ParkingLotDTO lot(Long id, String name, String address) {
+        return new ParkingLotDTO(id, name, address, 10, 0);
+    }
+}
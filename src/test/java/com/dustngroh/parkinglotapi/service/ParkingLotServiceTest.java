@@ -9,6 +9,7 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.context.SpringBootTest;
 
 
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -26,7 +27,10 @@ public class ParkingLotServiceTest {
     @BeforeEach
     public void setUp() {
         parkingLotRepository = mock(ParkingLotRepository.class);
-        parkingLotService = new ParkingLotService(parkingLotRepository);
+        SpaceAllocator spaceAllocator = new SpaceAllocator(List.of(new AvailabilityEngine(parkingLotRepository)), "in-memory", event -> {});
+        parkingLotService = new ParkingLotService(parkingLotRepository, spaceAllocator,
+                mock(SlotOccupancyIndex.class), mock(ReservationJournal.class),
+                event -> {});
     }
 
     @Test
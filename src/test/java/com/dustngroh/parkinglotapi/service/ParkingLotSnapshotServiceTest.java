@@ -0,0 +1,78 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.dto.ParkingLotDTO;
+import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import com.dustngroh.parkinglotapi.event.ParkingLotChangedEvent;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import com.dustngroh.parkinglotapi.util.PageCursor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ParkingLotSnapshotServiceTest {
+
+    private ParkingLotRepository parkingLotRepository;
+    private SpaceAllocator spaceAllocator;
+    private ParkingLotSnapshotService snapshotService;
+
+    @BeforeEach
+    public void setUp() {
+        parkingLotRepository = mock(ParkingLotRepository.class);
+        // Events go straight to the snapshot, as they do outside a transaction
+        spaceAllocator = new SpaceAllocator(List.of(new AvailabilityEngine(parkingLotRepository)), "in-memory",
+                event -> snapshotService.onParkingLotChanged((ParkingLotChangedEvent) event));
+        snapshotService = new ParkingLotSnapshotService(parkingLotRepository, spaceAllocator, new ObjectMapper());
+
+        ParkingLot parkingLot = new ParkingLot();
+        parkingLot.setId(1L);
+        parkingLot.setTotalSpaces(10);
+        when(parkingLotRepository.findById(1L)).thenReturn(Optional.of(parkingLot));
+        // A fresh list per call, as the real query returns
+        when(parkingLotRepository.findAllViews()).thenAnswer(invocation -> List.of(
+                new ParkingLotDTO(1L, "Main Lot", "Unknown", 10, 0),
+                new ParkingLotDTO(2L, "North Lot", "Unknown", 20, 5)));
+    }
+
+    @Test
+    public void testSnapshotIsReusedUntilSomethingChanges() {
+        ParkingLotSnapshot first = snapshotService.getSnapshot();
+        ParkingLotSnapshot second = snapshotService.getSnapshot();
+
+        assertSame(first, second);
+        verify(parkingLotRepository, times(1)).findAllViews();
+    }
+
+    @Test
+    public void testChangeRebuildsWithNewETagAndInMemoryCounts() {
+        ParkingLotSnapshot before = snapshotService.getSnapshot();
+
+        spaceAllocator.tryReserve(1L);
+        ParkingLotSnapshot after = snapshotService.getSnapshot();
+
+        assertNotEquals(before.getETag(), after.getETag());
+        // The in-memory count wins over the (not yet flushed) stored row
+        assertEquals(1, after.getLots().get(0).getReservedSpaces());
+        assertEquals(5, after.getLots().get(1).getReservedSpaces());
+        verify(parkingLotRepository, times(2)).findAllViews();
+    }
+
+    @Test
+    public void testPagesAreSerializedOnceAndCarryNextCursor() throws Exception {
+        ParkingLotSnapshot snapshot = snapshotService.getSnapshot();
+
+        ParkingLotSnapshot.Page firstPage = snapshot.page(0L, 1);
+        ParkingLotSnapshot.Page lastPage = snapshot.page(1L, 1);
+
+        assertSame(firstPage, snapshot.page(0L, 1));
+        assertEquals(PageCursor.encode(1L), firstPage.nextCursor());
+        assertNull(lastPage.nextCursor());
+        ParkingLotDTO[] lots = new ObjectMapper().readValue(lastPage.body(), ParkingLotDTO[].class);
+        assertEquals("North Lot", lots[0].getName());
+    }
+}
@@ -0,0 +1,141 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.dto.ReservationFeedEvent;
+import com.dustngroh.parkinglotapi.dto.ReservationKey;
+import com.dustngroh.parkinglotapi.entity.ReservationEvent;
+import com.dustngroh.parkinglotapi.repository.ReservationEventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The relay commits in its own transactions, so the test runs outside the usual rolled-back test transaction
+@DataJpaTest
+@Import(ReservationEventService.class)
+@TestPropertySource(properties = "parkinglot.outbox.batch-size=2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ReservationEventServiceTest {
+
+    @Autowired
+    private ReservationEventService reservationEventService;
+
+    @Autowired
+    private ReservationEventRepository reservationEventRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void setUp() {
+        reservationEventRepository.deleteAllInBatch();
+        reservationEventService.loadLastPosition();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        reservationEventRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void testRelayGivesConsecutivePositionsInBatches() {
+        record(5);
+
+        reservationEventService.relay();
+
+        List<ReservationFeedEvent> feed = reservationEventRepository.findFeedAfter(0L, Limit.of(10));
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), feed.stream().map(ReservationFeedEvent::position).toList());
+        assertEquals(List.of(100L, 101L, 102L, 103L, 104L), feed.stream().map(ReservationFeedEvent::reservationId).toList());
+        assertEquals(5, reservationEventService.getLastPosition());
+        assertTrue(reservationEventRepository.findUnrelayed(Limit.of(10)).isEmpty());
+    }
+
+    @Test
+    public void testRecordNeedsTheCallersTransaction() {
+        assertThrows(IllegalTransactionStateException.class, () -> reservationEventService.recordAll(
+                ReservationEvent.CREATED, List.of(new ReservationKey(1L, 1L, 1L))));
+    }
+
+    @Test
+    public void testWaitingReaderGetsTheNextBatch() throws Exception {
+        CompletableFuture<List<ReservationFeedEvent>> waiting = reservationEventService.poll(0L, 10, 5000);
+        assertFalse(waiting.isDone());
+
+        record(2);
+        reservationEventService.relay();
+
+        List<ReservationFeedEvent> events = waiting.get(1, TimeUnit.SECONDS);
+        assertEquals(List.of(1L, 2L), events.stream().map(ReservationFeedEvent::position).toList());
+        assertEquals(ReservationEvent.CREATED, events.getFirst().type());
+    }
+
+    @Test
+    public void testWaitEndsWithAnEmptyPage() throws Exception {
+        record(1);
+        reservationEventService.relay();
+
+        assertEquals(1, reservationEventService.poll(0L, 10, 5000).get(1, TimeUnit.SECONDS).size());
+        assertTrue(reservationEventService.poll(1L, 10, 50).get(1, TimeUnit.SECONDS).isEmpty());
+    }
+
+    @Test
+    public void testPurgeDropsOldRelayedEvents() {
+        record(3);
+        reservationEventService.relay();
+        List<ReservationEvent> events = reservationEventRepository.findAll();
+        events.stream()
+                .filter(event -> event.getFeedPosition() <= 2)
+                .forEach(event -> event.setOccurredAt(LocalDateTime.now().minusDays(30)));
+        reservationEventRepository.saveAll(events);
+
+        assertEquals(2, reservationEventService.purge());
+
+        assertTrue(reservationEventService.isRetained(0L));
+        assertFalse(reservationEventService.isRetained(1L));
+        assertTrue(reservationEventService.isRetained(2L));
+    }
+
+    @Test
+    public void testPurgeKeepsTheNewestEventForTheNextStart() {
+        record(3);
+        reservationEventService.relay();
+        List<ReservationEvent> events = reservationEventRepository.findAll();
+        events.forEach(event -> event.setOccurredAt(LocalDateTime.now().minusDays(30)));
+        reservationEventRepository.saveAll(events);
+
+        assertEquals(2, reservationEventService.purge());
+        assertFalse(reservationEventService.isRetained(1L));
+        assertTrue(reservationEventService.isRetained(2L));
+        reservationEventService.loadLastPosition();
+        assertEquals(3, reservationEventService.getLastPosition());
+
+        // With no rows left at all, only a reader at the end has missed nothing
+        reservationEventRepository.deleteAllInBatch();
+        assertFalse(reservationEventService.isRetained(2L));
+        assertTrue(reservationEventService.isRetained(3L));
+    }
+
+    private void record(int count) {
+        List<ReservationKey> keys = LongStream.range(0, count)
+                .mapToObj(i -> new ReservationKey(100 + i, 7L, 1L))
+                .toList();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                reservationEventService.recordAll(ReservationEvent.CREATED, keys));
+    }
+}
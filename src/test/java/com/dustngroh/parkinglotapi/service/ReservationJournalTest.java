@@ -0,0 +1,273 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.dto.ParkingLotDTO;
+import com.dustngroh.parkinglotapi.dto.ReservationDTO;
+import com.dustngroh.parkinglotapi.entity.ParkingLot;
+import com.dustngroh.parkinglotapi.event.ParkingLotChangedEvent;
+import com.dustngroh.parkinglotapi.event.ParkingLotsImportedEvent;
+import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
+import com.dustngroh.parkinglotapi.repository.ReservationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ReservationJournalTest {
+
+    @TempDir
+    private Path directory;
+
+    private ParkingLotRepository parkingLotRepository;
+    private ReservationRepository reservationRepository;
+    private SpaceAllocator spaceAllocator;
+    private ReservationJournal journal;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        parkingLotRepository = mock(ParkingLotRepository.class);
+        reservationRepository = mock(ReservationRepository.class);
+        spaceAllocator = mock(SpaceAllocator.class);
+        when(spaceAllocator.peekReservedSpaces(anyLong())).thenReturn(OptionalInt.empty());
+
+        // The database holds lot 1 with one reservation without an end and one time-slot reservation
+        when(parkingLotRepository.findAllViews())
+                .thenReturn(List.of(new ParkingLotDTO(1L, "Main Lot", "1 Main Street", 10, 1)));
+        ReservationDTO open = new ReservationDTO(10L, 100L, "alice", 1L, "Main Lot");
+        ReservationDTO slot = new ReservationDTO(11L, 101L, "bob", null, 1L, "Main Lot",
+                null, LocalDateTime.now(), LocalDateTime.now().plusHours(1));
+        when(reservationRepository.findViewsAfter(eq(0L), any(Limit.class))).thenReturn(List.of(open, slot));
+
+        journal = open(1024);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        journal.close();
+    }
+
+    @Test
+    public void testSeedsFromDatabaseAndRecoversAfterRestart() throws IOException {
+        assertEquals(1, journal.getReservedSpaces(1L).getAsInt());
+        assertEquals(2, journal.getReservationCount());
+
+        journal.reserved(12L, 102L, 1L, true);
+        journal.cancelled(10L);
+        // A time-slot reservation frees no reserved space
+        journal.cancelled(11L);
+        journal.spacesAdjusted(1L, 2);
+        journal.close();
+
+        journal = open(1024);
+        assertEquals(3, journal.getReservedSpaces(1L).getAsInt());
+        assertEquals(1, journal.getReservationCount());
+        assertEquals(4, journal.getLastSequence());
+        // Seeded once only
+        verify(parkingLotRepository, times(1)).findAllViews();
+    }
+
+    @Test
+    public void testRestartsFromSnapshotAndDropsCoveredSegments() throws IOException {
+        journal.close();
+        journal = open(4);
+        for (long id = 1000; id < 3000; id++) {
+            journal.reserved(id, id, 1L, true);
+        }
+        assertTrue(segments() > 1);
+
+        journal.snapshot();
+        assertEquals(1, segments());
+        for (long id = 1000; id < 1500; id++) {
+            journal.expired(id);
+        }
+        journal.close();
+
+        journal = open(4);
+        assertEquals(1 + 1500, journal.getReservedSpaces(1L).getAsInt());
+        assertEquals(2 + 1500, journal.getReservationCount());
+        assertEquals(2500, journal.getLastSequence());
+    }
+
+    @Test
+    public void testTornRecordAtTheEndIsDropped() throws IOException {
+        journal.reserved(12L, 102L, 1L, true);
+        journal.reserved(13L, 103L, 1L, true);
+        journal.close();
+
+        // Flip a byte in the second record's payload, as if the crash came mid-write
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.toString().endsWith(".log")).findFirst().orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(45 + 16 + 10);
+            file.write(0x7F);
+        }
+
+        journal = open(1024);
+        assertEquals(1, journal.getLastSequence());
+        assertEquals(2, journal.getReservedSpaces(1L).getAsInt());
+
+        journal.reserved(14L, 104L, 1L, true);
+        journal.close();
+        journal = open(1024);
+        assertEquals(2, journal.getLastSequence());
+        assertEquals(3, journal.getReservedSpaces(1L).getAsInt());
+    }
+
+    @Test
+    public void testRemovalJournaledBeforeTheCreation() {
+        // A cancellation overtaking its creation nets out; a confirmation keeps the space taken
+        journal.cancelled(20L);
+        journal.reserved(20L, 120L, 1L, true);
+        journal.confirmed(21L);
+        journal.reserved(21L, 121L, 1L, true);
+
+        assertEquals(2, journal.getReservedSpaces(1L).getAsInt());
+        assertEquals(2, journal.getReservationCount());
+    }
+
+    @Test
+    public void testWritesTransactionRecordsOnCommitOnly() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            journal.reserved(12L, 102L, 1L, true);
+            journal.reserved(13L, 103L, 1L, true);
+            assertEquals(0, journal.getLastSequence());
+            complete(TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(2, journal.getLastSequence());
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            journal.cancelled(12L);
+            complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(2, journal.getLastSequence());
+        assertEquals(3, journal.getReservedSpaces(1L).getAsInt());
+    }
+
+    @Test
+    public void testFollowsLotChanges() {
+        ParkingLot edited = new ParkingLot();
+        edited.setId(1L);
+        edited.setTotalSpaces(10);
+        edited.setReservedSpaces(5);
+        when(parkingLotRepository.findById(1L)).thenReturn(Optional.of(edited));
+        journal.onParkingLotChanged(ParkingLotChangedEvent.lotChanged(1L));
+        assertEquals(5, journal.getReservedSpaces(1L).getAsInt());
+
+        when(parkingLotRepository.findById(1L)).thenReturn(Optional.empty());
+        journal.onParkingLotChanged(ParkingLotChangedEvent.lotChanged(1L));
+        assertTrue(journal.getReservedSpaces(1L).isEmpty());
+        assertEquals(0, journal.getReservationCount());
+    }
+
+    @Test
+    public void testJournalsImportedLotsInOneWrite() {
+        long before = journal.getLastSequence();
+        journal.onParkingLotsImported(new ParkingLotsImportedEvent(List.of(
+                new ParkingLotDTO(7L, "Lot 7", "Street", 10, 2), new ParkingLotDTO(8L, "Lot 8", "Street", 10, 0))));
+
+        assertEquals(before + 2, journal.getLastSequence());
+        assertEquals(2, journal.getReservedSpaces(7L).getAsInt());
+        assertEquals(0, journal.getReservedSpaces(8L).getAsInt());
+        verify(parkingLotRepository, never()).findById(any());
+    }
+
+    @Test
+    public void testFailedWriteIsCountedAndStopsTheJournalWithoutThrowing() throws IOException {
+        // Segments of 1 KB, so the records below need a new one, which cannot be created
+        journal.close();
+        deleteDirectory();
+        Files.createDirectory(directory);
+        journal = open(1);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        journal.bindTo(registry);
+        deleteDirectory();
+
+        for (int i = 0; i < 100; i++) {
+            journal.spacesAdjusted(1L, 1);
+        }
+
+        assertTrue(journal.isDegraded());
+        assertEquals(1.0, registry.get("parkinglot.journal.write.failures").functionCounter().count());
+        assertEquals(1.0, registry.get("parkinglot.journal.degraded").gauge().value());
+    }
+
+    @Test
+    public void testReplaysManyRecordsQuickly() throws IOException {
+        // Written as one transaction, so with a single fsync
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            for (long id = 1000; id < 201_000; id++) {
+                journal.reserved(id, id, 1 + id % 50, true);
+            }
+            complete(TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        journal.close();
+
+        long start = System.nanoTime();
+        journal = open(1024);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(200_000, journal.getLastSequence());
+        assertEquals(200_002, journal.getReservationCount());
+        assertTrue(millis < 10_000, "Replay took " + millis + " ms");
+    }
+
+    private ReservationJournal open(int segmentSizeKb) throws IOException {
+        ReservationJournal opened = new ReservationJournal(parkingLotRepository, reservationRepository, spaceAllocator,
+                true, directory.toString(), segmentSizeKb);
+        opened.open();
+        return opened;
+    }
+
+    private void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private long segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".log")).count();
+        }
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+}
@@ -1,10 +1,19 @@
 package com.dustngroh.parkinglotapi.service;
 
+import com.dustngroh.parkinglotapi.dto.ReservationDTO;
+import com.dustngroh.parkinglotapi.dto.ReservationKey;
 import com.dustngroh.parkinglotapi.entity.ParkingLot;
 import com.dustngroh.parkinglotapi.entity.Reservation;
 import com.dustngroh.parkinglotapi.entity.User;
+import com.dustngroh.parkinglotapi.exception.BulkReservationException;
+import com.dustngroh.parkinglotapi.exception.DuplicateReservationException;
+import com.dustngroh.parkinglotapi.exception.NoAvailableSpacesException;
 import com.dustngroh.parkinglotapi.repository.ParkingLotRepository;
 import com.dustngroh.parkinglotapi.repository.ReservationRepository;
+import com.dustngroh.parkinglotapi.repository.UserRepository;
+import io.micrometer.core.aop.CountedAspect;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,10 +21,13 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
 import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Limit;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.test.context.ContextConfiguration;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,59 +44,73 @@ public class ReservationServiceTest {
     @Mock
     private ParkingLotRepository parkingLotRepository;
 
+    @Mock
+    private UserRepository userRepository;
+
     @InjectMocks
     private ReservationService reservationService;
 
+    private AvailabilityEngine availabilityEngine;
+
+    private HoldExpiryService holdExpiryService;
+
     private final String username = "john_doe";
+    private final Long userId = 7L;
     private final Long parkingLotId = 1L;
 
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this); // Initialize mocks
-        reservationService = new ReservationService(reservationRepository, parkingLotRepository);
+        availabilityEngine = new AvailabilityEngine(parkingLotRepository);
+        SpaceAllocator spaceAllocator = new SpaceAllocator(List.of(availabilityEngine), "in-memory", event -> {});
+        holdExpiryService = mock(HoldExpiryService.class);
+        reservationService = new ReservationService(reservationRepository, parkingLotRepository, userRepository,
+                spaceAllocator, holdExpiryService, new SlotOccupancyIndex(reservationRepository, 15),
+                mock(ReservationJournal.class), mock(ReservationEventService.class));
     }
 
     @Test
     public void testGetAllReservations() {
-        when(reservationRepository.findAll()).thenReturn(List.of(new Reservation(), new Reservation()));
+        when(reservationRepository.findViewsAfter(0L, Limit.unlimited()))
+                .thenReturn(List.of(new ReservationDTO(), new ReservationDTO()));
 
-        List<Reservation> reservations = reservationService.getAllReservations();
+        List<ReservationDTO> reservations = reservationService.getAllReservations();
 
         assertEquals(2, reservations.size());
-        verify(reservationRepository, times(1)).findAll();
+        verify(reservationRepository, times(1)).findViewsAfter(0L, Limit.unlimited());
     }
 
     @Test
     public void testGetReservationsByUser() {
-        when(reservationRepository.findByUser_Username(username)).thenReturn(List.of(new Reservation()));
+        when(reservationRepository.findViewsByUsernameAfter(username, 0L, Limit.unlimited()))
+                .thenReturn(List.of(new ReservationDTO()));
 
-        List<Reservation> reservations = reservationService.getReservationsByUser(username);
+        List<ReservationDTO> reservations = reservationService.getReservationsByUser(username);
 
         assertEquals(1, reservations.size());
-        verify(reservationRepository, times(1)).findByUser_Username(username);
+        verify(reservationRepository, times(1)).findViewsByUsernameAfter(username, 0L, Limit.unlimited());
     }
 
     @Test
     public void testHasReservation() {
-        when(reservationRepository.findByUser_UsernameAndParkingLot_Id(username, parkingLotId))
-                .thenReturn(Optional.of(new Reservation()));
+        when(reservationRepository.existsByUser_UsernameAndParkingLot_Id(username, parkingLotId)).thenReturn(true);
 
         assertTrue(reservationService.hasReservation(username, parkingLotId));
-        verify(reservationRepository, times(1)).findByUser_UsernameAndParkingLot_Id(username, parkingLotId);
+        verify(reservationRepository, times(1)).existsByUser_UsernameAndParkingLot_Id(username, parkingLotId);
     }
 
     @Test
     public void testHasNoReservation() {
-        when(reservationRepository.findByUser_UsernameAndParkingLot_Id(username, parkingLotId))
-                .thenReturn(Optional.empty());
+        when(reservationRepository.existsByUser_UsernameAndParkingLot_Id(username, parkingLotId)).thenReturn(false);
 
         assertFalse(reservationService.hasReservation(username, parkingLotId));
-        verify(reservationRepository, times(1)).findByUser_UsernameAndParkingLot_Id(username, parkingLotId);
+        verify(reservationRepository, times(1)).existsByUser_UsernameAndParkingLot_Id(username, parkingLotId);
     }
 
     @Test
     public void testCreateReservation() {
         User mockUser = new User();
+        mockUser.setId(userId);
         mockUser.setUsername(username);
 
         ParkingLot parkingLot = new ParkingLot();
@@ -94,17 +120,155 @@ public class ReservationServiceTest {
         parkingLot.setReservedSpaces(50);
 
         when(parkingLotRepository.findById(parkingLotId)).thenReturn(Optional.of(parkingLot));
-        when(reservationRepository.findByUser_UsernameAndParkingLot_Id(username, parkingLotId)).thenReturn(Optional.empty());
+        when(userRepository.getReferenceById(userId)).thenReturn(mockUser);
+        when(reservationRepository.existsByUser_IdAndParkingLot_Id(userId, parkingLotId)).thenReturn(false);
         when(reservationRepository.save(any(Reservation.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        LocalDateTime holdUntil = LocalDateTime.now().plusMinutes(30);
+        when(holdExpiryService.holdUntil()).thenReturn(holdUntil);
 
-        Reservation savedReservation = reservationService.createReservation(mockUser, parkingLotId);
+        Reservation savedReservation = reservationService.createReservation(userId, parkingLotId);
 
         assertEquals(parkingLot, savedReservation.getParkingLot());
-        assertEquals(51, parkingLot.getReservedSpaces());
-        verify(parkingLotRepository, times(1)).save(parkingLot);
+        assertEquals(mockUser, savedReservation.getUser());
+        assertEquals(holdUntil, savedReservation.getHoldUntil());
+        verify(holdExpiryService, times(1)).schedule(savedReservation);
+        verify(userRepository, never()).findById(any());
+        assertEquals(51, availabilityEngine.getReservedSpaces(parkingLotId));
+        verify(parkingLotRepository, never()).save(any(ParkingLot.class));
         verify(reservationRepository, times(1)).save(any(Reservation.class));
     }
 
+    @Test
+    public void testCreateReservationFailsWhenLotIsFull() {
+        ParkingLot parkingLot = new ParkingLot();
+        parkingLot.setId(parkingLotId);
+        parkingLot.setTotalSpaces(1);
+        parkingLot.setReservedSpaces(1);
+
+        when(parkingLotRepository.findById(parkingLotId)).thenReturn(Optional.of(parkingLot));
+        when(reservationRepository.existsByUser_IdAndParkingLot_Id(userId, parkingLotId)).thenReturn(false);
+
+        assertThrows(NoAvailableSpacesException.class, () -> reservationService.createReservation(userId, parkingLotId));
+        verify(reservationRepository, never()).save(any(Reservation.class));
+    }
+
+    @Test
+    public void testRejectedReservationsAreTimedAndCounted() {
+        ParkingLot parkingLot = new ParkingLot();
+        parkingLot.setId(parkingLotId);
+        parkingLot.setTotalSpaces(1);
+        parkingLot.setReservedSpaces(1);
+        when(parkingLotRepository.findById(parkingLotId)).thenReturn(Optional.of(parkingLot));
+        when(reservationRepository.existsByUser_IdAndParkingLot_Id(userId, parkingLotId)).thenReturn(false);
+        when(reservationRepository.existsByUser_IdAndParkingLot_Id(userId, 2L)).thenReturn(true);
+
+        // The same aspects MetricsConfig registers in the application
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(reservationService);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(new TimedAspect(meterRegistry));
+        proxyFactory.addAspect(new CountedAspect(meterRegistry));
+        ReservationService instrumented = proxyFactory.getProxy();
+
+        assertThrows(NoAvailableSpacesException.class, () -> instrumented.createReservation(userId, parkingLotId));
+        assertThrows(DuplicateReservationException.class, () -> instrumented.createReservation(userId, 2L));
+
+        assertEquals(1, meterRegistry.get("parkinglot.reservation.create.failures")
+                .tag("exception", "NoAvailableSpacesException").counter().count());
+        assertEquals(1, meterRegistry.get("parkinglot.reservation.create.failures")
+                .tag("exception", "DuplicateReservationException").counter().count());
+        assertEquals(2, meterRegistry.get("parkinglot.reservation.create").timers().stream()
+                .mapToLong(timer -> timer.count()).sum());
+    }
+
+    @Test
+    public void testSlotReservationsShareCapacityOnlyWhenTheyOverlap() {
+        ParkingLot parkingLot = slotLot(2, 1);
+        LocalDateTime morning = LocalDateTime.now().plusDays(1).withHour(8).withMinute(0);
+
+        Reservation first = reservationService.createSlotReservation(userId, parkingLotId, morning, morning.plusHours(9));
+
+        assertEquals(morning, first.getStartTime());
+        assertEquals(0, reservationService.getAvailableSpaces(parkingLotId, morning.plusHours(4), morning.plusHours(5)));
+        assertEquals(1, reservationService.getAvailableSpaces(parkingLotId, morning.plusHours(10), morning.plusHours(11)));
+        reservationService.createSlotReservation(8L, parkingLotId, morning.plusHours(10), morning.plusHours(11));
+        assertThrows(NoAvailableSpacesException.class, () ->
+                reservationService.createSlotReservation(9L, parkingLotId, morning.plusHours(4), morning.plusHours(5)));
+        assertEquals(1, availabilityEngine.getReservedSpaces(parkingLot.getId()));
+    }
+
+    @Test
+    public void testCancelSlotReservationFreesItsWindow() {
+        slotLot(1, 0);
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        Reservation reservation = reservationService.createSlotReservation(userId, parkingLotId, start, start.plusHours(2));
+        when(reservationRepository.findByUser_UsernameAndParkingLot_Id(username, parkingLotId))
+                .thenReturn(Optional.of(reservation));
+
+        assertTrue(reservationService.cancelReservation(username, parkingLotId));
+
+        assertEquals(1, reservationService.getAvailableSpaces(parkingLotId, start, start.plusHours(2)));
+        assertEquals(0, availabilityEngine.getReservedSpaces(parkingLotId));
+    }
+
+    @Test
+    public void testConfirmAndDeleteFreeSlotReservationWindows() {
+        slotLot(1, 0);
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        Reservation confirmed = reservationService.createSlotReservation(userId, parkingLotId, start, start.plusHours(2));
+        confirmed.setId(20L);
+        when(reservationRepository.findById(20L)).thenReturn(Optional.of(confirmed));
+
+        assertTrue(reservationService.confirmReservation(20L));
+        assertEquals(1, reservationService.getAvailableSpaces(parkingLotId, start, start.plusHours(2)));
+
+        Reservation deleted = reservationService.createSlotReservation(8L, parkingLotId, start, start.plusHours(2));
+        deleted.setId(21L);
+        when(reservationRepository.findById(21L)).thenReturn(Optional.of(deleted));
+
+        reservationService.deleteReservation(21L);
+        assertEquals(1, reservationService.getAvailableSpaces(parkingLotId, start, start.plusHours(2)));
+        assertEquals(0, availabilityEngine.getReservedSpaces(parkingLotId));
+    }
+
+    @Test
+    public void testSlotReservationLocksTheLotRowWhenTheCountIsInTheDatabase() {
+        SpaceAllocator spaceAllocator = new SpaceAllocator(
+                List.of(new ConditionalUpdateSpaceAllocation(parkingLotRepository)), "conditional-update", event -> {});
+        reservationService = new ReservationService(reservationRepository, parkingLotRepository, userRepository,
+                spaceAllocator, holdExpiryService, new SlotOccupancyIndex(reservationRepository, 15),
+                mock(ReservationJournal.class), mock(ReservationEventService.class));
+        ParkingLot parkingLot = new ParkingLot();
+        parkingLot.setId(parkingLotId);
+        parkingLot.setTotalSpaces(1);
+        // As read under the lock, after a concurrent reservation without an end committed
+        parkingLot.setReservedSpaces(1);
+        when(parkingLotRepository.findByIdForUpdate(parkingLotId)).thenReturn(Optional.of(parkingLot));
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+
+        assertThrows(NoAvailableSpacesException.class, () ->
+                reservationService.createSlotReservation(userId, parkingLotId, start, start.plusHours(2)));
+        verify(parkingLotRepository, never()).findById(parkingLotId);
+    }
+
+    @Test
+    public void testReservationWithoutEndCountsBookedSlots() {
+        slotLot(1, 0);
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        reservationService.createSlotReservation(userId, parkingLotId, start, start.plusHours(2));
+
+        assertThrows(NoAvailableSpacesException.class, () -> reservationService.createReservation(8L, parkingLotId));
+    }
+
+    @Test
+    public void testSlotReservationRejectsEmptyWindow() {
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+
+        assertThrows(IllegalArgumentException.class, () ->
+                reservationService.createSlotReservation(userId, parkingLotId, start, start));
+        verifyNoInteractions(reservationRepository);
+    }
+
     @Test
     public void testCancelReservation() {
         ParkingLot parkingLot = new ParkingLot();
@@ -115,14 +279,14 @@ public class ReservationServiceTest {
         Reservation reservation = new Reservation();
         reservation.setParkingLot(parkingLot);
 
+        when(parkingLotRepository.findById(parkingLotId)).thenReturn(Optional.of(parkingLot));
         when(reservationRepository.findByUser_UsernameAndParkingLot_Id(username, parkingLotId))
                 .thenReturn(Optional.of(reservation));
 
         boolean result = reservationService.cancelReservation(username, parkingLotId);
 
         assertTrue(result);
-        assertEquals(49, parkingLot.getReservedSpaces());
-        verify(parkingLotRepository, times(1)).save(parkingLot);
+        assertEquals(49, availabilityEngine.getReservedSpaces(parkingLotId));
         verify(reservationRepository, times(1)).delete(reservation);
     }
 
@@ -138,6 +302,87 @@ public class ReservationServiceTest {
         verifyNoMoreInteractions(reservationRepository);
     }
 
+    @Test
+    public void testCreateReservationsClaimsEachLotOnce() {
+        ParkingLot parkingLot = new ParkingLot();
+        parkingLot.setId(parkingLotId);
+        parkingLot.setTotalSpaces(100);
+        parkingLot.setReservedSpaces(50);
+        when(parkingLotRepository.findById(parkingLotId)).thenReturn(Optional.of(parkingLot));
+        when(userRepository.findExistingIds(anyCollection())).thenReturn(List.of(userId, 8L));
+        when(parkingLotRepository.findExistingIds(anyCollection())).thenReturn(List.of(parkingLotId));
+        when(reservationRepository.findKeysByUserIdsAndParkingLotIds(anyCollection(), anyCollection()))
+                .thenReturn(List.of());
+
+        int created = reservationService.createReservations(List.of(
+                bulkRow(userId, parkingLotId), bulkRow(8L, parkingLotId)));
+
+        assertEquals(2, created);
+        assertEquals(52, availabilityEngine.getReservedSpaces(parkingLotId));
+        verify(reservationRepository, times(1)).saveAll(argThat(rows -> ((List<?>) rows).size() == 2));
+        verify(reservationRepository, never()).save(any(Reservation.class));
+    }
+
+    @Test
+    public void testCreateReservationsRejectsWholeBatch() {
+        ParkingLot parkingLot = new ParkingLot();
+        parkingLot.setId(parkingLotId);
+        parkingLot.setTotalSpaces(100);
+        parkingLot.setReservedSpaces(50);
+        when(parkingLotRepository.findById(parkingLotId)).thenReturn(Optional.of(parkingLot));
+        when(userRepository.findExistingIds(anyCollection())).thenReturn(List.of(userId));
+        when(parkingLotRepository.findExistingIds(anyCollection())).thenReturn(List.of(parkingLotId));
+        when(reservationRepository.findKeysByUserIdsAndParkingLotIds(anyCollection(), anyCollection()))
+                .thenReturn(List.of());
+
+        BulkReservationException e = assertThrows(BulkReservationException.class,
+                () -> reservationService.createReservations(List.of(
+                        bulkRow(userId, parkingLotId), bulkRow(userId, parkingLotId), bulkRow(9L, parkingLotId))));
+
+        assertEquals(List.of("Row 2: duplicate of row 1.", "Row 3: user 9 not found."), e.getErrors());
+        assertEquals(50, availabilityEngine.getReservedSpaces(parkingLotId));
+        verify(reservationRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    public void testCreateReservationsRejectsBatchLargerThanLot() {
+        ParkingLot parkingLot = new ParkingLot();
+        parkingLot.setId(parkingLotId);
+        parkingLot.setTotalSpaces(51);
+        parkingLot.setReservedSpaces(50);
+        when(parkingLotRepository.findById(parkingLotId)).thenReturn(Optional.of(parkingLot));
+        when(userRepository.findExistingIds(anyCollection())).thenReturn(List.of(userId, 8L));
+        when(parkingLotRepository.findExistingIds(anyCollection())).thenReturn(List.of(parkingLotId));
+        when(reservationRepository.findKeysByUserIdsAndParkingLotIds(anyCollection(), anyCollection()))
+                .thenReturn(List.of());
+
+        assertThrows(BulkReservationException.class, () -> reservationService.createReservations(List.of(
+                bulkRow(userId, parkingLotId), bulkRow(8L, parkingLotId))));
+
+        assertEquals(50, availabilityEngine.getReservedSpaces(parkingLotId));
+        verify(reservationRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    public void testCancelReservationsReleasesEachLotOnce() {
+        ParkingLot parkingLot = new ParkingLot();
+        parkingLot.setId(parkingLotId);
+        parkingLot.setTotalSpaces(100);
+        parkingLot.setReservedSpaces(50);
+        when(parkingLotRepository.findById(parkingLotId)).thenReturn(Optional.of(parkingLot));
+        // The key query is a cross product; the (8, 2) reservation was not requested
+        when(reservationRepository.findKeysByUserIdsAndParkingLotIds(anyCollection(), anyCollection()))
+                .thenReturn(List.of(new ReservationKey(10L, userId, parkingLotId),
+                        new ReservationKey(11L, 8L, parkingLotId), new ReservationKey(12L, 8L, 2L)));
+
+        int cancelled = reservationService.cancelReservations(List.of(
+                bulkRow(userId, parkingLotId), bulkRow(8L, parkingLotId), bulkRow(userId, 2L)));
+
+        assertEquals(2, cancelled);
+        assertEquals(48, availabilityEngine.getReservedSpaces(parkingLotId));
+        verify(reservationRepository, times(1)).deleteAllByIdInBatch(List.of(10L, 11L));
+    }
+
     @Test
     public void testDeleteReservation() {
         doNothing().when(reservationRepository).deleteById(1L);
@@ -147,11 +392,32 @@ public class ReservationServiceTest {
         verify(reservationRepository, times(1)).deleteById(1L);
     }
 
+    private ParkingLot slotLot(int totalSpaces, int reservedSpaces) {
+        ParkingLot parkingLot = new ParkingLot();
+        parkingLot.setId(parkingLotId);
+        parkingLot.setName("Main Lot");
+        parkingLot.setTotalSpaces(totalSpaces);
+        parkingLot.setReservedSpaces(reservedSpaces);
+        when(parkingLotRepository.findById(parkingLotId)).thenReturn(Optional.of(parkingLot));
+        when(reservationRepository.save(any(Reservation.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        return parkingLot;
+    }
+
+    private static ReservationDTO bulkRow(Long userId, Long parkingLotId) {
+        ReservationDTO row = new ReservationDTO();
+        row.setUserId(userId);
+        row.setParkingLotId(parkingLotId);
+        return row;
+    }
+
     @Configuration
     static class TestConfig {
         @Bean
         public ReservationService reservationService(ReservationRepository reservationRepository, ParkingLotRepository parkingLotRepository) {
-            return new ReservationService(reservationRepository, parkingLotRepository);
+            SpaceAllocator spaceAllocator = new SpaceAllocator(List.of(new AvailabilityEngine(parkingLotRepository)), "in-memory", event -> {});
+            return new ReservationService(reservationRepository, parkingLotRepository, mock(UserRepository.class),
+                    spaceAllocator, mock(HoldExpiryService.class), mock(SlotOccupancyIndex.class),
+                    mock(ReservationJournal.class), mock(ReservationEventService.class));
         }
 
         @Bean
@@ -0,0 +1,56 @@
+package com.dustngroh.parkinglotapi.service;
+
+import com.dustngroh.parkinglotapi.repository.InstanceLeaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Two guards on one database stand in for two instances; each lease call commits on its own
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class SingleInstanceGuardTest {
+
+    @Autowired
+    private InstanceLeaseRepository instanceLeaseRepository;
+
+    @BeforeEach
+    public void setUp() {
+        instanceLeaseRepository.deleteAll();
+    }
+
+    @Test
+    public void testSecondInstanceFailsToStartUntilTheFirstReleases() throws Exception {
+        SingleInstanceGuard first = new SingleInstanceGuard(instanceLeaseRepository, 60_000, 10_000);
+        first.acquire();
+        first.renew();
+
+        SingleInstanceGuard second = new SingleInstanceGuard(instanceLeaseRepository, 200, 100);
+        IllegalStateException e = assertThrows(IllegalStateException.class, second::acquire);
+        assertTrue(e.getMessage().startsWith("Another instance is running against this database."));
+
+        first.release();
+        second.acquire();
+        assertTrue(first.claim(System.currentTimeMillis()) > 0);
+    }
+
+    @Test
+    public void testLeaseOfACrashedInstanceIsTakenOnceItRunsOut() throws Exception {
+        // Never renewed or released
+        new SingleInstanceGuard(instanceLeaseRepository, 200, 100).acquire();
+
+        SingleInstanceGuard second = new SingleInstanceGuard(instanceLeaseRepository, 200, 100);
+        second.acquire();
+        assertEquals(0, second.claim(System.currentTimeMillis()));
+    }
+
+    @Test
+    public void testRenewalMustBeMoreFrequentThanExpiry() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new SingleInstanceGuard(instanceLeaseRepository, 10_000, 10_000));
+    }
+}
@@ -1,6 +1,7 @@
 package com.dustngroh.parkinglotapi.service;
 
 import com.dustngroh.parkinglotapi.entity.User;
+import com.dustngroh.parkinglotapi.exception.UserNotFoundException;
 import com.dustngroh.parkinglotapi.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,10 +12,15 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-@SpringBootTest
+@SpringBootTest(properties = "jwt.secret=user-service-test-secret-user-service-test")
 public class UserServiceTest {
 
     @Autowired
@@ -27,6 +33,7 @@ public class UserServiceTest {
     public void setUp() {
         userRepository = mock(UserRepository.class);
         passwordEncoder = mock(PasswordEncoder.class);
+        when(passwordEncoder.encode(anyString())).thenReturn("unknown-user-hash");
         userService = new UserService(userRepository, passwordEncoder);
     }
 
@@ -59,4 +66,22 @@ public class UserServiceTest {
         assertEquals("john_doe", savedUser.getUsername());
         assertEquals("USER", savedUser.getRole());
     }
+
+    @Test
+    public void testAuthenticateUnknownUserStillHashes() {
+        when(userRepository.findByUsername("nobody")).thenReturn(Optional.empty());
+        when(passwordEncoder.matches("password", "unknown-user-hash")).thenReturn(false);
+
+        assertThrows(UserNotFoundException.class, () -> userService.authenticate("nobody", "password"));
+        verify(passwordEncoder, times(1)).matches("password", "unknown-user-hash");
+    }
+
+    @Test
+    public void testAuthenticateWithPasswordOfUnknownUserHashFails() {
+        // Even if the random placeholder hash matched, an unknown username must not authenticate
+        when(userRepository.findByUsername("nobody")).thenReturn(Optional.empty());
+        when(passwordEncoder.matches(any(), any())).thenReturn(true);
+
+        assertThrows(UserNotFoundException.class, () -> userService.authenticate("nobody", "password"));
+    }
 }
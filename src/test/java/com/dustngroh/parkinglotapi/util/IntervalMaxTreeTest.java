@@ -0,0 +1,86 @@
+package com.dustngroh.parkinglotapi.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntervalMaxTreeTest {
+
+    @Test
+    public void testMaxCoversOnlyOverlappingRanges() {
+        IntervalMaxTree tree = new IntervalMaxTree(32);
+        tree.add(100, 200, 1);
+        tree.add(150, 300, 1);
+        tree.add(250, 260, 1);
+
+        assertEquals(2, tree.max(0, tree.size()));
+        assertEquals(1, tree.max(100, 150));
+        assertEquals(2, tree.max(199, 200));
+        assertEquals(1, tree.max(200, 250));
+        assertEquals(2, tree.max(255, 256));
+        assertEquals(0, tree.max(300, 1L << 31));
+
+        tree.add(150, 300, -1);
+        assertEquals(1, tree.max(0, tree.size()));
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        int width = 1 << 8;
+        IntervalMaxTree tree = new IntervalMaxTree(8);
+        int[] counts = new int[width];
+        Random random = new Random(7);
+
+        for (int i = 0; i < 2_000; i++) {
+            int from = random.nextInt(width);
+            int to = from + 1 + random.nextInt(width - from);
+            if (random.nextBoolean()) {
+                int delta = random.nextInt(5) - 2;
+                tree.add(from, to, delta);
+                for (int p = from; p < to; p++) {
+                    counts[p] += delta;
+                }
+            } else {
+                int expected = Integer.MIN_VALUE;
+                for (int p = from; p < to; p++) {
+                    expected = Math.max(expected, counts[p]);
+                }
+                assertEquals(expected, tree.max(from, to));
+            }
+        }
+    }
+
+    @Test
+    public void testReleasedAndPrunedRangesFreeTheirNodes() {
+        IntervalMaxTree tree = new IntervalMaxTree(32);
+        tree.add(1_000, 2_000, 1);
+        tree.add(1_000, 2_000, -1);
+        assertEquals(1, tree.nodeCount());
+
+        tree.add(100, 200, 1);
+        tree.add(150, 5_000, 1);
+        tree.add(4_000, 4_100, 1);
+        int nodes = tree.nodeCount();
+
+        tree.prune(3_000);
+        assertTrue(tree.nodeCount() < nodes);
+        assertEquals(2, tree.max(3_000, tree.size()));
+        assertEquals(1, tree.max(3_000, 4_000));
+        assertEquals(0, tree.max(5_000, tree.size()));
+
+        tree.prune(10_000);
+        assertEquals(1, tree.nodeCount());
+        assertEquals(0, tree.max(10_000, tree.size()));
+    }
+
+    @Test
+    public void testRejectsEmptyAndOutOfBoundsRanges() {
+        IntervalMaxTree tree = new IntervalMaxTree(4);
+
+        assertThrows(IllegalArgumentException.class, () -> tree.add(5, 5, 1));
+        assertThrows(IllegalArgumentException.class, () -> tree.max(-1, 3));
+        assertThrows(IllegalArgumentException.class, () -> tree.max(0, 17));
+    }
+}
@@ -0,0 +1,50 @@
+package com.dustngroh.parkinglotapi.util;
+
+import com.dustngroh.parkinglotapi.entity.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JwtUtilTest {
+
+    private JwtUtil jwtUtil;
+
+    @BeforeEach
+    public void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "SECRET_KEY", "test-secret-test-secret-test-secret-1234");
+        ReflectionTestUtils.setField(jwtUtil, "cacheMaxSize", 100L);
+        jwtUtil.init();
+    }
+
+    @Test
+    public void testValidateTokenReusesVerifiedClaims() {
+        User user = new User();
+        user.setUsername("john_doe");
+        user.setRole("USER");
+        String token = jwtUtil.generateToken(user);
+
+        Claims first = jwtUtil.validateToken(token);
+        Claims second = jwtUtil.validateToken(token);
+
+        assertSame(first, second);
+        assertEquals("john_doe", jwtUtil.getUsernameFromToken(token));
+        assertEquals("USER", jwtUtil.getRoleFromToken(token));
+        assertEquals(1, jwtUtil.getTokenCacheStats().missCount());
+        assertEquals(3, jwtUtil.getTokenCacheStats().hitCount());
+    }
+
+    @Test
+    public void testTamperedTokenIsRejected() {
+        String token = jwtUtil.generateToken("john_doe");
+        jwtUtil.validateToken(token);
+
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertThrows(JwtException.class, () -> jwtUtil.validateToken(tampered));
+    }
+}
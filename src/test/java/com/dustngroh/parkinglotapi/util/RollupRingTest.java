@@ -0,0 +1,64 @@
+package com.dustngroh.parkinglotapi.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RollupRingTest {
+
+    @Test
+    public void testLevelsAreSplitAcrossBuckets() {
+        RollupRing ring = new RollupRing(1_000, 4);
+        ring.add(2, 500, 1_500);
+        ring.add(6, 1_500, 2_000);
+
+        RollupRing.Rollup first = ring.get(0);
+        assertEquals(2, first.min());
+        assertEquals(2, first.max());
+        assertEquals(500, first.coveredMillis());
+        assertEquals(2.0, first.mean());
+
+        // Level 2 for half the second bucket, 6 for the other half
+        RollupRing.Rollup second = ring.get(1);
+        assertEquals(2, second.min());
+        assertEquals(6, second.max());
+        assertEquals(4.0, second.mean());
+        assertNull(ring.get(2));
+    }
+
+    @Test
+    public void testOldBucketsAreOverwritten() {
+        RollupRing ring = new RollupRing(1_000, 4);
+        ring.add(1, 0, 1_000);
+        ring.add(3, 4_000, 5_000);
+
+        // Bucket 4 took bucket 0's slot
+        assertNull(ring.get(0));
+        assertEquals(3, ring.get(4).max());
+
+        // A long span keeps only what fits in the ring
+        ring.add(5, 5_000, 100_000);
+        assertNull(ring.get(4));
+        assertEquals(5, ring.get(96).min());
+        assertEquals(5, ring.get(99).max());
+        assertNull(ring.get(95));
+    }
+
+    @Test
+    public void testMergeAddsToABucketButNeverReplacesANewerOne() {
+        RollupRing ring = new RollupRing(1_000, 4);
+        ring.add(4, 8_000, 8_500);
+
+        ring.merge(8, new RollupRing.Rollup(2, 2, 1_000, 500));
+        RollupRing.Rollup merged = ring.get(8);
+        assertEquals(2, merged.min());
+        assertEquals(4, merged.max());
+        assertEquals(1_000, merged.coveredMillis());
+        assertEquals(3.0, merged.mean());
+
+        // Bucket 4 shares the slot with bucket 8, which is newer
+        ring.merge(4, new RollupRing.Rollup(9, 9, 9_000, 1_000));
+        assertNull(ring.get(4));
+        assertEquals(merged, ring.get(8));
+    }
+}
@@ -0,0 +1,70 @@
+package com.dustngroh.parkinglotapi.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimingWheelTest {
+
+    @Test
+    public void testItemsFireAtTheirDeadlineInOrder() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 4, 1_000);
+        wheel.schedule("late", 1_500);
+        wheel.schedule("early", 1_020);
+        wheel.schedule("middle", 1_200);
+        List<String> fired = new ArrayList<>();
+
+        wheel.advance(1_019, fired::add);
+        assertTrue(fired.isEmpty());
+
+        wheel.advance(1_200, fired::add);
+        assertEquals(List.of("early", "middle"), fired);
+
+        wheel.advance(1_499, fired::add);
+        assertEquals(2, fired.size());
+        wheel.advance(1_500, fired::add);
+        assertEquals(List.of("early", "middle", "late"), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testPastDeadlinesAreRefused() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 4, 1_000);
+
+        assertFalse(wheel.schedule("past", 990));
+        assertFalse(wheel.schedule("now", 1_000));
+        assertTrue(wheel.schedule("next tick", 1_001));
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    public void testCascadedItemsNeverFireEarlyOrMoreThanOneTickLate() {
+        long tick = 10;
+        long start = 123_456;
+        TimingWheel<Long> wheel = new TimingWheel<>(tick, 3, start);
+        Random random = new Random(42);
+        int items = 100_000;
+        for (int i = 0; i < items; i++) {
+            // Spread over several levels of the wheel
+            long deadline = start + 1 + random.nextLong(tick * 100_000);
+            assertTrue(wheel.schedule(deadline, deadline));
+        }
+
+        int[] fired = {0};
+        long now = start;
+        while (wheel.size() > 0) {
+            now += 7 * tick;
+            long advancedTo = now;
+            wheel.advance(now, deadline -> {
+                assertTrue(deadline <= advancedTo, "fired before its deadline");
+                assertTrue(deadline > advancedTo - 7 * tick - tick, "fired more than a tick late");
+                fired[0]++;
+            });
+        }
+        assertEquals(items, fired[0]);
+    }
+}